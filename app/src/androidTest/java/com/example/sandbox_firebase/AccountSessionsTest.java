@@ -0,0 +1,62 @@
+package com.example.sandbox_firebase;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.google.firebase.FirebaseApp;
+import com.google.firebase.auth.FirebaseAuth;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Evicted sessions must give back their FirebaseApp; needs the real Firebase SDK. */
+@RunWith(AndroidJUnit4.class)
+public class AccountSessionsTest {
+
+    private final Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+
+    private FirebaseAuth namedSession(String name) {
+        FirebaseApp app = FirebaseApp.initializeApp(context, FirebaseApp.getInstance().getOptions(), name);
+        return FirebaseAuth.getInstance(app);
+    }
+
+    private static boolean isLive(Context context, String name) {
+        for (FirebaseApp app : FirebaseApp.getApps(context)) {
+            if (app.getName().equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Test
+    public void evictionSignsOutAndDeletesTheNamedApp() {
+        SessionCache<FirebaseAuth> cache = new SessionCache<>(1, Long.MAX_VALUE, AccountSessions.RELEASER);
+        FirebaseAuth first = namedSession("evict-test-1");
+        cache.put("uid-1", first, AccountSessions.ESTIMATED_SESSION_BYTES);
+
+        cache.put("uid-2", namedSession("evict-test-2"), AccountSessions.ESTIMATED_SESSION_BYTES);
+
+        assertEquals(1, cache.getEvictionCount());
+        assertNull(cache.get("uid-1"));
+        assertFalse(isLive(context, "evict-test-1"));
+        assertTrue(isLive(context, "evict-test-2"));
+        AccountSessions.release(cache.get("uid-2"));
+        assertFalse(isLive(context, "evict-test-2"));
+    }
+
+    @Test
+    public void releasingTheDefaultSessionKeepsTheDefaultApp() {
+        AccountSessions.release(FirebaseAuth.getInstance());
+
+        assertNull(FirebaseAuth.getInstance().getCurrentUser());
+        assertTrue(isLive(context, FirebaseApp.DEFAULT_APP_NAME));
+    }
+}
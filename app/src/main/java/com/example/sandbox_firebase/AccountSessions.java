@@ -0,0 +1,244 @@
+package com.example.sandbox_firebase;
+
+import android.content.Context;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.TaskCompletionSource;
+import com.google.firebase.FirebaseApp;
+import com.google.firebase.auth.AuthCredential;
+import com.google.firebase.auth.AuthResult;
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.auth.FirebaseUser;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Keeps several signed-in accounts alive at once, each in its own named {@link FirebaseApp}
+ * with its own {@link FirebaseAuth}, so switching accounts is a local pointer swap rather
+ * than a sign-out, a Credential Manager round-trip and a {@code signInWithCredential}.
+ *
+ * <p>Exactly one session is active; screens, {@link AuthStateRepository} and the token
+ * manager follow it through the {@link ActiveListener}. Signed-in sessions live in a
+ * {@link SessionCache}: when it evicts one (too many accounts, or over the memory budget) that
+ * account is signed out and its app deleted. Sessions other than the default app's don't
+ * survive process death; a recycled app name is signed out before reuse.
+ */
+public final class AccountSessions {
+
+    /** Rough heap cost of one FirebaseApp with Auth, its token refresher and persisted user. */
+    static final long ESTIMATED_SESSION_BYTES = 512 * 1024;
+    private static final String APP_PREFIX = "account-";
+
+    private static final Executor DIRECT = Runnable::run;
+
+    /** What the cache does with a session it evicts. */
+    static final SessionCache.Releaser<FirebaseAuth> RELEASER = (uid, auth) -> release(auth);
+
+    /** Told whenever a different {@link FirebaseAuth} becomes the active one. */
+    public interface ActiveListener {
+        void onActiveChanged(@Nullable FirebaseAuth previous, @NonNull FirebaseAuth active);
+    }
+
+    private final Context context;
+    private final Consumer<FirebaseAuth> setUp;
+    private final ActiveListener listener;
+    private final SessionCache<FirebaseAuth> cache;
+    private final AtomicInteger nextApp = new AtomicInteger();
+    private final LatencyStats switchLatency = new LatencyStats();
+    private final FirebaseAuth.AuthStateListener tracker = this::track;
+
+    @Nullable
+    private volatile FirebaseAuth active;
+
+    /**
+     * @param setUp applied to every {@link FirebaseAuth} before first use, e.g. to point it
+     *              at an emulator
+     */
+    public AccountSessions(@NonNull Context context, int maxSessions, long budgetBytes,
+                           @NonNull Consumer<FirebaseAuth> setUp, @NonNull ActiveListener listener) {
+        this.context = context.getApplicationContext();
+        this.setUp = setUp;
+        this.listener = listener;
+        this.cache = new SessionCache<>(maxSessions, budgetBytes, RELEASER);
+    }
+
+    /** Starts with the default app's session. Safe to call from a background thread. */
+    void attachDefault(@NonNull FirebaseAuth auth) {
+        setUp.accept(auth);
+        activate(auth);
+    }
+
+    /** The session screens should act on. */
+    @NonNull
+    public FirebaseAuth getActiveAuth() {
+        FirebaseAuth auth = active;
+        // Before attachDefault has run, the default instance is what it will attach
+        return auth != null ? auth : FirebaseAuth.getInstance();
+    }
+
+    /**
+     * Signs in with {@code credential}. If an account is already signed in, the new one gets
+     * a session of its own and becomes active, and the current one stays cached.
+     */
+    @MainThread
+    @NonNull
+    public Task<AuthResult> signInWithCredential(@NonNull AuthCredential credential) {
+        FirebaseAuth current = getActiveAuth();
+        FirebaseAuth target = current.getCurrentUser() == null ? current : newSession();
+        TaskCompletionSource<AuthResult> result = new TaskCompletionSource<>();
+        target.signInWithCredential(credential).addOnCompleteListener(DIRECT, task -> {
+            if (task.isSuccessful()) {
+                activate(target);
+                result.setResult(task.getResult());
+            } else {
+                if (target != current) {
+                    release(target);
+                }
+                result.setException(task.getException());
+            }
+        });
+        return result.getTask();
+    }
+
+    /**
+     * Makes the cached session for {@code uid} active without touching the network. Returns
+     * false if that account isn't cached (it was evicted or never signed in here).
+     */
+    @MainThread
+    public boolean switchTo(@NonNull String uid) {
+        long start = System.nanoTime();
+        FirebaseAuth auth = cache.activate(uid);
+        if (auth == null) {
+            return false;
+        }
+        activate(auth);
+        switchLatency.record(System.nanoTime() - start);
+        return true;
+    }
+
+    /**
+     * Signs the active account out and drops its session, then switches to the most recently
+     * used remaining account. Returns whether one took over; if not, nobody is signed in.
+     */
+    @MainThread
+    public boolean signOutActive() {
+        FirebaseAuth leaving = getActiveAuth();
+        FirebaseUser user = leaving.getCurrentUser();
+        cache.deactivate();
+        String next = null;
+        for (String uid : cache.keys()) {
+            if (user == null || !uid.equals(user.getUid())) {
+                next = uid;
+                break;
+            }
+        }
+        if (next != null) {
+            switchTo(next);
+        } else if (leaving.getApp() != FirebaseApp.getInstance()) {
+            // The default app outlives every named one, so it takes over signed out
+            activate(FirebaseAuth.getInstance());
+        }
+        if (user == null || !cache.remove(user.getUid())) {
+            leaving.signOut();
+        }
+        return next != null;
+    }
+
+    /** Cached accounts, most recently used first; the active one included. */
+    @NonNull
+    public List<AuthSnapshot> getAccounts() {
+        List<AuthSnapshot> accounts = new ArrayList<>();
+        for (String uid : cache.keys()) {
+            FirebaseAuth auth = cache.get(uid);
+            if (auth != null) {
+                accounts.add(AuthStateRepository.snapshotOf(auth.getCurrentUser()));
+            }
+        }
+        return accounts;
+    }
+
+    /** The signed-in user for {@code uid} if this process still has a session for it. */
+    @Nullable
+    public FirebaseUser findUser(@NonNull String uid) {
+        FirebaseAuth auth = cache.get(uid);
+        FirebaseUser user = auth != null ? auth.getCurrentUser() : getActiveAuth().getCurrentUser();
+        return user != null && uid.equals(user.getUid()) ? user : null;
+    }
+
+    /** Time for {@link #switchTo} to make another account active and publish it. */
+    @NonNull
+    public LatencyStats getSwitchLatency() {
+        return switchLatency;
+    }
+
+    /** Accounts signed out because the cache ran out of room. */
+    public long getEvictionCount() {
+        return cache.getEvictionCount();
+    }
+
+    private void activate(@NonNull FirebaseAuth auth) {
+        FirebaseAuth previous;
+        synchronized (this) {
+            previous = active;
+            if (previous == auth) {
+                return;
+            }
+            if (previous != null) {
+                previous.removeAuthStateListener(tracker);
+            }
+            active = auth;
+            // Cache the account now rather than when the listener's first (posted) call lands
+            track(auth);
+            auth.addAuthStateListener(tracker);
+        }
+        listener.onActiveChanged(previous, auth);
+    }
+
+    /** Keeps the active session's account in the cache as it signs in. */
+    private void track(@NonNull FirebaseAuth auth) {
+        FirebaseUser user = auth.getCurrentUser();
+        if (user == null || auth != active) {
+            return;
+        }
+        if (cache.get(user.getUid()) != auth) {
+            cache.put(user.getUid(), auth, ESTIMATED_SESSION_BYTES);
+        }
+        cache.activate(user.getUid());
+    }
+
+    /**
+     * A signed-out session for another account: the default app if nobody is using it,
+     * otherwise a new named app.
+     */
+    @NonNull
+    private FirebaseAuth newSession() {
+        FirebaseAuth defaultAuth = FirebaseAuth.getInstance();
+        if (defaultAuth != active && defaultAuth.getCurrentUser() == null) {
+            return defaultAuth;
+        }
+        FirebaseApp app = FirebaseApp.initializeApp(context, FirebaseApp.getInstance().getOptions(),
+                APP_PREFIX + nextApp.incrementAndGet());
+        FirebaseAuth auth = FirebaseAuth.getInstance(app);
+        setUp.accept(auth);
+        // A name reused from an earlier process may have restored that process's user
+        auth.signOut();
+        return auth;
+    }
+
+    /** Signs the session out and, unless it's the default app's, deletes its app. */
+    static void release(@NonNull FirebaseAuth auth) {
+        auth.signOut();
+        FirebaseApp app = auth.getApp();
+        if (app != FirebaseApp.getInstance()) {
+            app.delete();
+        }
+    }
+}
@@ -0,0 +1,359 @@
+package com.example.sandbox_firebase;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.TaskCompletionSource;
+import com.google.android.gms.tasks.Tasks;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Client-side admission control for auth network calls, so that repeated taps while the
+ * backend is struggling don't turn into a retry storm:
+ *
+ * <ul>
+ *   <li>Token buckets per operation and per (operation, account). A call that would get a
+ *       token within {@link #MAX_DELAY_MILLIS} is delayed; otherwise it's rejected.</li>
+ *   <li>After a throttling or network failure, that (operation, account) backs off
+ *       exponentially with jitter until a call succeeds.</li>
+ *   <li>A circuit breaker opens for {@link #OPEN_MILLIS} after {@link #FAILURE_THRESHOLD}
+ *       consecutive backend failures of any operation, then lets one probe call through.</li>
+ * </ul>
+ *
+ * Refused calls fail with {@link RejectedException}, which carries the time until a retry can
+ * succeed so the UI can show a cooldown. Complements {@link AuthOperationCoordinator}, which
+ * merges concurrent duplicates before they reach this gate.
+ */
+public final class AuthCallGate {
+
+    public static final String SIGN_IN = "signIn";
+    public static final String CREATE_ACCOUNT = "createAccount";
+    public static final String GOOGLE_SIGN_IN = "googleSignIn";
+    public static final String RELOAD = "reload";
+
+    static final long MAX_DELAY_MILLIS = 1_500;
+    static final long BACKOFF_BASE_MILLIS = 1_000;
+    static final long BACKOFF_MAX_MILLIS = 60_000;
+    static final int FAILURE_THRESHOLD = 5;
+    static final long OPEN_MILLIS = 30_000;
+    /**
+     * Size past which idle state is pruned: buckets that have refilled and backoffs that have
+     * run out, which is exactly what a fresh key starts with. Live entries are never dropped,
+     * so pruning can't lift a limit; the limits themselves cap how many can be live at once.
+     */
+    static final int MAX_TRACKED_KEYS = 64;
+
+    private static final Executor DIRECT = Runnable::run;
+
+    /** How a failed call reflects on the backend. */
+    public enum Failure {
+        /** The backend asked us to slow down (e.g. {@code TOO_MANY_REQUESTS}). */
+        THROTTLED,
+        /** The backend couldn't be reached or didn't answer. */
+        UNAVAILABLE,
+        /** The backend answered, e.g. wrong password; says nothing about its health. */
+        OTHER
+    }
+
+    public interface FailureClassifier {
+        @NonNull
+        Failure classify(@NonNull Exception e);
+    }
+
+    public enum CircuitState { CLOSED, OPEN, HALF_OPEN }
+
+    /** A call refused locally; nothing was sent. */
+    public static final class RejectedException extends Exception {
+
+        public enum Reason { RATE_LIMITED, BACKING_OFF, CIRCUIT_OPEN }
+
+        public final Reason reason;
+        public final long retryAfterMillis;
+
+        RejectedException(@NonNull Reason reason, long retryAfterMillis) {
+            super(reason + ", retry in " + retryAfterMillis + " ms");
+            this.reason = reason;
+            this.retryAfterMillis = retryAfterMillis;
+        }
+    }
+
+    /** Bucket size and refill rate for one key. */
+    static final class Limit {
+        final int capacity;
+        final long refillMillis;
+
+        Limit(int capacity, long refillMillis) {
+            this.capacity = capacity;
+            this.refillMillis = refillMillis;
+        }
+    }
+
+    /** Burst of 5, then one call every 6 s for each account. */
+    static final Limit PER_ACCOUNT = new Limit(5, 6_000);
+    /** Burst of 10, then one call every 2 s across accounts (e.g. someone cycling emails). */
+    static final Limit PER_OPERATION = new Limit(10, 2_000);
+
+    private final Clock clock;
+    private final Scheduler scheduler;
+    private final FailureClassifier classifier;
+    private final Random random;
+
+    private final Map<String, Bucket> buckets = new HashMap<>();
+    private final Map<String, Backoff> backoffs = new HashMap<>();
+
+    private CircuitState circuit = CircuitState.CLOSED;
+    private int consecutiveFailures;
+    private long openUntilMillis;
+    private boolean probeInFlight;
+
+    private final AtomicLong admitted = new AtomicLong();
+    private final AtomicLong delayed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong circuitTrips = new AtomicLong();
+
+    public AuthCallGate(@NonNull Scheduler scheduler, @NonNull FailureClassifier classifier) {
+        this(Clock.SYSTEM, scheduler, classifier, new Random());
+    }
+
+    AuthCallGate(@NonNull Clock clock, @NonNull Scheduler scheduler,
+                 @NonNull FailureClassifier classifier, @NonNull Random random) {
+        this.clock = clock;
+        this.scheduler = scheduler;
+        this.classifier = classifier;
+        this.random = random;
+    }
+
+    /**
+     * Starts {@code call} now, after a short delay, or not at all. {@code account} is the email
+     * or uid the call is for, or null when there isn't one yet.
+     */
+    @NonNull
+    public <T> Task<T> run(@NonNull String operation, @Nullable String account,
+                           @NonNull Supplier<Task<T>> call) {
+        String key = account == null ? operation : operation + ':' + account;
+        long delayMillis;
+        boolean probe;
+        synchronized (this) {
+            long now = clock.nowMillis();
+            RejectedException refusal = refusalLocked(key, now);
+            if (refusal == null) {
+                delayMillis = reserveLocked(operation, key, now);
+                if (delayMillis > MAX_DELAY_MILLIS) {
+                    refusal = new RejectedException(RejectedException.Reason.RATE_LIMITED, delayMillis);
+                }
+            } else {
+                delayMillis = 0;
+            }
+            if (refusal != null) {
+                rejected.incrementAndGet();
+                return Tasks.forException(refusal);
+            }
+            probe = circuit == CircuitState.HALF_OPEN;
+            if (probe) {
+                probeInFlight = true;
+            }
+        }
+        if (delayMillis == 0) {
+            admitted.incrementAndGet();
+            return start(key, probe, call);
+        }
+        delayed.incrementAndGet();
+        TaskCompletionSource<T> result = new TaskCompletionSource<>();
+        scheduler.schedule(() -> {
+            Task<T> started;
+            try {
+                started = start(key, probe, call);
+            } catch (RuntimeException e) {
+                // Nobody is on the stack to catch it; the caller is waiting on result
+                result.trySetException(e);
+                return;
+            }
+            started.addOnCompleteListener(DIRECT, done -> TaskRelay.complete(result, done));
+        }, delayMillis);
+        return result.getTask();
+    }
+
+    /** Time until any call can go out (circuit open), or 0. */
+    public synchronized long getCooldownMillis() {
+        return circuit == CircuitState.OPEN ? Math.max(0, openUntilMillis - clock.nowMillis()) : 0;
+    }
+
+    @NonNull
+    public synchronized CircuitState getCircuitState() {
+        if (circuit == CircuitState.OPEN && clock.nowMillis() >= openUntilMillis) {
+            circuit = CircuitState.HALF_OPEN;
+        }
+        return circuit;
+    }
+
+    public long getAdmittedCount() {
+        return admitted.get();
+    }
+
+    public long getDelayedCount() {
+        return delayed.get();
+    }
+
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    public long getCircuitTripCount() {
+        return circuitTrips.get();
+    }
+
+    /** Buckets plus backoffs currently held. */
+    synchronized int getTrackedKeyCount() {
+        return buckets.size() + backoffs.size();
+    }
+
+    @Nullable
+    private RejectedException refusalLocked(String key, long now) {
+        if (circuit == CircuitState.OPEN) {
+            if (now < openUntilMillis) {
+                return new RejectedException(RejectedException.Reason.CIRCUIT_OPEN, openUntilMillis - now);
+            }
+            circuit = CircuitState.HALF_OPEN;
+        }
+        if (circuit == CircuitState.HALF_OPEN && probeInFlight) {
+            // One probe at a time; it will settle the state within one round-trip
+            return new RejectedException(RejectedException.Reason.CIRCUIT_OPEN, BACKOFF_BASE_MILLIS);
+        }
+        Backoff backoff = backoffs.get(key);
+        if (backoff != null && now < backoff.untilMillis) {
+            return new RejectedException(RejectedException.Reason.BACKING_OFF, backoff.untilMillis - now);
+        }
+        return null;
+    }
+
+    /** Takes a token from both buckets; returns how long the caller has to wait for it. */
+    private long reserveLocked(String operation, String key, long now) {
+        Bucket perOperation = bucketLocked("*:" + operation, PER_OPERATION, now);
+        Bucket perAccount = key.equals(operation) ? null : bucketLocked(key, PER_ACCOUNT, now);
+        long wait = Math.max(perOperation.waitMillis(), perAccount == null ? 0 : perAccount.waitMillis());
+        if (wait <= MAX_DELAY_MILLIS) {
+            perOperation.tokens--;
+            if (perAccount != null) {
+                perAccount.tokens--;
+            }
+        }
+        return wait;
+    }
+
+    private Bucket bucketLocked(String key, Limit limit, long now) {
+        Bucket bucket = buckets.get(key);
+        if (bucket == null) {
+            if (buckets.size() >= MAX_TRACKED_KEYS) {
+                pruneLocked(now);
+            }
+            bucket = new Bucket(limit, now);
+            buckets.put(key, bucket);
+        }
+        bucket.refill(now);
+        return bucket;
+    }
+
+    /** Drops the entries a fresh key would recreate identically. */
+    private void pruneLocked(long now) {
+        buckets.values().removeIf(bucket -> bucket.isFullAt(now));
+        backoffs.values().removeIf(backoff -> now >= backoff.untilMillis);
+    }
+
+    private <T> Task<T> start(String key, boolean probe, Supplier<Task<T>> call) {
+        synchronized (this) {
+            if (!probe && circuit == CircuitState.OPEN) {
+                // Opened while this call was delayed
+                rejected.incrementAndGet();
+                return Tasks.forException(new RejectedException(
+                        RejectedException.Reason.CIRCUIT_OPEN, openUntilMillis - clock.nowMillis()));
+            }
+        }
+        Task<T> task;
+        try {
+            task = call.get();
+        } catch (RuntimeException e) {
+            onComplete(key, probe, e);
+            throw e;
+        }
+        task.addOnCompleteListener(DIRECT, done ->
+                onComplete(key, probe, done.isSuccessful() ? null : done.getException()));
+        return task;
+    }
+
+    private synchronized void onComplete(String key, boolean probe, @Nullable Exception error) {
+        if (probe) {
+            probeInFlight = false;
+        }
+        Failure failure = error == null ? null : classifier.classify(error);
+        if (failure == null || failure == Failure.OTHER) {
+            // The backend answered
+            backoffs.remove(key);
+            consecutiveFailures = 0;
+            if (circuit == CircuitState.HALF_OPEN) {
+                circuit = CircuitState.CLOSED;
+            }
+            return;
+        }
+        long now = clock.nowMillis();
+        Backoff backoff = backoffs.get(key);
+        if (backoff == null) {
+            if (backoffs.size() >= MAX_TRACKED_KEYS) {
+                pruneLocked(now);
+            }
+            backoff = new Backoff();
+            backoffs.put(key, backoff);
+        }
+        backoff.attempts++;
+        long ceiling = Math.min(BACKOFF_MAX_MILLIS,
+                BACKOFF_BASE_MILLIS << Math.min(backoff.attempts - 1, 16));
+        // "Equal jitter": at least half the ceiling, so a backoff never collapses to nothing
+        backoff.untilMillis = now + ceiling / 2 + (long) (random.nextDouble() * (ceiling / 2));
+
+        consecutiveFailures++;
+        if (circuit == CircuitState.HALF_OPEN || consecutiveFailures >= FAILURE_THRESHOLD) {
+            if (circuit != CircuitState.OPEN) {
+                circuitTrips.incrementAndGet();
+            }
+            circuit = CircuitState.OPEN;
+            openUntilMillis = now + OPEN_MILLIS;
+        }
+    }
+
+    private static final class Bucket {
+        final Limit limit;
+        /** May go negative while delayed calls hold reservations. */
+        double tokens;
+        long refilledAtMillis;
+
+        Bucket(Limit limit, long now) {
+            this.limit = limit;
+            this.tokens = limit.capacity;
+            this.refilledAtMillis = now;
+        }
+
+        void refill(long now) {
+            tokens = Math.min(limit.capacity, tokens + (double) (now - refilledAtMillis) / limit.refillMillis);
+            refilledAtMillis = now;
+        }
+
+        boolean isFullAt(long now) {
+            return tokens + (double) (now - refilledAtMillis) / limit.refillMillis >= limit.capacity;
+        }
+
+        long waitMillis() {
+            return tokens >= 1 ? 0 : (long) Math.ceil((1 - tokens) * limit.refillMillis);
+        }
+    }
+
+    private static final class Backoff {
+        int attempts;
+        long untilMillis;
+    }
+}
@@ -0,0 +1,169 @@
+package com.example.sandbox_firebase;
+
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process-wide executor for Credential Manager and Firebase callbacks.
+ *
+ * <p>Replaces the per-call {@code Executors.newSingleThreadExecutor()} the activities used to
+ * create. The pool is bounded, its threads are named {@code auth-N} and are daemons that time
+ * out when idle, so an idle process holds no auth threads at all.
+ */
+public final class AuthExecutor implements Executor {
+
+    static final int DEFAULT_MAX_THREADS = 2;
+    static final int DEFAULT_QUEUE_CAPACITY = 128;
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    private final ThreadPoolExecutor pool;
+
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong totalQueueNanos = new AtomicLong();
+    private final AtomicLong totalRunNanos = new AtomicLong();
+    private final AtomicLong maxQueueNanos = new AtomicLong();
+    private final AtomicInteger maxQueueDepth = new AtomicInteger();
+
+    public AuthExecutor() {
+        this(DEFAULT_MAX_THREADS, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    AuthExecutor(int maxThreads, int queueCapacity) {
+        pool = new ThreadPoolExecutor(
+                maxThreads,
+                maxThreads,
+                KEEP_ALIVE_SECONDS,
+                TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                new NamedThreadFactory(),
+                // Saturation means callbacks are backing up; run on the caller rather than drop them.
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        pool.allowCoreThreadTimeOut(true);
+    }
+
+    @Override
+    public void execute(@NonNull Runnable command) {
+        submitted.incrementAndGet();
+        pool.execute(new TimedTask(command, System.nanoTime()));
+        int depth = pool.getQueue().size();
+        maxQueueDepth.accumulateAndGet(depth, Math::max);
+    }
+
+    /** Stops accepting work; queued callbacks still run. Called from {@code onTerminate()}. */
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return pool.awaitTermination(timeout, unit);
+    }
+
+    public boolean isShutdown() {
+        return pool.isShutdown();
+    }
+
+    /** Point-in-time copy of the executor counters. */
+    @NonNull
+    public Stats stats() {
+        return new Stats(
+                submitted.get(),
+                completed.get(),
+                pool.getQueue().size(),
+                maxQueueDepth.get(),
+                pool.getPoolSize(),
+                pool.getLargestPoolSize(),
+                totalQueueNanos.get(),
+                maxQueueNanos.get(),
+                totalRunNanos.get());
+    }
+
+    private final class TimedTask implements Runnable {
+        private final Runnable delegate;
+        private final long enqueuedAt;
+
+        TimedTask(Runnable delegate, long enqueuedAt) {
+            this.delegate = delegate;
+            this.enqueuedAt = enqueuedAt;
+        }
+
+        @Override
+        public void run() {
+            long startedAt = System.nanoTime();
+            long waited = startedAt - enqueuedAt;
+            totalQueueNanos.addAndGet(waited);
+            maxQueueNanos.accumulateAndGet(waited, Math::max);
+            try {
+                delegate.run();
+            } finally {
+                totalRunNanos.addAndGet(System.nanoTime() - startedAt);
+                completed.incrementAndGet();
+            }
+        }
+    }
+
+    private static final class NamedThreadFactory implements ThreadFactory {
+        private final AtomicInteger next = new AtomicInteger(1);
+
+        @Override
+        public Thread newThread(@NonNull Runnable r) {
+            Thread thread = new Thread(r, "auth-" + next.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+    public static final class Stats {
+        public final long submitted;
+        public final long completed;
+        public final int queueDepth;
+        public final int maxQueueDepth;
+        public final int poolSize;
+        public final int largestPoolSize;
+        public final long totalQueueNanos;
+        public final long maxQueueNanos;
+        public final long totalRunNanos;
+
+        Stats(long submitted, long completed, int queueDepth, int maxQueueDepth, int poolSize,
+              int largestPoolSize, long totalQueueNanos, long maxQueueNanos, long totalRunNanos) {
+            this.submitted = submitted;
+            this.completed = completed;
+            this.queueDepth = queueDepth;
+            this.maxQueueDepth = maxQueueDepth;
+            this.poolSize = poolSize;
+            this.largestPoolSize = largestPoolSize;
+            this.totalQueueNanos = totalQueueNanos;
+            this.maxQueueNanos = maxQueueNanos;
+            this.totalRunNanos = totalRunNanos;
+        }
+
+        public long meanQueueNanos() {
+            return completed == 0 ? 0 : totalQueueNanos / completed;
+        }
+
+        public long meanRunNanos() {
+            return completed == 0 ? 0 : totalRunNanos / completed;
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return "AuthExecutor.Stats{submitted=" + submitted
+                    + ", completed=" + completed
+                    + ", queueDepth=" + queueDepth
+                    + ", maxQueueDepth=" + maxQueueDepth
+                    + ", poolSize=" + poolSize
+                    + ", largestPoolSize=" + largestPoolSize
+                    + ", meanQueueNanos=" + meanQueueNanos()
+                    + ", maxQueueNanos=" + maxQueueNanos
+                    + ", meanRunNanos=" + meanRunNanos() + "}";
+        }
+    }
+}
@@ -0,0 +1,375 @@
+package com.example.sandbox_firebase;
+
+import androidx.annotation.NonNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * Auth side-effects that failed for lack of a network (verification emails, user reloads,
+ * token refreshes), kept on disk until they can be retried, e.g. by {@link AuthOpsWorker}
+ * once the device is back online.
+ *
+ * <p>The file is an append-only log of checksummed records: an enqueue per operation and a
+ * completion per finished one. Replaying it rebuilds the queue; a record torn by a crash fails
+ * its checksum and is cut off along with anything after it. Once most records are dead the log
+ * is rewritten through a synced temp file and a rename.
+ *
+ * <p>An operation is identified by an idempotency key and coalesced by (type, uid): asking
+ * for a second verification email while one is queued returns the queued one. Operations run
+ * at least once: a crash between performing one and logging its completion runs it again.
+ */
+public final class AuthOpQueue {
+
+    static final int MAGIC = 0x4151_4f50; // "AQOP"
+    static final int VERSION = 1;
+    /** Queued work older than this is dropped unperformed; a day-old email would only confuse. */
+    static final long MAX_AGE_MILLIS = 24 * 60 * 60 * 1000L;
+    static final int DEFAULT_BATCH_SIZE = 8;
+
+    private static final int RECORD_ENQUEUE = 1;
+    private static final int RECORD_DONE = 2;
+    private static final int MAX_RECORD_BYTES = 4 * 1024;
+    private static final int COMPACT_AFTER_DEAD_RECORDS = 64;
+
+    public enum Type { VERIFY_EMAIL, RELOAD, REFRESH_TOKEN }
+
+    public static final class Op {
+        @NonNull
+        public final String key;
+        @NonNull
+        public final Type type;
+        @NonNull
+        public final String uid;
+        public final long enqueuedAtMillis;
+
+        Op(@NonNull String key, @NonNull Type type, @NonNull String uid, long enqueuedAtMillis) {
+            this.key = key;
+            this.type = type;
+            this.uid = uid;
+            this.enqueuedAtMillis = enqueuedAtMillis;
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return type + "(" + key + ")";
+        }
+    }
+
+    /** Runs one operation, blocking. Throws to report failure. */
+    public interface Performer {
+        void perform(@NonNull Op op) throws Exception;
+    }
+
+    /** Whether a failure is worth retrying later (offline, timed out) or final. */
+    public interface FailureClassifier {
+        boolean isTransient(@NonNull Exception e);
+    }
+
+    /** What one {@link #drain} did. */
+    public static final class DrainResult {
+        public final int performed;
+        public final int dropped;
+        /** True if a transient failure stopped the drain; the rest is still queued. */
+        public final boolean retryLater;
+
+        DrainResult(int performed, int dropped, boolean retryLater) {
+            this.performed = performed;
+            this.dropped = dropped;
+            this.retryLater = retryLater;
+        }
+    }
+
+    private final File file;
+    private final File tempFile;
+    private final Clock clock;
+    /** Pending operations by coalescing key, oldest first. */
+    private final Map<String, Op> pending = new LinkedHashMap<>();
+    private int deadRecords;
+    private boolean loaded;
+
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong performed = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    public AuthOpQueue(@NonNull File file) {
+        this(file, Clock.WALL);
+    }
+
+    AuthOpQueue(@NonNull File file, @NonNull Clock clock) {
+        this.file = file;
+        this.tempFile = new File(file.getPath() + ".tmp");
+        this.clock = clock;
+    }
+
+    /**
+     * Queues {@code type} for {@code uid}, or returns the equivalent operation already queued.
+     * Call off the main thread: the first call reads the log and every new operation is synced
+     * to disk before this returns.
+     */
+    @NonNull
+    public synchronized Op enqueue(@NonNull Type type, @NonNull String uid) throws IOException {
+        loadLocked();
+        Op existing = pending.get(coalescingKey(type, uid));
+        if (existing != null) {
+            coalesced.incrementAndGet();
+            return existing;
+        }
+        Op op = new Op(UUID.randomUUID().toString(), type, uid, clock.nowMillis());
+        append(encodeEnqueue(op));
+        pending.put(coalescingKey(type, uid), op);
+        enqueued.incrementAndGet();
+        return op;
+    }
+
+    /**
+     * Performs queued operations oldest first, {@code batchSize} at a time, logging each
+     * batch's completions with one sync. Stops at the first transient failure, leaving that
+     * operation and the rest queued; permanent failures and expired operations are dropped.
+     * Blocks; call from a worker thread.
+     */
+    @NonNull
+    public DrainResult drain(@NonNull Performer performer, @NonNull FailureClassifier classifier,
+                             int batchSize) throws IOException {
+        int done = 0;
+        int failed = 0;
+        boolean retryLater = false;
+        List<Op> batch;
+        while (!retryLater && !(batch = nextBatch(batchSize)).isEmpty()) {
+            List<Op> finished = new ArrayList<>(batch.size());
+            for (Op op : batch) {
+                if (clock.nowMillis() - op.enqueuedAtMillis > MAX_AGE_MILLIS) {
+                    finished.add(op);
+                    failed++;
+                    continue;
+                }
+                try {
+                    performer.perform(op);
+                    finished.add(op);
+                    done++;
+                } catch (Exception e) {
+                    if (classifier.isTransient(e)) {
+                        retryLater = true;
+                        break;
+                    }
+                    finished.add(op);
+                    failed++;
+                }
+            }
+            complete(finished);
+        }
+        performed.addAndGet(done);
+        dropped.addAndGet(failed);
+        return new DrainResult(done, failed, retryLater);
+    }
+
+    /** Pending operations, oldest first. */
+    @NonNull
+    public synchronized List<Op> getPending() throws IOException {
+        loadLocked();
+        return new ArrayList<>(pending.values());
+    }
+
+    public synchronized boolean isEmpty() throws IOException {
+        loadLocked();
+        return pending.isEmpty();
+    }
+
+    public long getEnqueuedCount() {
+        return enqueued.get();
+    }
+
+    /** Requests answered with an operation that was already queued. */
+    public long getCoalescedCount() {
+        return coalesced.get();
+    }
+
+    public long getPerformedCount() {
+        return performed.get();
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    private synchronized List<Op> nextBatch(int batchSize) throws IOException {
+        loadLocked();
+        List<Op> batch = new ArrayList<>(Math.min(batchSize, pending.size()));
+        for (Op op : pending.values()) {
+            if (batch.size() == batchSize) {
+                break;
+            }
+            batch.add(op);
+        }
+        return batch;
+    }
+
+    private synchronized void complete(List<Op> finished) throws IOException {
+        if (finished.isEmpty()) {
+            return;
+        }
+        ByteArrayOutputStream records = new ByteArrayOutputStream(finished.size() * 64);
+        for (Op op : finished) {
+            records.write(encodeDone(op.key));
+            pending.remove(coalescingKey(op.type, op.uid));
+        }
+        append(records.toByteArray());
+        deadRecords += 2 * finished.size();
+        // An empty queue shrinks back to its header; otherwise wait until most records are dead
+        if (pending.isEmpty()
+                || (deadRecords >= COMPACT_AFTER_DEAD_RECORDS && deadRecords > pending.size())) {
+            compactLocked();
+        }
+    }
+
+    private static String coalescingKey(Type type, String uid) {
+        return type.name() + ':' + uid;
+    }
+
+    private void loadLocked() throws IOException {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        if (!file.exists()) {
+            return;
+        }
+        Map<String, Op> byKey = new LinkedHashMap<>();
+        long goodLength = 0;
+        int records = 0;
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            if (in.readInt() != MAGIC || in.readUnsignedByte() != VERSION) {
+                // Not ours, or from a future version: start over rather than guess
+                file.delete();
+                return;
+            }
+            goodLength = 5;
+            while (true) {
+                int length = in.readInt();
+                if (length <= 0 || length > MAX_RECORD_BYTES) {
+                    break;
+                }
+                byte[] body = new byte[length];
+                in.readFully(body);
+                if (in.readInt() != crc(body)) {
+                    break;
+                }
+                DataInputStream record = new DataInputStream(new ByteArrayInputStream(body));
+                int kind = record.readUnsignedByte();
+                String key = record.readUTF();
+                if (kind == RECORD_ENQUEUE) {
+                    Type[] types = Type.values();
+                    int type = record.readUnsignedByte();
+                    String uid = record.readUTF();
+                    long enqueuedAt = record.readLong();
+                    if (type < types.length) {
+                        byKey.put(key, new Op(key, types[type], uid, enqueuedAt));
+                    }
+                } else if (kind == RECORD_DONE) {
+                    byKey.remove(key);
+                }
+                records++;
+                goodLength += 4 + length + 4;
+            }
+        } catch (EOFException e) {
+            // Torn tail from a crash mid-append
+        }
+        if (goodLength < file.length()) {
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(goodLength);
+            }
+        }
+        for (Op op : byKey.values()) {
+            pending.put(coalescingKey(op.type, op.uid), op);
+        }
+        deadRecords = records - pending.size();
+    }
+
+    private void append(byte[] records) throws IOException {
+        boolean fresh = !file.exists() || file.length() == 0;
+        try (FileOutputStream out = new FileOutputStream(file, true)) {
+            if (fresh) {
+                out.write(header());
+            }
+            out.write(records);
+            out.getFD().sync();
+        }
+    }
+
+    private void compactLocked() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        bytes.write(header());
+        for (Op op : pending.values()) {
+            bytes.write(encodeEnqueue(op));
+        }
+        try (FileOutputStream out = new FileOutputStream(tempFile)) {
+            bytes.writeTo(out);
+            out.getFD().sync();
+        }
+        if (!tempFile.renameTo(file)) {
+            tempFile.delete();
+            throw new IOException("Couldn't replace " + file);
+        }
+        deadRecords = 0;
+    }
+
+    private static byte[] header() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(5);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        return bytes.toByteArray();
+    }
+
+    private static byte[] encodeEnqueue(Op op) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream(96);
+        DataOutputStream out = new DataOutputStream(body);
+        out.writeByte(RECORD_ENQUEUE);
+        out.writeUTF(op.key);
+        out.writeByte(op.type.ordinal());
+        out.writeUTF(op.uid);
+        out.writeLong(op.enqueuedAtMillis);
+        return frame(body.toByteArray());
+    }
+
+    private static byte[] encodeDone(String key) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream(48);
+        DataOutputStream out = new DataOutputStream(body);
+        out.writeByte(RECORD_DONE);
+        out.writeUTF(key);
+        return frame(body.toByteArray());
+    }
+
+    /** Length, body, CRC32 of the body. */
+    private static byte[] frame(byte[] body) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(body.length + 8);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(body.length);
+        out.write(body);
+        out.writeInt(crc(body));
+        return bytes.toByteArray();
+    }
+
+    private static int crc(byte[] body) {
+        CRC32 crc = new CRC32();
+        crc.update(body, 0, body.length);
+        return (int) crc.getValue();
+    }
+}
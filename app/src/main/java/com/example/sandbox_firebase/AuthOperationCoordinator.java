@@ -0,0 +1,199 @@
+package com.example.sandbox_firebase;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.TaskCompletionSource;
+import com.google.firebase.auth.FirebaseUser;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Single-flight gate for auth network calls. While an operation with a given key is pending,
+ * repeating it returns the pending {@link Task} instead of starting another round-trip, so a
+ * double tap on a sign-in or reload button costs one request.
+ *
+ * <p>Successful reloads are additionally cached for a short TTL, and reloads that do go out
+ * pass through the {@link AuthCallGate} when one is set.
+ */
+public final class AuthOperationCoordinator {
+
+    static final long DEFAULT_RELOAD_TTL_MILLIS = 5_000;
+
+    private static final Executor DIRECT = Runnable::run;
+
+    private final Clock clock;
+    private final long reloadTtlMillis;
+    @Nullable
+    private final AuthCallGate gate;
+
+    private final Map<String, Task<?>> inFlight = new HashMap<>();
+    private final Map<String, Cached> cache = new HashMap<>();
+
+    private final AtomicLong executed = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong cacheHits = new AtomicLong();
+
+    public AuthOperationCoordinator(@Nullable AuthCallGate gate) {
+        this(Clock.SYSTEM, DEFAULT_RELOAD_TTL_MILLIS, gate);
+    }
+
+    AuthOperationCoordinator(@NonNull Clock clock, long reloadTtlMillis) {
+        this(clock, reloadTtlMillis, null);
+    }
+
+    AuthOperationCoordinator(@NonNull Clock clock, long reloadTtlMillis, @Nullable AuthCallGate gate) {
+        this.clock = clock;
+        this.reloadTtlMillis = reloadTtlMillis;
+        this.gate = gate;
+    }
+
+    /**
+     * Builds a coalescing key. Secrets such as passwords are folded in as a SHA-256 digest, so a
+     * retry with corrected input is never merged into the pending attempt and the plain secret
+     * isn't kept in the map.
+     */
+    @NonNull
+    public static String key(@NonNull String operation, @NonNull String subject, @NonNull String secret) {
+        byte[] digest = sha256().digest(secret.getBytes(StandardCharsets.UTF_8));
+        StringBuilder key = new StringBuilder(operation.length() + subject.length() + 2 + digest.length * 2)
+                .append(operation).append(':').append(subject).append(':');
+        for (byte b : digest) {
+            key.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return key.toString();
+    }
+
+    @NonNull
+    public static String key(@NonNull String operation, @NonNull String subject) {
+        return operation + ':' + subject;
+    }
+
+    @NonNull
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is required on every platform", e);
+        }
+    }
+
+    /** Runs {@code operation} unless one with the same key is already pending. */
+    @NonNull
+    public <T> Task<T> run(@NonNull String key, @NonNull Supplier<Task<T>> operation) {
+        return run(key, operation, false);
+    }
+
+    /** {@code FirebaseUser.reload()}, coalesced and cached per user for the reload TTL. */
+    @NonNull
+    public Task<Void> reload(@NonNull FirebaseUser user) {
+        String uid = user.getUid();
+        if (gate == null) {
+            return runCached(key("reload", uid), user::reload);
+        }
+        return runCached(key("reload", uid), () -> gate.run(AuthCallGate.RELOAD, uid, user::reload));
+    }
+
+    @NonNull
+    <T> Task<T> runCached(@NonNull String key, @NonNull Supplier<Task<T>> operation) {
+        synchronized (this) {
+            Cached cached = cache.get(key);
+            if (cached != null) {
+                if (clock.nowMillis() - cached.completedAtMillis < reloadTtlMillis) {
+                    cacheHits.incrementAndGet();
+                    @SuppressWarnings("unchecked")
+                    Task<T> task = (Task<T>) cached.task;
+                    return task;
+                }
+                cache.remove(key);
+            }
+        }
+        return run(key, operation, true);
+    }
+
+    /** Drops any cached result for {@code key}, e.g. after sign-out. */
+    public synchronized void invalidate(@NonNull String key) {
+        cache.remove(key);
+    }
+
+    public synchronized void invalidateAll() {
+        cache.clear();
+    }
+
+    public long getExecutedCount() {
+        return executed.get();
+    }
+
+    public long getCoalescedCount() {
+        return coalesced.get();
+    }
+
+    public long getCacheHitCount() {
+        return cacheHits.get();
+    }
+
+    /**
+     * Reserves {@code key} with a placeholder under the lock and runs {@code operation} outside
+     * it, so a slow or re-entrant call doesn't hold up other keys. Callers that join while the
+     * operation is starting get the placeholder, which completes with the real task.
+     */
+    private <T> Task<T> run(String key, Supplier<Task<T>> operation, boolean cacheResult) {
+        TaskCompletionSource<T> placeholder = new TaskCompletionSource<>();
+        synchronized (this) {
+            @SuppressWarnings("unchecked")
+            Task<T> pending = (Task<T>) inFlight.get(key);
+            if (pending != null) {
+                coalesced.incrementAndGet();
+                return pending;
+            }
+            inFlight.put(key, placeholder.getTask());
+        }
+
+        executed.incrementAndGet();
+        Task<T> task;
+        try {
+            task = operation.get();
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                inFlight.remove(key, placeholder.getTask());
+            }
+            placeholder.trySetException(e);
+            throw e;
+        }
+        synchronized (this) {
+            // Later callers join the real task
+            inFlight.replace(key, placeholder.getTask(), task);
+        }
+        // Runs inline if the task is already complete, which just undoes the replace above.
+        task.addOnCompleteListener(DIRECT, done -> {
+            onComplete(key, done, cacheResult);
+            TaskRelay.complete(placeholder, done);
+        });
+        return task;
+    }
+
+    private synchronized void onComplete(String key, Task<?> task, boolean cacheResult) {
+        inFlight.remove(key, task);
+        if (cacheResult && task.isSuccessful()) {
+            cache.put(key, new Cached(task, clock.nowMillis()));
+        }
+    }
+
+    private static final class Cached {
+        final Task<?> task;
+        final long completedAtMillis;
+
+        Cached(Task<?> task, long completedAtMillis) {
+            this.task = task;
+            this.completedAtMillis = completedAtMillis;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.sandbox_firebase;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.work.BackoffPolicy;
+import androidx.work.Constraints;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.NetworkType;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.FirebaseNetworkException;
+import com.google.firebase.FirebaseTooManyRequestsException;
+import com.google.firebase.auth.FirebaseUser;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Drains the {@link AuthOpQueue} once the device has a network. WorkManager holds the
+ * request across process death and backs off between attempts that find the network still
+ * unusable.
+ */
+public final class AuthOpsWorker extends Worker {
+
+    private static final String TAG = "AuthOpsWorker";
+    private static final String UNIQUE_NAME = "auth-ops";
+    private static final long CALL_TIMEOUT_SECONDS = 30;
+    private static final long INITIAL_BACKOFF_SECONDS = 30;
+
+    public AuthOpsWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    /**
+     * Asks for a drain once connected. A drain already running picks up newly queued work as it
+     * goes; appending covers work queued just after it finished.
+     */
+    public static void schedule(@NonNull Context context) {
+        OneTimeWorkRequest request = new OneTimeWorkRequest.Builder(AuthOpsWorker.class)
+                .setConstraints(new Constraints.Builder()
+                        .setRequiredNetworkType(NetworkType.CONNECTED)
+                        .build())
+                .setBackoffCriteria(BackoffPolicy.EXPONENTIAL, INITIAL_BACKOFF_SECONDS, TimeUnit.SECONDS)
+                .build();
+        WorkManager.getInstance(context)
+                .enqueueUniqueWork(UNIQUE_NAME, ExistingWorkPolicy.APPEND_OR_REPLACE, request);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        SandboxApplication app = SandboxApplication.from(getApplicationContext());
+        try {
+            AuthOpQueue.DrainResult result = app.getAuthOpQueue().drain(
+                    op -> perform(app, op), AuthOpsWorker::isTransient, AuthOpQueue.DEFAULT_BATCH_SIZE);
+            if (result.dropped > 0) {
+                Log.w(TAG, "Dropped " + result.dropped + " auth ops that can no longer succeed");
+            }
+            return result.retryLater ? Result.retry() : Result.success();
+        } catch (IOException e) {
+            Log.w(TAG, "Couldn't read the auth op queue", e);
+            return Result.retry();
+        }
+    }
+
+    private static void perform(@NonNull SandboxApplication app, @NonNull AuthOpQueue.Op op) throws Exception {
+        FirebaseUser user = app.getAccountSessions().findUser(op.uid);
+        if (user == null) {
+            // Signed out or evicted since; the operation no longer applies
+            throw new IllegalStateException("No session for " + op);
+        }
+        switch (op.type) {
+            case VERIFY_EMAIL:
+                await(user.sendEmailVerification());
+                app.getVerificationWatcher().start(op.uid);
+                break;
+            case RELOAD:
+                await(user.reload());
+                app.getAuthStateRepository().refresh();
+                break;
+            case REFRESH_TOKEN:
+                // Firebase caches the result, so the token manager's next fetch stays local
+                await(user.getIdToken(true));
+                break;
+        }
+    }
+
+    private static void await(@NonNull Task<?> task) throws Exception {
+        try {
+            Tasks.await(task, CALL_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof Exception ? (Exception) cause : e;
+        }
+    }
+
+    private static boolean isTransient(@NonNull Exception e) {
+        return e instanceof FirebaseNetworkException
+                || e instanceof FirebaseTooManyRequestsException
+                || e instanceof TimeoutException
+                || e instanceof InterruptedException;
+    }
+}
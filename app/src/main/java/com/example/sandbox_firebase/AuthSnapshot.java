@@ -0,0 +1,85 @@
+package com.example.sandbox_firebase;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.Objects;
+
+/**
+ * Immutable view of the fields the UI renders from a {@code FirebaseUser}. Two snapshots are
+ * equal when nothing on screen would change, which is what lets {@link AuthStateRepository}
+ * drop redundant emissions.
+ */
+public final class AuthSnapshot {
+
+    private static final AuthSnapshot SIGNED_OUT = new AuthSnapshot(null, null, false, null);
+
+    @Nullable
+    private final String uid;
+    @Nullable
+    private final String email;
+    private final boolean emailVerified;
+    @Nullable
+    private final String providerId;
+
+    AuthSnapshot(@Nullable String uid, @Nullable String email, boolean emailVerified,
+                 @Nullable String providerId) {
+        this.uid = uid;
+        this.email = email;
+        this.emailVerified = emailVerified;
+        this.providerId = providerId;
+    }
+
+    @NonNull
+    public static AuthSnapshot signedOut() {
+        return SIGNED_OUT;
+    }
+
+    public boolean isSignedIn() {
+        return uid != null;
+    }
+
+    @Nullable
+    public String getUid() {
+        return uid;
+    }
+
+    @Nullable
+    public String getEmail() {
+        return email;
+    }
+
+    public boolean isEmailVerified() {
+        return emailVerified;
+    }
+
+    /** Sign-in provider, e.g. {@code password} or {@code google.com}. */
+    @Nullable
+    public String getProviderId() {
+        return providerId;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof AuthSnapshot)) return false;
+        AuthSnapshot that = (AuthSnapshot) o;
+        return emailVerified == that.emailVerified
+                && Objects.equals(uid, that.uid)
+                && Objects.equals(email, that.email)
+                && Objects.equals(providerId, that.providerId);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(uid, email, emailVerified, providerId);
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return isSignedIn()
+                ? "AuthSnapshot{uid=" + uid + ", verified=" + emailVerified + ", provider=" + providerId + "}"
+                : "AuthSnapshot{signedOut}";
+    }
+}
@@ -0,0 +1,168 @@
+package com.example.sandbox_firebase;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.auth.FirebaseUser;
+import com.google.firebase.auth.UserInfo;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Single process-wide source of auth state. Listens to {@link FirebaseAuth} once and exposes an
+ * {@link AuthSnapshot} as lifecycle-aware {@link LiveData}, so screens observe state instead of
+ * polling {@code getCurrentUser()} from every lifecycle callback.
+ *
+ * <p>Snapshots may be published from any thread but are delivered on the main thread in the
+ * order they were published: a main-thread publish first delivers whatever is still queued
+ * from other threads. A delivery is suppressed when it equals the last one delivered.
+ */
+public final class AuthStateRepository {
+
+    private final MutableLiveData<AuthSnapshot> user = new MutableLiveData<>();
+    private final AtomicLong emitted = new AtomicLong();
+    private final AtomicLong suppressed = new AtomicLong();
+    private final Handler mainThread = new Handler(Looper.getMainLooper());
+    private final Runnable deliver = this::deliverPending;
+    /** Published but not yet delivered, oldest first. */
+    private final ArrayDeque<AuthSnapshot> pending = new ArrayDeque<>();
+
+    private final FirebaseAuth.AuthStateListener listener = firebaseAuth -> {
+        // A notification still in flight from a session that was switched away from
+        if (firebaseAuth == auth) {
+            publish(snapshotOf(firebaseAuth.getCurrentUser()));
+        }
+    };
+
+    private volatile FirebaseAuth auth;
+    /** Last snapshot delivered to the LiveData; main thread only. */
+    @Nullable
+    private AuthSnapshot last;
+
+    /**
+     * Publishes a provisional snapshot, e.g. one read from {@link UserSnapshotStore}, so the
+     * first frame has something to render. Ignored once real state has been published; if the
+     * real state turns out equal, its emission is suppressed and the UI isn't rebound.
+     * Must be called on the main thread.
+     */
+    @MainThread
+    void seed(@NonNull AuthSnapshot snapshot) {
+        if (last != null) {
+            return;
+        }
+        last = snapshot;
+        emitted.incrementAndGet();
+        user.setValue(snapshot);
+    }
+
+    /**
+     * Follows {@code auth}, dropping whichever instance was followed before, and publishes
+     * its user right away. Switching {@link AccountSessions} comes through here. Safe to call
+     * from a background thread.
+     */
+    synchronized void attach(@NonNull FirebaseAuth auth) {
+        FirebaseAuth previous = this.auth;
+        if (previous == auth) {
+            return;
+        }
+        if (previous != null) {
+            previous.removeAuthStateListener(listener);
+        }
+        this.auth = auth;
+        auth.addAuthStateListener(listener);
+        publish(snapshotOf(auth.getCurrentUser()));
+    }
+
+    /**
+     * Publishes the signed-out state ahead of {@code FirebaseAuth}'s own (posted) notification,
+     * so screens switch immediately; the listener's later emission is then suppressed.
+     */
+    void publishSignedOut() {
+        publish(AuthSnapshot.signedOut());
+    }
+
+    @NonNull
+    public LiveData<AuthSnapshot> getUser() {
+        return user;
+    }
+
+    /**
+     * Re-reads the current user. Needed after {@code FirebaseUser.reload()}, which can change
+     * fields like the verification flag without firing the auth state listener.
+     */
+    public void refresh() {
+        FirebaseAuth current = auth;
+        if (current != null) {
+            publish(snapshotOf(current.getCurrentUser()));
+        }
+    }
+
+    public long getEmittedCount() {
+        return emitted.get();
+    }
+
+    public long getSuppressedCount() {
+        return suppressed.get();
+    }
+
+    @NonNull
+    static AuthSnapshot snapshotOf(@Nullable FirebaseUser user) {
+        if (user == null) {
+            return AuthSnapshot.signedOut();
+        }
+        return new AuthSnapshot(user.getUid(), user.getEmail(), user.isEmailVerified(),
+                primaryProvider(user.getProviderData()));
+    }
+
+    @Nullable
+    private static String primaryProvider(@NonNull List<? extends UserInfo> providerData) {
+        // getProviderData() lists "firebase" first; the sign-in provider follows it.
+        for (int i = providerData.size() - 1; i >= 0; i--) {
+            String id = providerData.get(i).getProviderId();
+            if (!"firebase".equals(id)) {
+                return id;
+            }
+        }
+        return null;
+    }
+
+    private void publish(@NonNull AuthSnapshot snapshot) {
+        synchronized (pending) {
+            pending.add(snapshot);
+        }
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            deliverPending();
+        } else {
+            mainThread.post(deliver);
+        }
+    }
+
+    @MainThread
+    private void deliverPending() {
+        while (true) {
+            AuthSnapshot next;
+            synchronized (pending) {
+                next = pending.poll();
+            }
+            if (next == null) {
+                return;
+            }
+            if (next.equals(last)) {
+                suppressed.incrementAndGet();
+                continue;
+            }
+            last = next;
+            emitted.incrementAndGet();
+            user.setValue(next);
+        }
+    }
+}
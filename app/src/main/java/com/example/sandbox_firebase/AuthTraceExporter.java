@@ -0,0 +1,38 @@
+package com.example.sandbox_firebase;
+
+import androidx.annotation.NonNull;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes {@link AuthTracer#dump()} to a file, replacing it atomically, so the numbers can be
+ * pulled from a debug build with {@code adb shell run-as com.example.sandbox_firebase cat
+ * files/auth_latency.txt}.
+ */
+public final class AuthTraceExporter {
+
+    private final AuthTracer tracer;
+    private final File file;
+    private final File tempFile;
+
+    public AuthTraceExporter(@NonNull AuthTracer tracer, @NonNull File file) {
+        this.tracer = tracer;
+        this.file = file;
+        this.tempFile = new File(file.getPath() + ".tmp");
+    }
+
+    /** Call off the main thread. */
+    public synchronized void export() throws IOException {
+        byte[] bytes = tracer.dump().getBytes(StandardCharsets.UTF_8);
+        try (FileOutputStream out = new FileOutputStream(tempFile)) {
+            out.write(bytes);
+        }
+        if (!tempFile.renameTo(file)) {
+            tempFile.delete();
+            throw new IOException("Couldn't replace " + file);
+        }
+    }
+}
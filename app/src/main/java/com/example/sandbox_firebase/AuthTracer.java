@@ -0,0 +1,160 @@
+package com.example.sandbox_firebase;
+
+import androidx.annotation.NonNull;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+/**
+ * Times each sign-in flow stage by stage. A flow is begun, marked as it passes each
+ * {@link Stage} (recording the time since the previous mark), and ended with an
+ * {@link Outcome} (recording the total). Everything lands in preallocated
+ * {@link LatencyHistogram}s indexed by enum ordinal, so the calls from the UI never allocate.
+ *
+ * <p>Each flow has one slot: a flow begun while the same flow is running joins it, matching
+ * how {@link AuthOperationCoordinator} coalesces the underlying requests. A flow left running
+ * longer than {@link #ABANDON_AFTER_NANOS} (the screen went away) is restarted by the next
+ * begin instead.
+ */
+public final class AuthTracer {
+
+    static final long ABANDON_AFTER_NANOS = 120_000_000_000L;
+
+    public enum Flow {
+        GOOGLE_SIGN_IN,
+        EMAIL_SIGN_IN,
+        EMAIL_CREATE_ACCOUNT
+    }
+
+    public enum Stage {
+        /** Credential Manager request until its result arrives. */
+        CREDENTIAL_RESULT,
+        /** Credential result until the Google ID token has been extracted. */
+        ID_TOKEN,
+        /** Until Firebase sign-in (or account creation) completes. */
+        FIREBASE_AUTH,
+        /** Until the screen has bound the signed-in state. */
+        UI_UPDATE
+    }
+
+    public enum Outcome {
+        SUCCESS,
+        FAILURE,
+        CANCELLED
+    }
+
+    private static final Flow[] FLOWS = Flow.values();
+    private static final Stage[] STAGES = Stage.values();
+    private static final Outcome[] OUTCOMES = Outcome.values();
+
+    private final LongSupplier nanoTime;
+    private final AtomicLongArray startedAt = new AtomicLongArray(FLOWS.length);
+    private final AtomicLongArray lastMarkAt = new AtomicLongArray(FLOWS.length);
+    private final LatencyHistogram[] totals = new LatencyHistogram[FLOWS.length * OUTCOMES.length];
+    private final LatencyHistogram[] stages = new LatencyHistogram[FLOWS.length * STAGES.length];
+
+    public AuthTracer() {
+        this(System::nanoTime);
+    }
+
+    AuthTracer(@NonNull LongSupplier nanoTime) {
+        this.nanoTime = nanoTime;
+        for (int i = 0; i < totals.length; i++) {
+            totals[i] = new LatencyHistogram();
+        }
+        for (int i = 0; i < stages.length; i++) {
+            stages[i] = new LatencyHistogram();
+        }
+    }
+
+    public void begin(@NonNull Flow flow) {
+        int f = flow.ordinal();
+        long now = nanoTime.getAsLong();
+        long started = startedAt.get(f);
+        if (started != 0 && now - started < ABANDON_AFTER_NANOS) {
+            return;
+        }
+        // 0 marks "not running", so never store it as a start time.
+        long start = now == 0 ? 1 : now;
+        if (startedAt.compareAndSet(f, started, start)) {
+            lastMarkAt.set(f, start);
+        }
+    }
+
+    /** Records the time since the previous mark (or begin). Ignored if the flow isn't running. */
+    public void mark(@NonNull Flow flow, @NonNull Stage stage) {
+        int f = flow.ordinal();
+        if (startedAt.get(f) == 0) {
+            return;
+        }
+        long now = nanoTime.getAsLong();
+        long previous = lastMarkAt.getAndSet(f, now);
+        stages[f * STAGES.length + stage.ordinal()].recordNanos(now - previous);
+    }
+
+    /** Records the flow's total time under {@code outcome}. Ignored if the flow isn't running. */
+    public void end(@NonNull Flow flow, @NonNull Outcome outcome) {
+        int f = flow.ordinal();
+        long started = startedAt.getAndSet(f, 0);
+        if (started == 0) {
+            return;
+        }
+        totals[f * OUTCOMES.length + outcome.ordinal()].recordNanos(nanoTime.getAsLong() - started);
+    }
+
+    public boolean isRunning(@NonNull Flow flow) {
+        return startedAt.get(flow.ordinal()) != 0;
+    }
+
+    @NonNull
+    public LatencyHistogram getTotal(@NonNull Flow flow, @NonNull Outcome outcome) {
+        return totals[flow.ordinal() * OUTCOMES.length + outcome.ordinal()];
+    }
+
+    @NonNull
+    public LatencyHistogram getStage(@NonNull Flow flow, @NonNull Stage stage) {
+        return stages[flow.ordinal() * STAGES.length + stage.ordinal()];
+    }
+
+    /**
+     * Human-readable table of every non-empty histogram, milliseconds. For debug screens, logs
+     * and {@link AuthTraceExporter}; allocates freely.
+     */
+    @NonNull
+    public String dump() {
+        StringBuilder out = new StringBuilder(1024);
+        out.append(String.format(Locale.US, "%-22s %-18s %7s %9s %9s %9s %9s%n",
+                "flow", "outcome/stage", "count", "p50", "p95", "p99", "max"));
+        for (Flow flow : FLOWS) {
+            for (Outcome outcome : OUTCOMES) {
+                appendRow(out, flow, outcome.name(), getTotal(flow, outcome));
+            }
+            for (Stage stage : STAGES) {
+                appendRow(out, flow, "  " + stage.name(), getStage(flow, stage));
+            }
+        }
+        return out.toString();
+    }
+
+    public void reset() {
+        for (LatencyHistogram histogram : totals) {
+            histogram.reset();
+        }
+        for (LatencyHistogram histogram : stages) {
+            histogram.reset();
+        }
+    }
+
+    private static void appendRow(StringBuilder out, Flow flow, String label, LatencyHistogram histogram) {
+        if (histogram.getCount() == 0) {
+            return;
+        }
+        out.append(String.format(Locale.US, "%-22s %-18s %7d %9.1f %9.1f %9.1f %9.1f%n",
+                flow.name(), label, histogram.getCount(),
+                histogram.getPercentileMicros(50) / 1000.0,
+                histogram.getPercentileMicros(95) / 1000.0,
+                histogram.getPercentileMicros(99) / 1000.0,
+                histogram.getMaxMicros() / 1000.0));
+    }
+}
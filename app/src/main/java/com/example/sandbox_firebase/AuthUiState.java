@@ -0,0 +1,58 @@
+package com.example.sandbox_firebase;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * What the sign-in screens show for an {@link AuthSnapshot}: the status and detail lines and
+ * which of the sign-in / sign-out controls are visible. The screens only format resources and
+ * set visibilities from it. The signed-out state is a shared constant.
+ */
+public final class AuthUiState {
+
+    private static final AuthUiState SIGNED_OUT = new AuthUiState(false, null, null);
+
+    private final boolean signedIn;
+    @Nullable
+    private final String statusArg;
+    @Nullable
+    private final String detailArg;
+
+    private AuthUiState(boolean signedIn, @Nullable String statusArg, @Nullable String detailArg) {
+        this.signedIn = signedIn;
+        this.statusArg = statusArg;
+        this.detailArg = detailArg;
+    }
+
+    @NonNull
+    public static AuthUiState from(@NonNull AuthSnapshot user) {
+        if (!user.isSignedIn()) {
+            return SIGNED_OUT;
+        }
+        return new AuthUiState(true, user.getEmail(), user.getUid());
+    }
+
+    public boolean isSignedIn() {
+        return signedIn;
+    }
+
+    /** Argument for the status line format (the email), or null when signed out. */
+    @Nullable
+    public String getStatusArg() {
+        return statusArg;
+    }
+
+    /** Argument for the detail line format (the Firebase UID), or null to clear it. */
+    @Nullable
+    public String getDetailArg() {
+        return detailArg;
+    }
+
+    public boolean isSignInVisible() {
+        return !signedIn;
+    }
+
+    public boolean isSignOutVisible() {
+        return signedIn;
+    }
+}
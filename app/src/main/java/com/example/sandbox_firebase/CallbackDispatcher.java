@@ -0,0 +1,134 @@
+package com.example.sandbox_firebase;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleEventObserver;
+import androidx.lifecycle.LifecycleOwner;
+
+import com.google.android.gms.tasks.OnCompleteListener;
+import com.google.android.gms.tasks.Task;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Delivers {@link Task} results to a screen for as long as that screen exists, and not a
+ * moment longer. A listener registered through {@link #onComplete} is held strongly only until
+ * its owner is destroyed; after that the task (often still referenced by Firebase or a
+ * {@link androidx.lifecycle.ViewModel}) keeps nothing of the activity reachable, and a result
+ * arriving late is dropped instead of touching dead views.
+ *
+ * <p>Unlike the activity-scoped {@code addOnCompleteListener(Activity, ...)}, listeners
+ * survive {@code onStop}, so nothing has to be re-attached in {@code onStart}. Results reach
+ * the main thread with at most one hop: a task completing on the main thread is delivered
+ * inline, one completing elsewhere is posted once.
+ *
+ * <p>Credential Manager callbacks are adapted to tasks by {@link GoogleSignInViewModel}, which
+ * outlives the activity, so they reach screens through here as well.
+ */
+public final class CallbackDispatcher {
+
+    private static final Executor DIRECT = Runnable::run;
+
+    private final Executor mainThread;
+
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    public CallbackDispatcher() {
+        this(new MainThreadExecutor());
+    }
+
+    CallbackDispatcher(@NonNull Executor mainThread) {
+        this.mainThread = mainThread;
+    }
+
+    /**
+     * Calls {@code listener} on the main thread when {@code task} completes, unless
+     * {@code owner} is destroyed first.
+     */
+    @MainThread
+    public <T> void onComplete(@NonNull LifecycleOwner owner, @NonNull Task<T> task,
+                               @NonNull OnCompleteListener<T> listener) {
+        Lifecycle lifecycle = owner.getLifecycle();
+        if (lifecycle.getCurrentState() == Lifecycle.State.DESTROYED) {
+            dropped.incrementAndGet();
+            return;
+        }
+        Binding<T> binding = new Binding<>(lifecycle, listener);
+        // Observe first: a task that is already complete delivers (and unregisters) right away
+        lifecycle.addObserver(binding);
+        task.addOnCompleteListener(DIRECT, binding);
+    }
+
+    /** Results handed to a live owner. */
+    public long getDeliveredCount() {
+        return delivered.get();
+    }
+
+    /** Results discarded because their owner was destroyed before they arrived. */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * The only object the task holds on to. It reaches the activity through {@code listener}
+     * alone, which is cleared on destroy.
+     */
+    private final class Binding<T> implements OnCompleteListener<T>, LifecycleEventObserver {
+        private final Lifecycle lifecycle;
+        /** Read on the completing thread, cleared on the main thread. */
+        private volatile OnCompleteListener<T> listener;
+
+        Binding(Lifecycle lifecycle, OnCompleteListener<T> listener) {
+            this.lifecycle = lifecycle;
+            this.listener = listener;
+        }
+
+        @Override
+        public void onComplete(@NonNull Task<T> task) {
+            if (listener == null) {
+                return; // owner already gone, counted when it was destroyed
+            }
+            mainThread.execute(() -> deliver(task));
+        }
+
+        private void deliver(Task<T> task) {
+            OnCompleteListener<T> target = listener;
+            if (target == null) {
+                return;
+            }
+            listener = null;
+            lifecycle.removeObserver(this);
+            delivered.incrementAndGet();
+            target.onComplete(task);
+        }
+
+        @Override
+        public void onStateChanged(@NonNull LifecycleOwner source, @NonNull Lifecycle.Event event) {
+            if (event == Lifecycle.Event.ON_DESTROY && listener != null) {
+                listener = null;
+                lifecycle.removeObserver(this);
+                dropped.incrementAndGet();
+            }
+        }
+    }
+
+    /** Runs inline when already on the main thread, otherwise posts once. */
+    private static final class MainThreadExecutor implements Executor {
+        private final Handler handler = new Handler(Looper.getMainLooper());
+
+        @Override
+        public void execute(@NonNull Runnable command) {
+            if (Looper.myLooper() == Looper.getMainLooper()) {
+                command.run();
+            } else {
+                handler.post(command);
+            }
+        }
+    }
+}
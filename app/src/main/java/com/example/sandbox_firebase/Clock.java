@@ -0,0 +1,17 @@
+package com.example.sandbox_firebase;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Millisecond time source, swapped for a fake in JVM tests.
+ */
+public interface Clock {
+
+    /** Monotonic; use for intervals and TTLs. */
+    Clock SYSTEM = () -> TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+
+    /** Wall-clock epoch millis; use to compare against server timestamps such as token expiry. */
+    Clock WALL = System::currentTimeMillis;
+
+    long nowMillis();
+}
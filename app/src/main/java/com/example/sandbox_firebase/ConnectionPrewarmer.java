@@ -0,0 +1,216 @@
+package com.example.sandbox_firebase;
+
+import androidx.annotation.NonNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Opens a connection to the auth backend while a sign-in screen is showing, so the user's
+ * first sign-in doesn't pay for DNS, TCP and TLS setup behind the progress bar.
+ *
+ * <p>The warm-up is a {@code GET /} through {@link HttpURLConnection}. Its socket goes back
+ * into the platform's keep-alive pool, and the DNS answer and TLS session are cached, so the
+ * Auth SDK's next request to the same host skips that setup. A connection counts as warm for
+ * {@code idleWindowMillis} after the warm-up or the last auth call; the pool closes it on its
+ * own after that. Nothing is warmed while the {@link Policy} says speculative traffic isn't
+ * welcome, e.g. on a metered network or in battery saver.
+ *
+ * <p>Auth calls are timed as cold or warm through {@link #beginCall()}.
+ */
+public final class ConnectionPrewarmer {
+
+    /** Well under the 5 minutes Android's pool keeps an idle connection. */
+    static final long DEFAULT_IDLE_WINDOW_MILLIS = 60_000;
+    private static final int TIMEOUT_MILLIS = 10_000;
+
+    /** Whether the device can spare speculative traffic right now. */
+    public interface Policy {
+        boolean allowsSpeculativeTraffic();
+    }
+
+    /** Opens and releases one connection to {@code endpoint}; swapped out in tests. */
+    interface Connector {
+        void connect(@NonNull URL endpoint) throws IOException;
+    }
+
+    /**
+     * Sends {@code GET} and drains the reply, leaving the socket in the keep-alive pool. Not
+     * {@code HEAD}: some {@link HttpURLConnection} implementations don't pool after one.
+     */
+    static final Connector HTTP = endpoint -> {
+        HttpURLConnection connection = (HttpURLConnection) endpoint.openConnection();
+        connection.setConnectTimeout(TIMEOUT_MILLIS);
+        connection.setReadTimeout(TIMEOUT_MILLIS);
+        connection.setUseCaches(false);
+        // Any status will do; the point is the handshake. Closing the drained stream, unlike
+        // disconnect(), returns the socket to the pool.
+        InputStream body = connection.getResponseCode() < 400
+                ? connection.getInputStream() : connection.getErrorStream();
+        if (body != null) {
+            try (InputStream in = body) {
+                while (in.read() != -1) {
+                    // drain
+                }
+            }
+        }
+    };
+
+    /** One timed auth call; end it once with whether the backend answered. */
+    public final class Call {
+        private final boolean warm;
+        private final long startNanos = System.nanoTime();
+
+        Call(boolean warm) {
+            this.warm = warm;
+        }
+
+        public boolean isWarm() {
+            return warm;
+        }
+
+        /**
+         * @param answered whether the backend replied (success or an auth error); calls that
+         *                 failed before reaching it aren't timed
+         */
+        public void end(boolean answered) {
+            if (answered) {
+                (warm ? warmCalls : coldCalls).record(System.nanoTime() - startNanos);
+                markUsed();
+            }
+        }
+    }
+
+    private final URL endpoint;
+    private final Executor executor;
+    private final Policy policy;
+    private final Connector connector;
+    private final Clock clock;
+    private final long idleWindowMillis;
+
+    private boolean warming;
+    private boolean used;
+    /** When a connection was last set up or used. */
+    private long lastUsedMillis;
+
+    private final AtomicLong warmUps = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final LatencyStats warmUpLatency = new LatencyStats();
+    private final LatencyStats coldCalls = new LatencyStats();
+    private final LatencyStats warmCalls = new LatencyStats();
+
+    public ConnectionPrewarmer(@NonNull URL endpoint, @NonNull Executor executor, @NonNull Policy policy) {
+        this(endpoint, executor, policy, HTTP, Clock.SYSTEM, DEFAULT_IDLE_WINDOW_MILLIS);
+    }
+
+    ConnectionPrewarmer(@NonNull URL endpoint, @NonNull Executor executor, @NonNull Policy policy,
+                        @NonNull Connector connector, @NonNull Clock clock, long idleWindowMillis) {
+        this.endpoint = endpoint;
+        this.executor = executor;
+        this.policy = policy;
+        this.connector = connector;
+        this.clock = clock;
+        this.idleWindowMillis = idleWindowMillis;
+    }
+
+    /**
+     * Opens a connection in the background unless one is warm or opening already, or the
+     * policy says not to. Cheap to call on every signed-out render.
+     */
+    public void warm() {
+        synchronized (this) {
+            if (warming || isWarmLocked()) {
+                return;
+            }
+            if (!policy.allowsSpeculativeTraffic()) {
+                skipped.incrementAndGet();
+                return;
+            }
+            warming = true;
+        }
+        executor.execute(() -> {
+            long start = System.nanoTime();
+            boolean connected = false;
+            try {
+                connector.connect(endpoint);
+                connected = true;
+            } catch (IOException | RuntimeException e) {
+                // Offline or unreachable; the real call will report it
+                failures.incrementAndGet();
+            }
+            synchronized (this) {
+                warming = false;
+                if (connected) {
+                    markUsedLocked();
+                }
+            }
+            if (connected) {
+                warmUps.incrementAndGet();
+                warmUpLatency.record(System.nanoTime() - start);
+            }
+        });
+    }
+
+    /** Whether an auth call made now should find a pooled connection. */
+    public synchronized boolean isWarm() {
+        return isWarmLocked();
+    }
+
+    /** Starts timing an auth call, filed as warm or cold by the state at this moment. */
+    @NonNull
+    public Call beginCall() {
+        return new Call(isWarm());
+    }
+
+    @NonNull
+    public URL getEndpoint() {
+        return endpoint;
+    }
+
+    public long getWarmUpCount() {
+        return warmUps.get();
+    }
+
+    /** Warm-ups not attempted because of the {@link Policy}. */
+    public long getSkippedCount() {
+        return skipped.get();
+    }
+
+    public long getFailureCount() {
+        return failures.get();
+    }
+
+    /** What a warm-up cost: roughly the setup a cold call pays on top of a warm one. */
+    @NonNull
+    public LatencyStats getWarmUpLatency() {
+        return warmUpLatency;
+    }
+
+    @NonNull
+    public LatencyStats getColdCallLatency() {
+        return coldCalls;
+    }
+
+    @NonNull
+    public LatencyStats getWarmCallLatency() {
+        return warmCalls;
+    }
+
+    private synchronized void markUsed() {
+        markUsedLocked();
+    }
+
+    private void markUsedLocked() {
+        used = true;
+        lastUsedMillis = clock.nowMillis();
+    }
+
+    private boolean isWarmLocked() {
+        return used && clock.nowMillis() - lastUsedMillis < idleWindowMillis;
+    }
+}
@@ -0,0 +1,171 @@
+package com.example.sandbox_firebase;
+
+import android.os.Build;
+import android.os.CancellationSignal;
+import android.util.Log;
+
+import androidx.annotation.ChecksSdkIntAtLeast;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RequiresApi;
+import androidx.credentials.CredentialManager;
+import androidx.credentials.CredentialManagerCallback;
+import androidx.credentials.GetCredentialRequest;
+import androidx.credentials.PrepareGetCredentialResponse;
+import androidx.credentials.PrepareGetCredentialResponse.PendingGetCredentialHandle;
+import androidx.credentials.exceptions.GetCredentialException;
+
+import com.google.android.libraries.identity.googleid.GetGoogleIdOption;
+import com.google.android.libraries.identity.googleid.GetSignInWithGoogleOption;
+
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * Builds the Google sign-in credential requests once per process and, on API 34+, runs
+ * {@link CredentialManager#prepareGetCredentialAsync} ahead of the tap so that the tap only has
+ * to show the prepared sheet. Older devices fall back to a plain {@code getCredentialAsync}
+ * with the cached request.
+ *
+ * <p>Also records tap-to-sheet latency for the prepared and the direct path.
+ */
+public final class CredentialPrewarmer {
+
+    private static final String TAG = "CredentialPrewarmer";
+
+    public enum Kind {
+        /** Explicit "Sign in with Google" button. */
+        SIGN_IN_WITH_GOOGLE,
+        /** Automatic bottom sheet restricted to previously authorized accounts. */
+        AUTHORIZED_ACCOUNTS
+    }
+
+    private final String serverClientId;
+    private final Executor executor;
+
+    private final Map<Kind, GetCredentialRequest> requests = new EnumMap<>(Kind.class);
+    private final Map<Kind, PendingGetCredentialHandle> prepared = new EnumMap<>(Kind.class);
+    private final EnumSet<Kind> preparing = EnumSet.noneOf(Kind.class);
+
+    private final LatencyStats preparedTapToSheet = new LatencyStats();
+    private final LatencyStats directTapToSheet = new LatencyStats();
+    private long tapAtNanos;
+    private boolean tapPrepared;
+
+    CredentialPrewarmer(@NonNull String serverClientId, @NonNull Executor executor) {
+        this.serverClientId = serverClientId;
+        this.executor = executor;
+    }
+
+    @ChecksSdkIntAtLeast(api = Build.VERSION_CODES.UPSIDE_DOWN_CAKE)
+    public static boolean isPrepareSupported() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.UPSIDE_DOWN_CAKE;
+    }
+
+    @NonNull
+    public synchronized GetCredentialRequest request(@NonNull Kind kind) {
+        GetCredentialRequest request = requests.get(kind);
+        if (request == null) {
+            request = build(kind);
+            requests.put(kind, request);
+        }
+        return request;
+    }
+
+    /** Starts preparing {@code kind} unless it's already prepared, in progress or unsupported. */
+    public void prepare(@NonNull CredentialManager credentialManager, @NonNull Kind kind) {
+        if (!isPrepareSupported()) {
+            return;
+        }
+        GetCredentialRequest request = request(kind);
+        synchronized (this) {
+            if (prepared.containsKey(kind) || !preparing.add(kind)) {
+                return;
+            }
+        }
+        prepareApi34(credentialManager, kind, request);
+    }
+
+    /**
+     * Hands out the prepared handle for {@code kind}, if any. A handle can be used once, so the
+     * caller owns it afterwards and the next {@link #prepare} starts a fresh one.
+     */
+    @Nullable
+    public synchronized PendingGetCredentialHandle take(@NonNull Kind kind) {
+        return prepared.remove(kind);
+    }
+
+    /** Called when the user taps; {@code prepared} says which path serves the tap. */
+    public synchronized void markTap(boolean prepared) {
+        tapAtNanos = System.nanoTime();
+        tapPrepared = prepared;
+    }
+
+    /** Called once the sheet covers the screen (the requesting activity pauses). */
+    public synchronized void onSheetShown() {
+        if (tapAtNanos == 0) {
+            return;
+        }
+        long elapsed = System.nanoTime() - tapAtNanos;
+        (tapPrepared ? preparedTapToSheet : directTapToSheet).record(elapsed);
+        tapAtNanos = 0;
+    }
+
+    /** Forgets a tap that completed without showing a sheet, e.g. no credentials available. */
+    public synchronized void clearTap() {
+        tapAtNanos = 0;
+    }
+
+    @NonNull
+    public LatencyStats getPreparedTapToSheet() {
+        return preparedTapToSheet;
+    }
+
+    @NonNull
+    public LatencyStats getDirectTapToSheet() {
+        return directTapToSheet;
+    }
+
+    private GetCredentialRequest build(Kind kind) {
+        GetCredentialRequest.Builder builder = new GetCredentialRequest.Builder();
+        if (kind == Kind.SIGN_IN_WITH_GOOGLE) {
+            builder.addCredentialOption(new GetSignInWithGoogleOption.Builder(serverClientId).build());
+        } else {
+            builder.addCredentialOption(new GetGoogleIdOption.Builder()
+                    .setFilterByAuthorizedAccounts(true)
+                    .setServerClientId(serverClientId)
+                    .build());
+        }
+        return builder.build();
+    }
+
+    @RequiresApi(Build.VERSION_CODES.UPSIDE_DOWN_CAKE)
+    private void prepareApi34(CredentialManager credentialManager, Kind kind, GetCredentialRequest request) {
+        credentialManager.prepareGetCredentialAsync(
+                request,
+                new CancellationSignal(),
+                executor,
+                new CredentialManagerCallback<PrepareGetCredentialResponse, GetCredentialException>() {
+                    @Override
+                    public void onResult(PrepareGetCredentialResponse result) {
+                        synchronized (CredentialPrewarmer.this) {
+                            preparing.remove(kind);
+                            PendingGetCredentialHandle handle = result.getPendingGetCredentialHandle();
+                            if (handle != null) {
+                                prepared.put(kind, handle);
+                            }
+                        }
+                    }
+
+                    @Override
+                    public void onError(@NonNull GetCredentialException e) {
+                        synchronized (CredentialPrewarmer.this) {
+                            preparing.remove(kind);
+                        }
+                        Log.w(TAG, "prepareGetCredential:failure", e);
+                    }
+                });
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.sandbox_firebase;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Runs the last submitted task once input has been quiet for {@code delayMillis}. Not thread
+ * safe; use it from the thread the {@link Scheduler} runs tasks on (the main thread in the UI).
+ */
+public final class Debouncer {
+
+    private final Scheduler scheduler;
+    private final long delayMillis;
+    @Nullable
+    private Scheduler.Cancellable pending;
+
+    public Debouncer(@NonNull Scheduler scheduler, long delayMillis) {
+        this.scheduler = scheduler;
+        this.delayMillis = delayMillis;
+    }
+
+    public void submit(@NonNull Runnable task) {
+        cancel();
+        pending = scheduler.schedule(() -> {
+            pending = null;
+            task.run();
+        }, delayMillis);
+    }
+
+    public void cancel() {
+        if (pending != null) {
+            pending.cancel();
+            pending = null;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.sandbox_firebase;
+
+import androidx.annotation.Nullable;
+
+/**
+ * Rejects addresses the Auth backend would answer with {@code INVALID_EMAIL}, without a regex
+ * and without allocating: one pass over the characters against lookup tables built once.
+ * Deliberately lenient where the backend is (quoted local parts aside): anything outside
+ * ASCII is allowed so internationalized addresses are never blocked locally.
+ */
+public final class EmailSyntax {
+
+    private static final int MAX_LENGTH = 254;
+    private static final int MAX_LOCAL_LENGTH = 64;
+    private static final int MAX_LABEL_LENGTH = 63;
+
+    /** RFC 5322 atext, used for the local part (dots are handled separately). */
+    private static final boolean[] LOCAL = new boolean[128];
+    /** Letters, digits and hyphen, used for domain labels. */
+    private static final boolean[] LABEL = new boolean[128];
+
+    static {
+        for (char c = 'a'; c <= 'z'; c++) {
+            LOCAL[c] = LABEL[c] = true;
+            LOCAL[c - 32] = LABEL[c - 32] = true;
+        }
+        for (char c = '0'; c <= '9'; c++) {
+            LOCAL[c] = LABEL[c] = true;
+        }
+        for (char c : "!#$%&'*+-/=?^_`{|}~".toCharArray()) {
+            LOCAL[c] = true;
+        }
+        LABEL['-'] = true;
+    }
+
+    private EmailSyntax() {
+    }
+
+    public static boolean isValid(@Nullable CharSequence email) {
+        if (email == null) {
+            return false;
+        }
+        int length = email.length();
+        if (length == 0 || length > MAX_LENGTH) {
+            return false;
+        }
+        int at = -1;
+        for (int i = length - 1; i >= 0; i--) {
+            if (email.charAt(i) == '@') {
+                at = i;
+                break;
+            }
+        }
+        if (at < 1 || at > MAX_LOCAL_LENGTH || at == length - 1) {
+            return false;
+        }
+        return isValidLocal(email, at) && isValidDomain(email, at + 1, length);
+    }
+
+    private static boolean isValidLocal(CharSequence s, int end) {
+        char previous = '.';
+        for (int i = 0; i < end; i++) {
+            char c = s.charAt(i);
+            if (c == '.') {
+                if (previous == '.') {
+                    return false; // leading or doubled dot
+                }
+            } else if (c < 128 && !LOCAL[c]) {
+                return false;
+            }
+            previous = c;
+        }
+        return previous != '.';
+    }
+
+    private static boolean isValidDomain(CharSequence s, int start, int end) {
+        int labelStart = start;
+        int labels = 0;
+        boolean allDigits = true;
+        for (int i = start; i <= end; i++) {
+            char c = i < end ? s.charAt(i) : '.';
+            if (c != '.') {
+                if (c < 128 && !LABEL[c]) {
+                    return false;
+                }
+                allDigits &= c >= '0' && c <= '9';
+                continue;
+            }
+            int labelLength = i - labelStart;
+            if (labelLength == 0 || labelLength > MAX_LABEL_LENGTH
+                    || s.charAt(labelStart) == '-' || s.charAt(i - 1) == '-') {
+                return false;
+            }
+            labels++;
+            if (i == end) {
+                // A top-level domain is at least two characters and never all digits, which
+                // also rules out bare IPv4 addresses
+                return labels >= 2 && labelLength >= 2 && !allDigits;
+            }
+            allDigits = true;
+            labelStart = i + 1;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,303 @@
+package com.example.sandbox_firebase;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+/**
+ * Structured replacement for string-built debug logging on the auth paths. Each
+ * {@link #record} stores a {@link Type}, a timestamp and two numeric fields into a preallocated
+ * ring, without locks or allocation; nothing is formatted until the ring is flushed or dumped.
+ * Accounts are recorded as salted hashes ({@link #hash}), so neither the ring nor its files
+ * contain emails.
+ *
+ * <p>Writers claim a slot with one atomic increment and publish it by writing the slot's
+ * sequence number last. A reader keeps a slot only if its sequence is the expected one before
+ * and after reading the fields, so slots being overwritten mid-read are skipped rather than
+ * torn. When the ring is full the oldest events are overwritten.
+ *
+ * <p>File layout: magic, version, wall-clock millis and {@code nanoTime} at the flush (to
+ * place events in real time), total events ever recorded, event count, then per event its
+ * sequence number, type, {@code nanoTime} and the two fields. {@link #decode} turns it back
+ * into text; {@code :loadtest:decodeEvents} runs that on a file pulled from a device.
+ */
+public final class EventLog {
+
+    static final int MAGIC = 0x53455654; // "SEVT"
+    static final int VERSION = 1;
+    static final int DEFAULT_CAPACITY = 1024;
+
+    /** How each numeric field is printed. */
+    public enum Field {
+        NONE(null),
+        /** {@link #hash} of an email or uid. */
+        ACCOUNT("account"),
+        /** {@link AuthTracer.Outcome} ordinal. */
+        OUTCOME("outcome"),
+        /** {@code CredentialPrewarmer.Kind} ordinal. */
+        KIND("kind"),
+        /** 1 or 0. */
+        PREPARED("prepared"),
+        MILLIS("ms"),
+        THREAD("thread"),
+        MICROS("us"),
+        REQUESTS("requests");
+
+        @Nullable
+        final String label;
+
+        Field(@Nullable String label) {
+            this.label = label;
+        }
+
+        void format(long value, StringBuilder out) {
+            switch (this) {
+                case ACCOUNT:
+                    out.append(String.format(Locale.US, "%016x", value));
+                    break;
+                case OUTCOME:
+                    AuthTracer.Outcome[] outcomes = AuthTracer.Outcome.values();
+                    out.append(value >= 0 && value < outcomes.length ? outcomes[(int) value].name() : value);
+                    break;
+                case PREPARED:
+                    out.append(value != 0);
+                    break;
+                default:
+                    out.append(value);
+            }
+        }
+    }
+
+    /** What happened. Append only: the ordinal is what gets written to files. */
+    public enum Type {
+        EMAIL_SIGN_IN_STARTED(Field.ACCOUNT, Field.NONE),
+        EMAIL_SIGN_IN_FINISHED(Field.OUTCOME, Field.NONE),
+        CREATE_ACCOUNT_STARTED(Field.ACCOUNT, Field.NONE),
+        CREATE_ACCOUNT_FINISHED(Field.OUTCOME, Field.NONE),
+        CREDENTIAL_REQUESTED(Field.KIND, Field.PREPARED),
+        GOOGLE_SIGN_IN_FINISHED(Field.OUTCOME, Field.NONE),
+        VERIFICATION_EMAIL_FINISHED(Field.OUTCOME, Field.NONE),
+        RELOAD_FINISHED(Field.OUTCOME, Field.NONE),
+        CALL_REJECTED(Field.MILLIS, Field.NONE),
+        CRASH(Field.THREAD, Field.NONE),
+        ACCOUNT_SWITCHED(Field.ACCOUNT, Field.MICROS),
+        EMAIL_VERIFIED(Field.ACCOUNT, Field.REQUESTS);
+
+        final Field a;
+        final Field b;
+
+        Type(Field a, Field b) {
+            this.a = a;
+            this.b = b;
+        }
+    }
+
+    private static final Type[] TYPES = Type.values();
+
+    /** Slot layout in {@link #slots}: sequence, type, nanoTime, a, b. */
+    private static final int STRIDE = 5;
+
+    private final int mask;
+    private final long salt;
+    private final LongSupplier nanoTime;
+    private final Clock wall;
+    private final AtomicLong next = new AtomicLong();
+    /**
+     * Sequence 0 is an empty slot; event n is published as n + 1 and is -(n + 1) while being
+     * written.
+     */
+    private final AtomicLongArray slots;
+
+    /**
+     * @param capacity rounded up to a power of two
+     * @param salt     mixed into {@link #hash}; a per-process random value keeps hashes
+     *                 comparable within one file but useless for looking up an address
+     */
+    public EventLog(int capacity, long salt) {
+        this(capacity, salt, System::nanoTime, Clock.WALL);
+    }
+
+    EventLog(int capacity, long salt, @NonNull LongSupplier nanoTime, @NonNull Clock wall) {
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        this.mask = size - 1;
+        this.salt = salt;
+        this.nanoTime = nanoTime;
+        this.wall = wall;
+        this.slots = new AtomicLongArray(size * STRIDE);
+    }
+
+    public void record(@NonNull Type type) {
+        record(type, 0, 0);
+    }
+
+    public void record(@NonNull Type type, long a) {
+        record(type, a, 0);
+    }
+
+    public void record(@NonNull Type type, long a, long b) {
+        long sequence = next.getAndIncrement();
+        int base = ((int) sequence & mask) * STRIDE;
+        slots.set(base, -(sequence + 1));
+        slots.lazySet(base + 1, type.ordinal());
+        slots.lazySet(base + 2, nanoTime.getAsLong());
+        slots.lazySet(base + 3, a);
+        slots.lazySet(base + 4, b);
+        // Fails only if a writer a full lap ahead has claimed the slot meanwhile; its marker
+        // then stays until it publishes, so readers never see the two writes mixed
+        slots.compareAndSet(base, -(sequence + 1), sequence + 1);
+    }
+
+    /**
+     * Salted 64-bit FNV-1a of {@code account}, ASCII case folded so "A@x.com" and "a@x.com"
+     * match. 0 for null or empty. Allocation-free.
+     */
+    public long hash(@Nullable CharSequence account) {
+        if (account == null || account.length() == 0) {
+            return 0;
+        }
+        long h = 0xcbf29ce484222325L ^ salt;
+        for (int i = 0; i < account.length(); i++) {
+            char c = account.charAt(i);
+            if (c >= 'A' && c <= 'Z') {
+                c += 'a' - 'A';
+            }
+            h = (h ^ c) * 0x100000001b3L;
+        }
+        return h == 0 ? 1 : h;
+    }
+
+    /** Events ever recorded, including those since overwritten. */
+    public long getRecordedCount() {
+        return next.get();
+    }
+
+    /**
+     * Writes the ring to {@code file}, replacing it. Safe to call from an uncaught-exception
+     * handler: it only touches the ring and the file system.
+     */
+    public synchronized void flush(@NonNull File file) throws IOException {
+        File tempFile = new File(file.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tempFile)) {
+            out.write(encode());
+            out.getFD().sync();
+        }
+        if (!tempFile.renameTo(file)) {
+            tempFile.delete();
+            throw new IOException("Couldn't replace " + file);
+        }
+    }
+
+    /** The retained events as text, oldest first. For debug logs; allocates freely. */
+    @NonNull
+    public String dump() {
+        StringBuilder out = new StringBuilder(4096);
+        try {
+            decode(new ByteArrayInputStream(encode()), out);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return out.toString();
+    }
+
+    @NonNull
+    byte[] encode() throws IOException {
+        long end = next.get();
+        long start = Math.max(0, end - (mask + 1));
+        ByteArrayOutputStream eventBytes = new ByteArrayOutputStream((int) (end - start) * 33);
+        DataOutputStream events = new DataOutputStream(eventBytes);
+        int count = 0;
+        for (long sequence = start; sequence < end; sequence++) {
+            int base = ((int) sequence & mask) * STRIDE;
+            if (slots.get(base) != sequence + 1) {
+                continue; // not yet published, or already overwritten
+            }
+            int type = (int) slots.get(base + 1);
+            long nanos = slots.get(base + 2);
+            long a = slots.get(base + 3);
+            long b = slots.get(base + 4);
+            if (slots.get(base) != sequence + 1) {
+                continue; // overwritten while being read
+            }
+            events.writeLong(sequence);
+            events.writeByte(type);
+            events.writeLong(nanos);
+            events.writeLong(a);
+            events.writeLong(b);
+            count++;
+        }
+
+        ByteArrayOutputStream fileBytes = new ByteArrayOutputStream(eventBytes.size() + 40);
+        DataOutputStream out = new DataOutputStream(fileBytes);
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeLong(wall.nowMillis());
+        out.writeLong(nanoTime.getAsLong());
+        out.writeLong(end);
+        out.writeInt(count);
+        eventBytes.writeTo(out);
+        return fileBytes.toByteArray();
+    }
+
+    /**
+     * Formats a flushed file as one line per event:
+     * {@code 2026-01-01T12:00:00.125Z #41 EMAIL_SIGN_IN_STARTED account=8c1f...}.
+     */
+    public static void decode(@NonNull InputStream stream, @NonNull Appendable out) throws IOException {
+        DataInputStream in = new DataInputStream(stream);
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not an event log");
+        }
+        int version = in.readUnsignedByte();
+        if (version != VERSION) {
+            throw new IOException("Unknown event log version " + version);
+        }
+        long flushedAtMillis = in.readLong();
+        long flushedAtNanos = in.readLong();
+        long recorded = in.readLong();
+        int count = in.readInt();
+        StringBuilder line = new StringBuilder(96);
+        for (int i = 0; i < count; i++) {
+            long sequence = in.readLong();
+            int type = in.readUnsignedByte();
+            long nanos = in.readLong();
+            long a = in.readLong();
+            long b = in.readLong();
+
+            line.setLength(0);
+            line.append(Instant.ofEpochMilli(flushedAtMillis - (flushedAtNanos - nanos) / 1_000_000))
+                    .append(" #").append(sequence).append(' ');
+            if (type < TYPES.length) {
+                Type known = TYPES[type];
+                line.append(known.name());
+                appendField(line, known.a, a);
+                appendField(line, known.b, b);
+            } else {
+                // Written by a newer build
+                line.append("TYPE_").append(type).append(" a=").append(a).append(" b=").append(b);
+            }
+            out.append(line).append('\n');
+        }
+        out.append(String.format(Locale.US, "%d events shown, %d recorded\n", count, recorded));
+    }
+
+    private static void appendField(StringBuilder line, Field field, long value) {
+        if (field == Field.NONE) {
+            return;
+        }
+        line.append(' ').append(field.label).append('=');
+        field.format(value, line);
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.sandbox_firebase;
+
+import androidx.annotation.NonNull;
+
+import com.google.firebase.auth.FirebaseUser;
+
+/**
+ * Adapts {@link FirebaseUser#getIdToken(boolean)} to {@link IdTokenManager.TokenSource}.
+ */
+final class FirebaseTokenSource implements IdTokenManager.TokenSource {
+
+    private final FirebaseUser user;
+
+    FirebaseTokenSource(@NonNull FirebaseUser user) {
+        this.user = user;
+    }
+
+    @Override
+    public void fetch(boolean forceRefresh, @NonNull IdTokenManager.TokenCallback callback) {
+        user.getIdToken(forceRefresh).addOnCompleteListener(task -> {
+            if (task.isSuccessful() && task.getResult().getToken() != null) {
+                // GetTokenResult reports expiry in epoch seconds.
+                callback.onToken(task.getResult().getToken(),
+                        task.getResult().getExpirationTimestamp() * 1000L);
+            } else {
+                Exception e = task.getException();
+                callback.onError(e != null ? e : new IllegalStateException("No token returned"));
+            }
+        });
+    }
+}
@@ -19,40 +19,48 @@ package com.example.sandbox_firebase;
 import static com.google.android.libraries.identity.googleid.GoogleIdTokenCredential.TYPE_GOOGLE_ID_TOKEN_CREDENTIAL;
 
 import android.os.Bundle;
-import android.os.CancellationSignal;
 import android.util.Log;
 import android.view.View;
-import androidx.annotation.NonNull;
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.graphics.Insets;
 import androidx.core.view.ViewCompat;
 import androidx.core.view.WindowInsetsCompat;
-import androidx.credentials.ClearCredentialStateRequest;
 import androidx.credentials.Credential;
 import androidx.credentials.CredentialManager;
-import androidx.credentials.CredentialManagerCallback;
 import androidx.credentials.CustomCredential;
-import androidx.credentials.GetCredentialRequest;
 import androidx.credentials.GetCredentialResponse;
-import androidx.credentials.exceptions.ClearCredentialException;
-import androidx.credentials.exceptions.GetCredentialException;
+import androidx.credentials.PrepareGetCredentialResponse.PendingGetCredentialHandle;
+import androidx.credentials.exceptions.GetCredentialCancellationException;
+import androidx.lifecycle.ViewModelProvider;
 import com.example.sandbox_firebase.databinding.ActivityGoogleLoginBinding;
-import com.google.android.libraries.identity.googleid.GetGoogleIdOption;
-import com.google.android.libraries.identity.googleid.GetSignInWithGoogleOption;
+import com.google.android.gms.tasks.Task;
 import com.google.android.libraries.identity.googleid.GoogleIdTokenCredential;
 import com.google.android.material.snackbar.Snackbar;
 import com.google.firebase.auth.AuthCredential;
-import com.google.firebase.auth.FirebaseAuth;
-import com.google.firebase.auth.FirebaseUser;
+import com.google.firebase.auth.AuthResult;
+import com.google.firebase.auth.FirebaseAuthException;
 import com.google.firebase.auth.GoogleAuthProvider;
-import java.util.concurrent.Executors;
+import java.util.List;
+import java.util.concurrent.Executor;
 
 public class GoogleLoginActivity extends AppCompatActivity {
 
     private static final String TAG = "GoogleActivity";
 
-    private FirebaseAuth mAuth;
+    private AccountSessions accountSessions;
+    private AuthStateRepository authState;
+    private AuthOperationCoordinator authOperations;
+    private JwtClaimsDecoder jwtClaims;
     private CredentialManager credentialManager;
+    private CredentialPrewarmer credentialPrewarmer;
+    private AuthTracer tracer;
+    private Executor authExecutor;
+    private GoogleSignInViewModel viewModel;
+    private CallbackDispatcher callbacks;
+    private ConnectionPrewarmer connections;
+    private EventLog events;
+    private MainThreadMonitor mainThread;
     private ActivityGoogleLoginBinding mBinding;
 
     @Override
@@ -60,7 +68,8 @@ public class GoogleLoginActivity extends AppCompatActivity {
         super.onCreate(savedInstanceState);
         // EdgeToEdge.enable(this); // You can re-enable this if desired.
 
-        mBinding = ActivityGoogleLoginBinding.inflate(getLayoutInflater());
+        mBinding = ActivityGoogleLoginBinding.bind(SandboxApplication.from(this).getLayoutPrewarmer()
+                .obtain(this, R.layout.activity_google_login));
         setContentView(mBinding.getRoot());
 
         ViewCompat.setOnApplyWindowInsetsListener(mBinding.main, (v, insets) -> {
@@ -71,26 +80,55 @@ public class GoogleLoginActivity extends AppCompatActivity {
 
         // Initialize Credential Manager
         credentialManager = CredentialManager.create(this);
+        credentialPrewarmer = SandboxApplication.from(this).getCredentialPrewarmer();
+        tracer = SandboxApplication.from(this).getAuthTracer();
+        authExecutor = SandboxApplication.from(this).getAuthExecutor();
+        callbacks = SandboxApplication.from(this).getCallbackDispatcher();
+        connections = SandboxApplication.from(this).getConnectionPrewarmer();
+        events = SandboxApplication.from(this).getEventLog();
+        mainThread = SandboxApplication.from(this).getMainThreadMonitor();
 
         // Initialize Firebase Auth
-        mAuth = FirebaseAuth.getInstance();
+        accountSessions = SandboxApplication.from(this).getAccountSessions();
+        authState = SandboxApplication.from(this).getAuthStateRepository();
+        authOperations = SandboxApplication.from(this).getAuthOperations();
+        jwtClaims = SandboxApplication.from(this).getJwtClaimsDecoder();
+
+        // Pending requests survive rotation here
+        viewModel = new ViewModelProvider(this).get(GoogleSignInViewModel.class);
 
         // Button listeners
         mBinding.signInButton.setOnClickListener(v -> signIn());
         mBinding.signOutButton.setOnClickListener(v -> signOut());
+        mBinding.addAccountButton.setOnClickListener(v -> signIn());
+        mBinding.switchAccountButton.setOnClickListener(v -> showAccountPicker());
 
         // Display Credential Manager Bottom Sheet if user isn't logged in
-        if (mAuth.getCurrentUser() == null) {
+        if (accountSessions.getActiveAuth().getCurrentUser() == null && viewModel.shouldShowAutoPrompt()) {
             showBottomSheet();
         }
+
+        // Rebinds only when the auth snapshot actually changes
+        authState.getUser().observe(this, this::updateUI);
+        // Picks up work started by a previous instance of this screen; listeners stay attached
+        // until this instance is destroyed
+        reattachPendingWork();
     }
 
-    @Override
-    public void onStart() {
-        super.onStart();
-        // Check if user is signed in (non-null) and update UI accordingly.
-        FirebaseUser currentUser = mAuth.getCurrentUser();
-        updateUI(currentUser);
+    private void reattachPendingWork() {
+        Task<GetCredentialResponse> credential = viewModel.getPendingCredential();
+        Task<AuthResult> signIn = viewModel.getPendingSignIn();
+        Task<SessionTeardown.Report> signOut = viewModel.getPendingSignOut();
+        if (credential != null) {
+            onCredentialResult(credential);
+        }
+        if (signIn != null) {
+            showProgressBar();
+            onSignInResult(signIn);
+        }
+        if (signOut != null) {
+            onSignOutResult(signOut);
+        }
     }
 
     private void showProgressBar() {
@@ -107,51 +145,56 @@ public class GoogleLoginActivity extends AppCompatActivity {
 
     private void signIn() {
         showProgressBar();
-        GetSignInWithGoogleOption signInWithGoogleOption = new GetSignInWithGoogleOption
-                .Builder(getString(R.string.default_web_client_id))
-                .build();
-
-        GetCredentialRequest request = new GetCredentialRequest.Builder()
-                .addCredentialOption(signInWithGoogleOption)
-                .build();
-
-        launchCredentialManager(request);
+        launchCredentialManager(CredentialPrewarmer.Kind.SIGN_IN_WITH_GOOGLE);
     }
 
     private void showBottomSheet() {
         // No progress bar here, as it's an automatic prompt
-        GetGoogleIdOption googleIdOption = new GetGoogleIdOption.Builder()
-                .setFilterByAuthorizedAccounts(true)
-                .setServerClientId(getString(R.string.default_web_client_id))
-                .build();
-
-        GetCredentialRequest request = new GetCredentialRequest.Builder()
-                .addCredentialOption(googleIdOption)
-                .build();
-
-        launchCredentialManager(request);
-    }
-
-    private void launchCredentialManager(GetCredentialRequest request) {
-        credentialManager.getCredentialAsync(
-                this,
-                request,
-                new CancellationSignal(),
-                Executors.newSingleThreadExecutor(),
-                new CredentialManagerCallback<GetCredentialResponse, GetCredentialException>() {
-                    @Override
-                    public void onResult(GetCredentialResponse result) {
-                        createGoogleIdToken(result.getCredential());
-                    }
+        launchCredentialManager(CredentialPrewarmer.Kind.AUTHORIZED_ACCOUNTS);
+    }
 
-                    @Override
-                    public void onError(GetCredentialException e) {
-                        Log.e(TAG, "Couldn't retrieve user's credentials: " + e.getMessage(), e);
-                        hideProgressBar(); // Ensure progress bar is hidden on error
-                        Snackbar.make(mBinding.main, "Sign-in failed: " + e.getMessage(), Snackbar.LENGTH_LONG).show();
+    private void launchCredentialManager(CredentialPrewarmer.Kind kind) {
+        tracer.begin(AuthTracer.Flow.GOOGLE_SIGN_IN);
+
+        // The auto-prompt and the sign-in button share a key, so a tap while a lookup is
+        // pending joins it rather than starting a second Credential Manager round-trip. Only a
+        // request that actually starts uses up a prepared handle and counts as a tap.
+        onCredentialResult(viewModel.adoptCredential(authOperations.run(
+                AuthOperationCoordinator.key("getCredential", "google"),
+                () -> {
+                    // Requests are built once per process; on API 34+ the sheet may already be prepared
+                    PendingGetCredentialHandle handle = credentialPrewarmer.take(kind);
+                    events.record(EventLog.Type.CREDENTIAL_REQUESTED, kind.ordinal(), handle != null ? 1 : 0);
+                    if (kind == CredentialPrewarmer.Kind.SIGN_IN_WITH_GOOGLE) {
+                        credentialPrewarmer.markTap(handle != null);
                     }
-                }
-        );
+                    if (handle != null && CredentialPrewarmer.isPrepareSupported()) {
+                        return viewModel.getCredential(this, credentialManager, handle, authExecutor);
+                    }
+                    return viewModel.getCredential(this, credentialManager,
+                            credentialPrewarmer.request(kind), authExecutor);
+                })));
+    }
+
+    private void onCredentialResult(Task<GetCredentialResponse> pending) {
+        callbacks.onComplete(this, pending, task -> {
+            mainThread.mark(MainThreadMonitor.Screen.GOOGLE_LOGIN, MainThreadMonitor.Section.CREDENTIAL_RESULT);
+            if (!viewModel.consumeCredential(task)) {
+                return; // already handled by another listener on the same request
+            }
+            credentialPrewarmer.clearTap();
+            tracer.mark(AuthTracer.Flow.GOOGLE_SIGN_IN, AuthTracer.Stage.CREDENTIAL_RESULT);
+            if (task.isSuccessful()) {
+                createGoogleIdToken(task.getResult().getCredential());
+            } else {
+                Exception e = task.getException();
+                tracer.end(AuthTracer.Flow.GOOGLE_SIGN_IN, e instanceof GetCredentialCancellationException
+                        ? AuthTracer.Outcome.CANCELLED : AuthTracer.Outcome.FAILURE);
+                Log.e(TAG, "Couldn't retrieve user's credentials", e);
+                hideProgressBar(); // Ensure progress bar is hidden on error
+                Snackbar.make(mBinding.main, "Sign-in failed: " + e.getMessage(), Snackbar.LENGTH_LONG).show();
+            }
+        });
     }
 
     private void createGoogleIdToken(Credential credential) {
@@ -163,14 +206,28 @@ public class GoogleLoginActivity extends AppCompatActivity {
             Bundle credentialData = customCredential.getData();
             try {
                 GoogleIdTokenCredential googleIdTokenCredential = GoogleIdTokenCredential.createFrom(credentialData);
-                firebaseAuthWithGoogle(googleIdTokenCredential.getIdToken());
+                String idToken = googleIdTokenCredential.getIdToken();
+                // A credential re-delivered after a long pause may be stale; Firebase would
+                // reject it after a round-trip, so check locally first.
+                JwtClaimsDecoder.Claims claims = jwtClaims.decode(idToken);
+                if (claims != null && claims.isExpiredAt(System.currentTimeMillis())) {
+                    Log.w(TAG, "Google ID token expired before it could be used");
+                    tracer.end(AuthTracer.Flow.GOOGLE_SIGN_IN, AuthTracer.Outcome.FAILURE);
+                    hideProgressBar();
+                    Snackbar.make(mBinding.main, "Sign-in timed out, please try again.", Snackbar.LENGTH_SHORT).show();
+                    return;
+                }
+                tracer.mark(AuthTracer.Flow.GOOGLE_SIGN_IN, AuthTracer.Stage.ID_TOKEN);
+                firebaseAuthWithGoogle(idToken);
             } catch (Exception e) { // Catch potential exceptions from createFrom
-                 Log.e(TAG, "Failed to create GoogleIdTokenCredential: " + e.getMessage(), e);
+                 Log.e(TAG, "Failed to create GoogleIdTokenCredential", e);
+                 tracer.end(AuthTracer.Flow.GOOGLE_SIGN_IN, AuthTracer.Outcome.FAILURE);
                  hideProgressBar();
                  Snackbar.make(mBinding.main, "Failed to process Google token.", Snackbar.LENGTH_SHORT).show();
             }
         } else {
             Log.w(TAG, "Credential is not of type Google ID Token or is null!");
+            tracer.end(AuthTracer.Flow.GOOGLE_SIGN_IN, AuthTracer.Outcome.FAILURE);
             hideProgressBar();
             Snackbar.make(mBinding.main, "Received unexpected credential type.", Snackbar.LENGTH_SHORT).show();
         }
@@ -178,66 +235,134 @@ public class GoogleLoginActivity extends AppCompatActivity {
 
     private void firebaseAuthWithGoogle(String idToken) {
         AuthCredential credential = GoogleAuthProvider.getCredential(idToken, null);
-        mAuth.signInWithCredential(credential)
-                .addOnCompleteListener(this, task -> {
-                    if (task.isSuccessful()) {
-                        Log.d(TAG, "signInWithCredential:success");
-                        FirebaseUser user = mAuth.getCurrentUser();
-                        updateUI(user); // This will hide progress bar
-                    } else {
-                        Log.w(TAG, "signInWithCredential:failure", task.getException());
-                        Snackbar.make(mBinding.main, "Authentication Failed.", Snackbar.LENGTH_SHORT).show();
-                        updateUI(null); // This will hide progress bar
-                    }
-                    // hideProgressBar() is called within updateUI
-                });
+        onSignInResult(viewModel.adoptSignIn(authOperations.run(
+                AuthOperationCoordinator.key("signInWithCredential", "google", idToken),
+                () -> SandboxApplication.from(this).getAuthCallGate().run(AuthCallGate.GOOGLE_SIGN_IN, null,
+                        () -> timed(accountSessions.signInWithCredential(credential))))));
     }
 
-    private void signOut() {
-        showProgressBar();
-        // Firebase sign out
-        mAuth.signOut();
-
-        ClearCredentialStateRequest clearRequest = new ClearCredentialStateRequest();
-        credentialManager.clearCredentialStateAsync(
-                clearRequest,
-                new CancellationSignal(),
-                Executors.newSingleThreadExecutor(),
-                new CredentialManagerCallback<Void, ClearCredentialException>() {
-                    @Override
-                    public void onResult(@NonNull Void result) {
-                        updateUI(null); // This will hide progress bar
-                    }
+    /** Times the sign-in for the cold/warm connection stats; see ConnectionPrewarmer. */
+    private Task<AuthResult> timed(Task<AuthResult> call) {
+        ConnectionPrewarmer.Call timing = connections.beginCall();
+        return call.addOnCompleteListener(task -> timing.end(
+                task.isSuccessful() || task.getException() instanceof FirebaseAuthException));
+    }
 
-                    @Override
-                    public void onError(@NonNull ClearCredentialException e) {
-                        Log.e(TAG, "Couldn't clear user credentials: " + e.getMessage(), e);
-                        hideProgressBar(); // Explicitly hide on error if updateUI isn't called
-                        Snackbar.make(mBinding.main, "Sign-out failed to clear credentials.", Snackbar.LENGTH_SHORT).show();
+    private void onSignInResult(Task<AuthResult> pending) {
+        callbacks.onComplete(this, pending, task -> {
+            mainThread.mark(MainThreadMonitor.Screen.GOOGLE_LOGIN, MainThreadMonitor.Section.GOOGLE_SIGN_IN_RESULT);
+            if (!viewModel.consumeSignIn(task)) {
+                return;
+            }
+            tracer.mark(AuthTracer.Flow.GOOGLE_SIGN_IN, AuthTracer.Stage.FIREBASE_AUTH);
+            if (task.isSuccessful()) {
+                // AuthStateRepository delivers the signed-in user to updateUI
+                events.record(EventLog.Type.GOOGLE_SIGN_IN_FINISHED, AuthTracer.Outcome.SUCCESS.ordinal());
+            } else {
+                Log.w(TAG, "signInWithCredential:failure", task.getException());
+                tracer.end(AuthTracer.Flow.GOOGLE_SIGN_IN, AuthTracer.Outcome.FAILURE);
+                events.record(EventLog.Type.GOOGLE_SIGN_IN_FINISHED, AuthTracer.Outcome.FAILURE.ordinal());
+                if (task.getException() instanceof AuthCallGate.RejectedException) {
+                    showCooldown(((AuthCallGate.RejectedException) task.getException()).retryAfterMillis);
+                } else {
+                    Snackbar.make(mBinding.main, "Authentication Failed.", Snackbar.LENGTH_SHORT).show();
+                }
+            }
+            hideProgressBar();
+        });
+    }
 
-                    }
-                });
+    /** Keeps the sign-in button disabled until the call gate will admit a sign-in again. */
+    private void showCooldown(long millis) {
+        events.record(EventLog.Type.CALL_REJECTED, millis);
+        int seconds = (int) Math.ceil(millis / 1000.0);
+        Snackbar.make(mBinding.main, getString(R.string.auth_cooldown_fmt, seconds),
+                Snackbar.LENGTH_LONG).show();
+        View button = mBinding.signInButton;
+        button.setEnabled(false);
+        button.postDelayed(() -> button.setEnabled(true), millis);
     }
 
-    private void updateUI(FirebaseUser user) {
-        runOnUiThread(() -> {
-            hideProgressBar();
-            if (user != null) {
-                mBinding.status.setText(getString(R.string.google_status_fmt, user.getEmail()));
-                mBinding.detail.setText(getString(R.string.firebase_status_fmt, user.getUid()));
+    /** Lists the other signed-in accounts; picking one switches to it without a network call. */
+    private void showAccountPicker() {
+        List<AuthSnapshot> accounts = accountSessions.getAccounts();
+        String[] labels = new String[accounts.size()];
+        for (int i = 0; i < labels.length; i++) {
+            AuthSnapshot account = accounts.get(i);
+            labels[i] = account.getEmail() != null ? account.getEmail() : account.getUid();
+        }
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.switch_account)
+                .setItems(labels, (dialog, which) -> {
+                    String uid = accounts.get(which).getUid();
+                    long start = System.nanoTime();
+                    if (accountSessions.switchTo(uid)) {
+                        events.record(EventLog.Type.ACCOUNT_SWITCHED, events.hash(uid),
+                                (System.nanoTime() - start) / 1_000);
+                    }
+                })
+                .show();
+    }
 
-                mBinding.signInButton.setVisibility(View.GONE);
-                mBinding.signOutButton.setVisibility(View.VISIBLE);
-            } else {
-                mBinding.status.setText(R.string.signed_out);
-                mBinding.detail.setText(null);
+    private void signOut() {
+        // The UI switches to signed-out right away; the rest of the teardown finishes behind it
+        onSignOutResult(viewModel.adoptSignOut(SandboxApplication.from(this).getSessionTeardown().signOut()));
+    }
 
-                mBinding.signInButton.setVisibility(View.VISIBLE);
-                mBinding.signOutButton.setVisibility(View.GONE);
+    private void onSignOutResult(Task<SessionTeardown.Report> pending) {
+        callbacks.onComplete(this, pending, task -> {
+            mainThread.mark(MainThreadMonitor.Screen.GOOGLE_LOGIN, MainThreadMonitor.Section.SIGN_OUT_RESULT);
+            if (viewModel.consumeSignOut(task) && !task.getResult().isClean()) {
+                Snackbar.make(mBinding.main, R.string.sign_out_incomplete, Snackbar.LENGTH_SHORT).show();
             }
         });
     }
 
+    private void updateUI(AuthSnapshot user) {
+        mainThread.mark(MainThreadMonitor.Screen.GOOGLE_LOGIN, MainThreadMonitor.Section.UPDATE_UI);
+        if (!viewModel.hasPendingWork()) {
+            hideProgressBar();
+        }
+        AuthUiState state = AuthUiState.from(user);
+        if (state.isSignedIn()) {
+            mBinding.status.setText(getString(R.string.google_status_fmt, state.getStatusArg()));
+            mBinding.detail.setText(getString(R.string.firebase_status_fmt, state.getDetailArg()));
+        } else {
+            mBinding.status.setText(R.string.signed_out);
+            mBinding.detail.setText(null);
+        }
+        mBinding.signInButton.setVisibility(state.isSignInVisible() ? View.VISIBLE : View.GONE);
+        mBinding.signOutButton.setVisibility(state.isSignOutVisible() ? View.VISIBLE : View.GONE);
+        mBinding.addAccountButton.setVisibility(state.isSignedIn() ? View.VISIBLE : View.GONE);
+        mBinding.switchAccountButton.setVisibility(
+                accountSessions.getAccounts().size() > 1 ? View.VISIBLE : View.GONE);
+
+        if (state.isSignedIn()) {
+            // Closes the trace if this state came from a sign-in on this screen
+            tracer.mark(AuthTracer.Flow.GOOGLE_SIGN_IN, AuthTracer.Stage.UI_UPDATE);
+            tracer.end(AuthTracer.Flow.GOOGLE_SIGN_IN, AuthTracer.Outcome.SUCCESS);
+        } else {
+            // Get the sign-in sheet and the backend connection ready before the user reaches
+            // for the button
+            credentialPrewarmer.prepare(credentialManager, CredentialPrewarmer.Kind.SIGN_IN_WITH_GOOGLE);
+            connections.warm();
+        }
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        SandboxApplication.from(this).getLayoutPrewarmer()
+                .prewarmNextWhenIdle(R.layout.activity_google_login, authState.getUser().getValue());
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        // The Credential Manager sheet covering this screen is what pauses it
+        credentialPrewarmer.onSheetShown();
+    }
+
     @Override
     protected void onDestroy() {
         super.onDestroy();
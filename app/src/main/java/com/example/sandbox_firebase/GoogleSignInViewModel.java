@@ -0,0 +1,202 @@
+package com.example.sandbox_firebase;
+
+import android.app.Activity;
+import android.os.Build;
+import android.os.CancellationSignal;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RequiresApi;
+import androidx.credentials.CredentialManager;
+import androidx.credentials.CredentialManagerCallback;
+import androidx.credentials.GetCredentialRequest;
+import androidx.credentials.GetCredentialResponse;
+import androidx.credentials.PrepareGetCredentialResponse.PendingGetCredentialHandle;
+import androidx.credentials.exceptions.GetCredentialCancellationException;
+import androidx.credentials.exceptions.GetCredentialException;
+import androidx.lifecycle.ViewModel;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.TaskCompletionSource;
+import com.google.firebase.auth.AuthResult;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Holds {@link GoogleLoginActivity}'s pending Credential Manager and Firebase work across
+ * configuration changes. A recreated activity re-attaches to the pending tasks instead of
+ * starting new round-trips; when the screen is finished for good, {@link #onCleared()} cancels
+ * whatever Credential Manager work is still running.
+ */
+public class GoogleSignInViewModel extends ViewModel {
+
+    private final Pending<GetCredentialResponse> credential = new Pending<>();
+    private final Pending<AuthResult> signIn = new Pending<>();
+    private final Pending<SessionTeardown.Report> signOut = new Pending<>();
+    private boolean autoPromptShown;
+
+    /** True the first time only, so recreating the activity doesn't re-launch the bottom sheet. */
+    boolean shouldShowAutoPrompt() {
+        if (autoPromptShown) {
+            return false;
+        }
+        autoPromptShown = true;
+        return true;
+    }
+
+    @NonNull
+    Task<GetCredentialResponse> getCredential(@NonNull Activity activity,
+                                              @NonNull CredentialManager credentialManager,
+                                              @NonNull GetCredentialRequest request,
+                                              @NonNull Executor executor) {
+        TaskCompletionSource<GetCredentialResponse> source = new TaskCompletionSource<>();
+        CancellationSignal signal = new CancellationSignal();
+        credentialManager.getCredentialAsync(activity, request, signal, executor, completing(source));
+        return credential.start(source, signal);
+    }
+
+    /** Shows a sheet prepared ahead of time by {@link CredentialPrewarmer}. */
+    @RequiresApi(Build.VERSION_CODES.UPSIDE_DOWN_CAKE)
+    @NonNull
+    Task<GetCredentialResponse> getCredential(@NonNull Activity activity,
+                                              @NonNull CredentialManager credentialManager,
+                                              @NonNull PendingGetCredentialHandle handle,
+                                              @NonNull Executor executor) {
+        TaskCompletionSource<GetCredentialResponse> source = new TaskCompletionSource<>();
+        CancellationSignal signal = new CancellationSignal();
+        credentialManager.getCredentialAsync(activity, handle, signal, executor, completing(source));
+        return credential.start(source, signal);
+    }
+
+    private static CredentialManagerCallback<GetCredentialResponse, GetCredentialException> completing(
+            TaskCompletionSource<GetCredentialResponse> source) {
+        return new CredentialManagerCallback<GetCredentialResponse, GetCredentialException>() {
+            @Override
+            public void onResult(GetCredentialResponse result) {
+                source.trySetResult(result);
+            }
+
+            @Override
+            public void onError(@NonNull GetCredentialException e) {
+                source.trySetException(e);
+            }
+        };
+    }
+
+    boolean hasPendingWork() {
+        return credential.task != null || signIn.task != null;
+    }
+
+    @Nullable
+    Task<GetCredentialResponse> getPendingCredential() {
+        return credential.task;
+    }
+
+    @Nullable
+    Task<AuthResult> getPendingSignIn() {
+        return signIn.task;
+    }
+
+    @Nullable
+    Task<SessionTeardown.Report> getPendingSignOut() {
+        return signOut.task;
+    }
+
+    /**
+     * Tracks a task started elsewhere, e.g. a request {@link AuthOperationCoordinator} joined
+     * to one already in flight, so its result is still delivered to this screen.
+     */
+    @NonNull
+    Task<GetCredentialResponse> adoptCredential(@NonNull Task<GetCredentialResponse> task) {
+        return credential.adopt(task);
+    }
+
+    @NonNull
+    Task<AuthResult> adoptSignIn(@NonNull Task<AuthResult> task) {
+        return signIn.adopt(task);
+    }
+
+    /** The teardown runs process-wide; only its report is tied to this screen. */
+    @NonNull
+    Task<SessionTeardown.Report> adoptSignOut(@NonNull Task<SessionTeardown.Report> task) {
+        return signOut.adopt(task);
+    }
+
+    /**
+     * Marks {@code task}'s result as delivered. Returns false if it was already delivered (or
+     * superseded), so listeners attached by an earlier activity instance or a coalesced tap
+     * don't handle the same result twice.
+     */
+    boolean consumeCredential(@NonNull Task<GetCredentialResponse> task) {
+        return credential.consume(task);
+    }
+
+    boolean consumeSignIn(@NonNull Task<AuthResult> task) {
+        return signIn.consume(task);
+    }
+
+    boolean consumeSignOut(@NonNull Task<SessionTeardown.Report> task) {
+        return signOut.consume(task);
+    }
+
+    @Override
+    protected void onCleared() {
+        credential.cancel();
+        signIn.cancel();
+        signOut.cancel();
+    }
+
+    /**
+     * One kind of pending work. For work started here, cancelling also fails the task: a
+     * cancelled Credential Manager request never calls back, and a task left pending would keep
+     * its {@link AuthOperationCoordinator} key in flight for good.
+     */
+    static final class Pending<T> {
+        @Nullable
+        Task<T> task;
+        @Nullable
+        private TaskCompletionSource<T> source;
+        @Nullable
+        private CancellationSignal signal;
+
+        Task<T> start(@NonNull TaskCompletionSource<T> source, @Nullable CancellationSignal signal) {
+            this.task = source.getTask();
+            this.source = source;
+            this.signal = signal;
+            return task;
+        }
+
+        Task<T> adopt(Task<T> other) {
+            if (task != other) {
+                task = other;
+                source = null;
+                signal = null;
+            }
+            return other;
+        }
+
+        boolean consume(Task<T> completed) {
+            if (task != completed) {
+                return false;
+            }
+            clear();
+            return true;
+        }
+
+        void cancel() {
+            if (source != null && !source.getTask().isComplete()) {
+                if (signal != null) {
+                    signal.cancel();
+                }
+                source.trySetException(new GetCredentialCancellationException("Screen closed"));
+            }
+            clear();
+        }
+
+        private void clear() {
+            task = null;
+            source = null;
+            signal = null;
+        }
+    }
+}
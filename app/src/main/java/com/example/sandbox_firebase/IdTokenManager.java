@@ -0,0 +1,296 @@
+package com.example.sandbox_firebase;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the signed-in user's ID token fresh ahead of time, so the first backend call after an
+ * expiry doesn't pay for a blocking refresh.
+ *
+ * <p>A refresh is scheduled {@code refreshMarginMillis} before the token expires. Callers get
+ * the cached token without blocking; only when it has actually expired do they wait, and then
+ * all waiters share one refresh. Failed refreshes back off exponentially. {@link #stop()} drops
+ * the token and cancels everything when the user signs out.
+ */
+public final class IdTokenManager {
+
+    static final long DEFAULT_REFRESH_MARGIN_MILLIS = 5 * 60_000;
+    static final long INITIAL_BACKOFF_MILLIS = 1_000;
+    static final long MAX_BACKOFF_MILLIS = 5 * 60_000;
+
+    /** Where tokens come from; {@code FirebaseUser.getIdToken} in the app. */
+    public interface TokenSource {
+        void fetch(boolean forceRefresh, @NonNull TokenCallback callback);
+    }
+
+    public interface TokenCallback {
+        void onToken(@NonNull String token, long expiresAtMillis);
+
+        void onError(@NonNull Exception e);
+    }
+
+    private final Clock wallClock;
+    private final Clock monotonicClock;
+    private final Scheduler scheduler;
+    private final long refreshMarginMillis;
+
+    @Nullable
+    private TokenSource source;
+    @Nullable
+    private String subject;
+    private int generation;
+
+    @Nullable
+    private String token;
+    private long expiresAtMillis;
+
+    private boolean refreshing;
+    private long refreshStartedAt;
+    private final List<TokenCallback> waiters = new ArrayList<>();
+    @Nullable
+    private Scheduler.Cancellable scheduled;
+    private long backoffMillis = INITIAL_BACKOFF_MILLIS;
+    @Nullable
+    private TokenCallback listener;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong refreshes = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final LatencyStats refreshLatency = new LatencyStats();
+
+    public IdTokenManager(@NonNull Scheduler scheduler) {
+        this(Clock.WALL, Clock.SYSTEM, scheduler, DEFAULT_REFRESH_MARGIN_MILLIS);
+    }
+
+    IdTokenManager(@NonNull Clock wallClock, @NonNull Clock monotonicClock,
+                   @NonNull Scheduler scheduler, long refreshMarginMillis) {
+        this.wallClock = wallClock;
+        this.monotonicClock = monotonicClock;
+        this.scheduler = scheduler;
+        this.refreshMarginMillis = refreshMarginMillis;
+    }
+
+    /** Notified after every refresh, e.g. to persist the new expiry or queue a retry. */
+    public synchronized void setListener(@Nullable TokenCallback listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Starts managing tokens for {@code subject} (the user's uid). A no-op if that user is
+     * already being managed; otherwise replaces the previous user's state.
+     */
+    public void start(@NonNull String subject, @NonNull TokenSource source) {
+        synchronized (this) {
+            if (subject.equals(this.subject)) {
+                return;
+            }
+            reset();
+            this.subject = subject;
+            this.source = source;
+        }
+        // The SDK usually has a valid token cached, so this is local and seeds the schedule.
+        refresh(false);
+    }
+
+    /** Drops the cached token and cancels pending work. Call on sign-out. */
+    public void stop() {
+        List<TokenCallback> abandoned;
+        synchronized (this) {
+            abandoned = new ArrayList<>(waiters);
+            reset();
+        }
+        Exception signedOut = new IllegalStateException("Signed out");
+        for (TokenCallback waiter : abandoned) {
+            waiter.onError(signedOut);
+        }
+    }
+
+    @Nullable
+    public synchronized String getSubject() {
+        return subject;
+    }
+
+    /** The cached token if it hasn't expired, without ever blocking or triggering a fetch. */
+    @Nullable
+    public synchronized String peekToken() {
+        return isValid() ? token : null;
+    }
+
+    /**
+     * Delivers a valid token: immediately from the cache when possible, otherwise after the
+     * (shared) refresh completes.
+     */
+    public void getToken(@NonNull TokenCallback callback) {
+        String cached;
+        long expiry;
+        synchronized (this) {
+            if (source == null) {
+                cached = null;
+                expiry = 0;
+            } else if (isValid()) {
+                hits.incrementAndGet();
+                cached = token;
+                expiry = expiresAtMillis;
+            } else {
+                misses.incrementAndGet();
+                waiters.add(callback);
+                startRefreshLocked(false);
+                return;
+            }
+        }
+        if (cached != null) {
+            callback.onToken(cached, expiry);
+        } else {
+            callback.onError(new IllegalStateException("Not signed in"));
+        }
+    }
+
+    /** Forces a refresh now, e.g. after the backend rejected the current token. */
+    public void forceRefresh() {
+        refresh(true);
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public double getHitRate() {
+        long h = hits.get();
+        long total = h + misses.get();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    public long getRefreshCount() {
+        return refreshes.get();
+    }
+
+    public long getFailureCount() {
+        return failures.get();
+    }
+
+    @NonNull
+    public LatencyStats getRefreshLatency() {
+        return refreshLatency;
+    }
+
+    private void refresh(boolean force) {
+        synchronized (this) {
+            startRefreshLocked(force);
+        }
+    }
+
+    private void startRefreshLocked(boolean force) {
+        if (source == null || refreshing) {
+            return; // concurrent refreshes coalesce into the one in flight
+        }
+        refreshing = true;
+        refreshStartedAt = monotonicClock.nowMillis();
+        refreshes.incrementAndGet();
+        final int expectedGeneration = generation;
+        final TokenSource currentSource = source;
+        currentSource.fetch(force, new TokenCallback() {
+            @Override
+            public void onToken(@NonNull String newToken, long newExpiresAtMillis) {
+                onRefreshed(expectedGeneration, newToken, newExpiresAtMillis);
+            }
+
+            @Override
+            public void onError(@NonNull Exception e) {
+                onRefreshFailed(expectedGeneration, e);
+            }
+        });
+    }
+
+    private void onRefreshed(int expectedGeneration, String newToken, long newExpiresAtMillis) {
+        List<TokenCallback> done;
+        TokenCallback notify;
+        synchronized (this) {
+            if (expectedGeneration != generation) {
+                return; // user signed out or changed while this was in flight
+            }
+            refreshing = false;
+            refreshLatency.record((monotonicClock.nowMillis() - refreshStartedAt) * 1_000_000);
+            token = newToken;
+            expiresAtMillis = newExpiresAtMillis;
+            backoffMillis = INITIAL_BACKOFF_MILLIS;
+            long delay = Math.max(0, newExpiresAtMillis - refreshMarginMillis - wallClock.nowMillis());
+            scheduleLocked(delay, true);
+            done = new ArrayList<>(waiters);
+            waiters.clear();
+            notify = listener;
+        }
+        for (TokenCallback waiter : done) {
+            waiter.onToken(newToken, newExpiresAtMillis);
+        }
+        if (notify != null) {
+            notify.onToken(newToken, newExpiresAtMillis);
+        }
+    }
+
+    private void onRefreshFailed(int expectedGeneration, Exception e) {
+        List<TokenCallback> done;
+        TokenCallback notify;
+        synchronized (this) {
+            if (expectedGeneration != generation) {
+                return;
+            }
+            refreshing = false;
+            failures.incrementAndGet();
+            scheduleLocked(backoffMillis, true);
+            backoffMillis = Math.min(backoffMillis * 2, MAX_BACKOFF_MILLIS);
+            done = new ArrayList<>(waiters);
+            waiters.clear();
+            notify = listener;
+        }
+        for (TokenCallback waiter : done) {
+            waiter.onError(e);
+        }
+        if (notify != null) {
+            notify.onError(e);
+        }
+    }
+
+    private void scheduleLocked(long delayMillis, boolean force) {
+        if (scheduled != null) {
+            scheduled.cancel();
+        }
+        final int expectedGeneration = generation;
+        scheduled = scheduler.schedule(() -> {
+            synchronized (this) {
+                if (expectedGeneration != generation) {
+                    return;
+                }
+                scheduled = null;
+                startRefreshLocked(force);
+            }
+        }, delayMillis);
+    }
+
+    private boolean isValid() {
+        return token != null && wallClock.nowMillis() < expiresAtMillis;
+    }
+
+    private void reset() {
+        generation++;
+        if (scheduled != null) {
+            scheduled.cancel();
+            scheduled = null;
+        }
+        source = null;
+        subject = null;
+        token = null;
+        expiresAtMillis = 0;
+        refreshing = false;
+        waiters.clear();
+        backoffMillis = INITIAL_BACKOFF_MILLIS;
+    }
+}
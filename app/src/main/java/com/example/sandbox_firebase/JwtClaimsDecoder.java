@@ -0,0 +1,403 @@
+package com.example.sandbox_firebase;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reads a handful of claims from a JWT without verifying it, for local decisions such as "has
+ * this token expired" where a round-trip or a full parse isn't worth it. Never use the result
+ * to make a trust decision; the server verifies the signature.
+ *
+ * <p>The payload segment is base64url-decoded into a reused buffer and scanned once. Keys are
+ * compared as bytes, unwanted values are skipped without being materialized, and only the
+ * requested string claims become {@code String}s. Results are kept in a small LRU cache keyed by
+ * a 64-bit hash of the token, so re-reading the same token costs a hash and a map lookup.
+ *
+ * <p>Instances are thread-safe; decoding is serialized because the buffer is shared.
+ */
+public final class JwtClaimsDecoder {
+
+    public static final int SUB = 1;
+    public static final int EMAIL = 1 << 1;
+    public static final int EMAIL_VERIFIED = 1 << 2;
+    public static final int EXP = 1 << 3;
+    public static final int IAT = 1 << 4;
+    public static final int ALL = SUB | EMAIL | EMAIL_VERIFIED | EXP | IAT;
+
+    static final int DEFAULT_CACHE_SIZE = 8;
+    private static final int MAX_PAYLOAD_CHARS = 16 * 1024;
+
+    private static final byte[] KEY_SUB = ascii("sub");
+    private static final byte[] KEY_EMAIL = ascii("email");
+    private static final byte[] KEY_EMAIL_VERIFIED = ascii("email_verified");
+    private static final byte[] KEY_EXP = ascii("exp");
+    private static final byte[] KEY_IAT = ascii("iat");
+
+    private static final int[] BASE64URL = new int[128];
+
+    static {
+        Arrays.fill(BASE64URL, -1);
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_";
+        for (int i = 0; i < alphabet.length(); i++) {
+            BASE64URL[alphabet.charAt(i)] = i;
+        }
+    }
+
+    /** The requested claims of one token; unrequested or absent ones are null/false/0. */
+    public static final class Claims {
+        @Nullable
+        public final String subject;
+        @Nullable
+        public final String email;
+        public final boolean emailVerified;
+        /** {@code exp} in epoch seconds, or 0. */
+        public final long expiresAtSeconds;
+        /** {@code iat} in epoch seconds, or 0. */
+        public final long issuedAtSeconds;
+
+        Claims(@Nullable String subject, @Nullable String email, boolean emailVerified,
+               long expiresAtSeconds, long issuedAtSeconds) {
+            this.subject = subject;
+            this.email = email;
+            this.emailVerified = emailVerified;
+            this.expiresAtSeconds = expiresAtSeconds;
+            this.issuedAtSeconds = issuedAtSeconds;
+        }
+
+        public long getExpiresAtMillis() {
+            return expiresAtSeconds * 1000L;
+        }
+
+        /** True if the token carries an expiry that has passed at {@code nowMillis} (wall clock). */
+        public boolean isExpiredAt(long nowMillis) {
+            return expiresAtSeconds != 0 && nowMillis >= getExpiresAtMillis();
+        }
+    }
+
+    private final int fields;
+    private final int cacheSize;
+    private final LinkedHashMap<Long, Claims> cache;
+    private final AtomicLong decodes = new AtomicLong();
+    private final AtomicLong cacheHits = new AtomicLong();
+
+    private byte[] buffer = new byte[1024];
+    private int length;
+
+    public JwtClaimsDecoder() {
+        this(ALL, DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * @param fields    claims to extract, a combination of {@link #SUB}, {@link #EMAIL}, ...
+     * @param cacheSize tokens to remember; 0 disables the cache
+     */
+    public JwtClaimsDecoder(int fields, int cacheSize) {
+        this.fields = fields;
+        this.cacheSize = cacheSize;
+        this.cache = new LinkedHashMap<Long, Claims>(cacheSize + 1, 1f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Claims> eldest) {
+                return size() > JwtClaimsDecoder.this.cacheSize;
+            }
+        };
+    }
+
+    /** Returns the claims of {@code token}, or null if it isn't a well-formed JWT. */
+    @Nullable
+    public synchronized Claims decode(@NonNull String token) {
+        Long key = null;
+        if (cacheSize > 0) {
+            key = hash(token);
+            Claims cached = cache.get(key);
+            if (cached != null) {
+                cacheHits.incrementAndGet();
+                return cached;
+            }
+        }
+        decodes.incrementAndGet();
+        Claims claims;
+        try {
+            claims = parse(token);
+        } catch (IllegalStateException | NumberFormatException e) {
+            return null;
+        }
+        if (key != null) {
+            cache.put(key, claims);
+        }
+        return claims;
+    }
+
+    public long getDecodeCount() {
+        return decodes.get();
+    }
+
+    public long getCacheHitCount() {
+        return cacheHits.get();
+    }
+
+    private Claims parse(String token) {
+        int start = token.indexOf('.') + 1;
+        check(start > 0, "no header");
+        int end = token.indexOf('.', start);
+        check(end > 0, "no signature");
+        decodePayload(token, start, end);
+
+        String subject = null;
+        String email = null;
+        boolean emailVerified = false;
+        long exp = 0;
+        long iat = 0;
+
+        int pos = skipWhitespace(0);
+        check(byteAt(pos) == '{', "payload is not an object");
+        pos = skipWhitespace(pos + 1);
+        if (byteAt(pos) == '}') {
+            return new Claims(null, null, false, 0, 0);
+        }
+        while (true) {
+            check(byteAt(pos) == '"', "expected key");
+            int keyStart = pos + 1;
+            int keyEnd = skipString(pos);
+            pos = skipWhitespace(keyEnd + 1);
+            check(byteAt(pos) == ':', "expected ':'");
+            pos = skipWhitespace(pos + 1);
+
+            switch (matchKey(keyStart, keyEnd) & fields) {
+                case SUB:
+                    subject = readString(pos);
+                    pos = skipValue(pos);
+                    break;
+                case EMAIL:
+                    email = readString(pos);
+                    pos = skipValue(pos);
+                    break;
+                case EMAIL_VERIFIED:
+                    emailVerified = readBoolean(pos);
+                    pos = skipValue(pos);
+                    break;
+                case EXP:
+                    exp = readSeconds(pos);
+                    pos = skipValue(pos);
+                    break;
+                case IAT:
+                    iat = readSeconds(pos);
+                    pos = skipValue(pos);
+                    break;
+                default:
+                    pos = skipValue(pos);
+                    break;
+            }
+
+            pos = skipWhitespace(pos);
+            byte b = byteAt(pos);
+            if (b == '}') {
+                break;
+            }
+            check(b == ',', "expected ',' or '}'");
+            pos = skipWhitespace(pos + 1);
+        }
+        return new Claims(subject, email, emailVerified, exp, iat);
+    }
+
+    /** Base64url-decodes {@code token[start, end)} into {@link #buffer}. */
+    private void decodePayload(String token, int start, int end) {
+        int chars = end - start;
+        check(chars <= MAX_PAYLOAD_CHARS, "payload too large");
+        int capacity = chars * 3 / 4 + 3;
+        if (buffer.length < capacity) {
+            buffer = new byte[Math.max(capacity, buffer.length * 2)];
+        }
+        int bits = 0;
+        int bitCount = 0;
+        int out = 0;
+        for (int i = start; i < end; i++) {
+            char c = token.charAt(i);
+            if (c == '=') {
+                break; // padding is optional in JWTs but tolerated
+            }
+            int value = c < 128 ? BASE64URL[c] : -1;
+            check(value >= 0, "bad base64url");
+            bits = (bits << 6) | value;
+            bitCount += 6;
+            if (bitCount >= 8) {
+                bitCount -= 8;
+                buffer[out++] = (byte) (bits >> bitCount);
+            }
+        }
+        check(bitCount < 6, "bad base64url length");
+        length = out;
+    }
+
+    private int matchKey(int start, int end) {
+        int keyLength = end - start;
+        switch (keyLength) {
+            case 3:
+                if (regionEquals(start, KEY_SUB)) return SUB;
+                if (regionEquals(start, KEY_EXP)) return EXP;
+                if (regionEquals(start, KEY_IAT)) return IAT;
+                return 0;
+            case 5:
+                return regionEquals(start, KEY_EMAIL) ? EMAIL : 0;
+            case 14:
+                return regionEquals(start, KEY_EMAIL_VERIFIED) ? EMAIL_VERIFIED : 0;
+            default:
+                return 0;
+        }
+    }
+
+    private boolean regionEquals(int start, byte[] key) {
+        for (int i = 0; i < key.length; i++) {
+            if (buffer[start + i] != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Returns the index of the closing quote of the string opening at {@code pos}. */
+    private int skipString(int pos) {
+        check(byteAt(pos) == '"', "expected string");
+        for (int i = pos + 1; ; i++) {
+            byte b = byteAt(i);
+            if (b == '\\') {
+                i++;
+            } else if (b == '"') {
+                return i;
+            }
+        }
+    }
+
+    /** Returns the index just past the value starting at {@code pos}. */
+    private int skipValue(int pos) {
+        byte first = byteAt(pos);
+        if (first == '"') {
+            return skipString(pos) + 1;
+        }
+        if (first == '{' || first == '[') {
+            int depth = 0;
+            for (int i = pos; ; i++) {
+                byte b = byteAt(i);
+                if (b == '"') {
+                    i = skipString(i);
+                } else if (b == '{' || b == '[') {
+                    depth++;
+                } else if (b == '}' || b == ']') {
+                    if (--depth == 0) {
+                        return i + 1;
+                    }
+                }
+            }
+        }
+        int i = pos;
+        while (i < length) {
+            byte b = buffer[i];
+            if (b == ',' || b == '}' || b == ']' || isWhitespace(b)) {
+                break;
+            }
+            i++;
+        }
+        check(i > pos, "expected value");
+        return i;
+    }
+
+    @Nullable
+    private String readString(int pos) {
+        if (byteAt(pos) != '"') {
+            return null; // e.g. null; treat a mistyped claim as absent
+        }
+        int end = skipString(pos);
+        int i = pos + 1;
+        int run = i;
+        StringBuilder escaped = null;
+        while (i < end) {
+            if (buffer[i] != '\\') {
+                i++;
+                continue;
+            }
+            if (escaped == null) {
+                escaped = new StringBuilder(end - pos);
+            }
+            escaped.append(new String(buffer, run, i - run, StandardCharsets.UTF_8));
+            byte e = byteAt(i + 1);
+            switch (e) {
+                case 'b': escaped.append('\b'); break;
+                case 'f': escaped.append('\f'); break;
+                case 'n': escaped.append('\n'); break;
+                case 'r': escaped.append('\r'); break;
+                case 't': escaped.append('\t'); break;
+                case 'u':
+                    check(i + 6 <= end, "bad \\u escape");
+                    escaped.append((char) Integer.parseInt(
+                            new String(buffer, i + 2, 4, StandardCharsets.US_ASCII), 16));
+                    i += 4;
+                    break;
+                default: escaped.append((char) e); break; // \" \\ \/
+            }
+            i += 2;
+            run = i;
+        }
+        if (escaped == null) {
+            return new String(buffer, pos + 1, end - pos - 1, StandardCharsets.UTF_8);
+        }
+        return escaped.append(new String(buffer, run, end - run, StandardCharsets.UTF_8)).toString();
+    }
+
+    private boolean readBoolean(int pos) {
+        // Some issuers send "true" as a string.
+        int i = byteAt(pos) == '"' ? pos + 1 : pos;
+        return byteAt(i) == 't';
+    }
+
+    /** NumericDate: seconds, possibly with a fraction that is dropped. */
+    private long readSeconds(int pos) {
+        long value = 0;
+        int i = pos;
+        while (i < length && buffer[i] >= '0' && buffer[i] <= '9') {
+            value = value * 10 + (buffer[i] - '0');
+            i++;
+        }
+        return i > pos ? value : 0;
+    }
+
+    private int skipWhitespace(int pos) {
+        while (pos < length && isWhitespace(buffer[pos])) {
+            pos++;
+        }
+        return pos;
+    }
+
+    private byte byteAt(int pos) {
+        check(pos < length, "truncated payload");
+        return buffer[pos];
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+    }
+
+    /** 64-bit FNV-1a; wide enough that two live tokens colliding is not a practical concern. */
+    private static long hash(String token) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < token.length(); i++) {
+            h ^= token.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalStateException(message);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.sandbox_firebase;
+
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Count, mean and max of a latency, cheap enough to update from any thread.
+ */
+public final class LatencyStats {
+
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    public void record(long nanos) {
+        count.incrementAndGet();
+        totalNanos.addAndGet(nanos);
+        maxNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getMeanNanos() {
+        long n = count.get();
+        return n == 0 ? 0 : totalNanos.get() / n;
+    }
+
+    public long getMaxNanos() {
+        return maxNanos.get();
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "count=" + getCount()
+                + " meanMs=" + getMeanNanos() / 1_000_000.0
+                + " maxMs=" + getMaxNanos() / 1_000_000.0;
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.sandbox_firebase;
+
+import android.app.Activity;
+import android.content.Intent;
+import android.os.Bundle;
+
+import com.google.firebase.auth.GoogleAuthProvider;
+
+/**
+ * Single launcher entry point. Draws nothing: it reads the auth state the application loaded
+ * from {@link UserSnapshotStore} and forwards to {@link MainActivity} or to the login screen the
+ * user last signed in with, so no layout is inflated only to be thrown away.
+ */
+public class LaunchActivity extends Activity {
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+
+        SandboxApplication app = SandboxApplication.from(this);
+        AuthSnapshot persisted = app.getPersistedSnapshot();
+        String lastProvider = app.getLastProviderId();
+
+        Class<? extends Activity> destination;
+        if (persisted.isSignedIn()) {
+            app.getStartupTimer().setPath(StartupTimer.Path.SIGNED_IN);
+            destination = MainActivity.class;
+        } else {
+            app.getStartupTimer().setPath(StartupTimer.Path.SIGNED_OUT);
+            destination = GoogleAuthProvider.PROVIDER_ID.equals(lastProvider)
+                    ? GoogleLoginActivity.class
+                    : LoginActivity.class;
+        }
+
+        // Races the destination's onCreate, which uses it only if it has finished by then
+        app.getLayoutPrewarmer().prewarm(LayoutPrewarmer.nextLayout(0, persisted.isSignedIn(), lastProvider));
+        startActivity(new Intent(this, destination));
+        finish(); // Theme.NoDisplay requires finishing before onResume
+    }
+}
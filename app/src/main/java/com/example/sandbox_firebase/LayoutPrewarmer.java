@@ -0,0 +1,278 @@
+package com.example.sandbox_firebase;
+
+import android.app.Activity;
+import android.content.Context;
+import android.content.MutableContextWrapper;
+import android.content.pm.ActivityInfo;
+import android.content.res.Configuration;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+import android.util.AttributeSet;
+import android.util.Log;
+import android.util.SparseArray;
+import android.view.ContextThemeWrapper;
+import android.view.LayoutInflater;
+import android.view.View;
+
+import androidx.annotation.LayoutRes;
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.StyleRes;
+import androidx.appcompat.widget.AppCompatEditText;
+import androidx.appcompat.widget.AppCompatImageView;
+
+import com.google.android.material.button.MaterialButton;
+import com.google.android.material.textview.MaterialTextView;
+import com.google.firebase.auth.GoogleAuthProvider;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Inflates the layout of the screen the user most likely sees next on a background thread, so
+ * that screen's {@code onCreate} only has to attach it.
+ *
+ * <p>Views are inflated against a {@link MutableContextWrapper} over the application context
+ * with the app theme, and re-parented onto the activity in {@link #obtain}. The framework tags
+ * these layouts use are swapped for the same Material and AppCompat widgets the activity's
+ * inflater would create, by calling their constructors directly: AppCompat's own view inflater
+ * keeps an unsynchronized static constructor cache that the main thread uses at the same time.
+ * A view inflated under a different configuration (rotation, night mode, font scale...) is
+ * stale and is discarded.
+ */
+public final class LayoutPrewarmer {
+
+    private static final String TAG = "LayoutPrewarmer";
+
+    /**
+     * Changes that alter inflated resources. Window bounds are left out: the application's
+     * configuration never matches an activity's on those.
+     */
+    private static final int RESOURCE_CHANGES = ActivityInfo.CONFIG_ORIENTATION
+            | ActivityInfo.CONFIG_UI_MODE
+            | ActivityInfo.CONFIG_DENSITY
+            | ActivityInfo.CONFIG_FONT_SCALE
+            | ActivityInfo.CONFIG_LOCALE
+            | ActivityInfo.CONFIG_LAYOUT_DIRECTION
+            | ActivityInfo.CONFIG_SCREEN_LAYOUT;
+
+    private final Context appContext;
+    @StyleRes
+    private final int theme;
+    private final Handler handler;
+
+    private final SparseArray<Entry> entries = new SparseArray<>();
+
+    private final LatencyStats backgroundInflate = new LatencyStats();
+    private final LatencyStats mainThreadInflate = new LatencyStats();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong stale = new AtomicLong();
+
+    LayoutPrewarmer(@NonNull Context context, @StyleRes int theme) {
+        this.appContext = context.getApplicationContext();
+        this.theme = theme;
+        HandlerThread thread = new HandlerThread("layout-prewarm", Process.THREAD_PRIORITY_BACKGROUND);
+        thread.start();
+        this.handler = new Handler(thread.getLooper());
+    }
+
+    /**
+     * The screen {@code current} navigates to, or 0 if it never navigates. Before any screen is
+     * shown ({@code current} 0) the persisted auth state decides, as in {@link LaunchActivity}.
+     * After that only auth changes move between screens: {@link LoginActivity} forwards to
+     * {@link MainActivity} once signed in, and {@link MainActivity} goes back to
+     * {@link LoginActivity} once signed out. {@link GoogleLoginActivity} stays put either way.
+     */
+    @LayoutRes
+    static int nextLayout(@LayoutRes int current, boolean signedIn, @Nullable String providerId) {
+        if (current == 0) {
+            if (signedIn) {
+                return R.layout.activity_main;
+            }
+            return GoogleAuthProvider.PROVIDER_ID.equals(providerId)
+                    ? R.layout.activity_google_login
+                    : R.layout.activity_login;
+        }
+        if (current == R.layout.activity_login) {
+            return R.layout.activity_main;
+        }
+        if (current == R.layout.activity_main) {
+            return R.layout.activity_login;
+        }
+        return 0;
+    }
+
+    /** Starts inflating {@code layout} now, unless a fresh copy is ready or on its way. */
+    @MainThread
+    public void prewarm(@LayoutRes int layout) {
+        Configuration configuration = new Configuration(appContext.getResources().getConfiguration());
+        Entry entry;
+        synchronized (entries) {
+            Entry existing = entries.get(layout);
+            if (existing != null && !isStale(existing, configuration)) {
+                return;
+            }
+            entry = new Entry(configuration);
+            entries.put(layout, entry);
+        }
+        handler.post(() -> inflate(layout, entry));
+    }
+
+    /**
+     * {@link #prewarm}s the screen {@code current} leads to from {@code user}'s state once the
+     * main thread has nothing else to do. Does nothing if {@code current} can't navigate.
+     */
+    @MainThread
+    public void prewarmNextWhenIdle(@LayoutRes int current, @Nullable AuthSnapshot user) {
+        AuthSnapshot state = user != null ? user : AuthSnapshot.signedOut();
+        int next = nextLayout(current, state.isSignedIn(), state.getProviderId());
+        if (next == 0) {
+            return;
+        }
+        Looper.myQueue().addIdleHandler(() -> {
+            prewarm(next);
+            return false;
+        });
+    }
+
+    /**
+     * Returns {@code layout} for {@code activity}'s content view: the pre-inflated copy if a
+     * fresh one is ready, otherwise inflated here. Never waits for an inflation still under way.
+     */
+    @MainThread
+    @NonNull
+    public View obtain(@NonNull Activity activity, @LayoutRes int layout) {
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(layout);
+            entries.remove(layout);
+        }
+        if (entry != null) {
+            View view = entry.poll();
+            if (view == null) {
+                misses.incrementAndGet();
+            } else if (isStale(entry, activity.getResources().getConfiguration())) {
+                stale.incrementAndGet();
+                misses.incrementAndGet();
+            } else {
+                ((MutableContextWrapper) view.getContext()).setBaseContext(activity);
+                hits.incrementAndGet();
+                return view;
+            }
+        } else {
+            misses.incrementAndGet();
+        }
+        long start = System.nanoTime();
+        View view = activity.getLayoutInflater().inflate(layout, null, false);
+        mainThreadInflate.record(System.nanoTime() - start);
+        return view;
+    }
+
+    /** Drops everything pre-inflated, e.g. under memory pressure. */
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    @NonNull
+    public LatencyStats getBackgroundInflateLatency() {
+        return backgroundInflate;
+    }
+
+    /** Inflation time on the main thread, paid on every miss. */
+    @NonNull
+    public LatencyStats getMainThreadInflateLatency() {
+        return mainThreadInflate;
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /** Misses where a copy was ready but inflated under another configuration. */
+    public long getStaleCount() {
+        return stale.get();
+    }
+
+    private static boolean isStale(Entry entry, Configuration current) {
+        return (entry.configuration.diff(current) & RESOURCE_CHANGES) != 0;
+    }
+
+    private void inflate(int layout, Entry entry) {
+        long start = System.nanoTime();
+        View view = null;
+        try {
+            MutableContextWrapper context =
+                    new MutableContextWrapper(new ContextThemeWrapper(appContext, theme));
+            LayoutInflater inflater = LayoutInflater.from(context).cloneInContext(context);
+            inflater.setFactory2(new MaterialWidgets());
+            view = inflater.inflate(layout, null, false);
+            backgroundInflate.record(System.nanoTime() - start);
+        } catch (RuntimeException e) {
+            // Some view insisted on the main thread; the screen will inflate it there
+            Log.w(TAG, "Background inflation failed", e);
+        }
+        entry.complete(view);
+    }
+
+    private static final class Entry {
+        final Configuration configuration;
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile View view;
+
+        Entry(Configuration configuration) {
+            this.configuration = configuration;
+        }
+
+        void complete(@Nullable View view) {
+            this.view = view;
+            done.countDown();
+        }
+
+        /** The inflated view, or null if it failed or hasn't finished yet. */
+        @Nullable
+        View poll() {
+            return done.getCount() == 0 ? view : null;
+        }
+    }
+
+    /**
+     * What the app theme's {@code MaterialComponentsViewInflater} turns the framework tags in
+     * these layouts into. Anything else falls through to the framework inflater.
+     */
+    private static final class MaterialWidgets implements LayoutInflater.Factory2 {
+
+        @Nullable
+        @Override
+        public View onCreateView(@Nullable View parent, @NonNull String name,
+                                 @NonNull Context context, @NonNull AttributeSet attrs) {
+            switch (name) {
+                case "Button":
+                    return new MaterialButton(context, attrs);
+                case "TextView":
+                    return new MaterialTextView(context, attrs);
+                case "EditText":
+                    return new AppCompatEditText(context, attrs);
+                case "ImageView":
+                    return new AppCompatImageView(context, attrs);
+                default:
+                    return null;
+            }
+        }
+
+        @Nullable
+        @Override
+        public View onCreateView(@NonNull String name, @NonNull Context context, @NonNull AttributeSet attrs) {
+            return onCreateView(null, name, context, attrs);
+        }
+    }
+}
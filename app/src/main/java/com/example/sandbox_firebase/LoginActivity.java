@@ -2,7 +2,9 @@ package com.example.sandbox_firebase; // Make sure this is your correct package
 
 import android.content.Intent;
 import android.os.Bundle;
-import android.text.TextUtils;
+import android.os.CountDownTimer;
+import android.text.Editable;
+import android.text.TextWatcher;
 import android.util.Log;
 import android.view.View;
 import android.widget.Toast;
@@ -17,23 +19,40 @@ import androidx.core.view.WindowInsetsCompat;
 import com.example.sandbox_firebase.databinding.ActivityLoginBinding; // Your binding class
 import com.google.android.gms.tasks.OnCompleteListener;
 import com.google.android.gms.tasks.Task;
+import com.google.firebase.FirebaseNetworkException;
 import com.google.firebase.auth.AuthResult;
 import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.auth.FirebaseAuthException;
 import com.google.firebase.auth.FirebaseAuthMultiFactorException;
 import com.google.firebase.auth.FirebaseUser;
 
 public class LoginActivity extends AppCompatActivity {
 
     private static final String TAG = "EmailPassword";
+    private static final long VALIDATE_AFTER_TYPING_MILLIS = 300;
+    private static final AuthTracer.Flow[] EMAIL_FLOWS =
+            {AuthTracer.Flow.EMAIL_SIGN_IN, AuthTracer.Flow.EMAIL_CREATE_ACCOUNT};
 
     private ActivityLoginBinding mBinding;
     private FirebaseAuth mAuth;
+    private AuthStateRepository authState;
+    private AuthOperationCoordinator authOperations;
+    private AuthTracer tracer;
+    private LoginFormValidator validator;
+    private Debouncer typingDebouncer;
+    private AuthCallGate callGate;
+    private CallbackDispatcher callbacks;
+    private ConnectionPrewarmer connections;
+    private EventLog events;
+    private MainThreadMonitor mainThread;
+    private CountDownTimer cooldownTimer;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
 
-        mBinding = ActivityLoginBinding.inflate(getLayoutInflater());
+        mBinding = ActivityLoginBinding.bind(
+                SandboxApplication.from(this).getLayoutPrewarmer().obtain(this, R.layout.activity_login));
         setContentView(mBinding.getRoot());
 
         EdgeToEdge.enable(this); // Optional: if you want edge-to-edge display
@@ -46,8 +65,36 @@ public class LoginActivity extends AppCompatActivity {
             return insets;
         });
 
-        // Initialize Firebase Auth
-        mAuth = FirebaseAuth.getInstance();
+        // Initialize Firebase Auth: whichever account session is active
+        mAuth = SandboxApplication.from(this).getAccountSessions().getActiveAuth();
+        authState = SandboxApplication.from(this).getAuthStateRepository();
+        authOperations = SandboxApplication.from(this).getAuthOperations();
+        tracer = SandboxApplication.from(this).getAuthTracer();
+        validator = SandboxApplication.from(this).getLoginFormValidator();
+        callGate = SandboxApplication.from(this).getAuthCallGate();
+        callbacks = SandboxApplication.from(this).getCallbackDispatcher();
+        connections = SandboxApplication.from(this).getConnectionPrewarmer();
+        events = SandboxApplication.from(this).getEventLog();
+        mainThread = SandboxApplication.from(this).getMainThreadMonitor();
+        typingDebouncer = new Debouncer(new MainThreadScheduler(), VALIDATE_AFTER_TYPING_MILLIS);
+
+        // Flags a malformed email or weak password once the user pauses typing
+        TextWatcher validateWhileTyping = new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+            }
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+            }
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                typingDebouncer.submit(LoginActivity.this::validateAsTyped);
+            }
+        };
+        mBinding.fieldEmail.addTextChangedListener(validateWhileTyping);
+        mBinding.fieldPassword.addTextChangedListener(validateWhileTyping);
 
         // Buttons Click Listeners
         mBinding.emailSignInButton.setOnClickListener(new View.OnClickListener() {
@@ -91,38 +138,44 @@ public class LoginActivity extends AppCompatActivity {
 
         // Set initial UI state (e.g., hide progress bar)
         mBinding.progressBar.setVisibility(View.GONE);
-        updateUI(mAuth.getCurrentUser()); // Update UI based on current sign-in state
+        // Rebinds only when the auth snapshot actually changes
+        authState.getUser().observe(this, this::updateUI);
     }
 
     @Override
-    public void onStart() {
-        super.onStart();
-        // Check if user is signed in (non-null) and update UI accordingly.
-        FirebaseUser currentUser = mAuth.getCurrentUser();
-        updateUI(currentUser);
+    protected void onResume() {
+        super.onResume();
+        SandboxApplication.from(this).getLayoutPrewarmer()
+                .prewarmNextWhenIdle(R.layout.activity_login, authState.getUser().getValue());
     }
 
     private void createAccount(String email, String password) {
-        Log.d(TAG, "createAccount:" + email);
-        if (!validateForm()) {
+        events.record(EventLog.Type.CREATE_ACCOUNT_STARTED, events.hash(email));
+        if (!validateForm(email, password, LoginFormValidator.Purpose.CREATE_ACCOUNT)) {
             return;
         }
 
         mBinding.progressBar.setVisibility(View.VISIBLE);
-
-        mAuth.createUserWithEmailAndPassword(email, password)
-                .addOnCompleteListener(this, new OnCompleteListener<AuthResult>() {
+        tracer.begin(AuthTracer.Flow.EMAIL_CREATE_ACCOUNT);
+
+        // A double tap joins the pending request instead of sending a second one
+        Task<AuthResult> result = authOperations.run(AuthOperationCoordinator.key("createAccount", email, password),
+                () -> callGate.run(AuthCallGate.CREATE_ACCOUNT, email,
+                        () -> timed(mAuth.createUserWithEmailAndPassword(email, password))));
+        callbacks.onComplete(this, result,
+                new OnCompleteListener<AuthResult>() {
                     @Override
                     public void onComplete(@NonNull Task<AuthResult> task) {
+                        mainThread.mark(MainThreadMonitor.Screen.LOGIN, MainThreadMonitor.Section.CREATE_ACCOUNT_RESULT);
+                        tracer.mark(AuthTracer.Flow.EMAIL_CREATE_ACCOUNT, AuthTracer.Stage.FIREBASE_AUTH);
                         if (task.isSuccessful()) {
-                            Log.d(TAG, "createUserWithEmail:success");
-                            FirebaseUser user = mAuth.getCurrentUser();
-                            updateUI(user);
+                            // AuthStateRepository delivers the signed-in user to updateUI
+                            events.record(EventLog.Type.CREATE_ACCOUNT_FINISHED, AuthTracer.Outcome.SUCCESS.ordinal());
                         } else {
+                            tracer.end(AuthTracer.Flow.EMAIL_CREATE_ACCOUNT, AuthTracer.Outcome.FAILURE);
+                            events.record(EventLog.Type.CREATE_ACCOUNT_FINISHED, AuthTracer.Outcome.FAILURE.ordinal());
                             Log.w(TAG, "createUserWithEmail:failure", task.getException());
-                            Toast.makeText(LoginActivity.this, "Authentication failed.",
-                                    Toast.LENGTH_SHORT).show();
-                            updateUI(null);
+                            showFailure(task.getException(), "Authentication failed.");
                         }
                         mBinding.progressBar.setVisibility(View.GONE);
                     }
@@ -130,26 +183,31 @@ public class LoginActivity extends AppCompatActivity {
     }
 
     private void signIn(String email, String password) {
-        Log.d(TAG, "signIn:" + email);
-        if (!validateForm()) {
+        events.record(EventLog.Type.EMAIL_SIGN_IN_STARTED, events.hash(email));
+        if (!validateForm(email, password, LoginFormValidator.Purpose.SIGN_IN)) {
             return;
         }
 
         mBinding.progressBar.setVisibility(View.VISIBLE);
+        tracer.begin(AuthTracer.Flow.EMAIL_SIGN_IN);
 
-        mAuth.signInWithEmailAndPassword(email, password)
-                .addOnCompleteListener(this, new OnCompleteListener<AuthResult>() {
+        Task<AuthResult> result = authOperations.run(AuthOperationCoordinator.key("signIn", email, password),
+                () -> callGate.run(AuthCallGate.SIGN_IN, email,
+                        () -> timed(mAuth.signInWithEmailAndPassword(email, password))));
+        callbacks.onComplete(this, result,
+                new OnCompleteListener<AuthResult>() {
                     @Override
                     public void onComplete(@NonNull Task<AuthResult> task) {
+                        mainThread.mark(MainThreadMonitor.Screen.LOGIN, MainThreadMonitor.Section.SIGN_IN_RESULT);
+                        tracer.mark(AuthTracer.Flow.EMAIL_SIGN_IN, AuthTracer.Stage.FIREBASE_AUTH);
                         if (task.isSuccessful()) {
-                            Log.d(TAG, "signInWithEmail:success");
-                            FirebaseUser user = mAuth.getCurrentUser();
-                            updateUI(user);
+                            // AuthStateRepository delivers the signed-in user to updateUI
+                            events.record(EventLog.Type.EMAIL_SIGN_IN_FINISHED, AuthTracer.Outcome.SUCCESS.ordinal());
                         } else {
+                            tracer.end(AuthTracer.Flow.EMAIL_SIGN_IN, AuthTracer.Outcome.FAILURE);
+                            events.record(EventLog.Type.EMAIL_SIGN_IN_FINISHED, AuthTracer.Outcome.FAILURE.ordinal());
                             Log.w(TAG, "signInWithEmail:failure", task.getException());
-                            Toast.makeText(LoginActivity.this, "Authentication failed.",
-                                    Toast.LENGTH_SHORT).show();
-                            updateUI(null);
+                            showFailure(task.getException(), "Authentication failed.");
                             // checkForMultiFactorFailure(task.getException()); // Commented out: MFA specific
                         }
 
@@ -164,8 +222,14 @@ public class LoginActivity extends AppCompatActivity {
     }
 
     private void signOut() {
-        mAuth.signOut();
-        updateUI(null);
+        // AuthStateRepository emits the signed-out state before this returns
+        callbacks.onComplete(this, SandboxApplication.from(this).getSessionTeardown().signOut(), task -> {
+            mainThread.mark(MainThreadMonitor.Screen.LOGIN, MainThreadMonitor.Section.SIGN_OUT_RESULT);
+            if (task.isSuccessful() && !task.getResult().isClean()) {
+                Toast.makeText(LoginActivity.this, R.string.sign_out_incomplete,
+                        Toast.LENGTH_SHORT).show();
+            }
+        });
     }
 
     private void sendEmailVerification() {
@@ -177,15 +241,22 @@ public class LoginActivity extends AppCompatActivity {
             return;
         }
 
-        user.sendEmailVerification()
-                .addOnCompleteListener(this, new OnCompleteListener<Void>() {
+        callbacks.onComplete(this, user.sendEmailVerification(),
+                new OnCompleteListener<Void>() {
                     @Override
                     public void onComplete(@NonNull Task<Void> task) {
+                        mainThread.mark(MainThreadMonitor.Screen.LOGIN, MainThreadMonitor.Section.VERIFY_EMAIL_RESULT);
                         mBinding.verifyEmailButton.setEnabled(true);
+                        events.record(EventLog.Type.VERIFICATION_EMAIL_FINISHED, outcome(task));
                         if (task.isSuccessful()) {
+                            // Picks up the click on the link without further reload taps
+                            SandboxApplication.from(LoginActivity.this).getVerificationWatcher()
+                                    .start(user.getUid());
                             Toast.makeText(LoginActivity.this,
                                     "Verification email sent to " + user.getEmail(),
                                     Toast.LENGTH_SHORT).show();
+                        } else if (task.getException() instanceof FirebaseNetworkException) {
+                            deferWhileOffline(AuthOpQueue.Type.VERIFY_EMAIL, user);
                         } else {
                             Log.e(TAG, "sendEmailVerification", task.getException());
                             Toast.makeText(LoginActivity.this,
@@ -203,19 +274,23 @@ public class LoginActivity extends AppCompatActivity {
             return; // Not signed in, nothing to reload
         }
         mBinding.progressBar.setVisibility(View.VISIBLE);
-        currentUser.reload().addOnCompleteListener(new OnCompleteListener<Void>() {
+        // Coalesced with any pending reload and cached briefly, so repeated taps stay local
+        callbacks.onComplete(this, authOperations.reload(currentUser), new OnCompleteListener<Void>() {
             @Override
             public void onComplete(@NonNull Task<Void> task) {
+                mainThread.mark(MainThreadMonitor.Screen.LOGIN, MainThreadMonitor.Section.RELOAD_RESULT);
+                events.record(EventLog.Type.RELOAD_FINISHED, outcome(task));
                 if (task.isSuccessful()) {
-                    updateUI(mAuth.getCurrentUser()); // Re-fetch user in case state changed (e.g., email verified)
+                    authState.refresh(); // Re-snapshot the user in case state changed (e.g., email verified)
                     Toast.makeText(LoginActivity.this,
                             "Reload successful!",
                             Toast.LENGTH_SHORT).show();
+                } else if (task.getException() instanceof FirebaseNetworkException) {
+                    deferWhileOffline(AuthOpQueue.Type.RELOAD, currentUser);
                 } else {
                     Log.e(TAG, "reload", task.getException());
-                    Toast.makeText(LoginActivity.this,
-                            "Failed to reload user. " + task.getException().getMessage(),
-                            Toast.LENGTH_LONG).show();
+                    showFailure(task.getException(),
+                            "Failed to reload user. " + task.getException().getMessage());
                     // If reload fails (e.g. user deleted, token expired), sign them out locally
                     if (task.getException() instanceof com.google.firebase.auth.FirebaseAuthInvalidUserException) {
                         signOut();
@@ -226,50 +301,118 @@ public class LoginActivity extends AppCompatActivity {
         });
     }
 
-    private boolean validateForm() {
-        boolean valid = true;
+    /** Files the call's latency as cold or warm, depending on whether a warm-up preceded it. */
+    private Task<AuthResult> timed(Task<AuthResult> call) {
+        ConnectionPrewarmer.Call timing = connections.beginCall();
+        return call.addOnCompleteListener(task -> timing.end(
+                task.isSuccessful() || task.getException() instanceof FirebaseAuthException));
+    }
+
+    /** Queues {@code type} to run on its own once the device is back online. */
+    private void deferWhileOffline(AuthOpQueue.Type type, FirebaseUser user) {
+        SandboxApplication.from(this).deferAuthOp(type, user.getUid());
+        Toast.makeText(this, R.string.auth_op_deferred, Toast.LENGTH_LONG).show();
+    }
 
-        String email = mBinding.fieldEmail.getText().toString();
-        if (TextUtils.isEmpty(email)) {
-            mBinding.fieldEmail.setError("Required.");
-            valid = false;
+    /** Toasts {@code message}, or starts the cooldown if the call gate refused the call. */
+    private void showFailure(Exception e, String message) {
+        if (e instanceof AuthCallGate.RejectedException) {
+            long retryAfterMillis = ((AuthCallGate.RejectedException) e).retryAfterMillis;
+            events.record(EventLog.Type.CALL_REJECTED, retryAfterMillis);
+            showCooldown(retryAfterMillis);
         } else {
-            mBinding.fieldEmail.setError(null);
+            Toast.makeText(this, message, Toast.LENGTH_LONG).show();
         }
+    }
 
-        String password = mBinding.fieldPassword.getText().toString();
-        if (TextUtils.isEmpty(password)) {
-            mBinding.fieldPassword.setError("Required.");
-            valid = false;
-        } else {
-            mBinding.fieldPassword.setError(null);
+    private static int outcome(Task<?> task) {
+        return (task.isSuccessful() ? AuthTracer.Outcome.SUCCESS : AuthTracer.Outcome.FAILURE).ordinal();
+    }
+
+    /** Disables the network buttons and counts down until the gate will admit calls again. */
+    private void showCooldown(long millis) {
+        if (cooldownTimer != null) {
+            cooldownTimer.cancel();
         }
+        setNetworkButtonsEnabled(false);
+        cooldownTimer = new CountDownTimer(millis, 1_000) {
+            @Override
+            public void onTick(long remainingMillis) {
+                mBinding.detail.setText(getString(R.string.auth_cooldown_fmt,
+                        (int) Math.ceil(remainingMillis / 1000.0)));
+            }
 
-        return valid;
+            @Override
+            public void onFinish() {
+                cooldownTimer = null;
+                mBinding.detail.setText(null);
+                setNetworkButtonsEnabled(true);
+            }
+        }.start();
     }
 
-    private void updateUI(FirebaseUser user) {
+    private void setNetworkButtonsEnabled(boolean enabled) {
+        mBinding.emailSignInButton.setEnabled(enabled);
+        mBinding.emailCreateAccountButton.setEnabled(enabled);
+        mBinding.reloadButton.setEnabled(enabled);
+    }
+
+    private boolean validateForm(String email, String password, LoginFormValidator.Purpose purpose) {
+        typingDebouncer.cancel();
+        LoginFormValidator.Result result = validator.validateSubmission(email, password, purpose);
+        mBinding.fieldEmail.setError(result.emailError);
+        mBinding.fieldPassword.setError(result.passwordError);
+        return result.isValid();
+    }
+
+    private void validateAsTyped() {
+        if (mBinding == null) return;
+        CharSequence email = mBinding.fieldEmail.getText();
+        CharSequence password = mBinding.fieldPassword.getText();
+        // Typing can't tell sign-in from sign-up, so hint at the full policy; sign-in still
+        // only enforces what every account meets. Empty fields aren't flagged until submit.
+        LoginFormValidator.Result result =
+                validator.validate(email, password, LoginFormValidator.Purpose.CREATE_ACCOUNT);
+        mBinding.fieldEmail.setError(email.length() == 0 ? null : result.emailError);
+        mBinding.fieldPassword.setError(password.length() == 0 ? null : result.passwordError);
+    }
+
+    private void updateUI(AuthSnapshot user) {
         if (mBinding == null) return; // Guard against calls if binding is null (e.g. during very early/late lifecycle)
+        // Covers the navigation to MainActivity too
+        mainThread.mark(MainThreadMonitor.Screen.LOGIN, MainThreadMonitor.Section.UPDATE_UI);
 
         mBinding.progressBar.setVisibility(View.GONE);
-        if (user != null) {
+        AuthUiState state = AuthUiState.from(user);
+        if (state.isSignedIn()) {
             // Navigate to MainActivity
             Intent intent = new Intent(LoginActivity.this, MainActivity.class);
             startActivity(intent);
             finish(); // Finish LoginActivity so the user can't navigate back to it
+            // No-ops unless this state change came from a flow started on this screen
+            for (AuthTracer.Flow flow : EMAIL_FLOWS) {
+                tracer.mark(flow, AuthTracer.Stage.UI_UPDATE);
+                tracer.end(flow, AuthTracer.Outcome.SUCCESS);
+            }
         } else {
+            // Set up the connection to the auth backend while the user types
+            connections.warm();
             mBinding.status.setText(R.string.signed_out); // Ensure R.string.signed_out exists
             mBinding.detail.setText(null);
 
-            mBinding.emailPasswordButtons.setVisibility(View.VISIBLE);
-            mBinding.emailPasswordFields.setVisibility(View.VISIBLE);
-            mBinding.signedInButtons.setVisibility(View.GONE);
+            mBinding.emailPasswordButtons.setVisibility(state.isSignInVisible() ? View.VISIBLE : View.GONE);
+            mBinding.emailPasswordFields.setVisibility(state.isSignInVisible() ? View.VISIBLE : View.GONE);
+            mBinding.signedInButtons.setVisibility(state.isSignOutVisible() ? View.VISIBLE : View.GONE);
         }
     }
 
     @Override
     protected void onDestroy() {
         super.onDestroy();
+        typingDebouncer.cancel();
+        if (cooldownTimer != null) {
+            cooldownTimer.cancel();
+        }
         mBinding = null; // Good practice to nullify binding in Activity's onDestroy
     }
 }
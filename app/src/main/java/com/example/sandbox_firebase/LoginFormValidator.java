@@ -0,0 +1,109 @@
+package com.example.sandbox_firebase;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The email/password form check from {@link LoginActivity}, kept free of views so it can be
+ * unit tested and benchmarked. Checks email syntax and the project's {@link PasswordPolicy}
+ * so that requests the backend would refuse never leave the device. Every outcome is built
+ * up front, so validating on each keystroke allocates nothing.
+ */
+public final class LoginFormValidator {
+
+    public static final String REQUIRED = "Required.";
+    public static final String INVALID_EMAIL = "Enter a valid email address.";
+
+    public enum Purpose {
+        /**
+         * Only the checks no existing account can fail: accounts created under an older,
+         * weaker policy must still be able to sign in.
+         */
+        SIGN_IN,
+        /** The full password policy. */
+        CREATE_ACCOUNT
+    }
+
+    /** Field errors to show; {@code null} clears the error on that field. */
+    public static final class Result {
+        @Nullable
+        public final String emailError;
+        @Nullable
+        public final String passwordError;
+
+        private Result(@Nullable String emailError, @Nullable String passwordError) {
+            this.emailError = emailError;
+            this.passwordError = passwordError;
+        }
+
+        public boolean isValid() {
+            return emailError == null && passwordError == null;
+        }
+    }
+
+    private static final int POLICY_FLAGS = 6;
+    private static final String[] EMAIL_ERRORS = {null, REQUIRED, INVALID_EMAIL};
+
+    private final PasswordPolicy policy;
+    private final PasswordPolicy signInPolicy = PasswordPolicy.firebaseDefault();
+    /** [email state][password state]: password state 0 is fine, 1 required, 2+ a policy flag. */
+    private final Result[][] results = new Result[EMAIL_ERRORS.length][2 + POLICY_FLAGS];
+    private final AtomicLong avoidedRoundTrips = new AtomicLong();
+
+    public LoginFormValidator(@NonNull PasswordPolicy policy) {
+        this.policy = policy;
+        String[] passwordErrors = new String[2 + POLICY_FLAGS];
+        passwordErrors[1] = REQUIRED;
+        passwordErrors[2] = "Use at least " + policy.getMinLength() + " characters.";
+        passwordErrors[3] = "Use at most " + policy.getMaxLength() + " characters.";
+        passwordErrors[4] = "Add an uppercase letter.";
+        passwordErrors[5] = "Add a lowercase letter.";
+        passwordErrors[6] = "Add a number.";
+        passwordErrors[7] = "Add a symbol such as ! or #.";
+        for (int e = 0; e < EMAIL_ERRORS.length; e++) {
+            for (int p = 0; p < passwordErrors.length; p++) {
+                results[e][p] = new Result(EMAIL_ERRORS[e], passwordErrors[p]);
+            }
+        }
+    }
+
+    @NonNull
+    public Result validate(@Nullable CharSequence email, @Nullable CharSequence password,
+                           @NonNull Purpose purpose) {
+        int emailState;
+        if (email == null || email.length() == 0) {
+            emailState = 1;
+        } else {
+            emailState = EmailSyntax.isValid(email) ? 0 : 2;
+        }
+        int passwordState;
+        if (password == null || password.length() == 0) {
+            passwordState = 1;
+        } else {
+            int failed = (purpose == Purpose.CREATE_ACCOUNT ? policy : signInPolicy).evaluate(password);
+            // One message at a time, in flag order: length first, then character classes
+            passwordState = failed == 0 ? 0 : 2 + Integer.numberOfTrailingZeros(failed);
+        }
+        return results[emailState][passwordState];
+    }
+
+    /**
+     * {@link #validate} for a submit tap. Filled-in forms that fail here would have failed on
+     * the server, so each one is counted as a round-trip avoided.
+     */
+    @NonNull
+    public Result validateSubmission(@Nullable CharSequence email, @Nullable CharSequence password,
+                                     @NonNull Purpose purpose) {
+        Result result = validate(email, password, purpose);
+        if (!result.isValid() && result.emailError != REQUIRED && result.passwordError != REQUIRED) {
+            avoidedRoundTrips.incrementAndGet();
+        }
+        return result;
+    }
+
+    public long getAvoidedRoundTrips() {
+        return avoidedRoundTrips.get();
+    }
+}
@@ -11,35 +11,45 @@ import androidx.core.graphics.Insets;
 import androidx.core.view.ViewCompat;
 import androidx.core.view.WindowInsetsCompat;
 
-import com.google.firebase.auth.FirebaseAuth;
-
 public class MainActivity extends AppCompatActivity {
 
     private Button signOutButton;
-    private FirebaseAuth mAuth;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         EdgeToEdge.enable(this);
-        setContentView(R.layout.activity_main);
+        setContentView(SandboxApplication.from(this).getLayoutPrewarmer().obtain(this, R.layout.activity_main));
         ViewCompat.setOnApplyWindowInsetsListener(findViewById(R.id.main), (v, insets) -> {
             Insets systemBars = insets.getInsets(WindowInsetsCompat.Type.systemBars());
             v.setPadding(systemBars.left, systemBars.top, systemBars.right, systemBars.bottom);
             return insets;
         });
 
-        mAuth = FirebaseAuth.getInstance();
-
         signOutButton = findViewById(R.id.signOutButton);
         signOutButton.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View v) {
-                mAuth.signOut();
-                Intent intent = new Intent(MainActivity.this, LoginActivity.class);
-                startActivity(intent);
+                // Publishes signed-out synchronously, so the observer below navigates back to
+                // LoginActivity at once; SandboxApplication logs anything that fails after that.
+                SandboxApplication.from(MainActivity.this).getSessionTeardown().signOut();
+            }
+        });
+
+        // LaunchActivity routes here from persisted state, so this also catches a stale session.
+        SandboxApplication.from(this).getAuthStateRepository().getUser().observe(this, user -> {
+            if (!user.isSignedIn()) {
+                startActivity(new Intent(this, LoginActivity.class));
                 finish();
             }
         });
     }
-}
\ No newline at end of file
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        SandboxApplication app = SandboxApplication.from(this);
+        app.getLayoutPrewarmer().prewarmNextWhenIdle(R.layout.activity_main,
+                app.getAuthStateRepository().getUser().getValue());
+    }
+}
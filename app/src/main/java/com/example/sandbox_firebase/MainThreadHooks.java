@@ -0,0 +1,117 @@
+package com.example.sandbox_firebase;
+
+import android.app.Activity;
+import android.app.Application;
+import android.content.pm.ApplicationInfo;
+import android.hardware.display.DisplayManager;
+import android.os.Bundle;
+import android.os.Looper;
+import android.view.Choreographer;
+import android.view.Display;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Connects a {@link MainThreadMonitor} to the main looper, the {@link Choreographer} and the
+ * activity lifecycle.
+ *
+ * <p>Lifecycle callbacks run from inside {@code super.onCreate()} and the like, so the mark they
+ * make covers the rest of the activity's own method: the inflation after
+ * {@code super.onCreate()}, the prewarm after {@code super.onResume()}.
+ *
+ * <p>Only debuggable builds are hooked up, which is also the only place the monitor is dumped.
+ * Once any message-logging printer is installed, {@code Looper.loop()} builds two strings for
+ * every main-thread message, several times what the monitor itself costs per message (see
+ * {@code MainThreadMonitorBenchmark.looperLines}). Release builds get a monitor that nothing
+ * feeds, so the marks in the screens stay cheap no-ops in effect.
+ */
+final class MainThreadHooks implements Application.ActivityLifecycleCallbacks,
+        MainThreadMonitor.FrameRequester, Choreographer.FrameCallback {
+
+    private MainThreadMonitor monitor;
+
+    private MainThreadHooks() {
+    }
+
+    /** Creates the monitor and, in debuggable builds, starts feeding it. Call on the main thread. */
+    @NonNull
+    static MainThreadMonitor install(@NonNull Application app) {
+        if ((app.getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) == 0) {
+            return new MainThreadMonitor(null, MainThreadMonitor.DEFAULT_FRAME_INTERVAL_NANOS);
+        }
+        MainThreadHooks hooks = new MainThreadHooks();
+        Display display = app.getSystemService(DisplayManager.class).getDisplay(Display.DEFAULT_DISPLAY);
+        float refreshRate = display != null ? display.getRefreshRate() : 60f;
+        hooks.monitor = new MainThreadMonitor(hooks, (long) (1_000_000_000L / refreshRate));
+        // Replaces any printer set before; nothing in this app sets one
+        Looper.getMainLooper().setMessageLogging(hooks.monitor::onLooperLine);
+        app.registerActivityLifecycleCallbacks(hooks);
+        return hooks.monitor;
+    }
+
+    @Nullable
+    static MainThreadMonitor.Screen screenOf(@NonNull Activity activity) {
+        if (activity instanceof LaunchActivity) {
+            return MainThreadMonitor.Screen.LAUNCH;
+        } else if (activity instanceof LoginActivity) {
+            return MainThreadMonitor.Screen.LOGIN;
+        } else if (activity instanceof GoogleLoginActivity) {
+            return MainThreadMonitor.Screen.GOOGLE_LOGIN;
+        } else if (activity instanceof MainActivity) {
+            return MainThreadMonitor.Screen.MAIN;
+        }
+        return null;
+    }
+
+    private void mark(Activity activity, MainThreadMonitor.Section section) {
+        MainThreadMonitor.Screen screen = screenOf(activity);
+        monitor.mark(screen != null ? screen : MainThreadMonitor.Screen.OTHER, section);
+    }
+
+    @Override
+    public void requestFrame() {
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        if (monitor.onFrame(frameTimeNanos)) {
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    }
+
+    @Override
+    public void onActivityCreated(@NonNull Activity activity, @Nullable Bundle savedInstanceState) {
+        mark(activity, MainThreadMonitor.Section.ON_CREATE);
+    }
+
+    @Override
+    public void onActivityStarted(@NonNull Activity activity) {
+        mark(activity, MainThreadMonitor.Section.ON_START);
+    }
+
+    @Override
+    public void onActivityResumed(@NonNull Activity activity) {
+        mark(activity, MainThreadMonitor.Section.ON_RESUME);
+    }
+
+    @Override
+    public void onActivityPaused(@NonNull Activity activity) {
+        mark(activity, MainThreadMonitor.Section.ON_PAUSE);
+    }
+
+    @Override
+    public void onActivityStopped(@NonNull Activity activity) {
+        mark(activity, MainThreadMonitor.Section.ON_STOP);
+    }
+
+    @Override
+    public void onActivitySaveInstanceState(@NonNull Activity activity, @NonNull Bundle outState) {
+    }
+
+    @Override
+    public void onActivityDestroyed(@NonNull Activity activity) {
+        mark(activity, MainThreadMonitor.Section.ON_DESTROY);
+    }
+}
@@ -0,0 +1,279 @@
+package com.example.sandbox_firebase;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+/**
+ * Finds out whether the auth screens drop frames, and which callback is to blame.
+ *
+ * <p>The main looper reports each message it dispatches through {@link #onLooperLine} (installed
+ * as its message-logging printer). Code on the main thread calls {@link #mark} as it enters
+ * something worth naming: a lifecycle method, an auth completion listener, {@code updateUI}.
+ * Time from a mark to the next mark, or to the end of the message, is charged to that
+ * {@link Section} of that {@link Screen}. A message over {@code slowMessageNanos} is counted
+ * against whichever section took the most of it.
+ *
+ * <p>Frames are watched only for {@link #FRAMES_AFTER_MARK} frames after a mark, through the
+ * {@link FrameRequester}. Keeping a frame callback posted permanently would wake the display
+ * pipeline every vsync even on a still screen. A frame arriving more than 1.5 intervals after
+ * the previous one (or after the mark that armed the watch) is janky. It is counted, along with
+ * the vsyncs it missed, against the longest section since the previous frame.
+ *
+ * <p>Everything is counted in preallocated arrays indexed by screen and section, so this
+ * class's per-message path doesn't allocate. The looper does, though: with a printer installed
+ * it builds the two strings it passes in for every message, which is why
+ * {@link MainThreadHooks} only installs one in debuggable builds. Counting happens on the main
+ * thread only; {@link #dump} and the getters may be called from any thread.
+ */
+public final class MainThreadMonitor {
+
+    static final long DEFAULT_SLOW_MESSAGE_NANOS = 16_000_000L;
+    static final long DEFAULT_FRAME_INTERVAL_NANOS = 16_666_667L;
+    static final int FRAMES_AFTER_MARK = 60;
+
+    public enum Screen {
+        LAUNCH,
+        LOGIN,
+        GOOGLE_LOGIN,
+        MAIN,
+        /** Before the first mark, or an activity outside the auth flow. */
+        OTHER
+    }
+
+    public enum Section {
+        ON_CREATE,
+        ON_START,
+        ON_RESUME,
+        ON_PAUSE,
+        ON_STOP,
+        ON_DESTROY,
+        UPDATE_UI,
+        SIGN_IN_RESULT,
+        CREATE_ACCOUNT_RESULT,
+        VERIFY_EMAIL_RESULT,
+        RELOAD_RESULT,
+        SIGN_OUT_RESULT,
+        CREDENTIAL_RESULT,
+        GOOGLE_SIGN_IN_RESULT,
+        /** Parts of a message before its first mark: framework work, layout, draw. */
+        UNATTRIBUTED
+    }
+
+    /** Asks for one frame callback, which should call {@link #onFrame}. */
+    public interface FrameRequester {
+        void requestFrame();
+    }
+
+    private static final Screen[] SCREENS = Screen.values();
+    private static final Section[] SECTIONS = Section.values();
+    private static final int CELLS = SCREENS.length * SECTIONS.length;
+
+    private final LongSupplier nanoTime;
+    private final long slowMessageNanos;
+    private final long frameIntervalNanos;
+    @Nullable
+    private final FrameRequester frames;
+
+    // Main thread only
+    private Screen screen = Screen.OTHER;
+    private boolean inMessage;
+    private long messageStart;
+    private int spanCell;
+    private long spanStart;
+    private int messageCulprit;
+    private long messageCulpritNanos;
+    private int frameCulprit = -1;
+    private long frameCulpritNanos;
+    private int framesLeft;
+    private long lastFrameNanos;
+
+    // Written on the main thread only, so a plain get-then-lazySet is a safe increment
+    private final AtomicLongArray messages = new AtomicLongArray(SCREENS.length);
+    private final AtomicLongArray watchedFrames = new AtomicLongArray(SCREENS.length);
+    private final AtomicLongArray slowMessages = new AtomicLongArray(CELLS);
+    private final AtomicLongArray slowNanos = new AtomicLongArray(CELLS);
+    private final AtomicLongArray worstNanos = new AtomicLongArray(CELLS);
+    private final AtomicLongArray jankyFrames = new AtomicLongArray(CELLS);
+    private final AtomicLongArray droppedFrames = new AtomicLongArray(CELLS);
+
+    public MainThreadMonitor(@Nullable FrameRequester frames, long frameIntervalNanos) {
+        this(System::nanoTime, frames, DEFAULT_SLOW_MESSAGE_NANOS, frameIntervalNanos);
+    }
+
+    MainThreadMonitor(@NonNull LongSupplier nanoTime, @Nullable FrameRequester frames,
+                      long slowMessageNanos, long frameIntervalNanos) {
+        this.nanoTime = nanoTime;
+        this.frames = frames;
+        this.slowMessageNanos = slowMessageNanos;
+        this.frameIntervalNanos = frameIntervalNanos;
+    }
+
+    /**
+     * The looper's message-logging callback: {@code ">>>>> Dispatching to ..."} before each
+     * message and {@code "<<<<< Finished to ..."} after it. Only the first character is read.
+     */
+    public void onLooperLine(@NonNull String line) {
+        if (line.isEmpty()) {
+            return;
+        }
+        char c = line.charAt(0);
+        if (c == '>') {
+            messageStarted();
+        } else if (c == '<') {
+            messageFinished();
+        }
+    }
+
+    void messageStarted() {
+        long now = nanoTime.getAsLong();
+        inMessage = true;
+        messageStart = now;
+        spanStart = now;
+        spanCell = cell(screen, Section.UNATTRIBUTED);
+        messageCulprit = spanCell;
+        messageCulpritNanos = -1;
+    }
+
+    void messageFinished() {
+        if (!inMessage) {
+            return; // installed mid-message
+        }
+        long now = nanoTime.getAsLong();
+        closeSpan(now);
+        inMessage = false;
+        increment(messages, messageCulprit / SECTIONS.length, 1);
+        long total = now - messageStart;
+        if (total >= slowMessageNanos) {
+            increment(slowMessages, messageCulprit, 1);
+            increment(slowNanos, messageCulprit, total);
+            if (total > worstNanos.get(messageCulprit)) {
+                worstNanos.lazySet(messageCulprit, total);
+            }
+        }
+    }
+
+    /**
+     * Charges what the main thread does from here on (until the next mark or the end of the
+     * current message) to {@code section} of {@code screen}. Main thread only.
+     */
+    public void mark(@NonNull Screen screen, @NonNull Section section) {
+        long now = nanoTime.getAsLong();
+        if (inMessage) {
+            closeSpan(now);
+        }
+        this.screen = screen;
+        spanCell = cell(screen, section);
+        spanStart = now;
+        if (frames == null) {
+            return;
+        }
+        if (framesLeft == 0) {
+            // Measure the first frame's gap from here, so the marked work itself can be janky
+            lastFrameNanos = now;
+            frames.requestFrame();
+        }
+        framesLeft = FRAMES_AFTER_MARK;
+    }
+
+    /**
+     * A frame callback's {@code frameTimeNanos} (the same time base as {@link System#nanoTime}).
+     * Returns whether to request the next frame too.
+     */
+    public boolean onFrame(long frameTimeNanos) {
+        long gap = frameTimeNanos - lastFrameNanos;
+        lastFrameNanos = frameTimeNanos;
+        int culprit = frameCulprit >= 0 ? frameCulprit : cell(screen, Section.UNATTRIBUTED);
+        frameCulprit = -1;
+        frameCulpritNanos = 0;
+        increment(watchedFrames, culprit / SECTIONS.length, 1);
+        if (gap * 2 > frameIntervalNanos * 3) {
+            increment(jankyFrames, culprit, 1);
+            increment(droppedFrames, culprit, Math.max(1, (gap + frameIntervalNanos / 2) / frameIntervalNanos - 1));
+        }
+        if (framesLeft > 0) {
+            framesLeft--;
+        }
+        return framesLeft > 0;
+    }
+
+    private void closeSpan(long now) {
+        long span = now - spanStart;
+        if (span > messageCulpritNanos) {
+            messageCulpritNanos = span;
+            messageCulprit = spanCell;
+        }
+        if (span > frameCulpritNanos) {
+            frameCulpritNanos = span;
+            frameCulprit = spanCell;
+        }
+        spanStart = now;
+    }
+
+    private static int cell(Screen screen, Section section) {
+        return screen.ordinal() * SECTIONS.length + section.ordinal();
+    }
+
+    private static void increment(AtomicLongArray counters, int index, long delta) {
+        counters.lazySet(index, counters.get(index) + delta);
+    }
+
+    /** Messages dispatched while {@code screen} was the last one marked. */
+    public long getMessageCount(@NonNull Screen screen) {
+        return messages.get(screen.ordinal());
+    }
+
+    /** Frames observed after a mark on {@code screen}. */
+    public long getWatchedFrameCount(@NonNull Screen screen) {
+        return watchedFrames.get(screen.ordinal());
+    }
+
+    public long getSlowMessageCount(@NonNull Screen screen, @NonNull Section section) {
+        return slowMessages.get(cell(screen, section));
+    }
+
+    /** Longest slow message charged to {@code section}, or 0. */
+    public long getWorstMessageNanos(@NonNull Screen screen, @NonNull Section section) {
+        return worstNanos.get(cell(screen, section));
+    }
+
+    public long getJankyFrameCount(@NonNull Screen screen, @NonNull Section section) {
+        return jankyFrames.get(cell(screen, section));
+    }
+
+    /** Vsyncs missed by the janky frames charged to {@code section}. */
+    public long getDroppedFrameCount(@NonNull Screen screen, @NonNull Section section) {
+        return droppedFrames.get(cell(screen, section));
+    }
+
+    /**
+     * Table of every screen and section with a slow message or janky frame, milliseconds. For
+     * logs and debug screens; allocates freely.
+     */
+    @NonNull
+    public String dump() {
+        StringBuilder out = new StringBuilder(1024);
+        out.append(String.format(Locale.US, "%-13s %-22s %6s %9s %9s %6s %7s%n",
+                "screen", "section", "slow", "total", "worst", "janky", "dropped"));
+        for (Screen s : SCREENS) {
+            if (messages.get(s.ordinal()) == 0 && watchedFrames.get(s.ordinal()) == 0) {
+                continue;
+            }
+            out.append(String.format(Locale.US, "%-13s messages=%d frames=%d%n",
+                    s.name(), messages.get(s.ordinal()), watchedFrames.get(s.ordinal())));
+            for (Section section : SECTIONS) {
+                int c = cell(s, section);
+                if (slowMessages.get(c) == 0 && jankyFrames.get(c) == 0) {
+                    continue;
+                }
+                out.append(String.format(Locale.US, "%-13s %-22s %6d %9.1f %9.1f %6d %7d%n",
+                        "", section.name(), slowMessages.get(c), slowNanos.get(c) / 1e6,
+                        worstNanos.get(c) / 1e6, jankyFrames.get(c), droppedFrames.get(c)));
+            }
+        }
+        return out.toString();
+    }
+}
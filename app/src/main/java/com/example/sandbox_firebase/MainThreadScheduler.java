@@ -0,0 +1,22 @@
+package com.example.sandbox_firebase;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+
+/**
+ * {@link Scheduler} backed by the main looper. Delays use {@code uptimeMillis}, so they pause
+ * while the device sleeps; the token manager re-checks expiry on use, so that's harmless.
+ */
+final class MainThreadScheduler implements Scheduler {
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+    @NonNull
+    @Override
+    public Cancellable schedule(@NonNull Runnable task, long delayMillis) {
+        handler.postDelayed(task, delayMillis);
+        return () -> handler.removeCallbacks(task);
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.sandbox_firebase;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Local copy of the project's Firebase Auth password policy (Authentication > Settings >
+ * Password policy), so passwords the backend would refuse are caught before a round-trip.
+ * {@link #evaluate} returns a bit set of unmet requirements and allocates nothing.
+ *
+ * <p>Keep {@code res/values/password_policy.xml} in sync with the console.
+ */
+public final class PasswordPolicy {
+
+    public static final int TOO_SHORT = 1;
+    public static final int TOO_LONG = 1 << 1;
+    public static final int MISSING_UPPERCASE = 1 << 2;
+    public static final int MISSING_LOWERCASE = 1 << 3;
+    public static final int MISSING_NUMERIC = 1 << 4;
+    public static final int MISSING_NON_ALPHANUMERIC = 1 << 5;
+
+    /** Firebase has never accepted a shorter password, whatever the policy says. */
+    public static final int FIREBASE_MIN_LENGTH = 6;
+    public static final int FIREBASE_MAX_LENGTH = 4096;
+
+    /** The characters Firebase counts as non-alphanumeric. */
+    private static final String NON_ALPHANUMERIC = "^$*.[]{}()?\"!@#%&/\\,><':;|_~`=+-";
+    private static final boolean[] SYMBOL = new boolean[128];
+
+    static {
+        for (int i = 0; i < NON_ALPHANUMERIC.length(); i++) {
+            SYMBOL[NON_ALPHANUMERIC.charAt(i)] = true;
+        }
+    }
+
+    private final int minLength;
+    private final int maxLength;
+    private final int required;
+
+    private PasswordPolicy(Builder builder) {
+        this.minLength = builder.minLength;
+        this.maxLength = builder.maxLength;
+        this.required = builder.required;
+    }
+
+    /** Firebase's default: at least six characters, no character classes. */
+    @NonNull
+    public static PasswordPolicy firebaseDefault() {
+        return new Builder().build();
+    }
+
+    public int getMinLength() {
+        return minLength;
+    }
+
+    public int getMaxLength() {
+        return maxLength;
+    }
+
+    /** Unmet requirements as {@code TOO_SHORT | MISSING_...} flags; 0 when acceptable. */
+    public int evaluate(@Nullable CharSequence password) {
+        int length = password == null ? 0 : password.length();
+        int failed = 0;
+        if (length < minLength) {
+            failed |= TOO_SHORT;
+        } else if (length > maxLength) {
+            failed |= TOO_LONG;
+        }
+        int missing = required;
+        for (int i = 0; i < length && missing != 0; i++) {
+            char c = password.charAt(i);
+            if (c >= 'A' && c <= 'Z') {
+                missing &= ~MISSING_UPPERCASE;
+            } else if (c >= 'a' && c <= 'z') {
+                missing &= ~MISSING_LOWERCASE;
+            } else if (c >= '0' && c <= '9') {
+                missing &= ~MISSING_NUMERIC;
+            } else if (c < 128 && SYMBOL[c]) {
+                missing &= ~MISSING_NON_ALPHANUMERIC;
+            }
+        }
+        return failed | missing;
+    }
+
+    public static final class Builder {
+        private int minLength = FIREBASE_MIN_LENGTH;
+        private int maxLength = FIREBASE_MAX_LENGTH;
+        private int required;
+
+        @NonNull
+        public Builder setMinLength(int minLength) {
+            this.minLength = Math.max(FIREBASE_MIN_LENGTH, minLength);
+            return this;
+        }
+
+        @NonNull
+        public Builder setMaxLength(int maxLength) {
+            this.maxLength = Math.min(FIREBASE_MAX_LENGTH, maxLength);
+            return this;
+        }
+
+        @NonNull
+        public Builder requireUppercase(boolean require) {
+            return require(MISSING_UPPERCASE, require);
+        }
+
+        @NonNull
+        public Builder requireLowercase(boolean require) {
+            return require(MISSING_LOWERCASE, require);
+        }
+
+        @NonNull
+        public Builder requireNumeric(boolean require) {
+            return require(MISSING_NUMERIC, require);
+        }
+
+        @NonNull
+        public Builder requireNonAlphanumeric(boolean require) {
+            return require(MISSING_NON_ALPHANUMERIC, require);
+        }
+
+        private Builder require(int flag, boolean require) {
+            required = require ? required | flag : required & ~flag;
+            return this;
+        }
+
+        @NonNull
+        public PasswordPolicy build() {
+            if (maxLength < minLength) {
+                throw new IllegalArgumentException("maxLength " + maxLength + " < minLength " + minLength);
+            }
+            return new PasswordPolicy(this);
+        }
+    }
+}
@@ -0,0 +1,596 @@
+package com.example.sandbox_firebase;
+
+import android.app.ActivityManager;
+import android.app.Application;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.pm.ApplicationInfo;
+import android.net.ConnectivityManager;
+import android.os.PowerManager;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.credentials.ClearCredentialStateRequest;
+import androidx.credentials.CredentialManager;
+import androidx.credentials.CredentialManagerCallback;
+import androidx.credentials.exceptions.ClearCredentialException;
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleEventObserver;
+import androidx.lifecycle.ProcessLifecycleOwner;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.TaskCompletionSource;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.FirebaseNetworkException;
+import com.google.firebase.FirebaseTooManyRequestsException;
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.auth.FirebaseUser;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Owns the process-wide auth components and hands them to the activities.
+ */
+public class SandboxApplication extends Application {
+
+    private static final String TAG = "SandboxApplication";
+
+    private AuthExecutor authExecutor;
+    private StartupTimer startupTimer;
+    private AuthStateRepository authStateRepository;
+    private AuthOperationCoordinator authOperations;
+    private AuthCallGate authCallGate;
+    private CredentialPrewarmer credentialPrewarmer;
+    private ConnectionPrewarmer connectionPrewarmer;
+    private UserSnapshotStore userSnapshotStore;
+    private IdTokenManager idTokenManager;
+    private JwtClaimsDecoder jwtClaimsDecoder;
+    private SessionTeardown sessionTeardown;
+    private AuthTracer authTracer;
+    private AuthTraceExporter authTraceExporter;
+    private LoginFormValidator loginFormValidator;
+    private LayoutPrewarmer layoutPrewarmer;
+    private CallbackDispatcher callbackDispatcher;
+    private EventLog eventLog;
+    private AccountSessions accountSessions;
+    private AuthOpQueue authOpQueue;
+    private VerificationWatcher verificationWatcher;
+    private MainThreadMonitor mainThreadMonitor;
+    private final FirebaseAuth.AuthStateListener idTokenFollower = this::manageIdToken;
+    private File eventLogFile;
+    private volatile AuthSnapshot persistedSnapshot;
+    private volatile long persistedTokenExpiry;
+    @Nullable
+    private volatile String lastProviderId;
+    // Set by the first teardown step, read by the ones started after it on the same thread
+    @Nullable
+    private String signOutUid;
+    private boolean signOutTookOver;
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        eventLog = new EventLog(EventLog.DEFAULT_CAPACITY, new Random().nextLong());
+        eventLogFile = new File(getFilesDir(), "events.bin");
+        installCrashFlush();
+        // First, so the rest of startup and the first screen are already covered
+        mainThreadMonitor = MainThreadHooks.install(this);
+        authExecutor = new AuthExecutor();
+
+        startupTimer = new StartupTimer();
+        layoutPrewarmer = new LayoutPrewarmer(this, R.style.Theme_Sandboxfirebase);
+        callbackDispatcher = new CallbackDispatcher();
+        registerActivityLifecycleCallbacks(startupTimer);
+
+        authStateRepository = new AuthStateRepository();
+        // A ~100 byte read: LaunchActivity routes from it and the first frame renders the last
+        // known user, then the live listener confirms or corrects it.
+        userSnapshotStore = new UserSnapshotStore(new File(getFilesDir(), "user_snapshot.bin"));
+        UserSnapshotStore.Entry stored = userSnapshotStore.read();
+        if (stored != null) {
+            persistedSnapshot = stored.snapshot;
+            persistedTokenExpiry = stored.tokenExpiryMillis;
+            lastProviderId = stored.lastProviderId;
+            authStateRepository.seed(stored.snapshot);
+        }
+        authStateRepository.getUser().observeForever(this::persistSnapshot);
+        MainThreadScheduler mainThreadScheduler = new MainThreadScheduler();
+        authCallGate = new AuthCallGate(mainThreadScheduler, SandboxApplication::classifyAuthFailure);
+        authOperations = new AuthOperationCoordinator(authCallGate);
+        credentialPrewarmer = new CredentialPrewarmer(getString(R.string.default_web_client_id), authExecutor);
+        connectionPrewarmer = new ConnectionPrewarmer(authEndpoint(), authExecutor, this::allowsSpeculativeTraffic);
+        jwtClaimsDecoder = new JwtClaimsDecoder();
+        authOpQueue = new AuthOpQueue(new File(getFilesDir(), "auth_ops.log"));
+        authTracer = new AuthTracer();
+        authTraceExporter = new AuthTraceExporter(authTracer, new File(getFilesDir(), "auth_latency.txt"));
+        loginFormValidator = new LoginFormValidator(new PasswordPolicy.Builder()
+                .setMinLength(getResources().getInteger(R.integer.password_min_length))
+                .setMaxLength(getResources().getInteger(R.integer.password_max_length))
+                .requireUppercase(getResources().getBoolean(R.bool.password_require_uppercase))
+                .requireLowercase(getResources().getBoolean(R.bool.password_require_lowercase))
+                .requireNumeric(getResources().getBoolean(R.bool.password_require_numeric))
+                .requireNonAlphanumeric(getResources().getBoolean(R.bool.password_require_non_alphanumeric))
+                .build());
+        idTokenManager = new IdTokenManager(mainThreadScheduler);
+        idTokenManager.setListener(new IdTokenManager.TokenCallback() {
+            @Override
+            public void onToken(@NonNull String token, long expiresAtMillis) {
+                persistTokenExpiry(expiresAtMillis);
+            }
+
+            @Override
+            public void onError(@NonNull Exception e) {
+                // The manager retries with backoff while the process lives; offline, also queue
+                // a refresh so it happens once the network is back even if the process dies.
+                String uid = idTokenManager.getSubject();
+                if (e instanceof FirebaseNetworkException && uid != null) {
+                    deferAuthOp(AuthOpQueue.Type.REFRESH_TOKEN, uid);
+                }
+            }
+        });
+
+        verificationWatcher = new VerificationWatcher(mainThreadScheduler, this::checkEmailVerified);
+        verificationWatcher.setListener(new VerificationWatcher.Listener() {
+            @Override
+            public void onVerified(@NonNull String uid, int requests) {
+                eventLog.record(EventLog.Type.EMAIL_VERIFIED, eventLog.hash(uid), requests);
+                authStateRepository.refresh();
+            }
+
+            @Override
+            public void onGaveUp(@NonNull String uid) {
+                // The reload button still works
+            }
+        });
+        // Checks only while something is on screen; a process started for a worker isn't
+        verificationWatcher.setForeground(false);
+        ProcessLifecycleOwner.get().getLifecycle().addObserver((LifecycleEventObserver) (owner, event) -> {
+            if (event == Lifecycle.Event.ON_START) {
+                verificationWatcher.setForeground(true);
+            } else if (event == Lifecycle.Event.ON_STOP) {
+                verificationWatcher.setForeground(false);
+            }
+        });
+
+        // Other accounts stay signed in alongside the active one, within ~1.5% of the heap
+        long sessionBudget = ((ActivityManager) getSystemService(ACTIVITY_SERVICE)).getMemoryClass()
+                * 1024L * 1024L / 64;
+        accountSessions = new AccountSessions(this, getResources().getInteger(R.integer.max_account_sessions),
+                sessionBudget, SandboxApplication::useAuthEmulator, this::onActiveAuthChanged);
+        sessionTeardown = createSessionTeardown(mainThreadScheduler);
+
+        // FirebaseInitProvider has already registered the default FirebaseApp, but creating
+        // FirebaseAuth restores the persisted session from disk. Do that off the main thread so
+        // the first screen's getInstance() finds it ready.
+        authExecutor.execute(() -> {
+            accountSessions.attachDefault(FirebaseAuth.getInstance());
+            // Covers a crash between queueing an op and scheduling its drain
+            try {
+                if (!authOpQueue.isEmpty()) {
+                    AuthOpsWorker.schedule(this);
+                }
+            } catch (IOException e) {
+                Log.w(TAG, "Couldn't read the auth op queue", e);
+            }
+        });
+    }
+
+    /**
+     * Queues {@code type} for {@code uid} to run once the device is online. Coalesced with the
+     * same operation if it is already queued.
+     */
+    public void deferAuthOp(@NonNull AuthOpQueue.Type type, @NonNull String uid) {
+        authExecutor.execute(() -> {
+            try {
+                authOpQueue.enqueue(type, uid);
+                AuthOpsWorker.schedule(this);
+            } catch (IOException e) {
+                Log.w(TAG, "Couldn't queue " + type, e);
+            }
+        });
+    }
+
+    /** Writes the event ring to disk before the process dies of an uncaught exception. */
+    private void installCrashFlush() {
+        Thread.UncaughtExceptionHandler previous = Thread.getDefaultUncaughtExceptionHandler();
+        Thread.setDefaultUncaughtExceptionHandler((thread, e) -> {
+            eventLog.record(EventLog.Type.CRASH, thread.getId());
+            try {
+                eventLog.flush(eventLogFile);
+            } catch (IOException | RuntimeException flushError) {
+                e.addSuppressed(flushError);
+            }
+            if (previous != null) {
+                previous.uncaughtException(thread, e);
+            }
+        });
+    }
+
+    @NonNull
+    private static AuthCallGate.Failure classifyAuthFailure(@NonNull Exception e) {
+        if (e instanceof FirebaseTooManyRequestsException) {
+            return AuthCallGate.Failure.THROTTLED;
+        }
+        if (e instanceof FirebaseNetworkException) {
+            return AuthCallGate.Failure.UNAVAILABLE;
+        }
+        return AuthCallGate.Failure.OTHER;
+    }
+
+    /** Points Auth at the local stand-in when the build was configured with one. */
+    private static void useAuthEmulator(@NonNull FirebaseAuth auth) {
+        String hostPort = BuildConfig.AUTH_EMULATOR_HOST;
+        int colon = hostPort.lastIndexOf(':');
+        if (colon <= 0) {
+            return;
+        }
+        auth.useEmulator(hostPort.substring(0, colon), Integer.parseInt(hostPort.substring(colon + 1)));
+        Log.w(TAG, "Using the Auth emulator at " + hostPort);
+    }
+
+    /** Where the Auth SDK sends sign-ins: the configured stand-in, else Identity Toolkit. */
+    @NonNull
+    private static URL authEndpoint() {
+        String hostPort = BuildConfig.AUTH_EMULATOR_HOST;
+        try {
+            return new URL(hostPort.lastIndexOf(':') > 0
+                    ? "http://" + hostPort + "/"
+                    : "https://identitytoolkit.googleapis.com/");
+        } catch (MalformedURLException e) {
+            throw new IllegalStateException("Bad AUTH_EMULATOR_HOST " + hostPort, e);
+        }
+    }
+
+    /** No speculative connections on metered networks, in battery saver or while offline. */
+    private boolean allowsSpeculativeTraffic() {
+        ConnectivityManager connectivity = getSystemService(ConnectivityManager.class);
+        PowerManager power = getSystemService(PowerManager.class);
+        return connectivity.getActiveNetwork() != null
+                && !connectivity.isActiveNetworkMetered()
+                && !power.isPowerSaveMode();
+    }
+
+    /**
+     * Sign-out steps, started together by {@link SessionTeardown}. The Firebase step runs
+     * inline first so the signed-out state reaches the screens before anything else happens.
+     * When another cached account takes over, the steps after it leave that account's tokens,
+     * credentials and persisted snapshot alone.
+     */
+    private SessionTeardown createSessionTeardown(@NonNull Scheduler scheduler) {
+        SessionTeardown teardown = new SessionTeardown(scheduler);
+        teardown.addStep("firebase", () -> {
+            FirebaseUser leaving = accountSessions.getActiveAuth().getCurrentUser();
+            signOutUid = leaving != null ? leaving.getUid() : null;
+            // Another cached account, if any, takes over and is published instead
+            signOutTookOver = accountSessions.signOutActive();
+            if (!signOutTookOver) {
+                authStateRepository.publishSignedOut();
+            }
+            return Tasks.forResult(null);
+        });
+        teardown.addStep("credentials", () -> signOutTookOver ? Tasks.forResult(null) : clearCredentialState());
+        teardown.addStep("tokens", () -> {
+            String uid = signOutUid;
+            if (signOutTookOver) {
+                // The token manager and operation caches already follow the new account
+                if (uid != null) {
+                    verificationWatcher.stop(uid);
+                }
+                return Tasks.forResult(null);
+            }
+            idTokenManager.stop();
+            verificationWatcher.stop();
+            authOperations.invalidateAll();
+            return Tasks.forResult(null);
+        });
+        teardown.addStep("snapshot", () -> {
+            if (signOutTookOver) {
+                // The file holds (or is about to hold) the account that took over
+                return Tasks.forResult(null);
+            }
+            return Tasks.call(authExecutor, () -> {
+                synchronized (userSnapshotStore) {
+                    // Keeps the provider so the next launch opens the matching login screen
+                    userSnapshotStore.write(AuthSnapshot.signedOut(), 0L);
+                }
+                return null;
+            });
+        });
+        teardown.setListener(report -> {
+            if (!report.isClean()) {
+                Log.w(TAG, "Sign-out incomplete after " + report.elapsedMillis + " ms: "
+                        + report.outcomes + " " + report.failures);
+            }
+        });
+        return teardown;
+    }
+
+    /** Clears Credential Manager state so the next sign-in doesn't auto-select this account. */
+    private Task<Void> clearCredentialState() {
+        TaskCompletionSource<Void> source = new TaskCompletionSource<>();
+        CredentialManager.create(this).clearCredentialStateAsync(
+                new ClearCredentialStateRequest(),
+                null,
+                authExecutor,
+                new CredentialManagerCallback<Void, ClearCredentialException>() {
+                    @Override
+                    public void onResult(Void result) {
+                        source.trySetResult(null);
+                    }
+
+                    @Override
+                    public void onError(@NonNull ClearCredentialException e) {
+                        source.trySetException(e);
+                    }
+                });
+        return source.getTask();
+    }
+
+    /** One watcher check: a (coalesced, gated) reload, then the verification flag. */
+    private void checkEmailVerified(@NonNull String uid, @NonNull VerificationWatcher.ProbeCallback callback) {
+        FirebaseUser user = accountSessions.findUser(uid);
+        if (user == null) {
+            callback.onError(new IllegalStateException("Signed out"));
+            return;
+        }
+        authOperations.reload(user).addOnCompleteListener(task -> {
+            if (task.isSuccessful()) {
+                callback.onResult(user.isEmailVerified());
+            } else {
+                Exception e = task.getException();
+                callback.onError(e != null ? e : new CancellationException());
+            }
+        });
+    }
+
+    /** Points everything that follows the signed-in user at the newly active session. */
+    private void onActiveAuthChanged(@Nullable FirebaseAuth previous, @NonNull FirebaseAuth active) {
+        if (previous != null) {
+            previous.removeAuthStateListener(idTokenFollower);
+        }
+        authStateRepository.attach(active);
+        active.addAuthStateListener(idTokenFollower);
+    }
+
+    /** Keeps the token manager following the current user; sign-in changes arrive here. */
+    private void manageIdToken(@NonNull FirebaseAuth auth) {
+        FirebaseUser user = auth.getCurrentUser();
+        if (user == null) {
+            idTokenManager.stop();
+        } else {
+            idTokenManager.start(user.getUid(), new FirebaseTokenSource(user));
+        }
+    }
+
+    private void persistSnapshot(@NonNull AuthSnapshot snapshot) {
+        if (snapshot.equals(persistedSnapshot)) {
+            return;
+        }
+        persistedSnapshot = snapshot;
+        if (snapshot.isSignedIn()) {
+            lastProviderId = snapshot.getProviderId();
+        }
+        // Another user's expiry doesn't apply; 0 means unknown until the next refresh.
+        if (snapshot.getUid() == null || !snapshot.getUid().equals(idTokenManager.getSubject())) {
+            persistedTokenExpiry = 0L;
+        }
+        writeSnapshot(snapshot, persistedTokenExpiry);
+    }
+
+    private void persistTokenExpiry(long expiresAtMillis) {
+        if (expiresAtMillis == persistedTokenExpiry) {
+            return;
+        }
+        persistedTokenExpiry = expiresAtMillis;
+        AuthSnapshot snapshot = persistedSnapshot;
+        if (snapshot != null) {
+            writeSnapshot(snapshot, expiresAtMillis);
+        }
+    }
+
+    private void writeSnapshot(@NonNull AuthSnapshot snapshot, long tokenExpiryMillis) {
+        authExecutor.execute(() -> {
+            synchronized (userSnapshotStore) {
+                if (snapshot != persistedSnapshot || tokenExpiryMillis != persistedTokenExpiry) {
+                    return; // superseded by a newer state before this ran
+                }
+                try {
+                    userSnapshotStore.write(snapshot, tokenExpiryMillis);
+                } catch (IOException e) {
+                    Log.w(TAG, "Couldn't persist user snapshot", e);
+                }
+            }
+        });
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND) {
+            layoutPrewarmer.clear();
+        }
+        // Debug builds write the latency histograms out whenever the app is backgrounded
+        if (level == ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN
+                && (getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0) {
+            Log.d(TAG, "Auth latency:\n" + authTracer.dump());
+            Log.d(TAG, "Round-trips avoided by local validation: "
+                    + loginFormValidator.getAvoidedRoundTrips());
+            Log.d(TAG, "Auth call gate: admitted=" + authCallGate.getAdmittedCount()
+                    + " delayed=" + authCallGate.getDelayedCount()
+                    + " rejected=" + authCallGate.getRejectedCount()
+                    + " circuitTrips=" + authCallGate.getCircuitTripCount());
+            Log.d(TAG, "Layout prewarm: hits=" + layoutPrewarmer.getHitCount()
+                    + " misses=" + layoutPrewarmer.getMissCount()
+                    + " stale=" + layoutPrewarmer.getStaleCount()
+                    + " background=" + layoutPrewarmer.getBackgroundInflateLatency()
+                    + " mainThread=" + layoutPrewarmer.getMainThreadInflateLatency());
+            Log.d(TAG, "Auth connection: warmUps=" + connectionPrewarmer.getWarmUpCount()
+                    + " skipped=" + connectionPrewarmer.getSkippedCount()
+                    + " failed=" + connectionPrewarmer.getFailureCount()
+                    + " warmUp=" + connectionPrewarmer.getWarmUpLatency()
+                    + " cold=" + connectionPrewarmer.getColdCallLatency()
+                    + " warm=" + connectionPrewarmer.getWarmCallLatency());
+            Log.d(TAG, "Account sessions: cached=" + accountSessions.getAccounts().size()
+                    + " evicted=" + accountSessions.getEvictionCount()
+                    + " switch=" + accountSessions.getSwitchLatency());
+            Log.d(TAG, "Deferred auth ops: queued=" + authOpQueue.getEnqueuedCount()
+                    + " coalesced=" + authOpQueue.getCoalescedCount()
+                    + " performed=" + authOpQueue.getPerformedCount()
+                    + " dropped=" + authOpQueue.getDroppedCount());
+            Log.d(TAG, "Verification watcher: requests=" + verificationWatcher.getRequestCount()
+                    + " verified=" + verificationWatcher.getVerifiedCount()
+                    + " gaveUp=" + verificationWatcher.getGaveUpCount()
+                    + " requestsPerVerification=" + verificationWatcher.getRequestsPerVerification());
+            Log.d(TAG, "Main thread:\n" + mainThreadMonitor.dump());
+            Log.d(TAG, "Screen callbacks: delivered=" + callbackDispatcher.getDeliveredCount()
+                    + " dropped=" + callbackDispatcher.getDroppedCount());
+            authExecutor.execute(() -> {
+                try {
+                    authTraceExporter.export();
+                } catch (IOException e) {
+                    Log.w(TAG, "Couldn't export auth latency", e);
+                }
+            });
+            flushEventLog();
+        }
+    }
+
+    /**
+     * Writes the event ring to {@code files/events.bin} in the background; decode it with
+     * {@code ./gradlew :loadtest:decodeEvents -Pfile=events.bin}.
+     */
+    public void flushEventLog() {
+        authExecutor.execute(() -> {
+            try {
+                eventLog.flush(eventLogFile);
+            } catch (IOException e) {
+                Log.w(TAG, "Couldn't flush event log", e);
+            }
+        });
+    }
+
+    @Override
+    public void onTerminate() {
+        super.onTerminate();
+        authExecutor.shutdown();
+    }
+
+    @NonNull
+    public static SandboxApplication from(@NonNull Context context) {
+        return (SandboxApplication) context.getApplicationContext();
+    }
+
+    @NonNull
+    public AuthExecutor getAuthExecutor() {
+        return authExecutor;
+    }
+
+    /** Last auth state handed to the {@link UserSnapshotStore}; signed out if there was none. */
+    @NonNull
+    AuthSnapshot getPersistedSnapshot() {
+        AuthSnapshot snapshot = persistedSnapshot;
+        return snapshot != null ? snapshot : AuthSnapshot.signedOut();
+    }
+
+    /** Provider of the last signed-in user, kept across sign-out for the launch router. */
+    @Nullable
+    String getLastProviderId() {
+        return lastProviderId;
+    }
+
+    @NonNull
+    public StartupTimer getStartupTimer() {
+        return startupTimer;
+    }
+
+    @NonNull
+    public AuthStateRepository getAuthStateRepository() {
+        return authStateRepository;
+    }
+
+    @NonNull
+    public AuthCallGate getAuthCallGate() {
+        return authCallGate;
+    }
+
+    @NonNull
+    public AuthOperationCoordinator getAuthOperations() {
+        return authOperations;
+    }
+
+    @NonNull
+    public CredentialPrewarmer getCredentialPrewarmer() {
+        return credentialPrewarmer;
+    }
+
+    @NonNull
+    public ConnectionPrewarmer getConnectionPrewarmer() {
+        return connectionPrewarmer;
+    }
+
+    @NonNull
+    public IdTokenManager getIdTokenManager() {
+        return idTokenManager;
+    }
+
+    @NonNull
+    public JwtClaimsDecoder getJwtClaimsDecoder() {
+        return jwtClaimsDecoder;
+    }
+
+    @NonNull
+    public SessionTeardown getSessionTeardown() {
+        return sessionTeardown;
+    }
+
+    @NonNull
+    public AuthTracer getAuthTracer() {
+        return authTracer;
+    }
+
+    @NonNull
+    public LayoutPrewarmer getLayoutPrewarmer() {
+        return layoutPrewarmer;
+    }
+
+    @NonNull
+    public LoginFormValidator getLoginFormValidator() {
+        return loginFormValidator;
+    }
+
+    @NonNull
+    public CallbackDispatcher getCallbackDispatcher() {
+        return callbackDispatcher;
+    }
+
+    @NonNull
+    public AccountSessions getAccountSessions() {
+        return accountSessions;
+    }
+
+    @NonNull
+    public VerificationWatcher getVerificationWatcher() {
+        return verificationWatcher;
+    }
+
+    @NonNull
+    public MainThreadMonitor getMainThreadMonitor() {
+        return mainThreadMonitor;
+    }
+
+    @NonNull
+    public AuthOpQueue getAuthOpQueue() {
+        return authOpQueue;
+    }
+
+    @NonNull
+    public EventLog getEventLog() {
+        return eventLog;
+    }
+}
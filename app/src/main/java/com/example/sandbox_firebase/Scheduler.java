@@ -0,0 +1,17 @@
+package com.example.sandbox_firebase;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Delayed-task source, swapped for a manually advanced fake in JVM tests.
+ */
+public interface Scheduler {
+
+    /** Handle to a scheduled task. */
+    interface Cancellable {
+        void cancel();
+    }
+
+    @NonNull
+    Cancellable schedule(@NonNull Runnable task, long delayMillis);
+}
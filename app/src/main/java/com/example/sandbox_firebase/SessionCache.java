@@ -0,0 +1,169 @@
+package com.example.sandbox_firebase;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Live sessions by account, least recently used first out. Holds at most
+ * {@code maxSessions} entries whose estimated sizes fit in {@code budgetBytes}; the active
+ * session is never evicted, so it may exceed the budget on its own.
+ *
+ * <p>Evicted and replaced sessions are handed to the {@link Releaser} after the cache's lock
+ * is dropped, and the cache keeps no reference to them afterwards.
+ */
+public final class SessionCache<S> {
+
+    /** Frees whatever a session holds. Called once per session, never under the cache's lock. */
+    public interface Releaser<S> {
+        void release(@NonNull String key, @NonNull S session);
+    }
+
+    private static final class Entry<S> {
+        final S session;
+        final long bytes;
+
+        Entry(S session, long bytes) {
+            this.session = session;
+            this.bytes = bytes;
+        }
+    }
+
+    private final int maxSessions;
+    private final long budgetBytes;
+    private final Releaser<S> releaser;
+    /** Access order: eldest is least recently used. */
+    private final LinkedHashMap<String, Entry<S>> entries = new LinkedHashMap<>(8, 0.75f, true);
+    private long bytes;
+    @Nullable
+    private String activeKey;
+
+    private final AtomicLong evictions = new AtomicLong();
+
+    public SessionCache(int maxSessions, long budgetBytes, @NonNull Releaser<S> releaser) {
+        if (maxSessions < 1) {
+            throw new IllegalArgumentException("maxSessions must be at least 1");
+        }
+        this.maxSessions = maxSessions;
+        this.budgetBytes = budgetBytes;
+        this.releaser = releaser;
+    }
+
+    /**
+     * Adds or replaces the session for {@code key} as the most recently used, then evicts
+     * until the limits hold. A different session previously stored under {@code key} is
+     * released.
+     */
+    public void put(@NonNull String key, @NonNull S session, long sizeBytes) {
+        List<Map.Entry<String, S>> released = new ArrayList<>(2);
+        synchronized (this) {
+            Entry<S> previous = entries.put(key, new Entry<>(session, sizeBytes));
+            bytes += sizeBytes;
+            if (previous != null) {
+                bytes -= previous.bytes;
+                if (previous.session != session) {
+                    released.add(new AbstractMap.SimpleImmutableEntry<>(key, previous.session));
+                }
+            }
+            evictLocked(key, released);
+        }
+        release(released);
+    }
+
+    /**
+     * Makes {@code key} the active session and the most recently used. Returns it, or null
+     * (leaving the active session unchanged) if it isn't cached.
+     */
+    @Nullable
+    public synchronized S activate(@NonNull String key) {
+        Entry<S> entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        activeKey = key;
+        return entry.session;
+    }
+
+    /** Clears the active mark without evicting anything, e.g. after a sign-out. */
+    public synchronized void deactivate() {
+        activeKey = null;
+    }
+
+    @Nullable
+    public synchronized S get(@NonNull String key) {
+        Entry<S> entry = entries.get(key);
+        return entry == null ? null : entry.session;
+    }
+
+    @Nullable
+    public synchronized String getActiveKey() {
+        return activeKey;
+    }
+
+    /** Removes {@code key} and releases it, e.g. on sign-out. Returns whether it was cached. */
+    public boolean remove(@NonNull String key) {
+        Entry<S> entry;
+        synchronized (this) {
+            entry = entries.remove(key);
+            if (entry == null) {
+                return false;
+            }
+            bytes -= entry.bytes;
+            if (key.equals(activeKey)) {
+                activeKey = null;
+            }
+        }
+        releaser.release(key, entry.session);
+        return true;
+    }
+
+    /** Keys, most recently used first. */
+    @NonNull
+    public synchronized List<String> keys() {
+        List<String> keys = new ArrayList<>(entries.keySet());
+        Collections.reverse(keys);
+        return keys;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    /** Sessions pushed out by the size or memory limit. */
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    private void evictLocked(String justAdded, List<Map.Entry<String, S>> released) {
+        Iterator<Map.Entry<String, Entry<S>>> eldestFirst = entries.entrySet().iterator();
+        while ((entries.size() > maxSessions || bytes > budgetBytes) && eldestFirst.hasNext()) {
+            Map.Entry<String, Entry<S>> eldest = eldestFirst.next();
+            String key = eldest.getKey();
+            if (key.equals(activeKey) || key.equals(justAdded)) {
+                continue;
+            }
+            eldestFirst.remove();
+            bytes -= eldest.getValue().bytes;
+            evictions.incrementAndGet();
+            released.add(new AbstractMap.SimpleImmutableEntry<>(key, eldest.getValue().session));
+        }
+    }
+
+    private void release(List<Map.Entry<String, S>> released) {
+        for (Map.Entry<String, S> entry : released) {
+            releaser.release(entry.getKey(), entry.getValue());
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package com.example.sandbox_firebase;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.TaskCompletionSource;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The one sign-out path every screen uses. All registered steps (Firebase sign-out, clearing
+ * Credential Manager state, dropping cached tokens, deleting the persisted snapshot) start at
+ * once; the returned task completes when they have all finished or the deadline passes,
+ * whichever is first. It never fails: failures and timeouts are listed in the {@link Report}
+ * so screens can surface them after they've already switched to the signed-out UI.
+ *
+ * <p>A sign-out requested while one is running joins it.
+ */
+public final class SessionTeardown {
+
+    static final long DEFAULT_DEADLINE_MILLIS = 3_000;
+
+    private static final Executor DIRECT = Runnable::run;
+
+    /** One piece of teardown. Must not throw; report failure through the task. */
+    public interface Step {
+        @NonNull
+        Task<Void> start();
+    }
+
+    public enum Outcome {
+        OK,
+        FAILED,
+        TIMED_OUT
+    }
+
+    public interface Listener {
+        void onTeardownFinished(@NonNull Report report);
+    }
+
+    /** What happened to each step of one teardown. */
+    public static final class Report {
+        public final long elapsedMillis;
+        @NonNull
+        public final Map<String, Outcome> outcomes;
+        @NonNull
+        public final Map<String, Exception> failures;
+
+        Report(long elapsedMillis, Map<String, Outcome> outcomes, Map<String, Exception> failures) {
+            this.elapsedMillis = elapsedMillis;
+            this.outcomes = Collections.unmodifiableMap(outcomes);
+            this.failures = Collections.unmodifiableMap(failures);
+        }
+
+        public boolean isClean() {
+            for (Outcome outcome : outcomes.values()) {
+                if (outcome != Outcome.OK) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private final Clock clock;
+    private final Scheduler scheduler;
+    private final long deadlineMillis;
+    private final Map<String, Step> steps = new LinkedHashMap<>();
+    private final Map<String, LatencyStats> stepLatency = new LinkedHashMap<>();
+    private final AtomicLong runs = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+
+    @Nullable
+    private Run current;
+    @Nullable
+    private Listener listener;
+
+    public SessionTeardown(@NonNull Scheduler scheduler) {
+        this(Clock.SYSTEM, scheduler, DEFAULT_DEADLINE_MILLIS);
+    }
+
+    SessionTeardown(@NonNull Clock clock, @NonNull Scheduler scheduler, long deadlineMillis) {
+        this.clock = clock;
+        this.scheduler = scheduler;
+        this.deadlineMillis = deadlineMillis;
+    }
+
+    /** Notified after every teardown, e.g. to log failures no screen is left to show. */
+    public synchronized void setListener(@Nullable Listener listener) {
+        this.listener = listener;
+    }
+
+    /** Registers a step; done once by the composition root. */
+    public synchronized void addStep(@NonNull String name, @NonNull Step step) {
+        steps.put(name, step);
+        stepLatency.put(name, new LatencyStats());
+    }
+
+    /** Starts every step, or joins the teardown already running. */
+    @NonNull
+    public Task<Report> signOut() {
+        Run run;
+        Map<String, Step> toStart;
+        synchronized (this) {
+            if (current != null) {
+                return current.result.getTask();
+            }
+            runs.incrementAndGet();
+            run = new Run(clock.nowMillis());
+            current = run;
+            toStart = new LinkedHashMap<>(steps);
+            for (String name : toStart.keySet()) {
+                run.outcomes.put(name, null);
+            }
+            run.deadline = scheduler.schedule(() -> finish(run, true), deadlineMillis);
+        }
+        if (toStart.isEmpty()) {
+            finish(run, false);
+        }
+        for (Map.Entry<String, Step> entry : toStart.entrySet()) {
+            String name = entry.getKey();
+            Task<Void> task;
+            try {
+                task = entry.getValue().start();
+            } catch (RuntimeException e) {
+                onStepDone(run, name, e);
+                continue;
+            }
+            task.addOnCompleteListener(DIRECT, done ->
+                    onStepDone(run, name, done.isSuccessful() ? null : exceptionOf(done)));
+        }
+        return run.result.getTask();
+    }
+
+    @Nullable
+    public synchronized LatencyStats getStepLatency(@NonNull String name) {
+        return stepLatency.get(name);
+    }
+
+    public long getRunCount() {
+        return runs.get();
+    }
+
+    public long getFailureCount() {
+        return failures.get();
+    }
+
+    public long getTimeoutCount() {
+        return timeouts.get();
+    }
+
+    private void onStepDone(Run run, String name, @Nullable Exception error) {
+        boolean allDone;
+        synchronized (this) {
+            // Timed out steps still report their real duration once they finish.
+            stepLatency.get(name).record((clock.nowMillis() - run.startedAt) * 1_000_000);
+            if (run.finished) {
+                return;
+            }
+            if (error != null) {
+                failures.incrementAndGet();
+                run.outcomes.put(name, Outcome.FAILED);
+                run.failures.put(name, error);
+            } else {
+                run.outcomes.put(name, Outcome.OK);
+            }
+            allDone = !run.outcomes.containsValue(null);
+        }
+        if (allDone) {
+            finish(run, false);
+        }
+    }
+
+    private void finish(Run run, boolean deadlinePassed) {
+        Report report;
+        Listener notify;
+        synchronized (this) {
+            if (run.finished) {
+                return;
+            }
+            run.finished = true;
+            if (current == run) {
+                current = null;
+            }
+            if (deadlinePassed) {
+                for (Map.Entry<String, Outcome> entry : run.outcomes.entrySet()) {
+                    if (entry.getValue() == null) {
+                        entry.setValue(Outcome.TIMED_OUT);
+                        timeouts.incrementAndGet();
+                    }
+                }
+            }
+            report = new Report(clock.nowMillis() - run.startedAt, run.outcomes, run.failures);
+            notify = listener;
+        }
+        if (!deadlinePassed) {
+            run.deadline.cancel();
+        }
+        if (notify != null) {
+            notify.onTeardownFinished(report);
+        }
+        run.result.setResult(report);
+    }
+
+    private static Exception exceptionOf(Task<?> task) {
+        Exception e = task.getException();
+        return e != null ? e : new IllegalStateException("Cancelled");
+    }
+
+    private static final class Run {
+        final long startedAt;
+        final Map<String, Outcome> outcomes = new LinkedHashMap<>();
+        final Map<String, Exception> failures = new LinkedHashMap<>();
+        final TaskCompletionSource<Report> result = new TaskCompletionSource<>();
+        Scheduler.Cancellable deadline;
+        boolean finished;
+
+        Run(long startedAt) {
+            this.startedAt = startedAt;
+        }
+    }
+}
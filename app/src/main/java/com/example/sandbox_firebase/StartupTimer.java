@@ -0,0 +1,107 @@
+package com.example.sandbox_firebase;
+
+import android.app.Activity;
+import android.app.Application;
+import android.os.Bundle;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.View;
+import android.view.ViewTreeObserver;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Measures cold-start time to the first frame drawn by the screen {@link LaunchActivity} routed
+ * to, split by whether the launch took the signed-in or the signed-out path.
+ */
+public final class StartupTimer implements Application.ActivityLifecycleCallbacks {
+
+    private static final String TAG = "StartupTimer";
+
+    public enum Path { SIGNED_IN, SIGNED_OUT }
+
+    /** Receives one report per cold start. Called on the main thread. */
+    public interface Listener {
+        void onFirstFrame(@NonNull Path path, @NonNull String screen, long millisSinceProcessStart);
+    }
+
+    private static final Listener LOGGING_LISTENER = (path, screen, millis) ->
+            Log.i(TAG, "firstFrame path=" + path + " screen=" + screen + " ms=" + millis);
+
+    @Nullable
+    private Path path;
+    private boolean reported;
+    private long lastMillis = -1;
+    @NonNull
+    private Listener listener = LOGGING_LISTENER;
+
+    /** Called by the router before it starts the destination screen. */
+    void setPath(@NonNull Path path) {
+        if (!reported) {
+            this.path = path;
+        }
+    }
+
+    public void setListener(@Nullable Listener listener) {
+        this.listener = listener != null ? listener : LOGGING_LISTENER;
+    }
+
+    /** Time to first frame of this process's cold start, or -1 if not measured yet. */
+    public long getLastMillis() {
+        return lastMillis;
+    }
+
+    @Override
+    public void onActivityCreated(@NonNull Activity activity, @Nullable Bundle savedInstanceState) {
+        // Only launches that went through the router are measured; the router itself draws nothing.
+        if (reported || path == null || activity instanceof LaunchActivity) {
+            return;
+        }
+        final Path measuredPath = path;
+        final String screen = activity.getClass().getSimpleName();
+        final View decorView = activity.getWindow().getDecorView();
+        reported = true;
+        decorView.getViewTreeObserver().addOnDrawListener(new ViewTreeObserver.OnDrawListener() {
+            private boolean drawn;
+
+            @Override
+            public void onDraw() {
+                if (drawn) {
+                    return;
+                }
+                drawn = true;
+                lastMillis = SystemClock.uptimeMillis() - Process.getStartUptimeMillis();
+                listener.onFirstFrame(measuredPath, screen, lastMillis);
+                // Listeners can't be removed from inside onDraw.
+                ViewTreeObserver.OnDrawListener self = this;
+                decorView.post(() -> decorView.getViewTreeObserver().removeOnDrawListener(self));
+            }
+        });
+    }
+
+    @Override
+    public void onActivityStarted(@NonNull Activity activity) {
+    }
+
+    @Override
+    public void onActivityResumed(@NonNull Activity activity) {
+    }
+
+    @Override
+    public void onActivityPaused(@NonNull Activity activity) {
+    }
+
+    @Override
+    public void onActivityStopped(@NonNull Activity activity) {
+    }
+
+    @Override
+    public void onActivitySaveInstanceState(@NonNull Activity activity, @NonNull Bundle outState) {
+    }
+
+    @Override
+    public void onActivityDestroyed(@NonNull Activity activity) {
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.sandbox_firebase;
+
+import androidx.annotation.NonNull;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.TaskCompletionSource;
+
+import java.util.concurrent.CancellationException;
+
+/** Forwards the outcome of a finished {@link Task} to a {@link TaskCompletionSource}. */
+final class TaskRelay {
+
+    private TaskRelay() {
+    }
+
+    /**
+     * Completes {@code target} the way {@code done} completed, unless it already is. A cancelled
+     * task has no exception of its own, so {@code target} fails with a
+     * {@link CancellationException} instead.
+     */
+    static <T> void complete(@NonNull TaskCompletionSource<T> target, @NonNull Task<T> done) {
+        if (done.isSuccessful()) {
+            target.trySetResult(done.getResult());
+            return;
+        }
+        Exception e = done.getException();
+        target.trySetException(e != null ? e : new CancellationException("Task was cancelled"));
+    }
+}
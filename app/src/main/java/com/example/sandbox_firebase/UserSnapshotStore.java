@@ -0,0 +1,192 @@
+package com.example.sandbox_firebase;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.zip.CRC32;
+
+/**
+ * Last known auth state, kept in a small versioned binary file so the launch screen can route
+ * and the first frame can be rendered from disk before {@code FirebaseAuth} has restored its
+ * session. After a sign-out only the provider of the last user is kept, so a signed-out launch
+ * lands on the login screen that user picked.
+ *
+ * <p>Layout: magic, version, payload length, payload, CRC32 of the payload. Writes go to a
+ * sibling temp file that is synced and renamed over the real one, so a crash mid-write leaves
+ * either the old or the new snapshot. A file that fails any check is deleted and read as absent.
+ */
+public final class UserSnapshotStore {
+
+    static final int MAGIC = 0x41555353; // "AUSS"
+    static final int VERSION = 1;
+
+    private static final int FLAG_EMAIL_VERIFIED = 1;
+    private static final int FLAG_HAS_EMAIL = 1 << 1;
+    private static final int FLAG_HAS_PROVIDER = 1 << 2;
+    private static final int FLAG_SIGNED_OUT = 1 << 3;
+    private static final int MAX_PAYLOAD_BYTES = 16 * 1024;
+
+    private final File file;
+    private final File tempFile;
+
+    public UserSnapshotStore(@NonNull File file) {
+        this.file = file;
+        this.tempFile = new File(file.getPath() + ".tmp");
+    }
+
+    /** A stored snapshot plus the ID-token expiry known when it was written. */
+    public static final class Entry {
+        @NonNull
+        public final AuthSnapshot snapshot;
+        public final long tokenExpiryMillis;
+        /** Provider of the last signed-in user; the snapshot's own while still signed in. */
+        @Nullable
+        public final String lastProviderId;
+
+        public Entry(@NonNull AuthSnapshot snapshot, long tokenExpiryMillis) {
+            this(snapshot, tokenExpiryMillis, snapshot.getProviderId());
+        }
+
+        Entry(@NonNull AuthSnapshot snapshot, long tokenExpiryMillis, @Nullable String lastProviderId) {
+            this.snapshot = snapshot;
+            this.tokenExpiryMillis = tokenExpiryMillis;
+            this.lastProviderId = lastProviderId;
+        }
+    }
+
+    /** Returns the stored entry, or null if there is none or it was unreadable. */
+    @Nullable
+    public synchronized Entry read() {
+        if (!file.exists()) {
+            return null;
+        }
+        try {
+            return decode(Files.readAllBytes(file.toPath()));
+        } catch (IOException | IllegalStateException e) {
+            // Corrupt or from an unknown version: drop it, the live session will rewrite it.
+            delete();
+            return null;
+        }
+    }
+
+    /**
+     * Stores {@code snapshot}. A signed-out snapshot replaces the user with a record that keeps
+     * only the stored user's provider.
+     */
+    public synchronized void write(@NonNull AuthSnapshot snapshot, long tokenExpiryMillis) throws IOException {
+        byte[] bytes;
+        if (snapshot.isSignedIn()) {
+            bytes = encode(snapshot, tokenExpiryMillis);
+        } else {
+            Entry previous = read();
+            bytes = encodeSignedOut(previous != null ? previous.lastProviderId : null);
+        }
+        try (FileOutputStream out = new FileOutputStream(tempFile)) {
+            out.write(bytes);
+            out.getFD().sync();
+        }
+        if (!tempFile.renameTo(file)) {
+            tempFile.delete();
+            throw new IOException("Couldn't replace " + file);
+        }
+    }
+
+    public synchronized void delete() {
+        file.delete();
+        tempFile.delete();
+    }
+
+    @NonNull
+    static byte[] encode(@NonNull AuthSnapshot snapshot, long tokenExpiryMillis) throws IOException {
+        ByteArrayOutputStream payloadBytes = new ByteArrayOutputStream(128);
+        DataOutputStream payload = new DataOutputStream(payloadBytes);
+        int flags = (snapshot.isEmailVerified() ? FLAG_EMAIL_VERIFIED : 0)
+                | (snapshot.getEmail() != null ? FLAG_HAS_EMAIL : 0)
+                | (snapshot.getProviderId() != null ? FLAG_HAS_PROVIDER : 0);
+        payload.writeByte(flags);
+        payload.writeUTF(snapshot.getUid());
+        if (snapshot.getEmail() != null) {
+            payload.writeUTF(snapshot.getEmail());
+        }
+        if (snapshot.getProviderId() != null) {
+            payload.writeUTF(snapshot.getProviderId());
+        }
+        payload.writeLong(tokenExpiryMillis);
+        return frame(payloadBytes.toByteArray());
+    }
+
+    @NonNull
+    static byte[] encodeSignedOut(@Nullable String lastProviderId) throws IOException {
+        ByteArrayOutputStream payloadBytes = new ByteArrayOutputStream(32);
+        DataOutputStream payload = new DataOutputStream(payloadBytes);
+        payload.writeByte(FLAG_SIGNED_OUT | (lastProviderId != null ? FLAG_HAS_PROVIDER : 0));
+        if (lastProviderId != null) {
+            payload.writeUTF(lastProviderId);
+        }
+        return frame(payloadBytes.toByteArray());
+    }
+
+    @NonNull
+    private static byte[] frame(@NonNull byte[] body) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(body, 0, body.length);
+
+        ByteArrayOutputStream fileBytes = new ByteArrayOutputStream(body.length + 16);
+        DataOutputStream out = new DataOutputStream(fileBytes);
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeShort(body.length);
+        out.write(body);
+        out.writeInt((int) crc.getValue());
+        return fileBytes.toByteArray();
+    }
+
+    @NonNull
+    static Entry decode(@NonNull byte[] bytes) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        check(in.readInt() == MAGIC, "bad magic");
+        check(in.readUnsignedByte() == VERSION, "unknown version");
+        int length = in.readUnsignedShort();
+        check(length <= MAX_PAYLOAD_BYTES && length <= in.available() - 4, "bad length");
+        byte[] body = new byte[length];
+        in.readFully(body);
+        int expectedCrc = in.readInt();
+        check(in.read() == -1, "trailing bytes");
+
+        CRC32 crc = new CRC32();
+        crc.update(body, 0, body.length);
+        check((int) crc.getValue() == expectedCrc, "checksum mismatch");
+
+        DataInputStream payload = new DataInputStream(new ByteArrayInputStream(body));
+        try {
+            int flags = payload.readUnsignedByte();
+            if ((flags & FLAG_SIGNED_OUT) != 0) {
+                String lastProvider = (flags & FLAG_HAS_PROVIDER) != 0 ? payload.readUTF() : null;
+                return new Entry(AuthSnapshot.signedOut(), 0L, lastProvider);
+            }
+            String uid = payload.readUTF();
+            String email = (flags & FLAG_HAS_EMAIL) != 0 ? payload.readUTF() : null;
+            String provider = (flags & FLAG_HAS_PROVIDER) != 0 ? payload.readUTF() : null;
+            long tokenExpiry = payload.readLong();
+            AuthSnapshot snapshot = new AuthSnapshot(uid, email, (flags & FLAG_EMAIL_VERIFIED) != 0, provider);
+            return new Entry(snapshot, tokenExpiry);
+        } catch (EOFException e) {
+            throw new IllegalStateException("truncated payload", e);
+        }
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalStateException(message);
+        }
+    }
+}
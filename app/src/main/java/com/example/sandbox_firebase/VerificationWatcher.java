@@ -0,0 +1,249 @@
+package com.example.sandbox_firebase;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Notices when the user clicks the link in a verification email, so nobody has to keep
+ * tapping reload.
+ *
+ * <p>After {@link #start} it checks (a reload, in the app) after {@code initialDelayMillis},
+ * then doubles the wait up to {@code maxDelayMillis}, and gives up after {@code maxRequests}
+ * checks. Nothing runs while the app is in the background. Coming back to the foreground
+ * checks straight away and restarts the fast schedule, since that is usually the user
+ * returning from the link in their mail app. The first check that sees the address verified
+ * stops the watch and tells the {@link Listener}.
+ */
+public final class VerificationWatcher {
+
+    static final long DEFAULT_INITIAL_DELAY_MILLIS = 3_000;
+    static final long DEFAULT_MAX_DELAY_MILLIS = 60_000;
+    static final int DEFAULT_MAX_REQUESTS = 20;
+
+    /** Re-reads the user, e.g. {@code FirebaseUser.reload()} then {@code isEmailVerified()}. */
+    public interface Probe {
+        void check(@NonNull String uid, @NonNull ProbeCallback callback);
+    }
+
+    public interface ProbeCallback {
+        void onResult(boolean verified);
+
+        void onError(@NonNull Exception e);
+    }
+
+    public interface Listener {
+        /** The address is verified; {@code requests} checks it took. */
+        void onVerified(@NonNull String uid, int requests);
+
+        /** Out of checks; the user can still reload by hand. */
+        void onGaveUp(@NonNull String uid);
+    }
+
+    private final Scheduler scheduler;
+    private final Probe probe;
+    private final long initialDelayMillis;
+    private final long maxDelayMillis;
+    private final int maxRequests;
+
+    @Nullable
+    private Listener listener;
+    @Nullable
+    private String uid;
+    private int generation;
+    private int requests;
+    private long delayMillis;
+    private boolean foreground = true;
+    private boolean checking;
+    @Nullable
+    private Scheduler.Cancellable scheduled;
+
+    private final AtomicLong totalRequests = new AtomicLong();
+    private final AtomicLong verifiedRequests = new AtomicLong();
+    private final AtomicLong verified = new AtomicLong();
+    private final AtomicLong gaveUp = new AtomicLong();
+
+    public VerificationWatcher(@NonNull Scheduler scheduler, @NonNull Probe probe) {
+        this(scheduler, probe, DEFAULT_INITIAL_DELAY_MILLIS, DEFAULT_MAX_DELAY_MILLIS, DEFAULT_MAX_REQUESTS);
+    }
+
+    VerificationWatcher(@NonNull Scheduler scheduler, @NonNull Probe probe, long initialDelayMillis,
+                        long maxDelayMillis, int maxRequests) {
+        this.scheduler = scheduler;
+        this.probe = probe;
+        this.initialDelayMillis = initialDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+        this.maxRequests = maxRequests;
+    }
+
+    public synchronized void setListener(@Nullable Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Starts watching {@code uid}, e.g. once its verification email is sent. Sending another
+     * email to the same user restarts the fast schedule but not the request budget.
+     */
+    public synchronized void start(@NonNull String uid) {
+        if (!uid.equals(this.uid)) {
+            stopLocked();
+            this.uid = uid;
+        }
+        delayMillis = initialDelayMillis;
+        if (foreground && !checking) {
+            scheduleLocked(delayMillis);
+        }
+    }
+
+    /** Stops watching, e.g. on sign-out. A check in flight is ignored when it returns. */
+    public synchronized void stop() {
+        stopLocked();
+    }
+
+    /** Pauses in the background; on return to the foreground, checks at once. */
+    public void setForeground(boolean foreground) {
+        synchronized (this) {
+            this.foreground = foreground;
+            if (!foreground) {
+                cancelLocked();
+                return;
+            }
+            if (uid == null || checking) {
+                return;
+            }
+            cancelLocked();
+            delayMillis = initialDelayMillis;
+        }
+        check();
+    }
+
+    /** Stops only if {@code uid} is the account being watched, e.g. when that account signs out. */
+    public synchronized void stop(@NonNull String uid) {
+        if (uid.equals(this.uid)) {
+            stopLocked();
+        }
+    }
+
+    public synchronized boolean isWatching() {
+        return uid != null;
+    }
+
+    /** Checks made so far, across all verifications. */
+    public long getRequestCount() {
+        return totalRequests.get();
+    }
+
+    public long getVerifiedCount() {
+        return verified.get();
+    }
+
+    public long getGaveUpCount() {
+        return gaveUp.get();
+    }
+
+    /** Mean checks a detected verification took. */
+    public double getRequestsPerVerification() {
+        long count = verified.get();
+        return count == 0 ? 0 : (double) verifiedRequests.get() / count;
+    }
+
+    private void check() {
+        String watched;
+        int expectedGeneration;
+        boolean probing;
+        Listener gaveUpListener = null;
+        synchronized (this) {
+            scheduled = null;
+            if (uid == null || checking || !foreground) {
+                return;
+            }
+            watched = uid;
+            expectedGeneration = generation;
+            probing = requests < maxRequests;
+            if (probing) {
+                requests++;
+                checking = true;
+                totalRequests.incrementAndGet();
+            } else {
+                gaveUp.incrementAndGet();
+                gaveUpListener = listener;
+                stopLocked();
+            }
+        }
+        if (!probing) {
+            if (gaveUpListener != null) {
+                gaveUpListener.onGaveUp(watched);
+            }
+            return;
+        }
+        probe.check(watched, new ProbeCallback() {
+            @Override
+            public void onResult(boolean isVerified) {
+                onChecked(expectedGeneration, isVerified);
+            }
+
+            @Override
+            public void onError(@NonNull Exception e) {
+                // Offline or throttled: counts against the budget and backs off like a miss
+                onChecked(expectedGeneration, false);
+            }
+        });
+    }
+
+    private void onChecked(int expectedGeneration, boolean isVerified) {
+        String watched;
+        int spent;
+        Listener notify;
+        synchronized (this) {
+            if (expectedGeneration != generation) {
+                return; // stopped or restarted for someone else meanwhile
+            }
+            checking = false;
+            if (!isVerified) {
+                delayMillis = Math.min(delayMillis * 2, maxDelayMillis);
+                if (foreground) {
+                    scheduleLocked(delayMillis);
+                }
+                return;
+            }
+            watched = uid;
+            spent = requests;
+            verified.incrementAndGet();
+            verifiedRequests.addAndGet(spent);
+            notify = listener;
+            stopLocked();
+        }
+        if (notify != null) {
+            notify.onVerified(watched, spent);
+        }
+    }
+
+    private void scheduleLocked(long delay) {
+        cancelLocked();
+        int expectedGeneration = generation;
+        scheduled = scheduler.schedule(() -> {
+            synchronized (this) {
+                if (expectedGeneration != generation) {
+                    return;
+                }
+            }
+            check();
+        }, delay);
+    }
+
+    private void cancelLocked() {
+        if (scheduled != null) {
+            scheduled.cancel();
+            scheduled = null;
+        }
+    }
+
+    private void stopLocked() {
+        cancelLocked();
+        generation++;
+        uid = null;
+        requests = 0;
+        checking = false;
+    }
+}
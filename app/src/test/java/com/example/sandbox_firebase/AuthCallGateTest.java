@@ -0,0 +1,211 @@
+package com.example.sandbox_firebase;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.TaskCompletionSource;
+import com.google.android.gms.tasks.Tasks;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.function.Supplier;
+
+public class AuthCallGateTest {
+
+    private static final String EMAIL = "a@example.com";
+
+    private long now;
+    private final FakeScheduler scheduler = new FakeScheduler();
+    private AuthCallGate gate;
+    private int calls;
+
+    /** Failures carry their classification in the message. */
+    private static final AuthCallGate.FailureClassifier CLASSIFIER =
+            e -> AuthCallGate.Failure.valueOf(e.getMessage());
+
+    @Before
+    public void setUp() {
+        now = 1_000;
+        gate = new AuthCallGate(() -> now, scheduler, CLASSIFIER, new Random(42));
+    }
+
+    @Test
+    public void burstIsAdmittedThenCallsAreDelayedThenRejected() {
+        for (int i = 0; i < AuthCallGate.PER_ACCOUNT.capacity; i++) {
+            assertTrue(run(AuthCallGate.SIGN_IN, EMAIL, "ok").isSuccessful());
+        }
+        // The next token is 6 s away: too long to hold the call
+        AuthCallGate.RejectedException rejected =
+                rejection(run(AuthCallGate.SIGN_IN, EMAIL, "ok"));
+        assertEquals(AuthCallGate.RejectedException.Reason.RATE_LIMITED, rejected.reason);
+        assertEquals(AuthCallGate.PER_ACCOUNT.refillMillis, rejected.retryAfterMillis);
+
+        now += AuthCallGate.PER_ACCOUNT.refillMillis - 1_000;
+        Task<String> delayedCall = run(AuthCallGate.SIGN_IN, EMAIL, "ok");
+        assertFalse(delayedCall.isComplete());
+        assertEquals(1_000L, scheduler.delayAt(0));
+        scheduler.runFirst();
+
+        assertTrue(delayedCall.isSuccessful());
+        assertEquals(6, calls);
+        assertEquals(5, gate.getAdmittedCount());
+        assertEquals(1, gate.getDelayedCount());
+        assertEquals(1, gate.getRejectedCount());
+    }
+
+    @Test
+    public void delayedCallThatThrowsFailsItsTask() {
+        Task<String> delayedCall = delayedCall(() -> {
+            throw new IllegalStateException("OTHER");
+        });
+
+        scheduler.runFirst();
+
+        assertTrue(delayedCall.getException() instanceof IllegalStateException);
+    }
+
+    @Test
+    public void delayedCallThatIsCancelledFailsItsTask() {
+        Task<String> delayedCall = delayedCall(Tasks::forCanceled);
+
+        scheduler.runFirst();
+
+        assertTrue(delayedCall.isComplete());
+        assertTrue(delayedCall.getException() instanceof CancellationException);
+    }
+
+    @Test
+    public void bucketsArePerAccountAndPerOperation() {
+        for (int i = 0; i < AuthCallGate.PER_ACCOUNT.capacity; i++) {
+            run(AuthCallGate.SIGN_IN, EMAIL, "ok");
+        }
+
+        assertTrue(run(AuthCallGate.SIGN_IN, "b@example.com", "ok").isSuccessful());
+        assertTrue(run(AuthCallGate.RELOAD, EMAIL, "ok").isSuccessful());
+        // Cycling through accounts still runs into the per-operation bucket
+        for (int i = 0; i < AuthCallGate.PER_OPERATION.capacity; i++) {
+            run(AuthCallGate.SIGN_IN, "user" + i + "@example.com", "ok");
+        }
+        assertEquals(AuthCallGate.RejectedException.Reason.RATE_LIMITED,
+                rejection(run(AuthCallGate.SIGN_IN, "new@example.com", "ok")).reason);
+    }
+
+    @Test
+    public void manyOtherAccountsDoNotResetALimitedOne() {
+        for (int i = 0; i <= AuthCallGate.PER_ACCOUNT.capacity; i++) {
+            run(AuthCallGate.SIGN_IN, EMAIL, "ok");
+        }
+        for (int i = 0; i < 10 * AuthCallGate.MAX_TRACKED_KEYS; i++) {
+            run(AuthCallGate.SIGN_IN, "user" + i + "@example.com", "ok");
+        }
+
+        assertEquals(AuthCallGate.RejectedException.Reason.RATE_LIMITED,
+                rejection(run(AuthCallGate.SIGN_IN, EMAIL, "ok")).reason);
+        assertTrue(gate.getTrackedKeyCount() <= AuthCallGate.MAX_TRACKED_KEYS + 1);
+    }
+
+    @Test
+    public void expiredBackoffsArePruned() {
+        for (int i = 0; i < 10 * AuthCallGate.MAX_TRACKED_KEYS; i++) {
+            run(AuthCallGate.RELOAD, "user" + i, "OTHER"); // keeps the circuit closed
+            run(AuthCallGate.RELOAD, "user" + i, "THROTTLED");
+            now += 2 * AuthCallGate.PER_OPERATION.refillMillis;
+        }
+
+        assertTrue(gate.getTrackedKeyCount() <= 2 * AuthCallGate.MAX_TRACKED_KEYS + 1);
+    }
+
+    @Test
+    public void throttlingBacksOffWithGrowingJitteredDelays() {
+        run(AuthCallGate.RELOAD, EMAIL, "THROTTLED");
+        long first = rejection(run(AuthCallGate.RELOAD, EMAIL, "ok")).retryAfterMillis;
+        assertTrue(first >= 500 && first <= 1_000);
+
+        now += first;
+        run(AuthCallGate.RELOAD, EMAIL, "THROTTLED");
+        AuthCallGate.RejectedException second = rejection(run(AuthCallGate.RELOAD, EMAIL, "ok"));
+        assertEquals(AuthCallGate.RejectedException.Reason.BACKING_OFF, second.reason);
+        assertTrue(second.retryAfterMillis >= 1_000 && second.retryAfterMillis <= 2_000);
+
+        // Other accounts aren't affected, and a success clears the backoff
+        assertTrue(run(AuthCallGate.RELOAD, "b@example.com", "ok").isSuccessful());
+        now += second.retryAfterMillis;
+        assertTrue(run(AuthCallGate.RELOAD, EMAIL, "ok").isSuccessful());
+        assertTrue(run(AuthCallGate.RELOAD, EMAIL, "ok").isSuccessful());
+    }
+
+    @Test
+    public void answeredErrorsDoNotBackOff() {
+        assertFalse(run(AuthCallGate.SIGN_IN, EMAIL, "OTHER").isSuccessful());
+
+        assertTrue(run(AuthCallGate.SIGN_IN, EMAIL, "ok").isSuccessful());
+    }
+
+    @Test
+    public void repeatedBackendFailuresOpenTheCircuitUntilAProbeSucceeds() {
+        for (int i = 0; i < AuthCallGate.FAILURE_THRESHOLD; i++) {
+            run(AuthCallGate.SIGN_IN, "user" + i + "@example.com", "UNAVAILABLE");
+        }
+        assertEquals(AuthCallGate.CircuitState.OPEN, gate.getCircuitState());
+        assertEquals(AuthCallGate.OPEN_MILLIS, gate.getCooldownMillis());
+        AuthCallGate.RejectedException open = rejection(run(AuthCallGate.RELOAD, "x", "ok"));
+        assertEquals(AuthCallGate.RejectedException.Reason.CIRCUIT_OPEN, open.reason);
+
+        now += AuthCallGate.OPEN_MILLIS;
+        TaskCompletionSource<String> probe = new TaskCompletionSource<>();
+        Task<String> probeTask = gate.run(AuthCallGate.RELOAD, "x", probe::getTask);
+        // Only one probe at a time
+        assertEquals(AuthCallGate.RejectedException.Reason.CIRCUIT_OPEN,
+                rejection(run(AuthCallGate.RELOAD, "y", "ok")).reason);
+        probe.setResult("ok");
+
+        assertTrue(probeTask.isSuccessful());
+        assertEquals(AuthCallGate.CircuitState.CLOSED, gate.getCircuitState());
+        assertTrue(run(AuthCallGate.RELOAD, "y", "ok").isSuccessful());
+        assertEquals(1, gate.getCircuitTripCount());
+    }
+
+    @Test
+    public void failedProbeReopensTheCircuit() {
+        for (int i = 0; i < AuthCallGate.FAILURE_THRESHOLD; i++) {
+            run(AuthCallGate.RELOAD, "user" + i, "THROTTLED");
+        }
+        now += AuthCallGate.OPEN_MILLIS;
+
+        run(AuthCallGate.RELOAD, "x", "UNAVAILABLE");
+
+        assertEquals(AuthCallGate.CircuitState.OPEN, gate.getCircuitState());
+        assertEquals(AuthCallGate.OPEN_MILLIS, gate.getCooldownMillis());
+    }
+
+    /** Uses up {@link #EMAIL}'s burst, then queues {@code call} behind the next token. */
+    private Task<String> delayedCall(Supplier<Task<String>> call) {
+        for (int i = 0; i < AuthCallGate.PER_ACCOUNT.capacity; i++) {
+            run(AuthCallGate.SIGN_IN, EMAIL, "ok");
+        }
+        now += AuthCallGate.PER_ACCOUNT.refillMillis - 1_000;
+        Task<String> task = gate.run(AuthCallGate.SIGN_IN, EMAIL, call);
+        assertFalse(task.isComplete());
+        return task;
+    }
+
+    /** Runs a call that completes at once, succeeding for "ok" and failing with that class otherwise. */
+    private Task<String> run(String operation, String account, String outcome) {
+        return gate.run(operation, account, () -> {
+            calls++;
+            return "ok".equals(outcome)
+                    ? Tasks.forResult(outcome)
+                    : Tasks.forException(new Exception(outcome));
+        });
+    }
+
+    private static AuthCallGate.RejectedException rejection(Task<?> task) {
+        assertTrue(task.isComplete());
+        return (AuthCallGate.RejectedException) task.getException();
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.sandbox_firebase;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class AuthExecutorTest {
+
+    private static final int CYCLES = 10_000;
+
+    private AuthExecutor executor;
+
+    @Before
+    public void setUp() {
+        executor = new AuthExecutor();
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void threadCountStaysFlatAcrossSignInSignOutCycles() throws InterruptedException {
+        // Warm the pool up so the baseline already includes its threads.
+        runCycle();
+        int baseline = Thread.activeCount();
+
+        for (int i = 0; i < CYCLES; i++) {
+            runCycle();
+        }
+
+        int after = Thread.activeCount();
+        assertTrue("threads grew from " + baseline + " to " + after,
+                after <= baseline + AuthExecutor.DEFAULT_MAX_THREADS);
+
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        AuthExecutor.Stats stats = executor.stats();
+        assertEquals(2L * (CYCLES + 1), stats.completed);
+        assertTrue(stats.largestPoolSize <= AuthExecutor.DEFAULT_MAX_THREADS);
+    }
+
+    @Test
+    public void recordsQueueDepthWhenWorkBacksUp() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(6);
+        for (int i = 0; i < 6; i++) {
+            executor.execute(() -> {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                done.countDown();
+            });
+        }
+        assertTrue(executor.stats().maxQueueDepth >= 6 - AuthExecutor.DEFAULT_MAX_THREADS);
+
+        release.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertTrue(executor.stats().totalQueueNanos > 0);
+    }
+
+    /** One sign-in callback followed by one sign-out callback, as the activities issue them. */
+    private void runCycle() throws InterruptedException {
+        CountDownLatch signedIn = new CountDownLatch(1);
+        executor.execute(signedIn::countDown);
+        assertTrue(signedIn.await(5, TimeUnit.SECONDS));
+
+        CountDownLatch signedOut = new CountDownLatch(1);
+        executor.execute(signedOut::countDown);
+        assertTrue(signedOut.await(5, TimeUnit.SECONDS));
+    }
+}
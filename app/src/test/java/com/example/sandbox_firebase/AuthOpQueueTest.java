@@ -0,0 +1,142 @@
+package com.example.sandbox_firebase;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class AuthOpQueueTest {
+
+    private File file;
+    private long now = 1_000_000L;
+    private final List<String> performed = new ArrayList<>();
+    private final AuthOpQueue.FailureClassifier classifier = e -> e instanceof SocketTimeoutException;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("auth-ops", ".log");
+        file.delete();
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+        new File(file.getPath() + ".tmp").delete();
+    }
+
+    private AuthOpQueue open() {
+        return new AuthOpQueue(file, () -> now);
+    }
+
+    private AuthOpQueue.Performer online() {
+        return op -> performed.add(op.type + ":" + op.uid);
+    }
+
+    @Test
+    public void offlineDrainKeepsOpsUntilTheNetworkIsBack() throws IOException {
+        AuthOpQueue queue = open();
+        queue.enqueue(AuthOpQueue.Type.VERIFY_EMAIL, "u1");
+        queue.enqueue(AuthOpQueue.Type.RELOAD, "u1");
+
+        AuthOpQueue.DrainResult offline = queue.drain(op -> {
+            throw new SocketTimeoutException();
+        }, classifier, 8);
+        assertTrue(offline.retryLater);
+        assertEquals(0, offline.performed);
+        assertEquals(2, open().getPending().size());
+
+        AuthOpQueue.DrainResult online = open().drain(online(), classifier, 8);
+        assertFalse(online.retryLater);
+        assertEquals(Arrays.asList("VERIFY_EMAIL:u1", "RELOAD:u1"), performed);
+        assertTrue(open().isEmpty());
+    }
+
+    @Test
+    public void coalescesRepeatsAndDropsPermanentFailures() throws IOException {
+        AuthOpQueue queue = open();
+        AuthOpQueue.Op first = queue.enqueue(AuthOpQueue.Type.VERIFY_EMAIL, "u1");
+        assertSame(first, queue.enqueue(AuthOpQueue.Type.VERIFY_EMAIL, "u1"));
+        queue.enqueue(AuthOpQueue.Type.VERIFY_EMAIL, "u2");
+        assertEquals(1, queue.getCoalescedCount());
+
+        AuthOpQueue.DrainResult result = queue.drain(op -> {
+            if (op.uid.equals("u1")) {
+                throw new IllegalStateException("user deleted");
+            }
+            performed.add(op.uid);
+        }, classifier, 8);
+
+        assertEquals(1, result.performed);
+        assertEquals(1, result.dropped);
+        assertEquals(Arrays.asList("u2"), performed);
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void expiredOpsAreDroppedUnperformed() throws IOException {
+        AuthOpQueue queue = open();
+        queue.enqueue(AuthOpQueue.Type.REFRESH_TOKEN, "u1");
+        now += AuthOpQueue.MAX_AGE_MILLIS + 1;
+        queue.enqueue(AuthOpQueue.Type.RELOAD, "u1");
+
+        AuthOpQueue.DrainResult result = queue.drain(online(), classifier, 8);
+
+        assertEquals(1, result.dropped);
+        assertEquals(Arrays.asList("RELOAD:u1"), performed);
+    }
+
+    @Test
+    public void tornTailFromACrashIsCutOffOnReopen() throws IOException {
+        AuthOpQueue queue = open();
+        AuthOpQueue.Op kept = queue.enqueue(AuthOpQueue.Type.VERIFY_EMAIL, "u1");
+        long intact = file.length();
+        queue.enqueue(AuthOpQueue.Type.RELOAD, "u1");
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 3);
+        }
+
+        AuthOpQueue reopened = open();
+        List<AuthOpQueue.Op> pending = reopened.getPending();
+
+        assertEquals(1, pending.size());
+        assertEquals(kept.key, pending.get(0).key);
+        assertEquals(intact, file.length());
+        // Appends after the cut land on a clean record boundary
+        reopened.enqueue(AuthOpQueue.Type.RELOAD, "u1");
+        assertEquals(2, open().getPending().size());
+    }
+
+    @Test
+    public void drainsInBatchesAndCompactsTheLog() throws IOException {
+        AuthOpQueue queue = open();
+        for (int i = 0; i < 100; i++) {
+            queue.enqueue(AuthOpQueue.Type.RELOAD, "u" + i);
+        }
+        List<Integer> batchMarks = new ArrayList<>();
+
+        queue.drain(op -> {
+            performed.add(op.uid);
+            if (performed.size() % 10 == 0) {
+                batchMarks.add(open().getPending().size());
+            }
+        }, classifier, 10);
+
+        assertEquals(100, performed.size());
+        // Each batch is committed before the next starts
+        assertEquals(Arrays.asList(100, 90, 80, 70, 60, 50, 40, 30, 20, 10), batchMarks);
+        assertTrue(open().isEmpty());
+        assertTrue("log should have been compacted, is " + file.length(), file.length() < 1024);
+    }
+}
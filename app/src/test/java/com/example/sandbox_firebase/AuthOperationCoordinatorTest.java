@@ -0,0 +1,222 @@
+package com.example.sandbox_firebase;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.TaskCompletionSource;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class AuthOperationCoordinatorTest {
+
+    private static final long TTL = 5_000;
+
+    private long now;
+    private FakeBackend backend;
+    private AuthOperationCoordinator coordinator;
+
+    @Before
+    public void setUp() {
+        now = 1_000;
+        backend = new FakeBackend();
+        coordinator = new AuthOperationCoordinator(() -> now, TTL);
+    }
+
+    @Test
+    public void repeatedRequestWhilePendingJoinsTheInFlightTask() {
+        String key = AuthOperationCoordinator.key("signIn", "a@example.com", "hunter22");
+
+        Task<String> first = coordinator.run(key, backend::call);
+        Task<String> second = coordinator.run(key, backend::call);
+
+        assertSame(first, second);
+        assertEquals(1, backend.calls());
+        assertEquals(1, coordinator.getExecutedCount());
+        assertEquals(1, coordinator.getCoalescedCount());
+    }
+
+    @Test
+    public void requestAfterCompletionStartsANewRoundTrip() {
+        String key = AuthOperationCoordinator.key("createAccount", "a@example.com", "hunter22");
+
+        Task<String> first = coordinator.run(key, backend::call);
+        backend.succeedAll("ok");
+        Task<String> second = coordinator.run(key, backend::call);
+
+        assertNotSame(first, second);
+        assertEquals(2, backend.calls());
+        assertEquals(0, coordinator.getCoalescedCount());
+    }
+
+    @Test
+    public void differentSecretIsNotCoalesced() {
+        coordinator.run(AuthOperationCoordinator.key("signIn", "a@example.com", "wrong"), backend::call);
+        coordinator.run(AuthOperationCoordinator.key("signIn", "a@example.com", "right"), backend::call);
+
+        assertEquals(2, backend.calls());
+    }
+
+    @Test
+    public void secretsWithTheSameHashCodeAreNotCoalesced() {
+        assertEquals("Aa".hashCode(), "BB".hashCode());
+        coordinator.run(AuthOperationCoordinator.key("signIn", "a@example.com", "Aa"), backend::call);
+        coordinator.run(AuthOperationCoordinator.key("signIn", "a@example.com", "BB"), backend::call);
+
+        assertEquals(2, backend.calls());
+    }
+
+    @Test
+    public void failedRequestIsReleasedForRetry() {
+        String key = AuthOperationCoordinator.key("signIn", "a@example.com", "pw");
+
+        coordinator.run(key, backend::call);
+        backend.failAll();
+        coordinator.run(key, backend::call);
+
+        assertEquals(2, backend.calls());
+    }
+
+    @Test
+    public void reloadResultIsServedFromCacheWithinTtl() {
+        String key = AuthOperationCoordinator.key("reload", "uid-1");
+
+        Task<String> first = coordinator.runCached(key, backend::call);
+        backend.succeedAll("reloaded");
+
+        now += TTL - 1;
+        Task<String> cached = coordinator.runCached(key, backend::call);
+
+        assertSame(first, cached);
+        assertEquals(1, backend.calls());
+        assertEquals(1, coordinator.getCacheHitCount());
+
+        now += 1;
+        coordinator.runCached(key, backend::call);
+        assertEquals(2, backend.calls());
+    }
+
+    @Test
+    public void failedReloadIsNotCached() {
+        String key = AuthOperationCoordinator.key("reload", "uid-1");
+
+        coordinator.runCached(key, backend::call);
+        backend.failAll();
+        coordinator.runCached(key, backend::call);
+
+        assertEquals(2, backend.calls());
+        assertEquals(0, coordinator.getCacheHitCount());
+    }
+
+    @Test
+    public void invalidateDropsCachedReload() {
+        String key = AuthOperationCoordinator.key("reload", "uid-1");
+
+        coordinator.runCached(key, backend::call);
+        backend.succeedAll("reloaded");
+        coordinator.invalidate(key);
+        coordinator.runCached(key, backend::call);
+
+        assertEquals(2, backend.calls());
+    }
+
+    @Test
+    public void concurrentCallersShareOneRoundTrip() throws InterruptedException {
+        String key = AuthOperationCoordinator.key("reload", "uid-1");
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            Thread thread = new Thread(() -> coordinator.runCached(key, backend::call));
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(1, backend.calls());
+        assertEquals(15, coordinator.getCoalescedCount());
+        assertEquals(1, coordinator.getExecutedCount());
+    }
+
+    @Test
+    public void operationRunsWithoutTheCoordinatorLock() {
+        boolean[] locked = new boolean[1];
+
+        coordinator.run(AuthOperationCoordinator.key("signIn", "a@example.com", "pw"), () -> {
+            locked[0] = Thread.holdsLock(coordinator);
+            return backend.call();
+        });
+
+        assertFalse(locked[0]);
+    }
+
+    @Test
+    public void callerJoiningWhileTheOperationStartsGetsItsResult() {
+        String key = AuthOperationCoordinator.key("reload", "uid-1");
+        List<Task<String>> joined = new ArrayList<>();
+
+        coordinator.run(key, () -> {
+            // E.g. a listener that re-enters the coordinator for the same key
+            joined.add(coordinator.run(key, backend::call));
+            return backend.call();
+        });
+        backend.succeedAll("ok");
+
+        assertEquals(1, backend.calls());
+        assertEquals("ok", joined.get(0).getResult());
+    }
+
+    @Test
+    public void throwingOperationReleasesItsKey() {
+        String key = AuthOperationCoordinator.key("reload", "uid-1");
+        try {
+            coordinator.run(key, () -> {
+                throw new IllegalStateException("no user");
+            });
+            fail();
+        } catch (IllegalStateException expected) {
+            // Propagated to the caller
+        }
+
+        coordinator.run(key, backend::call);
+        assertEquals(1, backend.calls());
+    }
+
+    /** Stands in for the Firebase backend: every call is a pending Task the test completes. */
+    private static final class FakeBackend {
+        private final List<TaskCompletionSource<String>> pending = new ArrayList<>();
+        private int calls;
+
+        synchronized Task<String> call() {
+            calls++;
+            TaskCompletionSource<String> source = new TaskCompletionSource<>();
+            pending.add(source);
+            return source.getTask();
+        }
+
+        synchronized int calls() {
+            return calls;
+        }
+
+        synchronized void succeedAll(String result) {
+            for (TaskCompletionSource<String> source : pending) {
+                source.setResult(result);
+            }
+            pending.clear();
+        }
+
+        synchronized void failAll() {
+            for (TaskCompletionSource<String> source : pending) {
+                source.setException(new Exception("backend error"));
+            }
+            pending.clear();
+        }
+    }
+}
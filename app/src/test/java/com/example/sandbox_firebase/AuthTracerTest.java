@@ -0,0 +1,129 @@
+package com.example.sandbox_firebase;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+public class AuthTracerTest {
+
+    private long now = 1_000_000_000L;
+    private final AuthTracer tracer = new AuthTracer(() -> now);
+
+    @Test
+    public void stagesAndTotalAreRecorded() {
+        tracer.begin(AuthTracer.Flow.GOOGLE_SIGN_IN);
+        advanceMillis(400);
+        tracer.mark(AuthTracer.Flow.GOOGLE_SIGN_IN, AuthTracer.Stage.CREDENTIAL_RESULT);
+        advanceMillis(2);
+        tracer.mark(AuthTracer.Flow.GOOGLE_SIGN_IN, AuthTracer.Stage.ID_TOKEN);
+        advanceMillis(300);
+        tracer.mark(AuthTracer.Flow.GOOGLE_SIGN_IN, AuthTracer.Stage.FIREBASE_AUTH);
+        advanceMillis(16);
+        tracer.mark(AuthTracer.Flow.GOOGLE_SIGN_IN, AuthTracer.Stage.UI_UPDATE);
+        tracer.end(AuthTracer.Flow.GOOGLE_SIGN_IN, AuthTracer.Outcome.SUCCESS);
+
+        assertEquals(400_000, stage(AuthTracer.Stage.CREDENTIAL_RESULT).getMaxMicros());
+        assertEquals(2_000, stage(AuthTracer.Stage.ID_TOKEN).getMaxMicros());
+        assertEquals(300_000, stage(AuthTracer.Stage.FIREBASE_AUTH).getMaxMicros());
+        assertEquals(16_000, stage(AuthTracer.Stage.UI_UPDATE).getMaxMicros());
+        LatencyHistogram total = tracer.getTotal(AuthTracer.Flow.GOOGLE_SIGN_IN, AuthTracer.Outcome.SUCCESS);
+        assertEquals(1, total.getCount());
+        assertEquals(718_000, total.getMaxMicros());
+        assertFalse(tracer.isRunning(AuthTracer.Flow.GOOGLE_SIGN_IN));
+    }
+
+    @Test
+    public void outcomesAreKeptApart() {
+        tracer.begin(AuthTracer.Flow.EMAIL_SIGN_IN);
+        tracer.end(AuthTracer.Flow.EMAIL_SIGN_IN, AuthTracer.Outcome.FAILURE);
+        tracer.begin(AuthTracer.Flow.EMAIL_SIGN_IN);
+        tracer.end(AuthTracer.Flow.EMAIL_SIGN_IN, AuthTracer.Outcome.SUCCESS);
+
+        assertEquals(1, tracer.getTotal(AuthTracer.Flow.EMAIL_SIGN_IN, AuthTracer.Outcome.FAILURE).getCount());
+        assertEquals(1, tracer.getTotal(AuthTracer.Flow.EMAIL_SIGN_IN, AuthTracer.Outcome.SUCCESS).getCount());
+        assertEquals(0, tracer.getTotal(AuthTracer.Flow.EMAIL_CREATE_ACCOUNT, AuthTracer.Outcome.SUCCESS).getCount());
+    }
+
+    @Test
+    public void beginWhileRunningJoinsTheFlow() {
+        tracer.begin(AuthTracer.Flow.EMAIL_SIGN_IN);
+        advanceMillis(100);
+        tracer.begin(AuthTracer.Flow.EMAIL_SIGN_IN);
+        advanceMillis(100);
+        tracer.end(AuthTracer.Flow.EMAIL_SIGN_IN, AuthTracer.Outcome.SUCCESS);
+
+        assertEquals(200_000, tracer.getTotal(AuthTracer.Flow.EMAIL_SIGN_IN, AuthTracer.Outcome.SUCCESS).getMaxMicros());
+    }
+
+    @Test
+    public void abandonedFlowIsRestarted() {
+        tracer.begin(AuthTracer.Flow.EMAIL_SIGN_IN);
+        now += AuthTracer.ABANDON_AFTER_NANOS;
+        tracer.begin(AuthTracer.Flow.EMAIL_SIGN_IN);
+        advanceMillis(50);
+        tracer.end(AuthTracer.Flow.EMAIL_SIGN_IN, AuthTracer.Outcome.SUCCESS);
+
+        assertEquals(50_000, tracer.getTotal(AuthTracer.Flow.EMAIL_SIGN_IN, AuthTracer.Outcome.SUCCESS).getMaxMicros());
+    }
+
+    @Test
+    public void marksAndEndsOutsideAFlowAreIgnored() {
+        tracer.mark(AuthTracer.Flow.GOOGLE_SIGN_IN, AuthTracer.Stage.UI_UPDATE);
+        tracer.end(AuthTracer.Flow.GOOGLE_SIGN_IN, AuthTracer.Outcome.SUCCESS);
+
+        assertEquals(0, stage(AuthTracer.Stage.UI_UPDATE).getCount());
+        assertEquals(0, tracer.getTotal(AuthTracer.Flow.GOOGLE_SIGN_IN, AuthTracer.Outcome.SUCCESS).getCount());
+    }
+
+    @Test
+    public void dumpListsOnlyRecordedRows() {
+        tracer.begin(AuthTracer.Flow.EMAIL_CREATE_ACCOUNT);
+        advanceMillis(250);
+        tracer.mark(AuthTracer.Flow.EMAIL_CREATE_ACCOUNT, AuthTracer.Stage.FIREBASE_AUTH);
+        tracer.end(AuthTracer.Flow.EMAIL_CREATE_ACCOUNT, AuthTracer.Outcome.FAILURE);
+
+        String dump = tracer.dump();
+
+        assertTrue(dump, dump.contains("EMAIL_CREATE_ACCOUNT"));
+        assertTrue(dump, dump.contains("FAILURE"));
+        assertTrue(dump, dump.contains("FIREBASE_AUTH"));
+        assertFalse(dump, dump.contains("GOOGLE_SIGN_IN"));
+        assertEquals(3, dump.split("\n").length);
+    }
+
+    @Test
+    public void recordingDoesNotAllocate() {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        AuthTracer real = new AuthTracer();
+        for (int i = 0; i < 20_000; i++) {
+            runFlow(real); // warm up so the JIT and class loading are out of the way
+        }
+        long before = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < 10_000; i++) {
+            runFlow(real);
+        }
+        long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+
+        assertTrue("allocated " + allocated + " bytes", allocated < 1024);
+    }
+
+    private static void runFlow(AuthTracer tracer) {
+        tracer.begin(AuthTracer.Flow.GOOGLE_SIGN_IN);
+        tracer.mark(AuthTracer.Flow.GOOGLE_SIGN_IN, AuthTracer.Stage.CREDENTIAL_RESULT);
+        tracer.mark(AuthTracer.Flow.GOOGLE_SIGN_IN, AuthTracer.Stage.FIREBASE_AUTH);
+        tracer.end(AuthTracer.Flow.GOOGLE_SIGN_IN, AuthTracer.Outcome.SUCCESS);
+    }
+
+    private LatencyHistogram stage(AuthTracer.Stage stage) {
+        return tracer.getStage(AuthTracer.Flow.GOOGLE_SIGN_IN, stage);
+    }
+
+    private void advanceMillis(long millis) {
+        now += millis * 1_000_000;
+    }
+}
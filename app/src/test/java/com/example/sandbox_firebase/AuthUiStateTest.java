@@ -0,0 +1,34 @@
+package com.example.sandbox_firebase;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class AuthUiStateTest {
+
+    @Test
+    public void signedInShowsEmailAndUidWithSignOut() {
+        AuthUiState state = AuthUiState.from(new AuthSnapshot("uid-1", "a@example.com", true, "google.com"));
+
+        assertTrue(state.isSignedIn());
+        assertEquals("a@example.com", state.getStatusArg());
+        assertEquals("uid-1", state.getDetailArg());
+        assertTrue(state.isSignOutVisible());
+        assertFalse(state.isSignInVisible());
+    }
+
+    @Test
+    public void signedOutShowsSignInAndIsShared() {
+        AuthUiState state = AuthUiState.from(AuthSnapshot.signedOut());
+
+        assertFalse(state.isSignedIn());
+        assertNull(state.getDetailArg());
+        assertTrue(state.isSignInVisible());
+        assertFalse(state.isSignOutVisible());
+        assertSame(state, AuthUiState.from(AuthSnapshot.signedOut()));
+    }
+}
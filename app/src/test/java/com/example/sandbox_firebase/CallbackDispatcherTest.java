@@ -0,0 +1,118 @@
+package com.example.sandbox_firebase;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleOwner;
+import androidx.lifecycle.LifecycleRegistry;
+
+import com.google.android.gms.tasks.TaskCompletionSource;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+
+public class CallbackDispatcherTest {
+
+    /** Stands in for an activity: a lifecycle plus some state its callbacks touch. */
+    private static final class Screen implements LifecycleOwner {
+        final LifecycleRegistry lifecycle = LifecycleRegistry.createUnsafe(this);
+        final byte[] views = new byte[1 << 20];
+        final List<String> shown = new ArrayList<>();
+
+        Screen() {
+            lifecycle.setCurrentState(Lifecycle.State.RESUMED);
+        }
+
+        @NonNull
+        @Override
+        public Lifecycle getLifecycle() {
+            return lifecycle;
+        }
+    }
+
+    private final List<Runnable> posted = new ArrayList<>();
+    private CallbackDispatcher dispatcher;
+
+    @Before
+    public void setUp() {
+        dispatcher = new CallbackDispatcher(posted::add);
+    }
+
+    @Test
+    public void deliversOnceThroughTheMainThread() {
+        Screen screen = new Screen();
+        TaskCompletionSource<String> source = new TaskCompletionSource<>();
+        dispatcher.onComplete(screen, source.getTask(), task -> screen.shown.add(task.getResult()));
+
+        source.setResult("signed in");
+        assertTrue(screen.shown.isEmpty());
+        assertEquals(1, posted.size());
+        posted.remove(0).run();
+
+        assertEquals(1, screen.shown.size());
+        assertEquals(1, dispatcher.getDeliveredCount());
+        // Delivery unregisters, so destroying the screen later drops nothing
+        screen.lifecycle.setCurrentState(Lifecycle.State.DESTROYED);
+        assertEquals(0, dispatcher.getDroppedCount());
+    }
+
+    @Test
+    public void resultAfterDestroyIsDropped() {
+        Screen screen = new Screen();
+        TaskCompletionSource<String> source = new TaskCompletionSource<>();
+        dispatcher.onComplete(screen, source.getTask(), task -> screen.shown.add(task.getResult()));
+
+        screen.lifecycle.setCurrentState(Lifecycle.State.DESTROYED);
+        source.setResult("late");
+
+        assertTrue(posted.isEmpty());
+        assertTrue(screen.shown.isEmpty());
+        assertEquals(1, dispatcher.getDroppedCount());
+    }
+
+    @Test
+    public void resultPostedBeforeDestroyButRunAfterIsDropped() {
+        Screen screen = new Screen();
+        TaskCompletionSource<String> source = new TaskCompletionSource<>();
+        dispatcher.onComplete(screen, source.getTask(), task -> screen.shown.add(task.getResult()));
+
+        source.setResult("in flight");
+        screen.lifecycle.setCurrentState(Lifecycle.State.DESTROYED);
+        posted.remove(0).run();
+
+        assertTrue(screen.shown.isEmpty());
+        assertEquals(0, dispatcher.getDeliveredCount());
+    }
+
+    @Test
+    public void pendingTaskDoesNotRetainDestroyedScreen() {
+        // Firebase keeps the task (and its listeners) until the call completes
+        TaskCompletionSource<String> source = new TaskCompletionSource<>();
+        WeakReference<Screen> ref = registerAndDestroy(source);
+
+        for (int i = 0; i < 20 && ref.get() != null; i++) {
+            System.gc();
+            System.runFinalization();
+        }
+
+        assertNull("Destroyed screen is still reachable from a pending task", ref.get());
+        source.setResult("late");
+        assertTrue(posted.isEmpty());
+    }
+
+    /** Kept out of the test method so no local variable keeps the screen alive. */
+    private WeakReference<Screen> registerAndDestroy(TaskCompletionSource<String> source) {
+        Screen screen = new Screen();
+        dispatcher.onComplete(screen, source.getTask(),
+                task -> screen.shown.add(task.getResult() + screen.views.length));
+        screen.lifecycle.setCurrentState(Lifecycle.State.DESTROYED);
+        return new WeakReference<>(screen);
+    }
+}
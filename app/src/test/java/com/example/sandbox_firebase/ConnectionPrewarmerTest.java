@@ -0,0 +1,104 @@
+package com.example.sandbox_firebase;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+
+public class ConnectionPrewarmerTest {
+
+    private long now = 10_000;
+    private boolean allowed = true;
+    private int connects;
+    private IOException failure;
+    private final List<Runnable> background = new ArrayList<>();
+
+    private ConnectionPrewarmer newPrewarmer() throws IOException {
+        return new ConnectionPrewarmer(new URL("https://auth.example.test/"), background::add,
+                () -> allowed, endpoint -> {
+                    connects++;
+                    if (failure != null) {
+                        throw failure;
+                    }
+                }, () -> now, 1_000);
+    }
+
+    private void runBackground() {
+        List<Runnable> pending = new ArrayList<>(background);
+        background.clear();
+        pending.forEach(Runnable::run);
+    }
+
+    @Test
+    public void warmsOnceAndStaysWarmForTheIdleWindow() throws IOException {
+        ConnectionPrewarmer prewarmer = newPrewarmer();
+        prewarmer.warm();
+        prewarmer.warm(); // already opening
+        runBackground();
+
+        assertEquals(1, connects);
+        assertTrue(prewarmer.isWarm());
+        prewarmer.warm();
+        assertEquals(0, background.size());
+
+        now += 1_000;
+        assertFalse(prewarmer.isWarm());
+        prewarmer.warm();
+        runBackground();
+        assertEquals(2, connects);
+    }
+
+    @Test
+    public void policySkipsSpeculativeTraffic() throws IOException {
+        ConnectionPrewarmer prewarmer = newPrewarmer();
+        allowed = false; // metered network or battery saver
+
+        prewarmer.warm();
+
+        assertEquals(0, background.size());
+        assertEquals(1, prewarmer.getSkippedCount());
+        assertFalse(prewarmer.isWarm());
+    }
+
+    @Test
+    public void failedWarmUpLeavesItColdAndRetryable() throws IOException {
+        ConnectionPrewarmer prewarmer = newPrewarmer();
+        failure = new IOException("offline");
+        prewarmer.warm();
+        runBackground();
+
+        assertFalse(prewarmer.isWarm());
+        assertEquals(1, prewarmer.getFailureCount());
+        failure = null;
+        prewarmer.warm();
+        runBackground();
+        assertTrue(prewarmer.isWarm());
+        assertEquals(1, prewarmer.getWarmUpCount());
+    }
+
+    @Test
+    public void callsAreFiledColdOrWarmAndKeepTheConnectionWarm() throws IOException {
+        ConnectionPrewarmer prewarmer = newPrewarmer();
+        ConnectionPrewarmer.Call cold = prewarmer.beginCall();
+        cold.end(true);
+
+        now += 900;
+        ConnectionPrewarmer.Call warm = prewarmer.beginCall();
+        now += 900; // past the window counted from the first call, not from the second
+        warm.end(true);
+        ConnectionPrewarmer.Call unanswered = prewarmer.beginCall();
+        unanswered.end(false);
+
+        assertFalse(cold.isWarm());
+        assertTrue(warm.isWarm());
+        assertTrue(prewarmer.isWarm());
+        assertEquals(1, prewarmer.getColdCallLatency().getCount());
+        assertEquals(1, prewarmer.getWarmCallLatency().getCount());
+    }
+}
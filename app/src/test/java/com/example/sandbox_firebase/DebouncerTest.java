@@ -0,0 +1,36 @@
+package com.example.sandbox_firebase;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class DebouncerTest {
+
+    private final FakeScheduler scheduler = new FakeScheduler();
+
+    @Test
+    public void onlyTheLastSubmissionRuns() {
+        Debouncer debouncer = new Debouncer(scheduler, 300);
+        List<String> ran = new ArrayList<>();
+
+        debouncer.submit(() -> ran.add("a"));
+        debouncer.submit(() -> ran.add("ab"));
+        debouncer.submit(() -> ran.add("abc"));
+        scheduler.runDue();
+
+        assertEquals(List.of("abc"), ran);
+    }
+
+    @Test
+    public void cancelDropsThePendingTask() {
+        Debouncer debouncer = new Debouncer(scheduler, 300);
+
+        debouncer.submit(() -> { throw new AssertionError("ran"); });
+        debouncer.cancel();
+
+        assertEquals(0, scheduler.pending());
+    }
+}
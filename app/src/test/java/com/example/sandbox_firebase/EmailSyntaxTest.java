@@ -0,0 +1,56 @@
+package com.example.sandbox_firebase;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class EmailSyntaxTest {
+
+    @Test
+    public void acceptsOrdinaryAndUnusualValidAddresses() {
+        for (String email : new String[]{
+                "someone@example.com",
+                "first.last+tag@sub.example.co.uk",
+                "o'brien@example.ie",
+                "x@a-b.io",
+                "123@456.example.org",
+                "jos\u00e9@ex\u00e4mple.de",
+        }) {
+            assertTrue(email, EmailSyntax.isValid(email));
+        }
+    }
+
+    @Test
+    public void rejectsWhatTheBackendRejects() {
+        for (String email : new String[]{
+                "",
+                "plainaddress",
+                "@example.com",
+                "someone@",
+                "someone@example",
+                "someone@example.c",
+                "some one@example.com",
+                ".someone@example.com",
+                "someone.@example.com",
+                "some..one@example.com",
+                "someone@-example.com",
+                "someone@example-.com",
+                "someone@example..com",
+                "someone@127.0.0.1",
+                "someone@example.com ",
+                "a@b@example.com",
+        }) {
+            assertFalse(email, EmailSyntax.isValid(email));
+        }
+    }
+
+    @Test
+    public void enforcesLengthLimits() {
+        String local64 = "a".repeat(64);
+        assertTrue(EmailSyntax.isValid(local64 + "@example.com"));
+        assertFalse(EmailSyntax.isValid(local64 + "a@example.com"));
+        assertFalse(EmailSyntax.isValid("a@" + "b".repeat(64) + ".com"));
+        assertFalse(EmailSyntax.isValid("a@" + "b.".repeat(130) + "com"));
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.sandbox_firebase;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+public class EventLogTest {
+
+    private long nanos = 5_000_000_000L;
+    /** 2026-01-01T00:00:00Z */
+    private final long wallMillis = 1_767_225_600_000L;
+
+    private EventLog newLog(int capacity) {
+        return new EventLog(capacity, 42, () -> nanos, () -> wallMillis);
+    }
+
+    @Test
+    public void decodesEventsWithFieldsAndWallTime() throws IOException {
+        EventLog log = newLog(8);
+        long account = log.hash("someone@example.com");
+        log.record(EventLog.Type.EMAIL_SIGN_IN_STARTED, account);
+        nanos += 250_000_000;
+        log.record(EventLog.Type.EMAIL_SIGN_IN_FINISHED, AuthTracer.Outcome.FAILURE.ordinal());
+        log.record(EventLog.Type.CREDENTIAL_REQUESTED, 1, 1);
+
+        String[] lines = decode(log.encode()).split("\n");
+
+        assertEquals(4, lines.length);
+        assertEquals("2025-12-31T23:59:59.750Z #0 EMAIL_SIGN_IN_STARTED account="
+                + String.format("%016x", account), lines[0]);
+        assertEquals("2026-01-01T00:00:00Z #1 EMAIL_SIGN_IN_FINISHED outcome=FAILURE", lines[1]);
+        assertEquals("2026-01-01T00:00:00Z #2 CREDENTIAL_REQUESTED kind=1 prepared=true", lines[2]);
+        assertEquals("3 events shown, 3 recorded", lines[3]);
+        assertFalse(log.dump().contains("someone"));
+    }
+
+    @Test
+    public void fullRingKeepsTheNewestEvents() throws IOException {
+        EventLog log = newLog(4);
+        for (int i = 0; i < 10; i++) {
+            log.record(EventLog.Type.CALL_REJECTED, i);
+        }
+
+        String text = decode(log.encode());
+
+        assertTrue(text.startsWith("2026-01-01T00:00:00Z #6 CALL_REJECTED ms=6\n"));
+        assertTrue(text.endsWith("4 events shown, 10 recorded\n"));
+    }
+
+    @Test
+    public void hashIgnoresAsciiCaseAndDependsOnSalt() {
+        EventLog log = newLog(4);
+
+        assertEquals(log.hash("Someone@Example.com"), log.hash("someone@example.com"));
+        assertTrue(log.hash("a@example.com") != log.hash("b@example.com"));
+        assertTrue(log.hash("a@example.com") != new EventLog(4, 43).hash("a@example.com"));
+        assertEquals(0, log.hash(null));
+        assertEquals(0, log.hash(""));
+    }
+
+    @Test
+    public void concurrentWritersNeverProduceDuplicateOrTornEvents() throws Exception {
+        EventLog log = new EventLog(64, 1);
+        Thread[] writers = new Thread[4];
+        for (int t = 0; t < writers.length; t++) {
+            int writer = t;
+            writers[t] = new Thread(() -> {
+                for (int i = 0; i < 20_000; i++) {
+                    // a and b always agree, so a torn slot would show up as a mismatch
+                    log.record(EventLog.Type.CALL_REJECTED, writer * 1_000_000L + i, writer * 1_000_000L + i);
+                }
+            });
+            writers[t].start();
+        }
+        Set<Long> seen = new HashSet<>();
+        while (writers[0].isAlive()) {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(log.encode()));
+            in.skipBytes(4 + 1 + 8 + 8 + 8);
+            int count = in.readInt();
+            seen.clear();
+            for (int i = 0; i < count; i++) {
+                assertTrue(seen.add(in.readLong()));
+                in.readUnsignedByte();
+                in.readLong();
+                assertEquals(in.readLong(), in.readLong());
+            }
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        assertEquals(80_000, log.getRecordedCount());
+    }
+
+    @Test
+    public void rejectsOtherFiles() {
+        try {
+            decode(new byte[]{'n', 'o', 'p', 'e', 0, 0, 0, 0});
+            fail();
+        } catch (IOException expected) {
+        }
+    }
+
+    private static String decode(byte[] bytes) throws IOException {
+        StringBuilder out = new StringBuilder();
+        EventLog.decode(new ByteArrayInputStream(bytes), out);
+        return out.toString();
+    }
+}
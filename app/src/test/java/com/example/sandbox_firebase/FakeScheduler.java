@@ -0,0 +1,57 @@
+package com.example.sandbox_firebase;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** Holds scheduled tasks, in scheduling order, until the test runs them. */
+final class FakeScheduler implements Scheduler {
+
+    private final List<Runnable> tasks = new ArrayList<>();
+    private final List<Long> delays = new ArrayList<>();
+
+    @NonNull
+    @Override
+    public Cancellable schedule(@NonNull Runnable task, long delayMillis) {
+        tasks.add(task);
+        delays.add(delayMillis);
+        return () -> {
+            int index = tasks.indexOf(task);
+            if (index >= 0) {
+                tasks.remove(index);
+                delays.remove(index);
+            }
+        };
+    }
+
+    int pending() {
+        return tasks.size();
+    }
+
+    /** Delay of the {@code index}-th pending task. */
+    long delayAt(int index) {
+        return delays.get(index);
+    }
+
+    /** Delay of the most recently scheduled task. */
+    long nextDelay() {
+        return delays.get(delays.size() - 1);
+    }
+
+    /** Runs the earliest scheduled task only. */
+    void runFirst() {
+        delays.remove(0);
+        tasks.remove(0).run();
+    }
+
+    /** Runs everything pending now; tasks those schedule wait for the next call. */
+    void runDue() {
+        List<Runnable> due = new ArrayList<>(tasks);
+        tasks.clear();
+        delays.clear();
+        for (Runnable task : due) {
+            task.run();
+        }
+    }
+}
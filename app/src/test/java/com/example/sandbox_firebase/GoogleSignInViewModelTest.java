@@ -0,0 +1,54 @@
+package com.example.sandbox_firebase;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import androidx.credentials.exceptions.GetCredentialCancellationException;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.TaskCompletionSource;
+
+import org.junit.Test;
+
+import java.util.function.Supplier;
+
+public class GoogleSignInViewModelTest {
+
+    private static final String KEY = AuthOperationCoordinator.key("getCredential", "google");
+
+    private final AuthOperationCoordinator coordinator = new AuthOperationCoordinator(() -> 0L, 0);
+    private final GoogleSignInViewModel.Pending<String> pending = new GoogleSignInViewModel.Pending<>();
+    private int requests;
+
+    // No CancellationSignal: a cancelled one never calls back, which is what's being modelled
+    private final Supplier<Task<String>> request = () -> {
+        requests++;
+        return pending.start(new TaskCompletionSource<>(), null);
+    };
+
+    @Test
+    public void cancellingAStartedRequestFreesItsCoordinatorKey() {
+        Task<String> first = coordinator.run(KEY, request);
+        assertSame(first, coordinator.run(KEY, request));
+
+        pending.cancel();
+
+        assertTrue(first.getException() instanceof GetCredentialCancellationException);
+        assertNull(pending.task);
+        coordinator.run(KEY, request);
+        assertEquals(2, requests);
+    }
+
+    @Test
+    public void cancellingAfterCompletionLeavesTheResult() {
+        TaskCompletionSource<String> source = new TaskCompletionSource<>();
+        Task<String> task = pending.start(source, null);
+        source.setResult("credential");
+
+        pending.cancel();
+
+        assertEquals("credential", task.getResult());
+    }
+}
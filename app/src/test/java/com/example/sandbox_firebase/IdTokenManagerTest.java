@@ -0,0 +1,213 @@
+package com.example.sandbox_firebase;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import androidx.annotation.NonNull;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class IdTokenManagerTest {
+
+    private static final long MARGIN = 60_000;
+    private static final long LIFETIME = 3_600_000;
+
+    private long now;
+    private FakeScheduler scheduler;
+    private FakeTokenSource source;
+    private IdTokenManager manager;
+
+    @Before
+    public void setUp() {
+        now = 1_000_000;
+        scheduler = new FakeScheduler();
+        source = new FakeTokenSource();
+        manager = new IdTokenManager(() -> now, () -> now, scheduler, MARGIN);
+    }
+
+    @Test
+    public void cachedTokenIsServedWithoutAFetch() {
+        manager.start("uid", source);
+        source.succeedAll("t1", now + LIFETIME);
+
+        Recorder recorder = new Recorder();
+        manager.getToken(recorder);
+        manager.getToken(recorder);
+
+        assertEquals(1, source.fetches);
+        assertEquals(2, recorder.tokens.size());
+        assertEquals("t1", recorder.tokens.get(0));
+        assertEquals(2, manager.getHitCount());
+        assertEquals(1.0, manager.getHitRate(), 0.0);
+    }
+
+    @Test
+    public void concurrentMissesShareOneRefresh() {
+        manager.start("uid", source);
+
+        Recorder recorder = new Recorder();
+        manager.getToken(recorder);
+        manager.getToken(recorder);
+        manager.getToken(recorder);
+        source.succeedAll("t1", now + LIFETIME);
+
+        assertEquals(1, source.fetches);
+        assertEquals(3, recorder.tokens.size());
+        assertEquals(3, manager.getMissCount());
+    }
+
+    @Test
+    public void refreshIsScheduledAMarginBeforeExpiry() {
+        manager.start("uid", source);
+        source.succeedAll("t1", now + LIFETIME);
+
+        assertEquals(LIFETIME - MARGIN, scheduler.nextDelay());
+
+        now += LIFETIME - MARGIN;
+        scheduler.runDue();
+        assertEquals(2, source.fetches);
+        assertTrue(source.lastForce);
+        // The old token is still valid and keeps being served while the refresh is in flight.
+        assertEquals("t1", manager.peekToken());
+
+        source.succeedAll("t2", now + LIFETIME);
+        assertEquals("t2", manager.peekToken());
+    }
+
+    @Test
+    public void expiredTokenIsNotServed() {
+        manager.start("uid", source);
+        source.succeedAll("t1", now + LIFETIME);
+
+        now += LIFETIME;
+
+        assertNull(manager.peekToken());
+    }
+
+    @Test
+    public void failuresBackOffExponentially() {
+        manager.start("uid", source);
+
+        source.failAll();
+        assertEquals(IdTokenManager.INITIAL_BACKOFF_MILLIS, scheduler.nextDelay());
+
+        scheduler.runDue();
+        source.failAll();
+        assertEquals(2 * IdTokenManager.INITIAL_BACKOFF_MILLIS, scheduler.nextDelay());
+
+        scheduler.runDue();
+        source.succeedAll("t1", now + LIFETIME);
+        assertEquals(2, manager.getFailureCount());
+        assertEquals("t1", manager.peekToken());
+    }
+
+    @Test
+    public void waitersSeeTheFailure() {
+        manager.start("uid", source);
+        Recorder recorder = new Recorder();
+        manager.getToken(recorder);
+
+        source.failAll();
+
+        assertEquals(1, recorder.errors.size());
+    }
+
+    @Test
+    public void stopDropsTheTokenAndCancelsTheSchedule() {
+        manager.start("uid", source);
+        source.succeedAll("t1", now + LIFETIME);
+
+        manager.stop();
+
+        assertNull(manager.peekToken());
+        assertEquals(0, scheduler.pending());
+        Recorder recorder = new Recorder();
+        manager.getToken(recorder);
+        assertEquals(1, recorder.errors.size());
+    }
+
+    @Test
+    public void resultArrivingAfterStopIsIgnored() {
+        manager.start("uid", source);
+        Recorder recorder = new Recorder();
+        manager.getToken(recorder);
+
+        manager.stop();
+        source.succeedAll("late", now + LIFETIME);
+
+        assertNull(manager.peekToken());
+        assertEquals(1, recorder.errors.size());
+        assertEquals(0, recorder.tokens.size());
+        assertEquals(0, scheduler.pending());
+    }
+
+    @Test
+    public void startingTheSameUserAgainIsANoOp() {
+        manager.start("uid", source);
+        source.succeedAll("t1", now + LIFETIME);
+
+        manager.start("uid", source);
+
+        assertEquals(1, source.fetches);
+        assertEquals("t1", manager.peekToken());
+    }
+
+    @Test
+    public void refreshLatencyIsRecorded() {
+        manager.start("uid", source);
+        now += 250;
+        source.succeedAll("t1", now + LIFETIME);
+
+        assertEquals(1, manager.getRefreshLatency().getCount());
+        assertEquals(250_000_000L, manager.getRefreshLatency().getMaxNanos());
+    }
+
+    private static final class FakeTokenSource implements IdTokenManager.TokenSource {
+        private final List<IdTokenManager.TokenCallback> pending = new ArrayList<>();
+        int fetches;
+        boolean lastForce;
+
+        @Override
+        public void fetch(boolean forceRefresh, @NonNull IdTokenManager.TokenCallback callback) {
+            fetches++;
+            lastForce = forceRefresh;
+            pending.add(callback);
+        }
+
+        void succeedAll(String token, long expiresAt) {
+            List<IdTokenManager.TokenCallback> callbacks = new ArrayList<>(pending);
+            pending.clear();
+            for (IdTokenManager.TokenCallback callback : callbacks) {
+                callback.onToken(token, expiresAt);
+            }
+        }
+
+        void failAll() {
+            List<IdTokenManager.TokenCallback> callbacks = new ArrayList<>(pending);
+            pending.clear();
+            for (IdTokenManager.TokenCallback callback : callbacks) {
+                callback.onError(new Exception("network"));
+            }
+        }
+    }
+
+    private static final class Recorder implements IdTokenManager.TokenCallback {
+        final List<String> tokens = new ArrayList<>();
+        final List<Exception> errors = new ArrayList<>();
+
+        @Override
+        public void onToken(@NonNull String token, long expiresAtMillis) {
+            tokens.add(token);
+        }
+
+        @Override
+        public void onError(@NonNull Exception e) {
+            errors.add(e);
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.sandbox_firebase;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+public class JwtClaimsDecoderTest {
+
+    private static final String PAYLOAD = "{"
+            + "\"iss\":\"https://accounts.google.com\","
+            + "\"aud\":[\"a\",\"b\"],"
+            + "\"sub\":\"110169484474386276334\","
+            + "\"email\":\"someone@example.com\","
+            + "\"email_verified\":true,"
+            + "\"nested\":{\"exp\":1,\"list\":[{\"sub\":\"x\"}]},"
+            + "\"iat\":1700000000,"
+            + "\"exp\":1700003600"
+            + "}";
+
+    private final JwtClaimsDecoder decoder = new JwtClaimsDecoder();
+
+    @Test
+    public void readsRequestedClaims() {
+        JwtClaimsDecoder.Claims claims = decoder.decode(token(PAYLOAD));
+
+        assertNotNull(claims);
+        assertEquals("110169484474386276334", claims.subject);
+        assertEquals("someone@example.com", claims.email);
+        assertTrue(claims.emailVerified);
+        assertEquals(1_700_000_000L, claims.issuedAtSeconds);
+        assertEquals(1_700_003_600_000L, claims.getExpiresAtMillis());
+    }
+
+    @Test
+    public void nestedKeysDoNotShadowTopLevelClaims() {
+        JwtClaimsDecoder.Claims claims = decoder.decode(token(
+                "{\"nested\":{\"exp\":1,\"sub\":\"inner\"},\"sub\":\"outer\"}"));
+
+        assertEquals("outer", claims.subject);
+        assertEquals(0, claims.expiresAtSeconds);
+    }
+
+    @Test
+    public void onlyRequestedFieldsAreExtracted() {
+        JwtClaimsDecoder expiryOnly = new JwtClaimsDecoder(JwtClaimsDecoder.EXP, 0);
+
+        JwtClaimsDecoder.Claims claims = expiryOnly.decode(token(PAYLOAD));
+
+        assertNull(claims.subject);
+        assertNull(claims.email);
+        assertEquals(1_700_003_600L, claims.expiresAtSeconds);
+    }
+
+    @Test
+    public void escapesAndNonAsciiAreDecoded() {
+        JwtClaimsDecoder.Claims claims = decoder.decode(token(
+                "{\"sub\":\"a\\\"b\\\\c\\u00e9\",\"email\":\"j\u00fcrgen@example.com\"}"));
+
+        assertEquals("a\"b\\c\u00e9", claims.subject);
+        assertEquals("j\u00fcrgen@example.com", claims.email);
+    }
+
+    @Test
+    public void stringBooleanAndFractionalDatesAreAccepted() {
+        JwtClaimsDecoder.Claims claims = decoder.decode(token(
+                "{\"email_verified\":\"true\",\"exp\":1700003600.5}"));
+
+        assertTrue(claims.emailVerified);
+        assertEquals(1_700_003_600L, claims.expiresAtSeconds);
+    }
+
+    @Test
+    public void paddedPayloadIsAccepted() {
+        String payload = Base64.getUrlEncoder().encodeToString("{\"sub\":\"ab\"}".getBytes(StandardCharsets.UTF_8));
+
+        assertEquals("ab", decoder.decode("h." + payload + ".s").subject);
+    }
+
+    @Test
+    public void expiryCheckUsesTheWallClock() {
+        JwtClaimsDecoder.Claims claims = decoder.decode(token(PAYLOAD));
+
+        assertFalse(claims.isExpiredAt(1_700_003_599_999L));
+        assertTrue(claims.isExpiredAt(1_700_003_600_000L));
+    }
+
+    @Test
+    public void malformedTokensDecodeToNull() {
+        assertNull(decoder.decode("not a jwt"));
+        assertNull(decoder.decode("a.b"));
+        assertNull(decoder.decode("a.!!!.c"));
+        assertNull(decoder.decode("a.A.c"));
+        assertNull(decoder.decode(token("[1,2]")));
+        assertNull(decoder.decode(token("{\"sub\":\"unterminated")));
+        assertNull(decoder.decode(token("{\"sub\" \"x\"}")));
+        assertNull(decoder.decode(token("{\"sub\":\"\\u12\"}")));
+    }
+
+    @Test
+    public void repeatedTokenIsServedFromTheCache() {
+        String token = token(PAYLOAD);
+
+        JwtClaimsDecoder.Claims first = decoder.decode(token);
+        JwtClaimsDecoder.Claims second = decoder.decode(new String(token));
+
+        assertSame(first, second);
+        assertEquals(1, decoder.getDecodeCount());
+        assertEquals(1, decoder.getCacheHitCount());
+    }
+
+    @Test
+    public void leastRecentlyUsedTokenIsEvicted() {
+        JwtClaimsDecoder small = new JwtClaimsDecoder(JwtClaimsDecoder.ALL, 2);
+        String a = token("{\"sub\":\"a\"}");
+        String b = token("{\"sub\":\"b\"}");
+        String c = token("{\"sub\":\"c\"}");
+
+        small.decode(a);
+        small.decode(b);
+        small.decode(a); // a is now most recent
+        small.decode(c); // evicts b
+        small.decode(a);
+        small.decode(b);
+
+        assertEquals(4, small.getDecodeCount());
+        assertEquals(2, small.getCacheHitCount());
+    }
+
+    @Test
+    public void bufferGrowsForLargePayloads() {
+        StringBuilder big = new StringBuilder("{\"pad\":\"");
+        for (int i = 0; i < 5000; i++) {
+            big.append('x');
+        }
+        big.append("\",\"sub\":\"late\"}");
+
+        assertEquals("late", decoder.decode(token(big.toString())).subject);
+    }
+
+    private static String token(String payloadJson) {
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        return encoder.encodeToString("{\"alg\":\"RS256\"}".getBytes(StandardCharsets.UTF_8))
+                + "." + encoder.encodeToString(payloadJson.getBytes(StandardCharsets.UTF_8))
+                + ".signature";
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.sandbox_firebase;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void bucketsAreContiguousAndCoverTheirValues() {
+        for (int i = 1; i < LatencyHistogram.BUCKETS; i++) {
+            assertEquals(LatencyHistogram.upperBoundOf(i - 1) + 1, lowerBoundOf(i));
+        }
+        Random random = new Random(7);
+        for (int i = 0; i < 10_000; i++) {
+            long value = random.nextInt(Integer.MAX_VALUE) >> random.nextInt(31);
+            int index = LatencyHistogram.indexOf(value);
+            assertTrue(value >= lowerBoundOf(index));
+            assertTrue(value <= LatencyHistogram.upperBoundOf(index));
+        }
+    }
+
+    @Test
+    public void percentilesAreWithinTheBucketError() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int micros = 1; micros <= 100_000; micros++) {
+            histogram.recordMicros(micros);
+        }
+
+        assertClose(50_000, histogram.getPercentileMicros(50));
+        assertClose(95_000, histogram.getPercentileMicros(95));
+        assertClose(99_000, histogram.getPercentileMicros(99));
+        assertEquals(100_000, histogram.getPercentileMicros(100));
+        assertEquals(100_000, histogram.getMaxMicros());
+        assertEquals(100_000, histogram.getCount());
+    }
+
+    @Test
+    public void percentileNeverExceedsTheMax() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.recordMicros(1_000);
+
+        assertEquals(1_000, histogram.getPercentileMicros(99));
+    }
+
+    @Test
+    public void hugeAndNegativeValuesAreClamped() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.recordMicros(Long.MAX_VALUE);
+        histogram.recordMicros(-5);
+
+        assertEquals(2, histogram.getCount());
+        assertEquals(0, histogram.getPercentileMicros(50));
+    }
+
+    @Test
+    public void emptyHistogramReportsZero() {
+        assertEquals(0, new LatencyHistogram().getPercentileMicros(50));
+    }
+
+    @Test
+    public void resetClearsEverything() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.recordNanos(5_000_000);
+        histogram.reset();
+
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMaxMicros());
+        assertEquals(0, histogram.getPercentileMicros(99));
+    }
+
+    private static long lowerBoundOf(int index) {
+        return index == 0 ? 0 : LatencyHistogram.upperBoundOf(index - 1) + 1;
+    }
+
+    private static void assertClose(long expected, long actual) {
+        assertTrue("expected ~" + expected + " but was " + actual,
+                Math.abs(actual - expected) <= expected / 8);
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.sandbox_firebase;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class LoginFormValidatorTest {
+
+    private static final LoginFormValidator.Purpose SIGN_IN = LoginFormValidator.Purpose.SIGN_IN;
+    private static final LoginFormValidator.Purpose CREATE = LoginFormValidator.Purpose.CREATE_ACCOUNT;
+
+    private final LoginFormValidator validator = new LoginFormValidator(new PasswordPolicy.Builder()
+            .setMinLength(8)
+            .requireNumeric(true)
+            .build());
+
+    @Test
+    public void filledFormIsValid() {
+        LoginFormValidator.Result result = validator.validate("a@example.com", "secret123", CREATE);
+
+        assertTrue(result.isValid());
+        assertNull(result.emailError);
+        assertNull(result.passwordError);
+    }
+
+    @Test
+    public void emptyOrMissingFieldsAreRequired() {
+        LoginFormValidator.Result result = validator.validate("", null, SIGN_IN);
+
+        assertFalse(result.isValid());
+        assertEquals(LoginFormValidator.REQUIRED, result.emailError);
+        assertEquals(LoginFormValidator.REQUIRED, result.passwordError);
+    }
+
+    @Test
+    public void malformedEmailIsRejected() {
+        assertEquals(LoginFormValidator.INVALID_EMAIL,
+                validator.validate("a@example", "secret123", SIGN_IN).emailError);
+    }
+
+    @Test
+    public void newPasswordsMeetThePolicyOneMessageAtATime() {
+        assertEquals("Use at least 8 characters.", validator.validate("a@example.com", "abc", CREATE).passwordError);
+        assertEquals("Add a number.", validator.validate("a@example.com", "abcdefgh", CREATE).passwordError);
+    }
+
+    @Test
+    public void signInOnlyEnforcesWhatEveryAccountMeets() {
+        assertTrue(validator.validate("a@example.com", "abcdef", SIGN_IN).isValid());
+        assertEquals("Use at least 8 characters.",
+                validator.validate("a@example.com", "abc", SIGN_IN).passwordError);
+    }
+
+    @Test
+    public void resultsAreShared() {
+        assertSame(validator.validate("a@b.co", "secret123", CREATE),
+                validator.validate("c@d.co", "secret456", CREATE));
+        assertSame(validator.validate(null, null, SIGN_IN), validator.validate("", "", CREATE));
+    }
+
+    @Test
+    public void countsOnlySubmissionsTheServerWouldHaveRejected() {
+        validator.validateSubmission("", "", SIGN_IN);
+        validator.validateSubmission("a@example.com", "secret123", SIGN_IN);
+        validator.validate("not-an-email", "secret123", SIGN_IN);
+        assertEquals(0, validator.getAvoidedRoundTrips());
+
+        validator.validateSubmission("not-an-email", "secret123", SIGN_IN);
+        validator.validateSubmission("a@example.com", "abcdefgh", CREATE);
+
+        assertEquals(2, validator.getAvoidedRoundTrips());
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.sandbox_firebase;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.example.sandbox_firebase.MainThreadMonitor.Screen;
+import com.example.sandbox_firebase.MainThreadMonitor.Section;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class MainThreadMonitorTest {
+
+    private static final long MS = 1_000_000L;
+    private static final long FRAME = 16 * MS;
+
+    private long now = 1_000 * MS;
+    private int frameRequests;
+    private MainThreadMonitor monitor;
+
+    @Before
+    public void setUp() {
+        monitor = new MainThreadMonitor(() -> now, () -> frameRequests++, 16 * MS, FRAME);
+    }
+
+    private void dispatch(Runnable body) {
+        monitor.onLooperLine(">>>>> Dispatching to Handler (android.os.Handler) {1} null: 0");
+        body.run();
+        monitor.onLooperLine("<<<<< Finished to Handler (android.os.Handler) {1} null");
+    }
+
+    @Test
+    public void slowMessageIsChargedToItsLongestSection() {
+        dispatch(() -> {
+            now += 2 * MS;
+            monitor.mark(Screen.LOGIN, Section.SIGN_IN_RESULT);
+            now += 30 * MS;
+            monitor.mark(Screen.LOGIN, Section.UPDATE_UI);
+            now += 5 * MS;
+        });
+
+        assertEquals(1, monitor.getSlowMessageCount(Screen.LOGIN, Section.SIGN_IN_RESULT));
+        assertEquals(37 * MS, monitor.getWorstMessageNanos(Screen.LOGIN, Section.SIGN_IN_RESULT));
+        assertEquals(0, monitor.getSlowMessageCount(Screen.LOGIN, Section.UPDATE_UI));
+        assertEquals(1, monitor.getMessageCount(Screen.LOGIN));
+    }
+
+    @Test
+    public void fastMessagesAndUnmarkedWorkStayOffTheSlowList() {
+        monitor.mark(Screen.LOGIN, Section.ON_RESUME);
+        dispatch(() -> now += 3 * MS);
+        dispatch(() -> now += 20 * MS);
+
+        assertEquals(2, monitor.getMessageCount(Screen.LOGIN));
+        assertEquals(0, monitor.getSlowMessageCount(Screen.LOGIN, Section.ON_RESUME));
+        // Work in a later message with no mark of its own is the framework's, not onResume's
+        assertEquals(1, monitor.getSlowMessageCount(Screen.LOGIN, Section.UNATTRIBUTED));
+        assertTrue(monitor.dump().contains("UNATTRIBUTED"));
+    }
+
+    @Test
+    public void jankAfterAMarkIsChargedToTheMarkedWork() {
+        dispatch(() -> {
+            monitor.mark(Screen.GOOGLE_LOGIN, Section.GOOGLE_SIGN_IN_RESULT);
+            now += 50 * MS;
+        });
+        assertEquals(1, frameRequests);
+
+        // Four vsyncs after the mark: three missed
+        assertTrue(monitor.onFrame(now + 14 * MS));
+
+        assertEquals(1, monitor.getJankyFrameCount(Screen.GOOGLE_LOGIN, Section.GOOGLE_SIGN_IN_RESULT));
+        assertEquals(3, monitor.getDroppedFrameCount(Screen.GOOGLE_LOGIN, Section.GOOGLE_SIGN_IN_RESULT));
+    }
+
+    @Test
+    public void smoothFramesAreNotJanky() {
+        dispatch(() -> {
+            monitor.mark(Screen.LOGIN, Section.UPDATE_UI);
+            now += 2 * MS;
+        });
+        long frame = now + 10 * MS;
+        for (int i = 0; i < 5; i++) {
+            monitor.onFrame(frame);
+            frame += FRAME;
+        }
+
+        assertEquals(0, monitor.getJankyFrameCount(Screen.LOGIN, Section.UPDATE_UI));
+        assertEquals(5, monitor.getWatchedFrameCount(Screen.LOGIN));
+    }
+
+    @Test
+    public void stopsWatchingFramesAfterTheWindowAndRearmsOnTheNextMark() {
+        monitor.mark(Screen.LOGIN, Section.ON_CREATE);
+        monitor.mark(Screen.LOGIN, Section.ON_START);
+        assertEquals(1, frameRequests);
+
+        long frame = now;
+        boolean more = true;
+        int frames = 0;
+        while (more) {
+            frame += FRAME;
+            more = monitor.onFrame(frame);
+            frames++;
+        }
+        assertEquals(MainThreadMonitor.FRAMES_AFTER_MARK, frames);
+        assertFalse(more);
+
+        now = frame + 1_000 * MS;
+        monitor.mark(Screen.LOGIN, Section.RELOAD_RESULT);
+        assertEquals(2, frameRequests);
+        // The idle second before the mark isn't counted as a dropped frame
+        assertTrue(monitor.onFrame(now + FRAME));
+        assertEquals(0, monitor.getJankyFrameCount(Screen.LOGIN, Section.RELOAD_RESULT));
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.sandbox_firebase;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class PasswordPolicyTest {
+
+    @Test
+    public void firebaseDefaultOnlyNeedsSixCharacters() {
+        PasswordPolicy policy = PasswordPolicy.firebaseDefault();
+
+        assertEquals(PasswordPolicy.TOO_SHORT, policy.evaluate("abcde"));
+        assertEquals(PasswordPolicy.TOO_SHORT, policy.evaluate(null));
+        assertEquals(0, policy.evaluate("abcdef"));
+    }
+
+    @Test
+    public void reportsEveryMissingCharacterClass() {
+        PasswordPolicy policy = new PasswordPolicy.Builder()
+                .setMinLength(10)
+                .requireUppercase(true)
+                .requireLowercase(true)
+                .requireNumeric(true)
+                .requireNonAlphanumeric(true)
+                .build();
+
+        assertEquals(PasswordPolicy.TOO_SHORT | PasswordPolicy.MISSING_UPPERCASE
+                        | PasswordPolicy.MISSING_NUMERIC | PasswordPolicy.MISSING_NON_ALPHANUMERIC,
+                policy.evaluate("abc"));
+        assertEquals(PasswordPolicy.MISSING_NON_ALPHANUMERIC, policy.evaluate("Abcdefgh12"));
+        assertEquals(0, policy.evaluate("Abcdefgh1!"));
+        // Only Firebase's own symbol set counts
+        assertEquals(PasswordPolicy.MISSING_NON_ALPHANUMERIC, policy.evaluate("Abcdefgh1 \u00a7"));
+    }
+
+    @Test
+    public void lengthsAreClampedToWhatFirebaseAllows() {
+        PasswordPolicy policy = new PasswordPolicy.Builder().setMinLength(2).setMaxLength(10).build();
+
+        assertEquals(PasswordPolicy.FIREBASE_MIN_LENGTH, policy.getMinLength());
+        assertEquals(PasswordPolicy.TOO_LONG, policy.evaluate("abcdefghijk"));
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.sandbox_firebase;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class SessionCacheTest {
+
+    /** Stands in for a FirebaseApp and its Auth instance. */
+    private static final class Session {
+        final String uid;
+        final byte[] state = new byte[1 << 20];
+        boolean released;
+
+        Session(String uid) {
+            this.uid = uid;
+        }
+    }
+
+    private final List<String> released = new ArrayList<>();
+    private final SessionCache.Releaser<Session> releaser = (key, session) -> {
+        session.released = true;
+        released.add(key);
+    };
+
+    @Test
+    public void evictsLeastRecentlyUsedBeyondMaxSessions() {
+        SessionCache<Session> cache = new SessionCache<>(2, Long.MAX_VALUE, releaser);
+        Session a = new Session("a");
+        cache.put("a", a, 1);
+        cache.put("b", new Session("b"), 1);
+        cache.get("a");
+
+        cache.put("c", new Session("c"), 1);
+
+        assertEquals(Arrays.asList("b"), released);
+        assertEquals(Arrays.asList("c", "a"), cache.keys());
+        assertFalse(a.released);
+        assertEquals(1, cache.getEvictionCount());
+    }
+
+    @Test
+    public void activeSessionIsNeverEvicted() {
+        SessionCache<Session> cache = new SessionCache<>(2, Long.MAX_VALUE, releaser);
+        cache.put("a", new Session("a"), 1);
+        cache.put("b", new Session("b"), 1);
+        cache.activate("a");
+        cache.put("b", cache.get("b"), 1);
+
+        cache.put("c", new Session("c"), 1);
+
+        assertEquals(Arrays.asList("b"), released);
+        assertEquals("a", cache.getActiveKey());
+    }
+
+    @Test
+    public void memoryBudgetEvictsEvenUnderTheSessionLimit() {
+        SessionCache<Session> cache = new SessionCache<>(4, 100, releaser);
+        cache.put("a", new Session("a"), 40);
+        cache.put("b", new Session("b"), 40);
+        cache.activate("b");
+
+        cache.put("c", new Session("c"), 40);
+
+        assertEquals(Arrays.asList("a"), released);
+        assertEquals(80, cache.getBytes());
+        // A session alone over budget still stays while it's the newest
+        cache.put("d", new Session("d"), 500);
+        assertEquals(Arrays.asList("a", "c"), released);
+        assertEquals(Arrays.asList("d", "b"), cache.keys());
+    }
+
+    @Test
+    public void replacingOrRemovingASessionReleasesIt() {
+        SessionCache<Session> cache = new SessionCache<>(4, Long.MAX_VALUE, releaser);
+        Session first = new Session("a");
+        cache.put("a", first, 1);
+        cache.activate("a");
+
+        Session second = new Session("a");
+        cache.put("a", second, 1);
+        assertTrue(first.released);
+        assertSame(second, cache.activate("a"));
+
+        assertTrue(cache.remove("a"));
+        assertTrue(second.released);
+        assertNull(cache.getActiveKey());
+        assertNull(cache.activate("a"));
+        assertFalse(cache.remove("a"));
+        assertEquals(0, cache.getBytes());
+        assertEquals(0, cache.getEvictionCount());
+    }
+
+    @Test
+    public void evictedSessionsAreNotRetained() {
+        SessionCache<Session> cache = new SessionCache<>(1, Long.MAX_VALUE, (key, session) -> { });
+        WeakReference<Session> evicted = putAndEvict(cache);
+
+        for (int i = 0; i < 20 && evicted.get() != null; i++) {
+            System.gc();
+        }
+
+        assertNull("Evicted session is still reachable from the cache", evicted.get());
+        assertEquals(1, cache.size());
+    }
+
+    /** Kept out of the test method so no local variable keeps the session alive. */
+    private static WeakReference<Session> putAndEvict(SessionCache<Session> cache) {
+        Session session = new Session("old");
+        cache.put("old", session, 1);
+        cache.put("new", new Session("new"), 1);
+        return new WeakReference<>(session);
+    }
+}
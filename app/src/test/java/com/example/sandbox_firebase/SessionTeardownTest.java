@@ -0,0 +1,141 @@
+package com.example.sandbox_firebase;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.TaskCompletionSource;
+import com.google.android.gms.tasks.Tasks;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class SessionTeardownTest {
+
+    private static final long DEADLINE = 3_000;
+
+    private long now;
+    private final FakeScheduler scheduler = new FakeScheduler();
+    private SessionTeardown teardown;
+
+    @Before
+    public void setUp() {
+        now = 10_000;
+        teardown = new SessionTeardown(() -> now, scheduler, DEADLINE);
+    }
+
+    @Test
+    public void allStepsStartBeforeAnyFinishes() {
+        TaskCompletionSource<Void> slow = new TaskCompletionSource<>();
+        List<String> started = new ArrayList<>();
+        teardown.addStep("credentials", () -> {
+            started.add("credentials");
+            return slow.getTask();
+        });
+        teardown.addStep("snapshot", () -> {
+            started.add("snapshot");
+            return Tasks.forResult(null);
+        });
+
+        Task<SessionTeardown.Report> result = teardown.signOut();
+
+        assertEquals(2, started.size());
+        assertFalse(result.isComplete());
+
+        slow.setResult(null);
+        assertTrue(result.isComplete());
+        assertTrue(result.getResult().isClean());
+        assertEquals(0, scheduler.pending()); // deadline cancelled
+    }
+
+    @Test
+    public void deadlineCompletesWithoutWaitingForStragglers() {
+        TaskCompletionSource<Void> hung = new TaskCompletionSource<>();
+        teardown.addStep("firebase", () -> Tasks.forResult(null));
+        teardown.addStep("credentials", hung::getTask);
+
+        Task<SessionTeardown.Report> result = teardown.signOut();
+        now += DEADLINE;
+        scheduler.runFirst();
+
+        SessionTeardown.Report report = result.getResult();
+        assertEquals(SessionTeardown.Outcome.OK, report.outcomes.get("firebase"));
+        assertEquals(SessionTeardown.Outcome.TIMED_OUT, report.outcomes.get("credentials"));
+        assertEquals(DEADLINE, report.elapsedMillis);
+        assertEquals(1, teardown.getTimeoutCount());
+
+        // A late finish still feeds the step's timing but doesn't rewrite the report.
+        now += 500;
+        hung.setResult(null);
+        assertEquals(SessionTeardown.Outcome.TIMED_OUT, report.outcomes.get("credentials"));
+        assertEquals(1, teardown.getStepLatency("credentials").getCount());
+    }
+
+    @Test
+    public void failuresAreReportedNotThrown() {
+        Exception boom = new Exception("clear failed");
+        teardown.addStep("credentials", () -> Tasks.forException(boom));
+        teardown.addStep("tokens", () -> {
+            throw new IllegalStateException("bug");
+        });
+        teardown.addStep("snapshot", () -> Tasks.forResult(null));
+
+        SessionTeardown.Report report = teardown.signOut().getResult();
+
+        assertFalse(report.isClean());
+        assertSame(boom, report.failures.get("credentials"));
+        assertEquals(SessionTeardown.Outcome.FAILED, report.outcomes.get("tokens"));
+        assertEquals(SessionTeardown.Outcome.OK, report.outcomes.get("snapshot"));
+        assertEquals(2, teardown.getFailureCount());
+    }
+
+    @Test
+    public void secondSignOutJoinsTheRunningOne() {
+        TaskCompletionSource<Void> slow = new TaskCompletionSource<>();
+        int[] starts = {0};
+        teardown.addStep("credentials", () -> {
+            starts[0]++;
+            return slow.getTask();
+        });
+
+        Task<SessionTeardown.Report> first = teardown.signOut();
+        Task<SessionTeardown.Report> second = teardown.signOut();
+        slow.setResult(null);
+        teardown.signOut();
+
+        assertSame(first, second);
+        assertEquals(2, starts[0]);
+        assertEquals(2, teardown.getRunCount());
+    }
+
+    @Test
+    public void stepTimingIsRecorded() {
+        TaskCompletionSource<Void> slow = new TaskCompletionSource<>();
+        teardown.addStep("credentials", slow::getTask);
+        teardown.addStep("tokens", () -> Tasks.forResult(null));
+
+        teardown.signOut();
+        now += 120;
+        slow.setResult(null);
+
+        assertEquals(120_000_000L, teardown.getStepLatency("credentials").getMaxNanos());
+        assertEquals(0L, teardown.getStepLatency("tokens").getMaxNanos());
+    }
+
+    @Test
+    public void listenerSeesEveryReport() {
+        List<SessionTeardown.Report> reports = new ArrayList<>();
+        teardown.setListener(reports::add);
+        teardown.addStep("tokens", () -> Tasks.forResult(null));
+
+        teardown.signOut();
+        teardown.signOut();
+
+        assertEquals(2, reports.size());
+    }
+}
@@ -0,0 +1,160 @@
+package com.example.sandbox_firebase;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+
+public class UserSnapshotStoreTest {
+
+    private static final AuthSnapshot USER =
+            new AuthSnapshot("uid-123", "user@example.com", true, "google.com");
+
+    private File dir;
+    private File file;
+    private UserSnapshotStore store;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("snapshot").toFile();
+        file = new File(dir, "user_snapshot.bin");
+        store = new UserSnapshotStore(file);
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                f.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    @Test
+    public void roundTrip() throws IOException {
+        store.write(USER, 1_700_000_000_000L);
+
+        UserSnapshotStore.Entry entry = store.read();
+
+        assertNotNull(entry);
+        assertEquals(USER, entry.snapshot);
+        assertEquals(1_700_000_000_000L, entry.tokenExpiryMillis);
+        assertEquals("google.com", entry.lastProviderId);
+    }
+
+    @Test
+    public void roundTripWithoutOptionalFields() throws IOException {
+        AuthSnapshot anonymous = new AuthSnapshot("uid-anon", null, false, null);
+        store.write(anonymous, 0L);
+
+        assertEquals(anonymous, store.read().snapshot);
+    }
+
+    @Test
+    public void missingFileReadsAsAbsent() {
+        assertNull(store.read());
+    }
+
+    @Test
+    public void signingOutKeepsOnlyTheLastProvider() throws IOException {
+        store.write(USER, 1_700_000_000_000L);
+        store.write(AuthSnapshot.signedOut(), 0L);
+
+        UserSnapshotStore.Entry entry = store.read();
+        assertEquals(AuthSnapshot.signedOut(), entry.snapshot);
+        assertEquals(0L, entry.tokenExpiryMillis);
+        assertEquals("google.com", entry.lastProviderId);
+
+        // A second sign-out, e.g. the live listener confirming it, keeps it too
+        store.write(AuthSnapshot.signedOut(), 0L);
+        assertEquals("google.com", store.read().lastProviderId);
+    }
+
+    @Test
+    public void signingOutWithNothingStoredHasNoProvider() throws IOException {
+        store.write(AuthSnapshot.signedOut(), 0L);
+
+        assertNull(store.read().lastProviderId);
+    }
+
+    @Test
+    public void leavesNoTempFileBehind() throws IOException {
+        store.write(USER, 0L);
+
+        assertEquals(1, dir.listFiles().length);
+    }
+
+    @Test
+    public void flippedPayloadByteIsDetectedAndDeleted() throws IOException {
+        store.write(USER, 0L);
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        bytes[10] ^= 0x40;
+        Files.write(file.toPath(), bytes);
+
+        assertNull(store.read());
+        assertFalse(file.exists());
+    }
+
+    @Test
+    public void truncatedFileIsRecovered() throws IOException {
+        store.write(USER, 0L);
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        for (int length = 0; length < bytes.length; length++) {
+            Files.write(file.toPath(), Arrays.copyOf(bytes, length));
+            assertNull("length " + length, store.read());
+        }
+    }
+
+    @Test
+    public void trailingGarbageIsRejected() throws IOException {
+        store.write(USER, 0L);
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        Files.write(file.toPath(), Arrays.copyOf(bytes, bytes.length + 3));
+
+        assertNull(store.read());
+    }
+
+    @Test
+    public void unknownVersionIsRejected() throws IOException {
+        store.write(USER, 0L);
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        bytes[4] = (byte) (UserSnapshotStore.VERSION + 1);
+        Files.write(file.toPath(), bytes);
+
+        assertNull(store.read());
+    }
+
+    @Test
+    public void randomBytesAreRejected() throws IOException {
+        Random random = new Random(42);
+        for (int i = 0; i < 200; i++) {
+            byte[] junk = new byte[random.nextInt(64)];
+            random.nextBytes(junk);
+            Files.write(file.toPath(), junk);
+            assertNull(store.read());
+        }
+    }
+
+    @Test
+    public void storeIsUsableAfterRecovery() throws IOException {
+        Files.write(file.toPath(), new byte[] {1, 2, 3});
+        assertNull(store.read());
+
+        store.write(USER, 5L);
+        assertTrue(file.exists());
+        assertEquals(USER, store.read().snapshot);
+    }
+}
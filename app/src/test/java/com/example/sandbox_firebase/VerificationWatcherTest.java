@@ -0,0 +1,141 @@
+package com.example.sandbox_firebase;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import androidx.annotation.NonNull;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class VerificationWatcherTest {
+
+    private FakeScheduler scheduler;
+    private final List<VerificationWatcher.ProbeCallback> checks = new ArrayList<>();
+    private final List<String> events = new ArrayList<>();
+    private VerificationWatcher watcher;
+
+    @Before
+    public void setUp() {
+        scheduler = new FakeScheduler();
+        watcher = new VerificationWatcher(scheduler, (uid, callback) -> checks.add(callback), 1_000, 8_000, 6);
+        watcher.setListener(new VerificationWatcher.Listener() {
+            @Override
+            public void onVerified(@NonNull String uid, int requests) {
+                events.add("verified " + uid + " after " + requests);
+            }
+
+            @Override
+            public void onGaveUp(@NonNull String uid) {
+                events.add("gave up " + uid);
+            }
+        });
+    }
+
+    /** Runs the next scheduled check and answers it. */
+    private long checkAndAnswer(boolean verified) {
+        long delay = scheduler.nextDelay();
+        scheduler.runDue();
+        answer(verified);
+        return delay;
+    }
+
+    private void answer(boolean verified) {
+        checks.remove(0).onResult(verified);
+    }
+
+    @Test
+    public void backsOffExponentiallyUntilVerified() {
+        watcher.start("u1");
+
+        List<Long> delays = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            delays.add(checkAndAnswer(false));
+        }
+        delays.add(checkAndAnswer(true));
+
+        assertEquals(Arrays.asList(1_000L, 2_000L, 4_000L, 8_000L, 8_000L), delays);
+        assertEquals(Arrays.asList("verified u1 after 5"), events);
+        assertFalse(watcher.isWatching());
+        assertEquals(0, scheduler.pending());
+        assertEquals(5.0, watcher.getRequestsPerVerification(), 0);
+    }
+
+    @Test
+    public void pausesInTheBackgroundAndChecksOnReturn() {
+        watcher.start("u1");
+        checkAndAnswer(false);
+        checkAndAnswer(false);
+
+        watcher.setForeground(false);
+        assertEquals(0, scheduler.pending());
+
+        // Back from the mail app: check straight away, then the fast schedule again
+        watcher.setForeground(true);
+        assertEquals(1, checks.size());
+        answer(false);
+        assertEquals(2_000L, scheduler.nextDelay());
+        scheduler.runDue();
+        answer(true);
+
+        assertEquals(Arrays.asList("verified u1 after 4"), events);
+    }
+
+    @Test
+    public void answerArrivingInTheBackgroundDoesNotReschedule() {
+        watcher.start("u1");
+        scheduler.runDue();
+        watcher.setForeground(false);
+
+        answer(false);
+
+        assertEquals(0, scheduler.pending());
+        assertTrue(watcher.isWatching());
+    }
+
+    @Test
+    public void givesUpAtTheRequestCapAndErrorsCount() {
+        watcher.start("u1");
+        for (int i = 0; i < 6; i++) {
+            scheduler.runDue();
+            checks.remove(0).onError(new IOException("offline"));
+        }
+
+        scheduler.runDue();
+
+        assertEquals(Arrays.asList("gave up u1"), events);
+        assertEquals(6, watcher.getRequestCount());
+        assertEquals(0, checks.size());
+        assertFalse(watcher.isWatching());
+    }
+
+    @Test
+    public void stopIgnoresTheCheckInFlight() {
+        watcher.start("u1");
+        scheduler.runDue();
+
+        watcher.stop();
+        answer(true);
+
+        assertTrue(events.isEmpty());
+        assertEquals(0, watcher.getVerifiedCount());
+    }
+
+    @Test
+    public void stoppingAnotherAccountKeepsTheWatch() {
+        watcher.start("u1");
+
+        watcher.stop("u2");
+        assertTrue(watcher.isWatching());
+
+        watcher.stop("u1");
+        assertFalse(watcher.isWatching());
+        assertEquals(0, scheduler.pending());
+    }
+}
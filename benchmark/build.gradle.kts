@@ -0,0 +1,135 @@
+import groovy.json.JsonOutput
+import groovy.json.JsonSlurper
+
+plugins {
+    `java-library`
+    alias(libs.plugins.jmh)
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_17
+    targetCompatibility = JavaVersion.VERSION_17
+}
+
+// The code under benchmark is the plain-Java part of :app. Compiling those sources directly
+// keeps this a pure JVM module with no Android runtime; add a file here when a benchmark needs it.
+val appSources = listOf(
+    "AuthSnapshot.java",
+    "AuthTracer.java",
+    "AuthUiState.java",
+    "Clock.java",
+    "EmailSyntax.java",
+    "EventLog.java",
+    "IdTokenManager.java",
+    "JwtClaimsDecoder.java",
+    "LatencyHistogram.java",
+    "LatencyStats.java",
+    "LoginFormValidator.java",
+    "MainThreadMonitor.java",
+    "PasswordPolicy.java",
+    "Scheduler.java",
+    "UserSnapshotStore.java",
+)
+
+sourceSets {
+    main {
+        java {
+            setSrcDirs(listOf("../app/src/main/java"))
+            appSources.forEach { include("com/example/sandbox_firebase/$it") }
+        }
+    }
+}
+
+dependencies {
+    implementation(libs.androidx.annotation)
+    // The same JSONObject API Android ships, for the naive baselines.
+    jmhImplementation(libs.org.json)
+}
+
+jmh {
+    jmhVersion.set(libs.versions.jmh)
+    fork.set(1)
+    warmupIterations.set(3)
+    iterations.set(5)
+    resultFormat.set("JSON")
+}
+
+// Regression gate: ./gradlew :benchmark:jmh :benchmark:checkBenchmarks compares the run against
+// baseline.json and fails when a score is worse by more than the threshold (20% unless
+// -PbenchmarkThreshold=0.1 or the baseline says otherwise). Record a new baseline on the
+// reference machine with :benchmark:updateBenchmarkBaseline after an intended change.
+// Benchmarks listed under "budgets" must also stay under that many ns/op, baseline or not.
+val baselineFile = file("baseline.json")
+val resultsFile = layout.buildDirectory.file("results/jmh/results.json")
+val thresholdOverride = providers.gradleProperty("benchmarkThreshold").map { it.toDouble() }
+
+/** "Class.method" plus any @Param values, e.g. "TokenDispatchBenchmark.refreshFanOut:waiters=16". */
+fun benchmarkKey(result: Map<*, *>): String {
+    val name = (result["benchmark"] as String).split('.').takeLast(2).joinToString(".")
+    val params = (result["params"] as Map<*, *>?)?.entries
+        ?.sortedBy { it.key.toString() }
+        ?.joinToString(",") { "${it.key}=${it.value}" }
+    return if (params.isNullOrEmpty()) name else "$name:$params"
+}
+
+tasks.register("checkBenchmarks") {
+    group = "verification"
+    description = "Fails when a JMH result is worse than baseline.json by more than the threshold."
+    mustRunAfter("jmh")
+    inputs.file(baselineFile)
+    inputs.file(resultsFile)
+    doLast {
+        val baseline = JsonSlurper().parse(baselineFile) as Map<*, *>
+        val threshold = thresholdOverride.orNull ?: (baseline["threshold"] as Number).toDouble()
+        val scores = baseline["scores"] as Map<*, *>
+        val budgets = baseline["budgets"] as Map<*, *>? ?: emptyMap<String, Number>()
+        val regressions = mutableListOf<String>()
+        (JsonSlurper().parse(resultsFile.get().asFile) as List<*>).forEach { entry ->
+            val result = entry as Map<*, *>
+            val key = benchmarkKey(result)
+            val score = ((result["primaryMetric"] as Map<*, *>)["score"] as Number).toDouble()
+            val budget = (budgets[key] as Number?)?.toDouble()
+            if (budget != null && score > budget) {
+                regressions += "%-50s %12.3f ns/op over its budget of %.0f".format(key, score, budget)
+            }
+            val base = (scores[key] as Number?)?.toDouble()
+            if (base == null) {
+                logger.warn("$key: no baseline, skipped")
+                return@forEach
+            }
+            // Throughput is better when higher; every other mode reports time per operation.
+            val worse = if (result["mode"] == "thrpt") base / score - 1 else score / base - 1
+            val line = "%-50s %12.3f -> %12.3f (%+.1f%%)".format(key, base, score, worse * 100)
+            if (worse > threshold) regressions += line else logger.lifecycle(line)
+        }
+        if (regressions.isNotEmpty()) {
+            throw GradleException(
+                "Benchmarks over budget or regressed by more than ${(threshold * 100).toInt()}%:\n" +
+                    regressions.joinToString("\n")
+            )
+        }
+    }
+}
+
+tasks.register("updateBenchmarkBaseline") {
+    group = "verification"
+    description = "Writes the last JMH results into baseline.json."
+    mustRunAfter("jmh")
+    inputs.file(resultsFile)
+    doLast {
+        val baseline = JsonSlurper().parse(baselineFile) as Map<*, *>
+        val scores = sortedMapOf<String, Double>()
+        (JsonSlurper().parse(resultsFile.get().asFile) as List<*>).forEach { entry ->
+            val result = entry as Map<*, *>
+            scores[benchmarkKey(result)] =
+                ((result["primaryMetric"] as Map<*, *>)["score"] as Number).toDouble()
+        }
+        val updated = linkedMapOf<String, Any?>(
+            "threshold" to baseline["threshold"],
+            "jvm" to "${System.getProperty("java.vm.name")} ${System.getProperty("java.version")}",
+            "budgets" to baseline["budgets"],
+            "scores" to scores,
+        )
+        baselineFile.writeText(JsonOutput.prettyPrint(JsonOutput.toJson(updated)) + "\n")
+    }
+}
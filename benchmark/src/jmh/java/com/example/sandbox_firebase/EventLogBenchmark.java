@@ -0,0 +1,51 @@
+package com.example.sandbox_firebase;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The cost {@link EventLog} adds to a sign-in tap, against the {@code "signIn:" + email}
+ * string it replaced. {@code record} and {@code recordHashedAccount} have absolute budgets in
+ * baseline.json, so {@code checkBenchmarks} fails if they creep up even without a baseline.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class EventLogBenchmark {
+
+    private final EventLog log = new EventLog(EventLog.DEFAULT_CAPACITY, 0x5eed);
+
+    // Non-final so the JIT can't fold the inputs
+    private String email = "someone@example.com";
+    private long outcome = 1;
+
+    @Benchmark
+    public void record() {
+        log.record(EventLog.Type.EMAIL_SIGN_IN_FINISHED, outcome);
+    }
+
+    @Benchmark
+    public void recordHashedAccount() {
+        log.record(EventLog.Type.EMAIL_SIGN_IN_STARTED, log.hash(email));
+    }
+
+    /** Four threads tapping at once, all contending for the ring's cursor. */
+    @Benchmark
+    @Threads(4)
+    public void recordContended() {
+        log.record(EventLog.Type.EMAIL_SIGN_IN_FINISHED, outcome);
+    }
+
+    /** What the old {@code Log.d} call paid before logcat even saw the message. */
+    @Benchmark
+    public String stringConcat() {
+        return "signIn:" + email;
+    }
+}
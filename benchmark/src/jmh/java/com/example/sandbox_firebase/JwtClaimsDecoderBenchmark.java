@@ -0,0 +1,88 @@
+package com.example.sandbox_firebase;
+
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading {@code exp}/{@code sub}/{@code email} from a Google-sized ID token: the naive
+ * split/decode/JSONObject route against {@link JwtClaimsDecoder}, uncached and cached. Run with
+ * {@code -prof gc} to compare allocation per operation as well as time.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class JwtClaimsDecoderBenchmark {
+
+    private static final String PAYLOAD = "{"
+            + "\"iss\":\"https://accounts.google.com\","
+            + "\"azp\":\"123456789012-abcdefghijklmnopqrstuvwxyz012345.apps.googleusercontent.com\","
+            + "\"aud\":\"123456789012-abcdefghijklmnopqrstuvwxyz012345.apps.googleusercontent.com\","
+            + "\"sub\":\"110169484474386276334\","
+            + "\"email\":\"someone@example.com\","
+            + "\"email_verified\":true,"
+            + "\"nbf\":1699999700,"
+            + "\"name\":\"Some One\","
+            + "\"picture\":\"https://lh3.googleusercontent.com/a/ACg8ocJ0abcdefghijklmnopqrstuvwxyz=s96-c\","
+            + "\"given_name\":\"Some\","
+            + "\"family_name\":\"One\","
+            + "\"iat\":1700000000,"
+            + "\"exp\":1700003600,"
+            + "\"jti\":\"0123456789abcdef0123456789abcdef01234567\""
+            + "}";
+
+    private String token;
+    private JwtClaimsDecoder uncached;
+    private JwtClaimsDecoder cached;
+    private JwtClaimsDecoder expiryOnly;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        byte[] signature = new byte[256]; // RS256
+        token = encoder.encodeToString("{\"alg\":\"RS256\",\"kid\":\"abc123\",\"typ\":\"JWT\"}"
+                .getBytes(StandardCharsets.UTF_8))
+                + "." + encoder.encodeToString(PAYLOAD.getBytes(StandardCharsets.UTF_8))
+                + "." + encoder.encodeToString(signature);
+        uncached = new JwtClaimsDecoder(JwtClaimsDecoder.ALL, 0);
+        cached = new JwtClaimsDecoder();
+        expiryOnly = new JwtClaimsDecoder(JwtClaimsDecoder.EXP, 0);
+    }
+
+    @Benchmark
+    public long naive() throws Exception {
+        String[] parts = token.split("\\.");
+        String json = new String(Base64.getUrlDecoder().decode(parts[1]), StandardCharsets.UTF_8);
+        JSONObject claims = new JSONObject(json);
+        claims.getString("sub");
+        claims.optString("email");
+        claims.optBoolean("email_verified");
+        claims.getLong("iat");
+        return claims.getLong("exp");
+    }
+
+    @Benchmark
+    public long decodeAll() {
+        return uncached.decode(token).expiresAtSeconds;
+    }
+
+    @Benchmark
+    public long decodeExpiryOnly() {
+        return expiryOnly.decode(token).expiresAtSeconds;
+    }
+
+    @Benchmark
+    public long decodeCached() {
+        return cached.decode(token).expiresAtSeconds;
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.sandbox_firebase;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The per-keystroke and per-tap work on the email screen: the form check (email syntax and
+ * password policy) and mapping the resulting auth state to what the screen shows. Both should stay in single-digit nanoseconds and, except for a
+ * signed-in {@link AuthUiState}, allocation-free.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class LoginFormBenchmark {
+
+    private final LoginFormValidator validator = new LoginFormValidator(new PasswordPolicy.Builder()
+            .setMinLength(8)
+            .requireUppercase(true)
+            .requireNumeric(true)
+            .build());
+
+    // Non-final so the JIT can't fold the inputs
+    private String email = "someone@example.com";
+    private String password = "Correct-horse-battery-9";
+    private String weakPassword = "correcthorse";
+    private String empty = "";
+    private AuthSnapshot signedIn =
+            new AuthSnapshot("kq3Vx0pZ2aT8bYcL1mN4oR5sU6w7", "someone@example.com", true, "password");
+    private AuthSnapshot signedOut = AuthSnapshot.signedOut();
+
+    @Benchmark
+    public LoginFormValidator.Result validateFilled() {
+        return validator.validate(email, password, LoginFormValidator.Purpose.CREATE_ACCOUNT);
+    }
+
+    @Benchmark
+    public LoginFormValidator.Result validateWeakPassword() {
+        return validator.validate(email, weakPassword, LoginFormValidator.Purpose.CREATE_ACCOUNT);
+    }
+
+    @Benchmark
+    public LoginFormValidator.Result validateEmpty() {
+        return validator.validate(empty, empty, LoginFormValidator.Purpose.SIGN_IN);
+    }
+
+    @Benchmark
+    public AuthUiState mapSignedIn() {
+        return AuthUiState.from(signedIn);
+    }
+
+    @Benchmark
+    public AuthUiState mapSignedOut() {
+        return AuthUiState.from(signedOut);
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.sandbox_firebase;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What {@link MainThreadMonitor} adds to every main-thread message, against a frame's 16.7 ms.
+ * {@code message} and {@code markedMessage} have budgets in baseline.json.
+ * {@code looperLines} adds the two strings the looper builds once any printer is installed.
+ * That part is paid by the framework, not the monitor, but it is part of what installing it costs.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MainThreadMonitorBenchmark {
+
+    private static final String DISPATCHING = ">>>>> Dispatching to Handler (android.os.Handler) {1} null: 0";
+    private static final String FINISHED = "<<<<< Finished to Handler (android.os.Handler) {1} null";
+
+    // No frame requester: frame watching is measured on its own by onFrame
+    private final MainThreadMonitor monitor = new MainThreadMonitor(System::nanoTime, null,
+            MainThreadMonitor.DEFAULT_SLOW_MESSAGE_NANOS, MainThreadMonitor.DEFAULT_FRAME_INTERVAL_NANOS);
+
+    // Non-final so the JIT can't fold the inputs
+    private Object target = new Object();
+    private Runnable callback = () -> { };
+    private int what = 7;
+    private long frameTime;
+
+    /** An unmarked message: the framework's own traffic. */
+    @Benchmark
+    public void message() {
+        monitor.onLooperLine(DISPATCHING);
+        monitor.onLooperLine(FINISHED);
+    }
+
+    /** A message running an auth callback that marks itself. */
+    @Benchmark
+    public void markedMessage() {
+        monitor.onLooperLine(DISPATCHING);
+        monitor.mark(MainThreadMonitor.Screen.LOGIN, MainThreadMonitor.Section.SIGN_IN_RESULT);
+        monitor.onLooperLine(FINISHED);
+    }
+
+    /** {@code message} plus the strings {@code Looper.loop()} builds for the printer. */
+    @Benchmark
+    public void looperLines() {
+        monitor.onLooperLine(">>>>> Dispatching to " + target + " " + callback + ": " + what);
+        monitor.onLooperLine("<<<<< Finished to " + target + " " + callback);
+    }
+
+    @Benchmark
+    public boolean onFrame() {
+        frameTime += MainThreadMonitor.DEFAULT_FRAME_INTERVAL_NANOS;
+        return monitor.onFrame(frameTime);
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.sandbox_firebase;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the startup read and of the write done on every auth state change. {@code decode}
+ * and {@code encode} isolate the format from the file system.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class UserSnapshotStoreBenchmark {
+
+    private static final AuthSnapshot USER =
+            new AuthSnapshot("kq3Vx0pZ2aT8bYcL1mN4oR5sU6w7", "someone@example.com", true, "google.com");
+    private static final long EXPIRY = 1_700_000_000_000L;
+
+    private File dir;
+    private UserSnapshotStore store;
+    private byte[] encoded;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("snapshot-bench").toFile();
+        store = new UserSnapshotStore(new File(dir, "user_snapshot.bin"));
+        store.write(USER, EXPIRY);
+        encoded = UserSnapshotStore.encode(USER, EXPIRY);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        store.delete();
+        dir.delete();
+    }
+
+    @Benchmark
+    public UserSnapshotStore.Entry read() {
+        return store.read();
+    }
+
+    @Benchmark
+    public void write() throws IOException {
+        store.write(USER, EXPIRY);
+    }
+
+    @Benchmark
+    public UserSnapshotStore.Entry decode() throws IOException {
+        return UserSnapshotStore.decode(encoded);
+    }
+
+    @Benchmark
+    public byte[] encode() throws IOException {
+        return UserSnapshotStore.encode(USER, EXPIRY);
+    }
+}
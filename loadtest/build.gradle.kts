@@ -0,0 +1,86 @@
+plugins {
+    java
+    application
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_17
+    targetCompatibility = JavaVersion.VERSION_17
+}
+
+// The auth layer under load is the plain-Java part of :app, compiled directly as in :benchmark;
+// add a file here when the driver starts exercising it.
+val appSources = listOf(
+    "AuthExecutor.java",
+    "AuthTracer.java",
+    "Clock.java",
+    "ConnectionPrewarmer.java",
+    "EmailSyntax.java",
+    "EventLog.java",
+    "IdTokenManager.java",
+    "JwtClaimsDecoder.java",
+    "LatencyHistogram.java",
+    "LatencyStats.java",
+    "LoginFormValidator.java",
+    "PasswordPolicy.java",
+    "Scheduler.java",
+)
+
+val appSourceDir = file("../app/src/main/java")
+
+sourceSets {
+    main {
+        java {
+            srcDir(appSourceDir)
+            exclude { !it.isDirectory && it.file.startsWith(appSourceDir) && it.name !in appSources }
+        }
+    }
+}
+
+dependencies {
+    implementation(libs.androidx.annotation)
+    testImplementation(libs.junit)
+}
+
+application {
+    mainClass.set("com.example.sandbox_firebase.LoadDriver")
+    applicationDefaultJvmArgs = listOf("-Xmx1g")
+}
+
+// Serves the stand-in on a fixed port for the app: ./gradlew :loadtest:runStub, then build
+// :app with -PauthEmulatorHost=10.0.2.2:9099 to point the emulator image at it.
+tasks.register<JavaExec>("runStub") {
+    group = "application"
+    description = "Runs the local Identity Toolkit stand-in."
+    classpath = sourceSets.main.get().runtimeClasspath
+    mainClass.set("com.example.sandbox_firebase.AuthStubServer")
+    args = listOf("--host", "0.0.0.0", "--port", "9099")
+}
+
+// Cold vs warm sign-in over HTTPS: ./gradlew :loadtest:probePrewarm --args="--rounds 50 --latency-ms 20"
+tasks.register<JavaExec>("probePrewarm") {
+    group = "application"
+    description = "Times sign-ins with and without a connection warm-up against the TLS stand-in."
+    classpath = sourceSets.main.get().runtimeClasspath
+    mainClass.set("com.example.sandbox_firebase.PrewarmProbe")
+}
+
+// Bulk test accounts, resumable: ./gradlew :loadtest:provisionAccounts --args="--input accounts.csv"
+// (--generate 50000 writes a definitions file first; --target points it at a real emulator)
+tasks.register<JavaExec>("provisionAccounts") {
+    group = "application"
+    description = "Creates the accounts listed in a definitions file, checkpointing as it goes."
+    classpath = sourceSets.main.get().runtimeClasspath
+    mainClass.set("com.example.sandbox_firebase.AccountProvisioner")
+    workingDir = rootProject.projectDir
+}
+
+// Prints an event log pulled from a device: ./gradlew :loadtest:decodeEvents -Pfile=events.bin
+tasks.register<JavaExec>("decodeEvents") {
+    group = "application"
+    description = "Decodes an EventLog file written by the app."
+    classpath = sourceSets.main.get().runtimeClasspath
+    mainClass.set("com.example.sandbox_firebase.EventDump")
+    args = listOf(providers.gradleProperty("file").orNull ?: "events.bin")
+    workingDir = rootProject.projectDir
+}
@@ -0,0 +1,406 @@
+package com.example.sandbox_firebase;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Creates test accounts in bulk from a file of definitions, one per line:
+ *
+ * <pre>
+ *   password,alice@example.com,s3cret-pass    createUserWithEmailAndPassword
+ *   google,bob@example.com                    signInWithCredential with a Google ID token
+ * </pre>
+ *
+ * <p>Blank lines and lines starting with {@code #} are skipped. Definitions go through the
+ * app's {@link LoginFormValidator} first, so a line the sign-up screen would refuse is counted
+ * without a round-trip. The file is read as it goes, with at most {@code --concurrency}
+ * requests in flight. 503s, 429s and timeouts are retried with backoff.
+ *
+ * <p>Progress is checkpointed as the last line below which every line has finished. A resumed
+ * run starts after it. Lines finished out of order past the checkpoint are sent again and
+ * come back {@code EMAIL_EXISTS}, which counts as existing rather than failed. A Google line
+ * signs in again instead, and counts as existing unless the response says {@code isNewUser}.
+ * Its ID token uses the email as the subject, so each address maps to one Google account.
+ *
+ * <pre>
+ *   ./gradlew :loadtest:provisionAccounts --args="--input accounts.csv --generate 50000"
+ *   ./gradlew :loadtest:provisionAccounts --args="--input accounts.csv --concurrency 512"
+ * </pre>
+ */
+public final class AccountProvisioner {
+
+    enum Kind {
+        PASSWORD,
+        GOOGLE
+    }
+
+    /** One parsed line of the input. */
+    static final class Definition {
+        final Kind kind;
+        final String email;
+        final String password;
+
+        Definition(Kind kind, String email, String password) {
+            this.kind = kind;
+            this.email = email;
+            this.password = password;
+        }
+    }
+
+    /** What a run did; counts cover this run only, not lines done before a resume. */
+    static final class Summary {
+        final long resumedAfterLine;
+        final long lines;
+        final long created;
+        final long existing;
+        final long retries;
+        final Map<String, Long> errors;
+        final long elapsedNanos;
+
+        Summary(long resumedAfterLine, long lines, long created, long existing, long retries,
+                Map<String, Long> errors, long elapsedNanos) {
+            this.resumedAfterLine = resumedAfterLine;
+            this.lines = lines;
+            this.created = created;
+            this.existing = existing;
+            this.retries = retries;
+            this.errors = errors;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        long failed() {
+            long total = 0;
+            for (long count : errors.values()) {
+                total += count;
+            }
+            return total;
+        }
+    }
+
+    static final int DEFAULT_CONCURRENCY = 256;
+    static final int DEFAULT_RETRIES = 3;
+    static final long DEFAULT_CHECKPOINT_EVERY = 1_000;
+    private static final long DEFAULT_BACKOFF_MILLIS = 200;
+    private static final int GOOGLE_EVERY = 4;
+
+    private final IdentityToolkitClient client;
+    private final ScheduledExecutorService timers;
+    private final LoginFormValidator validator = new LoginFormValidator(PasswordPolicy.firebaseDefault());
+    private final int retries;
+    private final long backoffMillis;
+
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong existing = new AtomicLong();
+    private final AtomicLong retried = new AtomicLong();
+    private final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+
+    AccountProvisioner(IdentityToolkitClient client, ScheduledExecutorService timers, int retries,
+                       long backoffMillis) {
+        this.client = client;
+        this.timers = timers;
+        this.retries = retries;
+        this.backoffMillis = backoffMillis;
+    }
+
+    /**
+     * Provisions every line of {@code input} after the one recorded in {@code checkpoint},
+     * saving progress there every {@code checkpointEvery} lines and at the end.
+     */
+    Summary run(Path input, Path checkpoint, int concurrency, long checkpointEvery)
+            throws IOException, InterruptedException {
+        long resumeAfter = readCheckpoint(checkpoint);
+        Progress progress = new Progress(resumeAfter);
+        Semaphore inFlight = new Semaphore(concurrency);
+        long start = System.nanoTime();
+        long line = 0;
+        long saved = resumeAfter;
+        try (BufferedReader reader = Files.newBufferedReader(input, StandardCharsets.UTF_8)) {
+            String text;
+            while ((text = reader.readLine()) != null) {
+                line++;
+                if (line <= resumeAfter) {
+                    continue;
+                }
+                inFlight.acquire();
+                long current = line;
+                provision(text).whenComplete((ignored, error) -> {
+                    progress.done(current);
+                    inFlight.release();
+                });
+                long done = progress.lowWater();
+                if (done - saved >= checkpointEvery) {
+                    writeCheckpoint(checkpoint, done);
+                    saved = done;
+                }
+            }
+        }
+        inFlight.acquire(concurrency);
+        inFlight.release(concurrency);
+        writeCheckpoint(checkpoint, progress.lowWater());
+        long elapsed = System.nanoTime() - start;
+
+        Map<String, Long> errorCounts = new HashMap<>();
+        errors.forEach((code, count) -> errorCounts.put(code, count.sum()));
+        return new Summary(resumeAfter, line - Math.min(line, resumeAfter), created.get(), existing.get(),
+                retried.get(), errorCounts, elapsed);
+    }
+
+    /** Creates the account {@code text} defines; completes normally whatever the outcome. */
+    CompletableFuture<Void> provision(String text) {
+        Definition definition;
+        try {
+            definition = parse(text);
+        } catch (IllegalArgumentException e) {
+            countError("MALFORMED_LINE");
+            return CompletableFuture.completedFuture(null);
+        }
+        if (definition == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        String refused = refusedLocally(definition);
+        if (refused != null) {
+            countError(refused);
+            return CompletableFuture.completedFuture(null);
+        }
+        long started = System.nanoTime();
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        attempt(definition, 0, started, done);
+        return done;
+    }
+
+    private void attempt(Definition definition, int attempt, long started, CompletableFuture<Void> done) {
+        CompletableFuture<Map<String, Object>> call = definition.kind == Kind.GOOGLE
+                ? client.signInWithIdp(LoadDriver.googleIdToken(definition.email, definition.email))
+                : client.signUp(definition.email, definition.password);
+        call.whenComplete((response, error) -> {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null
+                    ? error.getCause() : error;
+            if (cause == null) {
+                latency.recordNanos(System.nanoTime() - started);
+                // Google sign-in succeeds for an existing account too, e.g. one re-sent on resume
+                if (definition.kind == Kind.GOOGLE && !Boolean.TRUE.equals(response.get("isNewUser"))) {
+                    existing.incrementAndGet();
+                } else {
+                    created.incrementAndGet();
+                }
+            } else if (isRetryable(cause) && attempt < retries) {
+                retried.incrementAndGet();
+                timers.schedule(() -> attempt(definition, attempt + 1, started, done),
+                        backoffMillis << attempt, TimeUnit.MILLISECONDS);
+                return;
+            } else if ("EMAIL_EXISTS".equals(errorCode(cause))) {
+                existing.incrementAndGet();
+            } else {
+                countError(errorCode(cause));
+            }
+            done.complete(null);
+        });
+    }
+
+    /** The error code a sign-up screen would show, or null if it would send the request. */
+    private String refusedLocally(Definition definition) {
+        if (definition.kind == Kind.GOOGLE) {
+            return EmailSyntax.isValid(definition.email) ? null : "LOCAL_INVALID_EMAIL";
+        }
+        LoginFormValidator.Result result = validator.validateSubmission(definition.email,
+                definition.password, LoginFormValidator.Purpose.CREATE_ACCOUNT);
+        if (result.emailError != null) {
+            return "LOCAL_INVALID_EMAIL";
+        }
+        return result.passwordError != null ? "LOCAL_WEAK_PASSWORD" : null;
+    }
+
+    private void countError(String code) {
+        errors.computeIfAbsent(code, key -> new LongAdder()).increment();
+    }
+
+    private static boolean isRetryable(Throwable error) {
+        if (error instanceof IdentityToolkitClient.ApiException) {
+            int status = ((IdentityToolkitClient.ApiException) error).status;
+            return status == 429 || status == 503;
+        }
+        return error instanceof HttpTimeoutException || error instanceof IOException;
+    }
+
+    /** {@code WEAK_PASSWORD : Password should be...} becomes {@code WEAK_PASSWORD}. */
+    private static String errorCode(Throwable error) {
+        if (error instanceof IdentityToolkitClient.ApiException) {
+            String message = String.valueOf(error.getMessage());
+            int detail = message.indexOf(" : ");
+            return detail >= 0 ? message.substring(0, detail) : message;
+        }
+        return error.getClass().getSimpleName();
+    }
+
+    /** Null for blank and comment lines. */
+    static Definition parse(String text) {
+        String line = text.trim();
+        if (line.isEmpty() || line.startsWith("#")) {
+            return null;
+        }
+        String[] fields = line.split(",", 3);
+        if (fields[0].equals("password") && fields.length == 3) {
+            return new Definition(Kind.PASSWORD, fields[1], fields[2]);
+        }
+        if (fields[0].equals("google") && fields.length == 2) {
+            return new Definition(Kind.GOOGLE, fields[1], null);
+        }
+        throw new IllegalArgumentException("Not an account definition: " + text);
+    }
+
+    /** The line to resume after, or 0 without a checkpoint. */
+    static long readCheckpoint(Path checkpoint) throws IOException {
+        if (!Files.exists(checkpoint)) {
+            return 0;
+        }
+        return Long.parseLong(Files.readString(checkpoint, StandardCharsets.US_ASCII).trim());
+    }
+
+    /** Replaces the checkpoint atomically, so a kill mid-write leaves the previous one. */
+    static void writeCheckpoint(Path checkpoint, long line) throws IOException {
+        Path temp = checkpoint.resolveSibling(checkpoint.getFileName() + ".tmp");
+        Files.writeString(temp, line + "\n", StandardCharsets.US_ASCII);
+        Files.move(temp, checkpoint, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /** Writes {@code count} definitions, one in {@link #GOOGLE_EVERY} a Google account. */
+    static void generate(Path output, long count, String runId) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+            writer.write("# " + count + " accounts, run " + runId + "\n");
+            for (long i = 1; i <= count; i++) {
+                String email = "user" + i + "-" + runId + "@loadtest.example";
+                writer.write(i % GOOGLE_EVERY == 0 ? "google," + email : "password," + email + ",pass-" + i);
+                writer.newLine();
+            }
+        }
+    }
+
+    /**
+     * Tracks which lines have finished, which can happen in any order, and the last line up to
+     * which all of them have. Holds one bit per line past that point.
+     */
+    static final class Progress {
+        private final BitSet finished = new BitSet();
+        private long lowWater;
+
+        Progress(long lowWater) {
+            this.lowWater = lowWater;
+        }
+
+        synchronized void done(long line) {
+            finished.set((int) (line - lowWater - 1));
+            int advance = finished.nextClearBit(0);
+            if (advance > 0) {
+                lowWater += advance;
+                BitSet rest = finished.get(advance, Math.max(advance, finished.length()));
+                finished.clear();
+                finished.or(rest);
+            }
+        }
+
+        synchronized long lowWater() {
+            return lowWater;
+        }
+    }
+
+    String report(Summary summary) {
+        double seconds = summary.elapsedNanos / 1e9;
+        StringBuilder out = new StringBuilder();
+        if (summary.resumedAfterLine > 0) {
+            out.append(String.format(Locale.US, "resumed after   line %d%n", summary.resumedAfterLine));
+        }
+        out.append(String.format(Locale.US, "lines           %d in %.1f s%n", summary.lines, seconds));
+        out.append(String.format(Locale.US, "accounts        %d created, %d existing, %d failed, %d retries%n",
+                summary.created, summary.existing, summary.failed(), summary.retries));
+        out.append(String.format(Locale.US, "throughput      %.1f accounts/s%n",
+                (summary.created + summary.existing) / seconds));
+        if (latency.getCount() > 0) {
+            out.append(String.format(Locale.US, "create (ms)     p50 %.1f  p95 %.1f  p99 %.1f  max %.1f%n",
+                    latency.getPercentileMicros(50) / 1000.0, latency.getPercentileMicros(95) / 1000.0,
+                    latency.getPercentileMicros(99) / 1000.0, latency.getMaxMicros() / 1000.0));
+        }
+        List<Map.Entry<String, Long>> byCount = new ArrayList<>(summary.errors.entrySet());
+        byCount.sort(Map.Entry.<String, Long>comparingByValue().reversed());
+        for (Map.Entry<String, Long> error : byCount) {
+            out.append(String.format(Locale.US, "  %-28s %8d%n", error.getKey(), error.getValue()));
+        }
+        return out.toString();
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = LoadDriver.parseOptions(args);
+        String inputOption = options.get("input");
+        if (inputOption == null) {
+            throw new IllegalArgumentException("--input <file> is required");
+        }
+        Path input = Paths.get(inputOption);
+        if (options.containsKey("generate")) {
+            generate(input, Long.parseLong(options.get("generate")), Long.toString(System.currentTimeMillis(), 36));
+            System.out.println("wrote " + options.get("generate") + " definitions to " + input);
+            return;
+        }
+        Path checkpoint = Paths.get(options.getOrDefault("checkpoint", inputOption + ".checkpoint"));
+        int concurrency = Integer.parseInt(options.getOrDefault("concurrency", String.valueOf(DEFAULT_CONCURRENCY)));
+        int retries = Integer.parseInt(options.getOrDefault("retries", String.valueOf(DEFAULT_RETRIES)));
+        long checkpointEvery = Long.parseLong(
+                options.getOrDefault("checkpoint-every", String.valueOf(DEFAULT_CHECKPOINT_EVERY)));
+        String target = options.get("target");
+
+        AuthStubServer stub = null;
+        if (target == null) {
+            stub = new AuthStubServer(0);
+            stub.getFaults().latencyMillis = Long.parseLong(options.getOrDefault("latency-ms", "20"));
+            stub.getFaults().jitterMillis = Long.parseLong(options.getOrDefault("jitter-ms", "20"));
+            stub.getFaults().errorRate = Double.parseDouble(options.getOrDefault("error-rate", "0"));
+            stub.start();
+            target = stub.getBaseUrl();
+        }
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        ExecutorService io = Executors.newFixedThreadPool(cores, runnable -> {
+            Thread thread = new Thread(runnable, "provision-http");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ScheduledExecutorService timers = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "provision-retry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        AccountProvisioner provisioner = new AccountProvisioner(
+                new IdentityToolkitClient(target, io), timers, retries, DEFAULT_BACKOFF_MILLIS);
+        try {
+            System.out.print(provisioner.report(provisioner.run(input, checkpoint, concurrency, checkpointEvery)));
+        } finally {
+            if (stub != null) {
+                stub.close();
+            }
+            timers.shutdownNow();
+            io.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,522 @@
+package com.example.sandbox_firebase;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.sun.net.httpserver.HttpsConfigurator;
+import com.sun.net.httpserver.HttpsServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManagerFactory;
+
+/**
+ * In-memory stand-in for the Identity Toolkit and Secure Token endpoints the app's auth flows
+ * call, served under the same paths the Auth emulator uses, so
+ * {@code FirebaseAuth.useEmulator(host, port)} can point the app at it too:
+ *
+ * <pre>
+ *   /identitytoolkit.googleapis.com/v1/accounts:signUp            createUserWithEmailAndPassword
+ *   /identitytoolkit.googleapis.com/v1/accounts:signInWithPassword signInWithEmailAndPassword
+ *   /identitytoolkit.googleapis.com/v1/accounts:signInWithIdp      signInWithCredential (Google)
+ *   /identitytoolkit.googleapis.com/v1/accounts:sendOobCode        sendEmailVerification
+ *   /identitytoolkit.googleapis.com/v1/accounts:lookup             reload
+ *   /securetoken.googleapis.com/v1/token                           getIdToken(true)
+ * </pre>
+ *
+ * <p>ID tokens are unsigned JWTs, like the emulator's. Every response can be delayed by a fixed
+ * latency plus uniform jitter, and a fraction of requests can be failed with a 503. Delays are
+ * scheduled rather than slept, so thousands of concurrent requests don't need thousands of
+ * server threads.
+ *
+ * <p>With an {@link SSLContext} it serves HTTPS instead, for measuring what connection setup
+ * costs; {@link #standInTls()} is a self-signed certificate for localhost, 127.0.0.1 and the
+ * emulator's 10.0.2.2 that clients can trust through the same context.
+ */
+public final class AuthStubServer implements AutoCloseable {
+
+    static final String PROJECT_ID = "sandbox-loadtest";
+    static final long TOKEN_LIFETIME_SECONDS = 3600;
+
+    private static final String IDENTITY_TOOLKIT = "/identitytoolkit.googleapis.com/v1/accounts:";
+    private static final String SECURE_TOKEN = "/securetoken.googleapis.com/v1/token";
+    /**
+     * Regenerate with {@code keytool -genkeypair -alias stub -keyalg EC -dname CN=localhost
+     * -ext SAN=dns:localhost,ip:127.0.0.1,ip:10.0.2.2 -validity 36500 -storetype PKCS12
+     * -keystore stub-tls.p12 -storepass loadtest}.
+     */
+    private static final String TLS_KEYSTORE = "/stub-tls.p12";
+    private static final char[] TLS_PASSWORD = "loadtest".toCharArray();
+
+    /** Latency and error injection; mutable so a running test can change it. */
+    public static final class Faults {
+        public volatile long latencyMillis;
+        public volatile long jitterMillis;
+        public volatile double errorRate;
+    }
+
+    private static final class Account {
+        final String localId;
+        final String email;
+        final String password;
+        final String provider;
+        final long createdAt;
+        volatile boolean emailVerified;
+        volatile long lastLoginAt;
+
+        Account(String localId, String email, String password, String provider, boolean emailVerified) {
+            this.localId = localId;
+            this.email = email;
+            this.password = password;
+            this.provider = provider;
+            this.emailVerified = emailVerified;
+            this.createdAt = System.currentTimeMillis();
+            this.lastLoginAt = createdAt;
+        }
+    }
+
+    private final HttpServer server;
+    private final boolean tls;
+    private final ExecutorService handlers;
+    private final ScheduledExecutorService delays;
+    private final Faults faults = new Faults();
+    private final Map<String, Account> accountsByEmail = new ConcurrentHashMap<>();
+    private final Map<String, Account> accountsById = new ConcurrentHashMap<>();
+    private final Map<String, String> refreshTokens = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> requestCounts = new ConcurrentHashMap<>();
+    private final AtomicLong injectedErrors = new AtomicLong();
+    private final Map<SocketAddress, Boolean> connections = new ConcurrentHashMap<>();
+    private final SecureRandom random = new SecureRandom();
+    private final JwtClaimsDecoder claims = new JwtClaimsDecoder(JwtClaimsDecoder.ALL, 0);
+
+    public AuthStubServer(int port) throws IOException {
+        this("127.0.0.1", port);
+    }
+
+    /** Bind to {@code 0.0.0.0} to serve a physical device on the same network. */
+    public AuthStubServer(String host, int port) throws IOException {
+        this(host, port, null);
+    }
+
+    /** Serves HTTPS with {@code tlsContext}, or plain HTTP if it is null. */
+    public AuthStubServer(String host, int port, SSLContext tlsContext) throws IOException {
+        InetSocketAddress address = new InetSocketAddress(host, port);
+        if (tlsContext != null) {
+            HttpsServer https = HttpsServer.create(address, 1024);
+            https.setHttpsConfigurator(new HttpsConfigurator(tlsContext));
+            server = https;
+        } else {
+            server = HttpServer.create(address, 1024);
+        }
+        tls = tlsContext != null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        handlers = Executors.newFixedThreadPool(threads, daemon("stub-http"));
+        delays = Executors.newScheduledThreadPool(1, daemon("stub-delay"));
+        server.setExecutor(handlers);
+        server.createContext("/", this::handle);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public String getBaseUrl() {
+        return (tls ? "https://" : "http://") + server.getAddress().getHostString() + ":" + getPort();
+    }
+
+    public Faults getFaults() {
+        return faults;
+    }
+
+    public Map<String, Long> getRequestCounts() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        requestCounts.forEach((endpoint, count) -> counts.put(endpoint, count.get()));
+        return counts;
+    }
+
+    public long getInjectedErrorCount() {
+        return injectedErrors.get();
+    }
+
+    /** Distinct client connections served so far; reused keep-alive connections count once. */
+    public int getConnectionCount() {
+        return connections.size();
+    }
+
+    /** The bundled self-signed certificate, as both server identity and client trust. */
+    public static SSLContext standInTls() throws IOException, GeneralSecurityException {
+        KeyStore keyStore = KeyStore.getInstance("PKCS12");
+        try (InputStream in = AuthStubServer.class.getResourceAsStream(TLS_KEYSTORE)) {
+            if (in == null) {
+                throw new IOException("Missing " + TLS_KEYSTORE);
+            }
+            keyStore.load(in, TLS_PASSWORD);
+        }
+        KeyManagerFactory keys = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keys.init(keyStore, TLS_PASSWORD);
+        TrustManagerFactory trust = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        trust.init(keyStore);
+        SSLContext context = SSLContext.getInstance("TLS");
+        context.init(keys.getKeyManagers(), trust.getTrustManagers(), null);
+        return context;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        handlers.shutdownNow();
+        delays.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        connections.putIfAbsent(exchange.getRemoteAddress(), Boolean.TRUE);
+        String path = exchange.getRequestURI().getPath();
+        String endpoint = path.startsWith(IDENTITY_TOOLKIT)
+                ? path.substring(IDENTITY_TOOLKIT.length())
+                : path.equals(SECURE_TOKEN) ? "token" : null;
+        if (endpoint == null || !"POST".equals(exchange.getRequestMethod())) {
+            respond(exchange, 404, error(404, "NOT_FOUND"));
+            return;
+        }
+        requestCounts.computeIfAbsent(endpoint, k -> new AtomicLong()).incrementAndGet();
+
+        // Always drain the body so the connection can be reused.
+        Map<String, Object> request;
+        try {
+            request = readRequest(exchange);
+        } catch (IllegalArgumentException e) {
+            request = null;
+        }
+
+        int status;
+        Object body;
+        if (faults.errorRate > 0 && ThreadLocalRandom.current().nextDouble() < faults.errorRate) {
+            injectedErrors.incrementAndGet();
+            status = 503;
+            body = error(503, "UNAVAILABLE");
+        } else if (request == null) {
+            status = 400;
+            body = error(400, "INVALID_JSON");
+        } else {
+            try {
+                body = dispatch(endpoint, request);
+                status = 200;
+            } catch (ApiError e) {
+                status = e.status;
+                body = error(e.status, e.getMessage());
+            }
+        }
+
+        long delay = faults.latencyMillis;
+        if (faults.jitterMillis > 0) {
+            delay += ThreadLocalRandom.current().nextLong(faults.jitterMillis + 1);
+        }
+        if (delay <= 0) {
+            respond(exchange, status, body);
+        } else {
+            int finalStatus = status;
+            Object finalBody = body;
+            delays.schedule(() -> {
+                try {
+                    respond(exchange, finalStatus, finalBody);
+                } catch (IOException e) {
+                    exchange.close(); // client went away
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private Object dispatch(String endpoint, Map<String, Object> request) {
+        switch (endpoint) {
+            case "signUp":
+                return signUp(request);
+            case "signInWithPassword":
+                return signInWithPassword(request);
+            case "signInWithIdp":
+                return signInWithIdp(request);
+            case "sendOobCode":
+                return sendOobCode(request);
+            case "lookup":
+                return lookup(request);
+            case "token":
+                return refresh(request);
+            default:
+                throw new ApiError(404, "NOT_FOUND");
+        }
+    }
+
+    private Object signUp(Map<String, Object> request) {
+        String email = required(request, "email", "MISSING_EMAIL");
+        String password = required(request, "password", "MISSING_PASSWORD");
+        if (password.length() < 6) {
+            throw new ApiError(400, "WEAK_PASSWORD : Password should be at least 6 characters");
+        }
+        Account account = new Account(newId(), email, password, "password", false);
+        if (accountsByEmail.putIfAbsent(email, account) != null) {
+            throw new ApiError(400, "EMAIL_EXISTS");
+        }
+        accountsById.put(account.localId, account);
+        return session("identitytoolkit#SignupNewUserResponse", account);
+    }
+
+    private Object signInWithPassword(Map<String, Object> request) {
+        String email = required(request, "email", "INVALID_EMAIL");
+        String password = required(request, "password", "MISSING_PASSWORD");
+        Account account = accountsByEmail.get(email);
+        if (account == null || !password.equals(account.password)) {
+            throw new ApiError(400, "INVALID_LOGIN_CREDENTIALS");
+        }
+        account.lastLoginAt = System.currentTimeMillis();
+        Map<String, Object> response = session("identitytoolkit#VerifyPasswordResponse", account);
+        response.put("registered", true);
+        return response;
+    }
+
+    private Object signInWithIdp(Map<String, Object> request) {
+        String postBody = required(request, "postBody", "INVALID_IDP_RESPONSE");
+        Map<String, String> params = parseForm(postBody);
+        String idToken = params.get("id_token");
+        JwtClaimsDecoder.Claims google = idToken == null ? null : claims.decode(idToken);
+        if (google == null || google.subject == null || google.email == null) {
+            throw new ApiError(400, "INVALID_IDP_RESPONSE");
+        }
+        Account created = new Account(newId(), google.email, null, "google.com", google.emailVerified);
+        Account existing = accountsByEmail.putIfAbsent(google.email, created);
+        Account account = existing != null ? existing : created;
+        accountsById.putIfAbsent(account.localId, account);
+        account.lastLoginAt = System.currentTimeMillis();
+        Map<String, Object> response = session("identitytoolkit#VerifyAssertionResponse", account);
+        response.put("providerId", "google.com");
+        response.put("federatedId", "https://accounts.google.com/" + google.subject);
+        response.put("emailVerified", account.emailVerified);
+        response.put("isNewUser", existing == null);
+        return response;
+    }
+
+    private Object sendOobCode(Map<String, Object> request) {
+        if (!"VERIFY_EMAIL".equals(request.get("requestType"))) {
+            throw new ApiError(400, "INVALID_REQ_TYPE");
+        }
+        Account account = accountFor(required(request, "idToken", "INVALID_ID_TOKEN"));
+        // No mail is sent; verify straight away so a following reload observes the change.
+        account.emailVerified = true;
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("kind", "identitytoolkit#GetOobConfirmationCodeResponse");
+        response.put("email", account.email);
+        return response;
+    }
+
+    private Object lookup(Map<String, Object> request) {
+        Account account = accountFor(required(request, "idToken", "INVALID_ID_TOKEN"));
+        Map<String, Object> provider = new LinkedHashMap<>();
+        provider.put("providerId", account.provider);
+        provider.put("email", account.email);
+        provider.put("rawId", account.email);
+        Map<String, Object> user = new LinkedHashMap<>();
+        user.put("localId", account.localId);
+        user.put("email", account.email);
+        user.put("emailVerified", account.emailVerified);
+        user.put("providerUserInfo", Collections.singletonList(provider));
+        user.put("createdAt", String.valueOf(account.createdAt));
+        user.put("lastLoginAt", String.valueOf(account.lastLoginAt));
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("kind", "identitytoolkit#GetAccountInfoResponse");
+        response.put("users", Collections.singletonList(user));
+        return response;
+    }
+
+    private Object refresh(Map<String, Object> request) {
+        Object grant = request.getOrDefault("grant_type", request.get("grantType"));
+        Object token = request.getOrDefault("refresh_token", request.get("refreshToken"));
+        if (!"refresh_token".equals(grant) || !(token instanceof String)) {
+            throw new ApiError(400, "INVALID_GRANT_TYPE");
+        }
+        String localId = refreshTokens.get(token);
+        Account account = localId == null ? null : accountsById.get(localId);
+        if (account == null) {
+            throw new ApiError(400, "INVALID_REFRESH_TOKEN");
+        }
+        String idToken = idToken(account);
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("access_token", idToken);
+        response.put("expires_in", String.valueOf(TOKEN_LIFETIME_SECONDS));
+        response.put("token_type", "Bearer");
+        response.put("refresh_token", token);
+        response.put("id_token", idToken);
+        response.put("user_id", account.localId);
+        response.put("project_id", PROJECT_ID);
+        return response;
+    }
+
+    private Map<String, Object> session(String kind, Account account) {
+        String refreshToken = newId() + newId();
+        refreshTokens.put(refreshToken, account.localId);
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("kind", kind);
+        response.put("localId", account.localId);
+        response.put("email", account.email);
+        response.put("idToken", idToken(account));
+        response.put("refreshToken", refreshToken);
+        response.put("expiresIn", String.valueOf(TOKEN_LIFETIME_SECONDS));
+        return response;
+    }
+
+    private Account accountFor(String idToken) {
+        JwtClaimsDecoder.Claims decoded = claims.decode(idToken);
+        if (decoded == null || decoded.subject == null) {
+            throw new ApiError(400, "INVALID_ID_TOKEN");
+        }
+        if (decoded.isExpiredAt(System.currentTimeMillis())) {
+            throw new ApiError(400, "TOKEN_EXPIRED");
+        }
+        Account account = accountsById.get(decoded.subject);
+        if (account == null) {
+            throw new ApiError(400, "USER_NOT_FOUND");
+        }
+        return account;
+    }
+
+    /** An unsigned JWT shaped like the Auth emulator's. */
+    private static String idToken(Account account) {
+        long now = System.currentTimeMillis() / 1000;
+        Map<String, Object> firebase = new LinkedHashMap<>();
+        firebase.put("sign_in_provider", account.provider);
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("iss", "https://securetoken.google.com/" + PROJECT_ID);
+        payload.put("aud", PROJECT_ID);
+        payload.put("auth_time", account.lastLoginAt / 1000);
+        payload.put("user_id", account.localId);
+        payload.put("sub", account.localId);
+        payload.put("iat", now);
+        payload.put("exp", now + TOKEN_LIFETIME_SECONDS);
+        payload.put("email", account.email);
+        payload.put("email_verified", account.emailVerified);
+        payload.put("firebase", firebase);
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        return encoder.encodeToString("{\"alg\":\"none\",\"typ\":\"JWT\"}".getBytes(StandardCharsets.UTF_8))
+                + "." + encoder.encodeToString(Json.write(payload).getBytes(StandardCharsets.UTF_8))
+                + ".";
+    }
+
+    private static Map<String, Object> readRequest(HttpExchange exchange) throws IOException {
+        String body;
+        try (InputStream in = exchange.getRequestBody()) {
+            body = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+        if (contentType != null && contentType.startsWith("application/x-www-form-urlencoded")) {
+            return new LinkedHashMap<>(parseForm(body));
+        }
+        return body.isEmpty() ? new LinkedHashMap<>() : Json.parseObject(body);
+    }
+
+    private static Map<String, String> parseForm(String form) {
+        Map<String, String> params = new LinkedHashMap<>();
+        for (String pair : form.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                params.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return params;
+    }
+
+    private static void respond(HttpExchange exchange, int status, Object body) throws IOException {
+        byte[] bytes = Json.write(body).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static Map<String, Object> error(int code, String message) {
+        Map<String, Object> detail = new LinkedHashMap<>();
+        detail.put("message", message);
+        detail.put("domain", "global");
+        detail.put("reason", "invalid");
+        List<Object> errors = new ArrayList<>();
+        errors.add(detail);
+        Map<String, Object> error = new LinkedHashMap<>();
+        error.put("code", code);
+        error.put("message", message);
+        error.put("errors", errors);
+        return Collections.singletonMap("error", error);
+    }
+
+    private static String required(Map<String, Object> request, String key, String errorMessage) {
+        Object value = request.get(key);
+        if (!(value instanceof String) || ((String) value).isEmpty()) {
+            throw new ApiError(400, errorMessage);
+        }
+        return (String) value;
+    }
+
+    private String newId() {
+        byte[] bytes = new byte[12];
+        random.nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    private static ThreadFactory daemon(String prefix) {
+        AtomicLong count = new AtomicLong();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static final class ApiError extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        final int status;
+
+        ApiError(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    /** Runs the stub on its own, e.g. for a device or emulator pointed at it. */
+    public static void main(String[] args) throws IOException, GeneralSecurityException {
+        Map<String, String> options = LoadDriver.parseOptions(args);
+        AuthStubServer server = new AuthStubServer(options.getOrDefault("host", "127.0.0.1"),
+                Integer.parseInt(options.getOrDefault("port", "9099")),
+                Boolean.parseBoolean(options.getOrDefault("tls", "false")) ? standInTls() : null);
+        server.getFaults().latencyMillis = Long.parseLong(options.getOrDefault("latency-ms", "0"));
+        server.getFaults().jitterMillis = Long.parseLong(options.getOrDefault("jitter-ms", "0"));
+        server.getFaults().errorRate = Double.parseDouble(options.getOrDefault("error-rate", "0"));
+        server.start();
+        System.out.println("Auth stub listening on " + server.getBaseUrl());
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.sandbox_firebase;
+
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Prints {@link EventLog} files pulled from a device, e.g.
+ * {@code adb shell run-as com.example.sandbox_firebase cat files/events.bin > events.bin}
+ * then {@code ./gradlew :loadtest:decodeEvents -Pfile=events.bin}.
+ */
+public final class EventDump {
+
+    private EventDump() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("usage: EventDump <events.bin>...");
+            System.exit(2);
+        }
+        Writer out = new OutputStreamWriter(System.out, StandardCharsets.UTF_8);
+        for (String path : args) {
+            if (args.length > 1) {
+                out.append("== ").append(path).append('\n');
+            }
+            try (InputStream in = new BufferedInputStream(new FileInputStream(path))) {
+                EventLog.decode(in, out);
+            }
+        }
+        out.flush();
+    }
+}
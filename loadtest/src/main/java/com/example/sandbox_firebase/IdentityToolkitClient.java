@@ -0,0 +1,120 @@
+package com.example.sandbox_firebase;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * The REST calls the Firebase Auth SDK makes for the app's flows, issued asynchronously so one
+ * JVM can keep thousands of simulated sessions in flight. Uses the emulator URL scheme
+ * ({@code <base>/identitytoolkit.googleapis.com/v1/...}).
+ */
+final class IdentityToolkitClient {
+
+    private static final String API_KEY = "loadtest-api-key";
+
+    /** A non-2xx response; {@link #getMessage()} is the server's error code, e.g. EMAIL_EXISTS. */
+    static final class ApiException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        final int status;
+
+        ApiException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    private final HttpClient http;
+    private final String baseUrl;
+
+    IdentityToolkitClient(String baseUrl, Executor executor) {
+        this.baseUrl = baseUrl;
+        this.http = HttpClient.newBuilder()
+                .executor(executor)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+    }
+
+    CompletableFuture<Map<String, Object>> signUp(String email, String password) {
+        return accounts("signUp", credentials(email, password));
+    }
+
+    CompletableFuture<Map<String, Object>> signInWithPassword(String email, String password) {
+        return accounts("signInWithPassword", credentials(email, password));
+    }
+
+    CompletableFuture<Map<String, Object>> signInWithIdp(String googleIdToken) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("postBody", "id_token=" + URLEncoder.encode(googleIdToken, StandardCharsets.UTF_8)
+                + "&providerId=google.com");
+        body.put("requestUri", "http://localhost");
+        body.put("returnIdpCredential", true);
+        body.put("returnSecureToken", true);
+        return accounts("signInWithIdp", body);
+    }
+
+    CompletableFuture<Map<String, Object>> sendEmailVerification(String idToken) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("requestType", "VERIFY_EMAIL");
+        body.put("idToken", idToken);
+        return accounts("sendOobCode", body);
+    }
+
+    CompletableFuture<Map<String, Object>> lookup(String idToken) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("idToken", idToken);
+        return accounts("lookup", body);
+    }
+
+    CompletableFuture<Map<String, Object>> refresh(String refreshToken) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("grantType", "refresh_token");
+        body.put("refreshToken", refreshToken);
+        return post(baseUrl + "/securetoken.googleapis.com/v1/token?key=" + API_KEY, body);
+    }
+
+    private CompletableFuture<Map<String, Object>> accounts(String method, Map<String, Object> body) {
+        return post(baseUrl + "/identitytoolkit.googleapis.com/v1/accounts:" + method + "?key=" + API_KEY, body);
+    }
+
+    private CompletableFuture<Map<String, Object>> post(String url, Map<String, Object> body) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                .timeout(Duration.ofSeconds(30))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(Json.write(body)))
+                .build();
+        return http.sendAsync(request, HttpResponse.BodyHandlers.ofString()).thenApply(response -> {
+            if (response.statusCode() / 100 != 2) {
+                throw new ApiException(response.statusCode(), errorCode(response.body()));
+            }
+            return Json.parseObject(response.body());
+        });
+    }
+
+    private static Map<String, Object> credentials(String email, String password) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("email", email);
+        body.put("password", password);
+        body.put("returnSecureToken", true);
+        return body;
+    }
+
+    private static String errorCode(String body) {
+        try {
+            Object error = Json.parseObject(body).get("error");
+            Object message = error instanceof String ? Json.parseObject((String) error).get("message") : null;
+            return message != null ? message.toString() : body;
+        } catch (IllegalArgumentException e) {
+            return body;
+        }
+    }
+}
@@ -0,0 +1,343 @@
+package com.example.sandbox_firebase;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Base64;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Drives many concurrent simulated sessions through the app's plain-Java auth layer against
+ * {@link AuthStubServer} (in-process by default) and reports throughput, per-operation tail
+ * latency, thread counts and heap growth. Runs fully offline.
+ *
+ * <p>Each session is one device: it signs up (or signs in with a Google ID token), hands its
+ * tokens to an {@link IdTokenManager}, reads the token through it, sends a verification email,
+ * reloads, signs out, signs back in with its password and forces a token refresh. Like the app,
+ * completions hop onto a shared {@link AuthExecutor} and tokens are inspected with the shared
+ * {@link JwtClaimsDecoder}.
+ *
+ * <pre>
+ *   ./gradlew :loadtest:run --args="--sessions 5000 --concurrency 1000 --latency-ms 40 --jitter-ms 40 --error-rate 0.01"
+ * </pre>
+ */
+public final class LoadDriver {
+
+    enum Op {
+        SIGN_UP,
+        SIGN_IN_PASSWORD,
+        SIGN_IN_GOOGLE,
+        SEND_VERIFICATION,
+        RELOAD,
+        TOKEN_GET,
+        TOKEN_REFRESH,
+        SESSION
+    }
+
+    /** One in this many sessions signs in with Google instead of creating a password account. */
+    private static final int GOOGLE_SESSION_EVERY = 4;
+    private static final String PASSWORD = "correct-horse-battery";
+
+    private final IdentityToolkitClient client;
+    private final AuthExecutor authExecutor;
+    private final JwtClaimsDecoder claims = new JwtClaimsDecoder();
+    private final Scheduler scheduler;
+    private final Map<Op, LatencyHistogram> latency = new EnumMap<>(Op.class);
+    private final Map<Op, AtomicLong> failures = new EnumMap<>(Op.class);
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong tokenHits = new AtomicLong();
+    private final AtomicLong tokenMisses = new AtomicLong();
+    private final AtomicInteger sessionIds = new AtomicInteger();
+    private final String runId = Long.toString(System.currentTimeMillis(), 36);
+
+    LoadDriver(IdentityToolkitClient client, AuthExecutor authExecutor, ScheduledExecutorService timers) {
+        this.client = client;
+        this.authExecutor = authExecutor;
+        this.scheduler = (task, delayMillis) -> {
+            ScheduledFuture<?> future =
+                    timers.schedule(task, delayMillis, TimeUnit.MILLISECONDS);
+            return () -> future.cancel(false);
+        };
+        for (Op op : Op.values()) {
+            latency.put(op, new LatencyHistogram());
+            failures.put(op, new AtomicLong());
+        }
+    }
+
+    /** Runs one session; the future completes (never exceptionally) when it's done. */
+    CompletableFuture<Boolean> runSession() {
+        int id = sessionIds.incrementAndGet();
+        String email = "user" + id + "-" + runId + "@loadtest.example";
+        long start = System.nanoTime();
+        SessionTokens tokens = new SessionTokens();
+        IdTokenManager manager = new IdTokenManager(scheduler);
+
+        CompletableFuture<Map<String, Object>> signedIn = id % GOOGLE_SESSION_EVERY == 0
+                ? timed(Op.SIGN_IN_GOOGLE, () -> client.signInWithIdp(googleIdToken("google-" + id, email)))
+                : timed(Op.SIGN_UP, () -> client.signUp(email, PASSWORD));
+        return signedIn
+                .thenCompose(session -> {
+                    tokens.accept(session.get("idToken"), session.get("refreshToken"));
+                    manager.start((String) session.get("localId"), tokens);
+                    return token(manager);
+                })
+                .thenCompose(token -> timed(Op.SEND_VERIFICATION, () -> client.sendEmailVerification(token)))
+                .thenCompose(ignored -> token(manager))
+                .thenCompose(token -> timed(Op.RELOAD, () -> client.lookup(token)))
+                .thenCompose(ignored -> {
+                    manager.stop(); // sign-out
+                    if (id % GOOGLE_SESSION_EVERY == 0) {
+                        return timed(Op.SIGN_IN_GOOGLE, () -> client.signInWithIdp(googleIdToken("google-" + id, email)));
+                    }
+                    return timed(Op.SIGN_IN_PASSWORD, () -> client.signInWithPassword(email, PASSWORD));
+                })
+                .thenCompose(session -> {
+                    tokens.accept(session.get("idToken"), session.get("refreshToken"));
+                    manager.start((String) session.get("localId"), tokens);
+                    // What the app does after the backend rejects a token
+                    return timed(Op.TOKEN_REFRESH, () -> {
+                        CompletableFuture<String> refreshed = new CompletableFuture<>();
+                        manager.setListener(complete(refreshed));
+                        manager.forceRefresh();
+                        return refreshed;
+                    });
+                })
+                .handle((token, error) -> {
+                    tokenHits.addAndGet(manager.getHitCount());
+                    tokenMisses.addAndGet(manager.getMissCount());
+                    manager.stop();
+                    boolean ok = error == null && claims.decode(token) != null;
+                    latency.get(Op.SESSION).recordNanos(System.nanoTime() - start);
+                    if (!ok) {
+                        failures.get(Op.SESSION).incrementAndGet();
+                    }
+                    return ok;
+                });
+    }
+
+    private CompletableFuture<String> token(IdTokenManager manager) {
+        return timed(Op.TOKEN_GET, () -> {
+            CompletableFuture<String> token = new CompletableFuture<>();
+            manager.getToken(complete(token));
+            return token;
+        });
+    }
+
+    /** Times {@code call} and moves its completion onto the auth executor, as the app does. */
+    private <T> CompletableFuture<T> timed(Op op, Supplier<CompletableFuture<T>> call) {
+        long start = System.nanoTime();
+        if (op != Op.TOKEN_GET) {
+            requests.incrementAndGet();
+        }
+        return call.get().whenCompleteAsync((result, error) -> {
+            latency.get(op).recordNanos(System.nanoTime() - start);
+            if (error != null) {
+                failures.get(op).incrementAndGet();
+            }
+        }, authExecutor);
+    }
+
+    private static IdTokenManager.TokenCallback complete(CompletableFuture<String> future) {
+        return new IdTokenManager.TokenCallback() {
+            @Override
+            public void onToken(String token, long expiresAtMillis) {
+                future.complete(token);
+            }
+
+            @Override
+            public void onError(Exception e) {
+                future.completeExceptionally(e);
+            }
+        };
+    }
+
+    /**
+     * Plays the part of {@code FirebaseUser.getIdToken}: serves the token from sign-in until
+     * it's near expiry (or a refresh is forced), then calls the Secure Token endpoint.
+     */
+    private final class SessionTokens implements IdTokenManager.TokenSource {
+        private static final long SDK_REFRESH_WINDOW_MILLIS = 5 * 60_000;
+
+        volatile String idToken;
+        volatile String refreshToken;
+        volatile long expiresAtMillis;
+
+        void accept(Object idToken, Object refreshToken) {
+            this.idToken = (String) idToken;
+            this.refreshToken = (String) refreshToken;
+            JwtClaimsDecoder.Claims decoded = claims.decode(this.idToken);
+            this.expiresAtMillis = decoded != null ? decoded.getExpiresAtMillis() : 0;
+        }
+
+        @Override
+        public void fetch(boolean forceRefresh, IdTokenManager.TokenCallback callback) {
+            if (!forceRefresh && System.currentTimeMillis() < expiresAtMillis - SDK_REFRESH_WINDOW_MILLIS) {
+                callback.onToken(idToken, expiresAtMillis);
+                return;
+            }
+            requests.incrementAndGet();
+            client.refresh(refreshToken).whenCompleteAsync((response, error) -> {
+                if (error != null) {
+                    callback.onError(error instanceof Exception ? (Exception) error : new Exception(error));
+                    return;
+                }
+                accept(response.get("id_token"), response.get("refresh_token"));
+                callback.onToken(idToken, expiresAtMillis);
+            }, authExecutor);
+        }
+    }
+
+    /** An unsigned Google-shaped ID token; the stub only reads its claims. */
+    static String googleIdToken(String subject, String email) {
+        long now = System.currentTimeMillis() / 1000;
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("iss", "https://accounts.google.com");
+        payload.put("sub", subject);
+        payload.put("email", email);
+        payload.put("email_verified", true);
+        payload.put("iat", now);
+        payload.put("exp", now + 3600);
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        return encoder.encodeToString("{\"alg\":\"none\"}".getBytes(StandardCharsets.UTF_8))
+                + "." + encoder.encodeToString(Json.write(payload).getBytes(StandardCharsets.UTF_8))
+                + ".";
+    }
+
+    String report(int sessions, int ok, long elapsedNanos, String resources) {
+        double seconds = elapsedNanos / 1e9;
+        StringBuilder out = new StringBuilder();
+        out.append(String.format(Locale.US, "sessions        %d ok, %d failed in %.1f s%n", ok, sessions - ok, seconds));
+        out.append(String.format(Locale.US, "throughput      %.1f sessions/s, %.1f requests/s%n",
+                ok / seconds, requests.get() / seconds));
+        long hits = tokenHits.get();
+        long lookups = hits + tokenMisses.get();
+        out.append(String.format(Locale.US, "token cache     %.1f%% hits of %d reads%n",
+                lookups == 0 ? 0 : 100.0 * hits / lookups, lookups));
+        out.append(resources);
+        out.append(String.format(Locale.US, "%n%-18s %8s %7s %9s %9s %9s %9s%n",
+                "op (ms)", "count", "failed", "p50", "p95", "p99", "max"));
+        for (Op op : Op.values()) {
+            LatencyHistogram histogram = latency.get(op);
+            if (histogram.getCount() == 0) {
+                continue;
+            }
+            out.append(String.format(Locale.US, "%-18s %8d %7d %9.1f %9.1f %9.1f %9.1f%n",
+                    op, histogram.getCount(), failures.get(op).get(),
+                    histogram.getPercentileMicros(50) / 1000.0,
+                    histogram.getPercentileMicros(95) / 1000.0,
+                    histogram.getPercentileMicros(99) / 1000.0,
+                    histogram.getMaxMicros() / 1000.0));
+        }
+        return out.toString();
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        int sessions = Integer.parseInt(options.getOrDefault("sessions", "5000"));
+        int concurrency = Integer.parseInt(options.getOrDefault("concurrency", "1000"));
+        String target = options.get("target");
+
+        AuthStubServer stub = null;
+        if (target == null) {
+            stub = new AuthStubServer(0);
+            stub.getFaults().latencyMillis = Long.parseLong(options.getOrDefault("latency-ms", "40"));
+            stub.getFaults().jitterMillis = Long.parseLong(options.getOrDefault("jitter-ms", "40"));
+            stub.getFaults().errorRate = Double.parseDouble(options.getOrDefault("error-rate", "0"));
+            stub.start();
+            target = stub.getBaseUrl();
+        }
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        ExecutorService io = Executors.newFixedThreadPool(cores, runnable -> {
+            Thread thread = new Thread(runnable, "loadtest-http");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ScheduledExecutorService timers = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "loadtest-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // One process-wide auth executor, as in the app, sized for a JVM full of "devices"
+        AuthExecutor authExecutor = new AuthExecutor(Math.max(2, cores), 4096);
+        LoadDriver driver = new LoadDriver(new IdentityToolkitClient(target, io), authExecutor, timers);
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        System.gc();
+        long heapBefore = memory.getHeapMemoryUsage().getUsed();
+        int threadsBefore = threads.getThreadCount();
+        threads.resetPeakThreadCount();
+
+        Semaphore inFlight = new Semaphore(concurrency);
+        CountDownLatch done = new CountDownLatch(sessions);
+        AtomicInteger ok = new AtomicInteger();
+        long start = System.nanoTime();
+        for (int i = 0; i < sessions; i++) {
+            inFlight.acquire();
+            driver.runSession().thenAccept(success -> {
+                if (success) {
+                    ok.incrementAndGet();
+                }
+                inFlight.release();
+                done.countDown();
+            });
+        }
+        done.await();
+        long elapsed = System.nanoTime() - start;
+
+        int threadsPeak = threads.getPeakThreadCount();
+        int threadsAfter = threads.getThreadCount();
+        System.gc();
+        long heapAfter = memory.getHeapMemoryUsage().getUsed();
+        AuthExecutor.Stats stats = authExecutor.stats();
+        String resources = String.format(Locale.US,
+                "threads         %d before, %d peak, %d after%n"
+                        + "heap            %.1f MB before, %.1f MB after GC (%+.1f MB)%n"
+                        + "auth executor   %s%n",
+                threadsBefore, threadsPeak, threadsAfter,
+                heapBefore / 1e6, heapAfter / 1e6, (heapAfter - heapBefore) / 1e6, stats);
+
+        String report = driver.report(sessions, ok.get(), elapsed, resources);
+        if (stub != null) {
+            report += String.format(Locale.US, "%nstub requests   %s, %d injected errors%n",
+                    stub.getRequestCounts(), stub.getInjectedErrorCount());
+            stub.close();
+        }
+        System.out.print(report);
+        String out = options.get("out");
+        if (out != null) {
+            Files.write(Paths.get(out), report.getBytes(StandardCharsets.UTF_8));
+        }
+        authExecutor.shutdown();
+    }
+
+    /** {@code --name value} pairs. */
+    static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--") || i + 1 >= args.length) {
+                throw new IllegalArgumentException("Expected --name value, got " + args[i]);
+            }
+            options.put(args[i].substring(2), args[++i]);
+        }
+        return options;
+    }
+}
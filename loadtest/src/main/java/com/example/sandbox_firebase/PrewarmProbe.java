@@ -0,0 +1,106 @@
+package com.example.sandbox_firebase;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Map;
+
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLContext;
+
+/**
+ * Measures what {@link ConnectionPrewarmer} saves: a sign-in on a fresh connection against
+ * one made right after a warm-up, each round against a new HTTPS {@link AuthStubServer} so no
+ * connection or TLS session carries over. Requests go through {@link HttpURLConnection}, the
+ * stack whose keep-alive pool the warm-up fills.
+ *
+ * <pre>
+ *   ./gradlew :loadtest:probePrewarm --args="--rounds 50 --latency-ms 20"
+ * </pre>
+ */
+public final class PrewarmProbe {
+
+    private static final String SIGN_UP = "/identitytoolkit.googleapis.com/v1/accounts:signUp?key=probe";
+
+    private PrewarmProbe() {
+    }
+
+    public static void main(String[] args) throws IOException, GeneralSecurityException {
+        Map<String, String> options = LoadDriver.parseOptions(args);
+        int rounds = Integer.parseInt(options.getOrDefault("rounds", "50"));
+        long latencyMillis = Long.parseLong(options.getOrDefault("latency-ms", "0"));
+        SSLContext tls = AuthStubServer.standInTls();
+        HttpsURLConnection.setDefaultSSLSocketFactory(tls.getSocketFactory());
+
+        LatencyStats cold = new LatencyStats();
+        LatencyStats warm = new LatencyStats();
+        LatencyStats warmUp = new LatencyStats();
+        int reused = 0;
+        // Round 0 only warms up the JVM's TLS code and is not counted
+        for (int round = 0; round <= rounds; round++) {
+            ConnectionPrewarmer coldRun = runRound(tls, latencyMillis, round, false);
+            ConnectionPrewarmer warmRun = runRound(tls, latencyMillis, round, true);
+            if (round > 0) {
+                record(cold, coldRun.getColdCallLatency());
+                record(warm, warmRun.getWarmCallLatency());
+                record(warmUp, warmRun.getWarmUpLatency());
+                reused += warmRun.getWarmCallLatency().getCount() > 0 ? 1 : 0;
+            }
+        }
+        System.out.println("cold sign-in: " + cold);
+        System.out.println("warm sign-in: " + warm + " (" + reused + "/" + rounds + " found a warm connection)");
+        System.out.println("warm-up:      " + warmUp);
+    }
+
+    /** One sign-up against a fresh HTTPS stub, after a warm-up if {@code warmFirst}. */
+    static ConnectionPrewarmer runRound(SSLContext tls, long latencyMillis, int round, boolean warmFirst)
+            throws IOException {
+        try (AuthStubServer server = new AuthStubServer("127.0.0.1", 0, tls)) {
+            server.getFaults().latencyMillis = latencyMillis;
+            server.start();
+            ConnectionPrewarmer prewarmer = new ConnectionPrewarmer(
+                    new URL(server.getBaseUrl() + "/"), Runnable::run, () -> true);
+            if (warmFirst) {
+                prewarmer.warm();
+            }
+            ConnectionPrewarmer.Call call = prewarmer.beginCall();
+            int status = post(new URL(server.getBaseUrl() + SIGN_UP), "{\"email\":\"probe" + round
+                    + (warmFirst ? "w" : "c") + "@example.com\",\"password\":\"secret1\",\"returnSecureToken\":true}");
+            call.end(status == 200);
+            if (warmFirst && server.getConnectionCount() != 1) {
+                System.err.println("round " + round + ": warm sign-in opened a second connection");
+            }
+            return prewarmer;
+        }
+    }
+
+    /** POSTs {@code json} the way the Auth SDK does and drains the reply. */
+    static int post(URL url, String json) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setRequestProperty("Content-Type", "application/json");
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        connection.setFixedLengthStreamingMode(body.length);
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(body);
+        }
+        int status = connection.getResponseCode();
+        try (InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+            if (in != null) {
+                in.readAllBytes();
+            }
+        }
+        return status;
+    }
+
+    private static void record(LatencyStats into, LatencyStats from) {
+        if (from.getCount() > 0) {
+            into.record(from.getMeanNanos());
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.example.sandbox_firebase;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+public class AccountProvisionerTest {
+
+    private AuthStubServer server;
+    private ExecutorService io;
+    private ScheduledExecutorService timers;
+    private Path dir;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new AuthStubServer(0);
+        server.start();
+        io = Executors.newFixedThreadPool(2);
+        timers = Executors.newSingleThreadScheduledExecutor();
+        dir = Files.createTempDirectory("provision");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.close();
+        io.shutdownNow();
+        timers.shutdownNow();
+        try (var files = Files.list(dir)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(dir);
+    }
+
+    private AccountProvisioner provisioner() {
+        return new AccountProvisioner(new IdentityToolkitClient(server.getBaseUrl(), io), timers, 8, 1);
+    }
+
+    private Path input(String... lines) throws Exception {
+        return Files.write(dir.resolve("accounts.csv"), Arrays.asList(lines), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void createsBothKindsAndBreaksDownWhatFailed() throws Exception {
+        Path input = input(
+                "# header",
+                "password,a@example.com,secret1",
+                "google,b@example.com",
+                "password,c@example.com,short",
+                "password,not-an-email,secret1",
+                "password,a@example.com,secret1",
+                "fax,d@example.com",
+                "");
+        Path checkpoint = dir.resolve("accounts.checkpoint");
+
+        AccountProvisioner.Summary summary = provisioner().run(input, checkpoint, 4, 1_000);
+
+        assertEquals(8, summary.lines);
+        assertEquals(2, summary.created);
+        assertEquals(1, summary.existing);
+        assertEquals(Long.valueOf(1), summary.errors.get("LOCAL_WEAK_PASSWORD"));
+        assertEquals(Long.valueOf(1), summary.errors.get("LOCAL_INVALID_EMAIL"));
+        assertEquals(Long.valueOf(1), summary.errors.get("MALFORMED_LINE"));
+        assertEquals(8, AccountProvisioner.readCheckpoint(checkpoint));
+        // Locally refused lines never reach the server
+        Map<String, Long> requests = server.getRequestCounts();
+        assertEquals(Long.valueOf(2), requests.get("signUp"));
+        assertEquals(Long.valueOf(1), requests.get("signInWithIdp"));
+    }
+
+    @Test
+    public void resumesAfterTheCheckpoint() throws Exception {
+        Path input = dir.resolve("accounts.csv");
+        AccountProvisioner.generate(input, 40, "resume");
+        Path checkpoint = dir.resolve("accounts.checkpoint");
+        // Header plus the first 20 definitions were done by an earlier run
+        AccountProvisioner.writeCheckpoint(checkpoint, 21);
+
+        AccountProvisioner.Summary summary = provisioner().run(input, checkpoint, 8, 5);
+
+        assertEquals(21, summary.resumedAfterLine);
+        assertEquals(20, summary.lines);
+        assertEquals(20, summary.created);
+        assertEquals(41, AccountProvisioner.readCheckpoint(checkpoint));
+
+        // Running again finds nothing left to do
+        assertEquals(0, provisioner().run(input, checkpoint, 8, 5).lines);
+    }
+
+    @Test
+    public void googleLinesSentAgainCountAsExisting() throws Exception {
+        Path input = input("google,a@example.com", "google,b@example.com", "google,a@example.com");
+        Path checkpoint = dir.resolve("accounts.checkpoint");
+
+        AccountProvisioner.Summary first = provisioner().run(input, checkpoint, 1, 1_000);
+        assertEquals(2, first.created);
+        assertEquals(1, first.existing);
+
+        // As if the first run had died before its checkpoint reached the last line
+        AccountProvisioner.writeCheckpoint(checkpoint, 1);
+        AccountProvisioner.Summary resumed = provisioner().run(input, checkpoint, 1, 1_000);
+        assertEquals(0, resumed.created);
+        assertEquals(2, resumed.existing);
+    }
+
+    @Test
+    public void retriesUnavailableResponses() throws Exception {
+        server.getFaults().errorRate = 0.3;
+        Path input = dir.resolve("accounts.csv");
+        AccountProvisioner.generate(input, 30, "retry");
+
+        AccountProvisioner.Summary summary = provisioner().run(input, dir.resolve("accounts.checkpoint"), 8, 1_000);
+
+        assertEquals(30, summary.created);
+        assertEquals(0, summary.failed());
+        assertEquals(server.getInjectedErrorCount(), summary.retries);
+    }
+
+    @Test
+    public void progressWaitsForTheEarliestUnfinishedLine() {
+        AccountProvisioner.Progress progress = new AccountProvisioner.Progress(10);
+
+        progress.done(12);
+        progress.done(13);
+        assertEquals(10, progress.lowWater());
+
+        progress.done(11);
+        assertEquals(13, progress.lowWater());
+
+        progress.done(15);
+        progress.done(14);
+        assertEquals(15, progress.lowWater());
+    }
+
+    @Test
+    public void parsesDefinitions() {
+        assertNull(AccountProvisioner.parse("   "));
+        assertNull(AccountProvisioner.parse("# comment"));
+        AccountProvisioner.Definition definition = AccountProvisioner.parse("password,a@example.com,p,w,d");
+        assertEquals(AccountProvisioner.Kind.PASSWORD, definition.kind);
+        assertEquals("p,w,d", definition.password);
+    }
+}
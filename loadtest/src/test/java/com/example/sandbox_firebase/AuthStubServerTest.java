@@ -0,0 +1,93 @@
+package com.example.sandbox_firebase;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class AuthStubServerTest {
+
+    private AuthStubServer server;
+    private ExecutorService io;
+    private IdentityToolkitClient client;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new AuthStubServer(0);
+        server.start();
+        io = Executors.newFixedThreadPool(2);
+        client = new IdentityToolkitClient(server.getBaseUrl(), io);
+    }
+
+    @After
+    public void tearDown() {
+        server.close();
+        io.shutdownNow();
+    }
+
+    @Test
+    public void signUpThenSignInReturnsTheSameUser() throws Exception {
+        Map<String, Object> created = client.signUp("a@example.com", "secret1").get();
+        Map<String, Object> signedIn = client.signInWithPassword("a@example.com", "secret1").get();
+
+        assertEquals(created.get("localId"), signedIn.get("localId"));
+        JwtClaimsDecoder.Claims claims = new JwtClaimsDecoder().decode((String) signedIn.get("idToken"));
+        assertNotNull(claims);
+        assertEquals(created.get("localId"), claims.subject);
+        assertEquals("a@example.com", claims.email);
+    }
+
+    @Test
+    public void wrongPasswordIsRejectedLikeTheRealApi() throws Exception {
+        client.signUp("b@example.com", "secret1").get();
+
+        assertApiError(400, "INVALID_LOGIN_CREDENTIALS",
+                () -> client.signInWithPassword("b@example.com", "nope").get());
+        assertApiError(400, "EMAIL_EXISTS", () -> client.signUp("b@example.com", "secret1").get());
+    }
+
+    @Test
+    public void refreshIssuesATokenForTheSameUser() throws Exception {
+        Map<String, Object> created = client.signUp("c@example.com", "secret1").get();
+
+        Map<String, Object> refreshed = client.refresh((String) created.get("refreshToken")).get();
+
+        assertEquals(created.get("localId"), refreshed.get("user_id"));
+        assertEquals(created.get("localId"),
+                new JwtClaimsDecoder().decode((String) refreshed.get("id_token")).subject);
+        assertNotNull(client.lookup((String) refreshed.get("id_token")).get().get("users"));
+    }
+
+    @Test
+    public void injectedErrorsAreCountedAndReturnedAsUnavailable() throws Exception {
+        server.getFaults().errorRate = 1.0;
+
+        assertApiError(503, "UNAVAILABLE", () -> client.signUp("d@example.com", "secret1").get());
+        assertEquals(1, server.getInjectedErrorCount());
+        assertTrue(server.getRequestCounts().get("signUp") >= 1);
+    }
+
+    private interface Call {
+        void run() throws Exception;
+    }
+
+    private static void assertApiError(int status, String code, Call call) throws Exception {
+        try {
+            call.run();
+            fail("Expected " + code);
+        } catch (ExecutionException e) {
+            IdentityToolkitClient.ApiException api = (IdentityToolkitClient.ApiException) e.getCause();
+            assertEquals(status, api.status);
+            assertEquals(code, api.getMessage());
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.sandbox_firebase;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.URL;
+
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocketFactory;
+
+public class PrewarmProbeTest {
+
+    private SSLSocketFactory previousFactory;
+    private SSLContext tls;
+
+    @Before
+    public void setUp() throws Exception {
+        previousFactory = HttpsURLConnection.getDefaultSSLSocketFactory();
+        tls = AuthStubServer.standInTls();
+        HttpsURLConnection.setDefaultSSLSocketFactory(tls.getSocketFactory());
+    }
+
+    @After
+    public void tearDown() {
+        HttpsURLConnection.setDefaultSSLSocketFactory(previousFactory);
+    }
+
+    @Test
+    public void warmedSignInReusesTheTlsConnection() throws Exception {
+        ConnectionPrewarmer prewarmer = PrewarmProbe.runRound(tls, 0, 1, true);
+
+        assertEquals(1, prewarmer.getWarmUpCount());
+        assertEquals(1, prewarmer.getWarmCallLatency().getCount());
+        assertEquals(0, prewarmer.getColdCallLatency().getCount());
+        assertTrue(prewarmer.isWarm());
+    }
+
+    @Test
+    public void signInWithoutWarmUpIsCold() throws Exception {
+        ConnectionPrewarmer prewarmer = PrewarmProbe.runRound(tls, 0, 2, false);
+
+        assertEquals(0, prewarmer.getWarmUpCount());
+        assertEquals(1, prewarmer.getColdCallLatency().getCount());
+        assertFalse(prewarmer.getWarmCallLatency().getCount() > 0);
+    }
+
+    @Test
+    public void stubCountsOneConnectionForWarmUpAndCall() throws Exception {
+        try (AuthStubServer server = new AuthStubServer("127.0.0.1", 0, tls)) {
+            server.start();
+            ConnectionPrewarmer prewarmer = new ConnectionPrewarmer(
+                    new URL(server.getBaseUrl() + "/"), Runnable::run, () -> true);
+
+            prewarmer.warm();
+            int status = PrewarmProbe.post(new URL(server.getBaseUrl()
+                    + "/identitytoolkit.googleapis.com/v1/accounts:signUp"),
+                    "{\"email\":\"tls@example.com\",\"password\":\"secret1\"}");
+
+            assertEquals(200, status);
+            assertTrue(server.getBaseUrl().startsWith("https://"));
+            assertEquals(1, server.getConnectionCount());
+        }
+    }
+}
@@ -21,3 +21,5 @@ dependencyResolutionManagement {
 
 rootProject.name = "sandbox-firebase"
 include(":app")
+include(":benchmark")
+include(":loadtest")